@@ -0,0 +1,215 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.dom;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import io.sf.carte.doc.style.css.om.SampleCSS;
+
+/**
+ * Builds the documents that are styled by the benchmarks.
+ */
+public class BenchmarkDocuments {
+
+	private static final String[] BUTTON_CLASSES = { "button", "button primary",
+			"image-button", "split-button", "tool-button" };
+
+	private BenchmarkDocuments() {
+		super();
+	}
+
+	/**
+	 * Load the large author sheet that is used by the benchmarks.
+	 *
+	 * @return the text of the sheet.
+	 * @throws IOException if the sheet could not be read.
+	 */
+	public static String loadAuthorSheet() throws IOException {
+		Reader re = SampleCSS.loadMetroReader();
+		StringBuilder buf = new StringBuilder(1200000);
+		char[] cbuf = new char[8192];
+		try {
+			int n;
+			while ((n = re.read(cbuf)) != -1) {
+				buf.append(cbuf, 0, n);
+			}
+		} finally {
+			re.close();
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Create a document with about the given number of elements, styled by the
+	 * default HTML sheet and by the given author sheet.
+	 * <p>
+	 * The body contains blocks of tables, button groups, lists and paragraphs, with
+	 * class names taken from the author sheet.
+	 * </p>
+	 *
+	 * @param impl         the DOM implementation.
+	 * @param elementCount the approximate number of elements in the body.
+	 * @param authorSheet  the text of the author sheet, or {@code null} if none.
+	 * @param elements     a list to add the body and its descendant elements to, in
+	 *                     document order, or {@code null}.
+	 * @return the document.
+	 */
+	public static DOMDocument createDocument(CSSDOMImplementation impl, int elementCount,
+			String authorSheet, List<DOMElement> elements) {
+		DOMDocument document = impl.createDocument("", "html", null);
+		DOMElement html = document.getDocumentElement();
+		DOMElement head = document.createElement("head");
+		html.appendChild(head);
+		if (authorSheet != null) {
+			DOMElement style = document.createElement("style");
+			style.setAttribute("type", "text/css");
+			style.setTextContent(authorSheet);
+			head.appendChild(style);
+		}
+		DOMElement body = document.createElement("body");
+		html.appendChild(body);
+		add(elements, body);
+
+		int count = 1;
+		int block = 0;
+		while (count < elementCount) {
+			DOMElement div = document.createElement("div");
+			div.setAttribute("class", block % 2 == 0 ? "container" : "container-fluid");
+			div.setAttribute("id", "block" + block);
+			body.appendChild(div);
+			add(elements, div);
+			count++;
+			switch (block % 4) {
+			case 0:
+				count += appendTable(document, div, elements);
+				break;
+			case 1:
+				count += appendButtons(document, div, elements);
+				break;
+			case 2:
+				count += appendList(document, div, elements);
+				break;
+			default:
+				count += appendParagraphs(document, div, elements);
+			}
+			block++;
+		}
+		return document;
+	}
+
+	private static int appendTable(DOMDocument document, DOMElement parent,
+			List<DOMElement> elements) {
+		DOMElement table = document.createElement("table");
+		table.setAttribute("class", "table striped");
+		parent.appendChild(table);
+		add(elements, table);
+		int count = 1;
+		for (int i = 0; i < 4; i++) {
+			DOMElement tr = document.createElement("tr");
+			table.appendChild(tr);
+			add(elements, tr);
+			count++;
+			for (int j = 0; j < 3; j++) {
+				DOMElement td = document.createElement(i == 0 ? "th" : "td");
+				td.setTextContent("Cell");
+				tr.appendChild(td);
+				add(elements, td);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int appendButtons(DOMDocument document, DOMElement parent,
+			List<DOMElement> elements) {
+		DOMElement group = document.createElement("div");
+		group.setAttribute("class", "button-group");
+		parent.appendChild(group);
+		add(elements, group);
+		int count = 1;
+		for (int i = 0; i < BUTTON_CLASSES.length; i++) {
+			DOMElement button = document.createElement("button");
+			button.setAttribute("class", BUTTON_CLASSES[i]);
+			if (i == 2) {
+				button.setAttribute("disabled", "disabled");
+			}
+			group.appendChild(button);
+			add(elements, button);
+			count++;
+			DOMElement span = document.createElement("span");
+			span.setAttribute("class", "caption");
+			span.setTextContent("Button");
+			button.appendChild(span);
+			add(elements, span);
+			count++;
+		}
+		DOMElement input = document.createElement("input");
+		input.setAttribute("type", "text");
+		input.setAttribute("class", "input");
+		group.appendChild(input);
+		add(elements, input);
+		return count + 1;
+	}
+
+	private static int appendList(DOMDocument document, DOMElement parent,
+			List<DOMElement> elements) {
+		DOMElement ul = document.createElement("ul");
+		ul.setAttribute("class", "v-menu");
+		parent.appendChild(ul);
+		add(elements, ul);
+		int count = 1;
+		for (int i = 0; i < 6; i++) {
+			DOMElement li = document.createElement("li");
+			if (i == 0) {
+				li.setAttribute("class", "menu-title");
+			}
+			ul.appendChild(li);
+			add(elements, li);
+			DOMElement a = document.createElement("a");
+			a.setAttribute("href", "#item" + i);
+			a.setTextContent("Item");
+			li.appendChild(a);
+			add(elements, a);
+			count += 2;
+		}
+		return count;
+	}
+
+	private static int appendParagraphs(DOMDocument document, DOMElement parent,
+			List<DOMElement> elements) {
+		int count = 0;
+		for (int i = 0; i < 3; i++) {
+			DOMElement p = document.createElement("p");
+			if (i == 1) {
+				p.setAttribute("class", "text-leader");
+			}
+			parent.appendChild(p);
+			add(elements, p);
+			DOMElement span = document.createElement("span");
+			span.setAttribute("class", i == 2 ? "badge" : "text-bold");
+			span.setTextContent("Text");
+			p.appendChild(span);
+			add(elements, span);
+			count += 2;
+		}
+		return count;
+	}
+
+	private static void add(List<DOMElement> elements, DOMElement element) {
+		if (elements != null) {
+			elements.add(element);
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.dom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.sf.carte.doc.style.css.CSSComputedProperties;
+
+/**
+ * Compares the parallel styling of a large document on 1, 4 and 16 threads with
+ * the sequential walk and with a loop of {@code getComputedStyle()} calls.
+ * <p>
+ * The document has about 100,000 elements and is styled by the default HTML
+ * sheet and a large author sheet. The near-linear speedups can only be expected
+ * on hosts with at least as many cores as threads.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ParallelStylingBenchmark {
+
+	@Param({ "100000" })
+	public int elementCount;
+
+	private DOMDocument document;
+
+	private List<DOMElement> elements;
+
+	@Setup
+	public void setup() throws IOException {
+		TestDOMImplementation impl = new TestDOMImplementation(true);
+		impl.setConcurrentStyling(true);
+		elements = new ArrayList<>(elementCount);
+		document = BenchmarkDocuments.createDocument(impl, elementCount,
+				BenchmarkDocuments.loadAuthorSheet(), elements);
+		// Prime the sheet and its rule index
+		document.getStyleSheet();
+		document.getDocumentElement().getComputedStyle(null);
+	}
+
+	/**
+	 * The pool, whose parameter only applies to the parallel benchmark.
+	 */
+	@State(Scope.Benchmark)
+	public static class PoolState {
+
+		@Param({ "1", "4", "16" })
+		public int threads;
+
+		ForkJoinPool pool;
+
+		@Setup
+		public void setup() {
+			pool = new ForkJoinPool(threads);
+		}
+
+		@TearDown
+		public void tearDown() {
+			pool.shutdown();
+		}
+
+	}
+
+	@Benchmark
+	public void getComputedStyleLoop(Blackhole bh) {
+		for (DOMElement elm : elements) {
+			bh.consume(elm.getComputedStyle(null));
+		}
+	}
+
+	@Benchmark
+	public long computeAllStylesSequential() {
+		Counter counter = new Counter();
+		document.computeAllStyles(counter);
+		return counter.count.sum();
+	}
+
+	@Benchmark
+	public long computeAllStylesParallel(PoolState state) {
+		Counter counter = new Counter();
+		document.computeAllStyles(state.pool, counter);
+		return counter.count.sum();
+	}
+
+	private static class Counter implements Consumer<CSSComputedProperties> {
+
+		final LongAdder count = new LongAdder();
+
+		@Override
+		public void accept(CSSComputedProperties style) {
+			count.increment();
+		}
+
+	}
+
+}
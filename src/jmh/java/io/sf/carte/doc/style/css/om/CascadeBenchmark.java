@@ -0,0 +1,172 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.sf.carte.doc.dom.BenchmarkDocuments;
+import io.sf.carte.doc.dom.DOMDocument;
+import io.sf.carte.doc.dom.DOMElement;
+import io.sf.carte.doc.dom.TestDOMImplementation;
+
+/**
+ * Compares the array-based cascade with the former {@code TreeMap} of
+ * {@code LinkedList} cascade, on a document styled by the default HTML sheet
+ * and a large author sheet.
+ * <p>
+ * The {@code sortArray} and {@code sortTreeMap} benchmarks sort the rules that
+ * were found to match each element of the document, with the same weights. The
+ * former key was a {@code RuleSpecificity} compared by a specificity
+ * comparator, so the {@code Integer} keys used here make {@code sortTreeMap} a
+ * lower bound of the former cost.
+ * </p>
+ * <p>
+ * The {@code computeStyles} benchmark measures the whole style computation, and
+ * only uses public API so it can be run on other revisions.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CascadeBenchmark {
+
+	@Param({ "2000" })
+	public int elementCount;
+
+	private List<DOMElement> elements;
+
+	/*
+	 * The matching rules of each element, in the order in which they were found.
+	 */
+	private StyleRule[][] matchedRules;
+
+	private int[][] matchedWeights;
+
+	private StyleRule[] bufferRules = new StyleRule[32];
+
+	private long[] bufferKeys = new long[32];
+
+	@Setup
+	public void setup() throws IOException {
+		TestDOMImplementation impl = new TestDOMImplementation(true);
+		elements = new ArrayList<>(elementCount);
+		DOMDocument document = BenchmarkDocuments.createDocument(impl, elementCount,
+				BenchmarkDocuments.loadAuthorSheet(), elements);
+		BaseDocumentCSSStyleSheet sheet = (BaseDocumentCSSStyleSheet) document.getStyleSheet();
+
+		int sz = elements.size();
+		matchedRules = new StyleRule[sz][];
+		matchedWeights = new int[sz][];
+		Random random = new Random(7L);
+		for (int i = 0; i < sz; i++) {
+			DOMElement elm = elements.get(i);
+			ComputedCSSStyle style = elm.getComputedStyle(null);
+			BaseDocumentCSSStyleSheet.Cascade cascade = sheet.new Cascade();
+			cascade.cascadeSheet(elm.getSelectorMatcher(), style, null);
+			int len = cascade.getLength();
+			StyleRule[] rules = new StyleRule[len];
+			int[] weights = new int[len];
+			for (int j = 0; j < len; j++) {
+				rules[j] = cascade.item(j);
+				weights[j] = cascade.weight(j);
+			}
+			// The rules are not found in cascade order
+			for (int j = len - 1; j > 0; j--) {
+				int k = random.nextInt(j + 1);
+				StyleRule rule = rules[j];
+				rules[j] = rules[k];
+				rules[k] = rule;
+				int weight = weights[j];
+				weights[j] = weights[k];
+				weights[k] = weight;
+			}
+			matchedRules[i] = rules;
+			matchedWeights[i] = weights;
+		}
+	}
+
+	@Benchmark
+	public void computeStyles(Blackhole bh) {
+		for (DOMElement elm : elements) {
+			bh.consume(elm.getComputedStyle(null));
+		}
+	}
+
+	@Benchmark
+	public void sortArray(Blackhole bh) {
+		for (int i = 0; i < matchedRules.length; i++) {
+			StyleRule[] rules = matchedRules[i];
+			int[] weights = matchedWeights[i];
+			int size = rules.length;
+			if (size > bufferKeys.length) {
+				bufferRules = new StyleRule[size];
+				bufferKeys = new long[size];
+			}
+			for (int j = 0; j < size; j++) {
+				bufferKeys[j] = (long) weights[j] << 32 | j;
+				bufferRules[j] = rules[j];
+			}
+			Arrays.sort(bufferKeys, 0, size);
+			for (int j = 0; j < size; j++) {
+				bh.consume(bufferRules[(int) bufferKeys[j]]);
+			}
+			Arrays.fill(bufferRules, 0, size, null);
+		}
+	}
+
+	@Benchmark
+	public void sortTreeMap(Blackhole bh) {
+		for (int i = 0; i < matchedRules.length; i++) {
+			StyleRule[] rules = matchedRules[i];
+			int[] weights = matchedWeights[i];
+			TreeMap<Integer, LinkedList<StyleRule>> map = new TreeMap<>();
+			for (int j = 0; j < rules.length; j++) {
+				Integer weight = weights[j];
+				LinkedList<StyleRule> list = map.get(weight);
+				if (list == null) {
+					list = new LinkedList<>();
+					map.put(weight, list);
+				}
+				list.add(rules[j]);
+			}
+			for (LinkedList<StyleRule> list : map.values()) {
+				for (StyleRule rule : list) {
+					bh.consume(rule);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sf.carte.doc.dom.BenchmarkDocuments;
+import io.sf.carte.doc.dom.DOMDocument;
+import io.sf.carte.doc.dom.DOMElement;
+import io.sf.carte.doc.dom.TestDOMImplementation;
+import io.sf.carte.doc.style.css.CSSRule;
+import io.sf.carte.doc.style.css.SelectorMatcher;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+
+/**
+ * Compares the compiled selectors with the selector interpreter.
+ * <p>
+ * The selectors are those of the style rules in the default HTML sheet and a
+ * large author sheet. Each benchmark operation matches all of them against a
+ * sample of the elements of a document.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectorMatchBenchmark {
+
+	@Param({ "200" })
+	public int elementCount;
+
+	private DOMDocument document;
+
+	private SelectorMatcher[] matchers;
+
+	private Selector[] selectors;
+
+	private CompiledSelector[] compiled;
+
+	@Setup
+	public void setup() throws IOException {
+		TestDOMImplementation impl = new TestDOMImplementation(true);
+		List<DOMElement> elements = new ArrayList<>(elementCount);
+		document = BenchmarkDocuments.createDocument(impl, elementCount,
+				BenchmarkDocuments.loadAuthorSheet(), elements);
+		matchers = new SelectorMatcher[elements.size()];
+		for (int i = 0; i < matchers.length; i++) {
+			matchers[i] = elements.get(i).getSelectorMatcher();
+			matchers[i].setPseudoElement(null);
+		}
+
+		BaseDocumentCSSStyleSheet sheet = (BaseDocumentCSSStyleSheet) document.getStyleSheet();
+		List<Selector> list = new ArrayList<>();
+		addSelectors(sheet.getCssRules(), list);
+		selectors = list.toArray(new Selector[0]);
+		compiled = new CompiledSelector[selectors.length];
+		for (int i = 0; i < selectors.length; i++) {
+			compiled[i] = CompiledSelector.compile(selectors[i]);
+		}
+	}
+
+	private static void addSelectors(CSSRuleArrayList rules, List<Selector> list) {
+		for (AbstractCSSRule rule : rules) {
+			if (rule.getType() == CSSRule.STYLE_RULE) {
+				SelectorList selist = ((StyleRule) rule).getAbsoluteSelectorList();
+				for (Selector selector : selist) {
+					list.add(selector);
+				}
+			} else if (rule instanceof GroupingRule) {
+				addSelectors(((GroupingRule) rule).getCssRules(), list);
+			}
+		}
+	}
+
+	@Benchmark
+	public int matchInterpreted() {
+		int count = 0;
+		for (SelectorMatcher matcher : matchers) {
+			for (Selector selector : selectors) {
+				if (matcher.matches(selector)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int matchCompiled() {
+		int count = 0;
+		for (SelectorMatcher matcher : matchers) {
+			for (CompiledSelector selector : compiled) {
+				if (selector.matches(matcher)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int querySelectorAll() {
+		return document.querySelectorAll("div.container > table.table td").getLength()
+				+ document.querySelectorAll(".button-group button:not(.primary) .caption")
+						.getLength()
+				+ document.querySelectorAll("ul li:first-child a, p + p span").getLength();
+	}
+
+}
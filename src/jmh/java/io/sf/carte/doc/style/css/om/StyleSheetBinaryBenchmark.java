@@ -0,0 +1,116 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.sf.carte.doc.style.css.CSSStyleSheet;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+/**
+ * Compares the loading of style sheets from the binary format with the parsing
+ * of their text, on the third-party test sheets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StyleSheetBinaryBenchmark {
+
+	@Param({ "normalize", "fontawesome", "animate", "metro" })
+	public String sheetName;
+
+	private TestCSSStyleSheetFactory factory;
+
+	private String text;
+
+	private byte[] binary;
+
+	@Setup
+	public void setup() throws IOException {
+		factory = new TestCSSStyleSheetFactory();
+		text = readSheet(sheetName);
+		BaseDocumentCSSStyleSheet sheet = parseText();
+		ByteArrayOutputStream os = new ByteArrayOutputStream(text.length());
+		new StyleSheetBinaryWriter(Channels.newChannel(os)).write(sheet);
+		binary = os.toByteArray();
+	}
+
+	private static String readSheet(String name) throws IOException {
+		Reader re;
+		switch (name) {
+		case "normalize":
+			re = SampleCSS.loadNormalizeReader();
+			break;
+		case "fontawesome":
+			re = SampleCSS.loadFontAwesomeReader();
+			break;
+		case "animate":
+			re = SampleCSS.loadAnimateReader();
+			break;
+		case "metro":
+			re = SampleCSS.loadMetroReader();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown sheet: " + name);
+		}
+		StringBuilder buf = new StringBuilder(8192);
+		char[] cbuf = new char[8192];
+		try {
+			int n;
+			while ((n = re.read(cbuf)) != -1) {
+				buf.append(cbuf, 0, n);
+			}
+		} finally {
+			re.close();
+		}
+		return buf.toString();
+	}
+
+	@Benchmark
+	public BaseDocumentCSSStyleSheet parseText() throws IOException {
+		BaseDocumentCSSStyleSheet sheet = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		sheet.parseStyleSheet(new StringReader(text), CSSStyleSheet.COMMENTS_IGNORE);
+		return sheet;
+	}
+
+	@Benchmark
+	public BaseDocumentCSSStyleSheet readBinary() throws IOException {
+		BaseDocumentCSSStyleSheet sheet = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		new StyleSheetBinaryReader(Channels.newChannel(new ByteArrayInputStream(binary)))
+				.read(sheet);
+		return sheet;
+	}
+
+}
@@ -12,6 +12,7 @@
 package io.sf.carte.doc;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.StringTokenizer;
@@ -36,6 +37,10 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	// This reference can host a String or a TreeSet
 	Object value = "";
 
+	// Hashed tokens for contains(), built when there are multiple tokens.
+	// Volatile so that a set built by a concurrent reader is safely published.
+	private transient volatile HashSet<String> tokenHash = null;
+
 	public DOMTokenSetImpl() {
 		super();
 	}
@@ -81,6 +86,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	 */
 	@SuppressWarnings("unchecked")
 	public void setValue(String value) throws DOMException {
+		tokenHash = null;
 		if (!checkMultipleToken(value)) {
 			multiple = false;
 			this.value = value.trim();
@@ -166,7 +172,13 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	@Override
 	public boolean contains(String token) {
 		if (multiple) {
-			return ((LinkedList<String>) this.value).contains(token);
+			HashSet<String> hash = tokenHash;
+			if (hash == null) {
+				// Build into a local, so readers never see a partially filled set
+				hash = new HashSet<>((LinkedList<String>) this.value);
+				tokenHash = hash;
+			}
+			return hash.contains(token);
 		}
 		return value.equals(token);
 	}
@@ -213,6 +225,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 
 	@SuppressWarnings("unchecked")
 	protected void addUnchecked(String token) throws DOMException {
+		tokenHash = null;
 		String strValue;
 		if (multiple) {
 			LinkedList<String> set = (LinkedList<String>) this.value;
@@ -239,6 +252,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	}
 
 	protected void removeUnchecked(String token) throws DOMException {
+		tokenHash = null;
 		if (multiple) {
 			@SuppressWarnings("unchecked")
 			LinkedList<String> set = (LinkedList<String>) this.value;
@@ -260,6 +274,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 
 	@SuppressWarnings("unchecked")
 	protected boolean toggleUnchecked(String token) throws DOMException {
+		tokenHash = null;
 		LinkedList<String> set;
 		if (multiple) {
 			set = (LinkedList<String>) this.value;
@@ -296,6 +311,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	}
 
 	protected void replaceUnchecked(String oldToken, String newToken) throws DOMException {
+		tokenHash = null;
 		if (multiple) {
 			@SuppressWarnings("unchecked")
 			LinkedList<String> set = (LinkedList<String>) this.value;
@@ -319,6 +335,7 @@ public class DOMTokenSetImpl implements DOMTokenList, java.io.Serializable {
 	 */
 	@SuppressWarnings("unchecked")
 	public void clear() {
+		tokenHash = null;
 		if (multiple) {
 			((LinkedList<String>) this.value).clear(); // Help GC
 			multiple = false;
@@ -32,26 +32,12 @@ public class DirectionalityHelper {
 	 * @return the directionality.
 	 */
 	public static Directionality getDirectionality(Element element) {
-		Node node;
 		do {
-			String dirAttr = element.getAttribute("dir");
-			if (dirAttr.length() != 0) {
-				if ("rtl".equalsIgnoreCase(dirAttr)) {
-					return Directionality.RTL;
-				} else if ("ltr".equalsIgnoreCase(dirAttr)) {
-					break;
-				} else if ("auto".equalsIgnoreCase(dirAttr)) {
-					return autoDirection(element);
-				} else if ("bdi".equals(element.getLocalName())) {
-					return bdiDirection(element);
-				} else if ("input".equals(element.getLocalName())
-						&& "telephone".equalsIgnoreCase(element.getAttribute("type"))) {
-					break;
-				}
-			} else if ("bdi".equals(element.getLocalName())) {
-				return bdiDirection(element);
+			Directionality dir = getOwnDirectionality(element);
+			if (dir != null) {
+				return dir;
 			}
-			node = element.getParentNode();
+			Node node = element.getParentNode();
 			if (node == null || node.getNodeType() != Node.ELEMENT_NODE) {
 				break;
 			}
@@ -60,25 +46,49 @@ public class DirectionalityHelper {
 		return Directionality.LTR;
 	}
 
+	/**
+	 * Determine the directionality of the given element, if it does not depend on
+	 * its ancestors.
+	 * <p>
+	 * When this method returns {@code null}, the directionality of the element is
+	 * the one of its parent element, or {@code LTR} if it has no parent element.
+	 * </p>
+	 * 
+	 * @param element the element.
+	 * @return the directionality, or {@code null} if it is the one of the parent.
+	 */
+	public static Directionality getOwnDirectionality(Element element) {
+		String dirAttr = element.getAttribute("dir");
+		if (dirAttr.length() != 0) {
+			if ("rtl".equalsIgnoreCase(dirAttr)) {
+				return Directionality.RTL;
+			} else if ("ltr".equalsIgnoreCase(dirAttr)) {
+				return Directionality.LTR;
+			} else if ("auto".equalsIgnoreCase(dirAttr)) {
+				return autoDirection(element);
+			} else if ("bdi".equals(element.getLocalName())) {
+				return bdiDirection(element);
+			} else if ("input".equals(element.getLocalName())
+					&& "telephone".equalsIgnoreCase(element.getAttribute("type"))) {
+				return Directionality.LTR;
+			}
+		} else if ("bdi".equals(element.getLocalName())) {
+			return bdiDirection(element);
+		}
+		return null;
+	}
+
 	private static Directionality autoDirection(Element element) {
 		String name = element.getLocalName();
 		if ("textarea".equals(name)) {
 			String value = element.getTextContent().trim();
-			return valueDirection(element, value);
+			return valueDirection(value);
 		} else if ("input".equals(name)) {
 			String value = element.getAttribute("value");
-			return valueDirection(element, value);
+			return valueDirection(value);
 		} else {
-			byte ret = descendantTextDirection(element);
-			switch (ret) {
-			case Character.DIRECTIONALITY_LEFT_TO_RIGHT:
-				return Directionality.LTR;
-			case Character.DIRECTIONALITY_RIGHT_TO_LEFT:
-				return Directionality.RTL;
-			}
+			return bdiDirection(element);
 		}
-		// Inconclusive
-		return parentDirection(element);
 	}
 
 	private static Directionality bdiDirection(Element element) {
@@ -90,7 +100,7 @@ public class DirectionalityHelper {
 			return Directionality.RTL;
 		}
 		// Inconclusive
-		return parentDirection(element);
+		return null;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -172,15 +182,7 @@ public class DirectionalityHelper {
 		return "ltr".equalsIgnoreCase(dir) || "rtl".equalsIgnoreCase(dir);
 	}
 
-	private static Directionality parentDirection(Element element) {
-		Node node = element.getParentNode();
-		if (node != null && node.getNodeType() == Node.ELEMENT_NODE) {
-			return getDirectionality((Element) node);
-		}
-		return Directionality.LTR;
-	}
-
-	private static Directionality valueDirection(Element element, String value) {
+	private static Directionality valueDirection(String value) {
 		/*
 		 * If the element's value contains a character of bidirectional character type
 		 * AL or R, and there is no character of bidirectional character type L anywhere
@@ -200,7 +202,7 @@ public class DirectionalityHelper {
 			}
 		}
 		// Inconclusive
-		return parentDirection(element);
+		return null;
 	}
 
 }
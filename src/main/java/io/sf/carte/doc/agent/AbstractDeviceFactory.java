@@ -32,6 +32,17 @@ abstract public class AbstractDeviceFactory implements DeviceFactory {
 		return mediaDatabaseMap.get(medium);
 	}
 
+	/**
+	 * Set the style database for the given medium.
+	 * <p>
+	 * The results of {@code @supports} conditions are remembered for the database
+	 * that they were evaluated against, so setting a different database causes
+	 * them to be evaluated again.
+	 * </p>
+	 *
+	 * @param medium the medium.
+	 * @param db     the style database.
+	 */
 	public void setStyleDatabase(String medium, StyleDatabase db) {
 		this.mediaDatabaseMap.put(medium, db);
 	}
@@ -115,6 +115,7 @@ abstract class AbstractDOMNode implements DOMNode, java.io.Serializable {
 	 */
 	void setParentNode(AbstractDOMNode parentNode) {
 		this.parentNode = parentNode;
+		invalidateComputedStyles();
 	}
 
 	/**
@@ -124,6 +125,17 @@ abstract class AbstractDOMNode implements DOMNode, java.io.Serializable {
 	 */
 	void setAttributeOwner(DOMElement newOwner) {
 		this.parentNode = newOwner;
+		invalidateComputedStyles();
+	}
+
+	/**
+	 * Notify the owner document that the computed styles may have changed.
+	 */
+	void invalidateComputedStyles() {
+		DOMDocument doc = getOwnerDocument();
+		if (doc != null) {
+			doc.invalidateComputedStyles();
+		}
 	}
 
 	/**
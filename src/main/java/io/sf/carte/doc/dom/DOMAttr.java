@@ -140,6 +140,9 @@ abstract class DOMAttr extends NamespacedNode implements Attr {
 			value = "";
 		}
 		this.value = value;
+		if (getOwnerElement() != null) {
+			invalidateComputedStyles();
+		}
 	}
 
 	@Override
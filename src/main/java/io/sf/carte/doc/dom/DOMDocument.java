@@ -18,14 +18,19 @@ import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.CDATASection;
@@ -51,9 +56,11 @@ import io.sf.carte.doc.DOMPolicyException;
 import io.sf.carte.doc.agent.DeviceFactory;
 import io.sf.carte.doc.dom.DOMElement.ClassList;
 import io.sf.carte.doc.style.css.CSSCanvas;
+import io.sf.carte.doc.style.css.CSSComputedProperties;
 import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.CSSMediaException;
 import io.sf.carte.doc.style.css.CSSPropertyDefinition;
+import io.sf.carte.doc.style.css.CSSRule;
 import io.sf.carte.doc.style.css.DocumentCSSStyleSheet;
 import io.sf.carte.doc.style.css.ErrorHandler;
 import io.sf.carte.doc.style.css.LinkStyle;
@@ -67,7 +74,11 @@ import io.sf.carte.doc.style.css.om.AbstractCSSStyleDeclaration;
 import io.sf.carte.doc.style.css.om.AbstractCSSStyleSheet;
 import io.sf.carte.doc.style.css.om.BaseCSSStyleSheetFactory;
 import io.sf.carte.doc.style.css.om.BaseDocumentCSSStyleSheet;
+import io.sf.carte.doc.style.css.om.CSSRuleArrayList;
+import io.sf.carte.doc.style.css.om.ComputedStyleCache;
+import io.sf.carte.doc.style.css.om.DOMDocumentCSSStyleSheet;
 import io.sf.carte.doc.style.css.om.DOMUtil;
+import io.sf.carte.doc.style.css.om.ImportRule;
 import io.sf.carte.doc.style.css.om.MediaFactory;
 import io.sf.carte.doc.style.css.om.StyleSheetList;
 import io.sf.carte.doc.style.css.parser.ParseHelper;
@@ -97,7 +108,30 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 
 	private Set<CSSPropertyDefinition> registeredPropertySet = null;
 
-	private BaseDocumentCSSStyleSheet mergedStyleSheet = null;
+	/*
+	 * The merged sheet is only published once it was built, so the styling threads
+	 * never see a partial sheet.
+	 */
+	private volatile BaseDocumentCSSStyleSheet mergedStyleSheet = null;
+
+	/*
+	 * The ranges of rules that each linked or embedded sheet contributed to the
+	 * merged sheet, in the order of the sheet list.
+	 */
+	private transient ArrayList<MergedRange> mergedRanges = null;
+
+	/*
+	 * The number of rules in the merged sheet after the last merge, to detect
+	 * the rules that were inserted or removed directly.
+	 */
+	private transient int mergedRuleCount = 0;
+
+	/*
+	 * The sheets whose rules changed since the merged sheet was built.
+	 */
+	private transient volatile Set<AbstractCSSStyleSheet> modifiedSheets = null;
+
+	private transient ComputedStyleCache computedStyleCache = null;
 
 	private final MyOMStyleSheetList sheets = new MyOMStyleSheetList(7);
 
@@ -493,6 +527,14 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 		AbstractCSSStyleSheet getSheet();
 
 		void resetSheet();
+
+		/**
+		 * Reset the sheet after a change in the style text that does not affect the
+		 * media, title or type of the sheet.
+		 */
+		default void resetSheetContent() {
+			resetSheet();
+		}
 	}
 
 	interface LinkStyleProcessingInstruction extends LinkStyleDefiner, ProcessingInstruction {
@@ -641,6 +683,11 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 			helper.resetSheet();
 		}
 
+		@Override
+		public void resetSheetContent() {
+			helper.resetSheetContent();
+		}
+
 		@Override
 		void setParentNode(AbstractDOMNode parentNode) throws DOMException {
 			super.setParentNode(parentNode);
@@ -656,14 +703,14 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 
 		@Override
 		void postRemoveChild(AbstractDOMNode removed) {
-			resetSheet();
+			resetSheetContent();
 			getSheet();
 		}
 
 		@Override
 		public void setTextContent(String textContent) throws DOMException {
 			super.setTextContent(textContent);
-			resetSheet();
+			resetSheetContent();
 			getSheet();
 		}
 
@@ -969,13 +1016,14 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 			DOMNode parent = getParentNode();
 			if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) {
 				onDOMChange((DOMElement) parent);
+				invalidateComputedStyles();
 			}
 		}
 
 		void onDOMChange(DOMElement container) {
 			LinkStyleDefiner definer = getEmbeddedStyleDefiner(container);
 			if (definer != null) {
-				definer.resetSheet();
+				definer.resetSheetContent();
 			}
 		}
 
@@ -1400,7 +1448,7 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 
 		private static final long serialVersionUID = DOMDocument.serialVersionUID;
 
-		private AbstractCSSStyleDeclaration inlineStyle = null;
+		private volatile AbstractCSSStyleDeclaration inlineStyle = null;
 
 		MyStyleAttr(String name) {
 			super(name, null);
@@ -1433,34 +1481,43 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 
 		@Override
 		public AbstractCSSStyleDeclaration getStyle() {
-			if (inlineStyle == null) {
-				inlineStyle = getOwnerDocument().getStyleSheetFactory().createInlineStyle(this);
-				setInlineStyle(super.getValue());
+			AbstractCSSStyleDeclaration style = inlineStyle;
+			if (style == null) {
+				style = getOwnerDocument().getStyleSheetFactory().createInlineStyle(this);
+				// Only set the field once parsed, as concurrent readers may see it
+				style = parseInlineStyle(style, super.getValue());
+				inlineStyle = style;
 			}
-			return inlineStyle;
+			return style;
 		}
 
 		private void setInlineStyle(String value) {
+			inlineStyle = parseInlineStyle(inlineStyle, value);
+		}
+
+		private AbstractCSSStyleDeclaration parseInlineStyle(AbstractCSSStyleDeclaration style,
+				String value) {
 			if (value == null) {
 				value = "";
 			}
 			try {
-				inlineStyle.setCssText(value);
+				style.setCssText(value);
 				StyleDeclarationErrorHandler eh;
-				if (inlineStyle.getLength() == 0
-						&& ((eh = inlineStyle.getStyleDeclarationErrorHandler()) == null || eh.hasErrors())) {
+				if (style.getLength() == 0
+						&& ((eh = style.getStyleDeclarationErrorHandler()) == null || eh.hasErrors())) {
 					/*
 					 * If no property was set, this may be a 'style' attribute unrelated to CSS.
 					 * Null the style declaration just in case, so the normal DOM value is returned.
 					 */
-					inlineStyle = null;
+					style = null;
 				}
 			} catch (DOMException e) {
 				getErrorHandler().inlineStyleError(getOwnerElement(), e, value);
-				if (inlineStyle.getLength() == 0) {
-					inlineStyle = null;
+				if (style.getLength() == 0) {
+					style = null;
 				}
 			}
+			return style;
 		}
 
 		@Override
@@ -2571,6 +2628,7 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 		}
 		registeredPropertySet.add(definition);
 		mergedStyleSheet = null;
+		invalidateComputedStyles();
 	}
 
 	/**
@@ -2705,37 +2763,232 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 	 * the 'important' part of the user-defined style sheet.
 	 * <p>
 	 * The style sheet is lazily built.
+	 * </p>
+	 * <p>
+	 * After the text of an embedded sheet changes, only the rules of that sheet
+	 * and the following ones are replaced in the merged sheet, unless any of them
+	 * declares (directly or through an {@code @import}) namespaces or custom
+	 * properties, in which case the merged sheet is built again. Either way, the
+	 * rule index of the merged sheet is built again, in full, on the next style
+	 * computation; it is not updated incrementally.
+	 * </p>
 	 * 
 	 * @return the merged style sheet that applies to this document.
 	 */
 	@Override
 	public DocumentCSSStyleSheet getStyleSheet() {
+		BaseDocumentCSSStyleSheet sheet = mergedStyleSheet;
+		if (sheet == null || modifiedSheets != null) {
+			sheet = updateStyleSheet();
+		}
+		return sheet;
+	}
+
+	private synchronized BaseDocumentCSSStyleSheet updateStyleSheet() {
 		if (mergedStyleSheet == null) {
 			mergeStyleSheets();
+		} else if (modifiedSheets != null) {
+			updateMergedSheet();
 		}
 		return mergedStyleSheet;
 	}
 
-	private void mergeStyleSheets() {
-		getStyleSheets(); // Make sure that sheets is up to date
-		BaseDocumentCSSStyleSheet defSheet = getStyleSheetFactory().getDefaultStyleSheet(getComplianceMode());
-		if (targetMedium == null) {
-			mergedStyleSheet = defSheet.clone();
+	/**
+	 * Compute the styles of all the elements in this document, in document order.
+	 * <p>
+	 * The document is walked once, and the style of each element is reused as the
+	 * parent style of its children.
+	 * </p>
+	 * 
+	 * @param consumer the consumer of the computed styles.
+	 */
+	@Override
+	public void computeAllStyles(Consumer<? super CSSComputedProperties> consumer) {
+		DocumentCSSStyleSheet sheet = getStyleSheet();
+		if (sheet instanceof DOMDocumentCSSStyleSheet) {
+			((DOMDocumentCSSStyleSheet) sheet).computeAllStyles(consumer);
 		} else {
-			mergedStyleSheet = defSheet.clone(targetMedium);
+			CSSDocument.super.computeAllStyles(consumer);
 		}
-		mergedStyleSheet.setOwnerDocument(this);
-		// Add styles referenced by link and style elements
-		Iterator<AbstractCSSStyleSheet> it = sheets.iterator();
-		while (it.hasNext()) {
-			mergedStyleSheet.addStyleSheet(it.next());
+	}
+
+	/**
+	 * Compute the styles of all the elements in this document, in parallel.
+	 * <p>
+	 * If the {@link BaseCSSStyleSheetFactory#setConcurrentStyling(boolean)
+	 * concurrent read mode} is enabled, the subtrees that contain at least
+	 * {@link BaseCSSStyleSheetFactory#getParallelStylingThreshold()} elements are
+	 * styled by separate tasks in the given pool. Otherwise, the styles are
+	 * computed in the current thread.
+	 * </p>
+	 * 
+	 * @param pool     the pool that runs the styling tasks.
+	 * @param consumer the thread-safe consumer of the computed styles.
+	 */
+	@Override
+	public void computeAllStyles(ForkJoinPool pool,
+			Consumer<? super CSSComputedProperties> consumer) {
+		DocumentCSSStyleSheet sheet = getStyleSheet();
+		if (sheet instanceof DOMDocumentCSSStyleSheet) {
+			((DOMDocumentCSSStyleSheet) sheet).computeAllStyles(pool,
+					getStyleSheetFactory().getParallelStylingThreshold(), consumer);
+		} else {
+			CSSDocument.super.computeAllStyles(pool, consumer);
 		}
+	}
+
+	private void mergeStyleSheets() {
+		getStyleSheets(); // Make sure that sheets is up to date
+		// The rules of the default sheet are shared with other documents
+		BaseDocumentCSSStyleSheet merged = getStyleSheetFactory()
+				.createMergedStyleSheet(getComplianceMode(), targetMedium);
+		merged.setOwnerDocument(this);
+		mergedRanges = new ArrayList<>(sheets.getLength());
+		// Add styles referenced by link and style elements
+		addMergedSheets(merged, sheets.iterator());
 		// Add DOM property definitions
 		if (registeredPropertySet != null) {
 			for (CSSPropertyDefinition def : registeredPropertySet) {
-				mergedStyleSheet.registerProperty(def);
+				merged.registerProperty(def);
 			}
 		}
+		mergedRuleCount = merged.getCssRules().getLength();
+		// Publish the sheet before the readers can skip the lock
+		mergedStyleSheet = merged;
+		modifiedSheets = null;
+	}
+
+	private void addMergedSheets(BaseDocumentCSSStyleSheet merged,
+			Iterator<AbstractCSSStyleSheet> it) {
+		CSSRuleArrayList rules = merged.getCssRules();
+		while (it.hasNext()) {
+			AbstractCSSStyleSheet sheet = it.next();
+			int start = rules.getLength();
+			merged.addStyleSheet(sheet);
+			mergedRanges.add(new MergedRange(sheet, start));
+		}
+	}
+
+	/**
+	 * Replace in the merged sheet the rules of the sheets that were modified.
+	 * <p>
+	 * The rules of the first modified sheet and the following ones are removed,
+	 * and those sheets are added again. The rules of the default sheet and the
+	 * preceding sheets are kept. If any of the sheets to be added again declared
+	 * namespaces or properties, which cannot be unregistered, or declares them
+	 * now, the merged sheet is rebuilt instead. The imported sheets are checked
+	 * as well. If rules were inserted into or removed from the merged sheet since
+	 * the last merge, the recorded ranges are no longer valid and the merged sheet
+	 * is rebuilt too.
+	 * </p>
+	 */
+	private void updateMergedSheet() {
+		BaseDocumentCSSStyleSheet merged = mergedStyleSheet;
+		CSSRuleArrayList rules = merged.getCssRules();
+		if (rules.getLength() != mergedRuleCount) {
+			mergeStyleSheets();
+			return;
+		}
+		int first = -1;
+		for (int i = 0; i < mergedRanges.size(); i++) {
+			MergedRange range = mergedRanges.get(i);
+			if (first == -1 && modifiedSheets.contains(range.sheet)) {
+				first = i;
+			}
+			if (first != -1 && !range.replaceable) {
+				first = -1;
+				break;
+			}
+		}
+		if (first == -1) {
+			mergeStyleSheets();
+			return;
+		}
+
+		ArrayList<AbstractCSSStyleSheet> tail = new ArrayList<>(mergedRanges.size() - first);
+		for (int i = first; i < mergedRanges.size(); i++) {
+			AbstractCSSStyleSheet sheet = mergedRanges.get(i).sheet;
+			// Make sure that the sheet was parsed again
+			Node owner = sheet.getOwnerNode();
+			if (owner instanceof LinkStyleDefiner
+					&& ((LinkStyleDefiner) owner).getSheet() != sheet) {
+				mergeStyleSheets();
+				return;
+			}
+			/*
+			 * The new rules may declare namespaces or properties, which must not be
+			 * added after the rules of the preceding sheets.
+			 */
+			if (!MergedRange.isReplaceable(sheet)) {
+				mergeStyleSheets();
+				return;
+			}
+			tail.add(sheet);
+		}
+
+		rules.subList(mergedRanges.get(first).start, rules.size()).clear();
+		mergedRanges.subList(first, mergedRanges.size()).clear();
+		addMergedSheets(merged, tail.iterator());
+		mergedRuleCount = rules.getLength();
+		// The readers wait for the lock until the rules were replaced
+		modifiedSheets = null;
+		if (getCanvas() != null) {
+			getCanvas().reloadStyleState();
+		}
+	}
+
+	/**
+	 * The range of rules that a linked or embedded sheet contributed to the merged
+	 * sheet.
+	 */
+	private static class MergedRange {
+
+		final AbstractCSSStyleSheet sheet;
+
+		final int start;
+
+		/*
+		 * Whether the rules can be replaced: namespaces and property definitions
+		 * cannot be removed from the merged sheet.
+		 */
+		final boolean replaceable;
+
+		MergedRange(AbstractCSSStyleSheet sheet, int start) {
+			super();
+			this.sheet = sheet;
+			this.start = start;
+			this.replaceable = isReplaceable(sheet);
+		}
+
+		/*
+		 * Check the rules of the sheet, including those of the imported sheets.
+		 */
+		static boolean isReplaceable(AbstractCSSStyleSheet sheet) {
+			return isReplaceable(sheet, Collections
+					.newSetFromMap(new IdentityHashMap<AbstractCSSStyleSheet, Boolean>()));
+		}
+
+		private static boolean isReplaceable(AbstractCSSStyleSheet sheet,
+				Set<AbstractCSSStyleSheet> visited) {
+			if (!visited.add(sheet)) {
+				// Import loop
+				return true;
+			}
+			for (AbstractCSSRule rule : sheet.getCssRules()) {
+				short type = rule.getType();
+				if (type == CSSRule.NAMESPACE_RULE || type == CSSRule.PROPERTY_RULE) {
+					return false;
+				}
+				if (type == CSSRule.IMPORT_RULE) {
+					AbstractCSSStyleSheet imported = ((ImportRule) rule).getStyleSheet();
+					if (imported != null && !isReplaceable(imported, visited)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
 	}
 
 	/**
@@ -2889,15 +3142,85 @@ abstract public class DOMDocument extends DOMParentNode implements CSSDocument {
 	 */
 	void onSheetModify() {
 		mergedStyleSheet = null;
+		mergedRanges = null;
+		modifiedSheets = null;
 		sheets.setNeedsUpdate(true);
 		onStyleModify();
 	}
 
+	/**
+	 * Notifies the document that the rules of a linked or embedded sheet are going
+	 * to be replaced, without changes to its media, title or disabled state.
+	 * <p>
+	 * If the sheet is part of the current merged sheet, its rules are replaced the
+	 * next time that the merged sheet is requested, instead of merging all the
+	 * sheets again.
+	 * </p>
+	 * 
+	 * @param sheet the sheet.
+	 */
+	void onSheetContentModify(AbstractCSSStyleSheet sheet) {
+		if (mergedStyleSheet != null && !sheets.needsUpdate() && isMergedSheet(sheet)) {
+			if (modifiedSheets == null) {
+				modifiedSheets = Collections
+					.newSetFromMap(new IdentityHashMap<AbstractCSSStyleSheet, Boolean>());
+			}
+			modifiedSheets.add(sheet);
+			onStyleModify();
+		} else {
+			onSheetModify();
+		}
+	}
+
+	private boolean isMergedSheet(AbstractCSSStyleSheet sheet) {
+		if (mergedRanges != null) {
+			for (MergedRange range : mergedRanges) {
+				if (range.sheet == sheet) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Notifies the document about any change in style.
 	 * 
 	 */
 	void onStyleModify() {
+		invalidateComputedStyles();
+	}
+
+	/**
+	 * Gets the cache of computed styles of this document.
+	 * <p>
+	 * The cache is only used if the style sheet factory has computed style caching
+	 * enabled, see {@link BaseCSSStyleSheetFactory#setComputedStyleCaching(boolean)},
+	 * and the concurrent read mode is not.
+	 * </p>
+	 * 
+	 * @return the computed style cache, or {@code null} if computed styles are not
+	 *         being cached.
+	 */
+	public ComputedStyleCache getComputedStyleCache() {
+		if (!getStyleSheetFactory().isComputedStyleCaching()
+				|| getStyleSheetFactory().isConcurrentStyling()) {
+			return null;
+		}
+		if (computedStyleCache == null) {
+			computedStyleCache = new ComputedStyleCache();
+		}
+		return computedStyleCache;
+	}
+
+	/**
+	 * Notifies the document about a change that may affect the computed styles.
+	 */
+	@Override
+	void invalidateComputedStyles() {
+		if (computedStyleCache != null) {
+			computedStyleCache.clear();
+		}
 	}
 
 	/**
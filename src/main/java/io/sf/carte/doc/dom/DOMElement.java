@@ -11,7 +11,6 @@
 
 package io.sf.carte.doc.dom;
 
-import java.io.StringReader;
 import java.lang.ref.WeakReference;
 import java.util.BitSet;
 import java.util.HashMap;
@@ -39,7 +38,9 @@ import io.sf.carte.doc.style.css.SelectorMatcher;
 import io.sf.carte.doc.style.css.StyleDatabaseRequiredException;
 import io.sf.carte.doc.style.css.nsac.Condition;
 import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.om.CompiledSelector;
 import io.sf.carte.doc.style.css.om.ComputedCSSStyle;
+import io.sf.carte.doc.style.css.om.ComputedStyleCache;
 import io.sf.carte.doc.style.css.om.DOMSelectorMatcher;
 import io.sf.carte.doc.style.css.parser.CSSParser;
 
@@ -61,8 +62,12 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 
 	/**
 	 * The field backing the getClassList() method.
+	 * <p>
+	 * It is volatile because the list is lazily created by readers like the
+	 * selector matchers, which may run concurrently.
+	 * </p>
 	 */
-	ClassList classList = null;
+	volatile ClassList classList = null;
 
 	private TypeInfo schemaTypeInfo = null;
 
@@ -309,18 +314,32 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 	 * @return the DOMTokenList ordered collection of the class attributes of this element.
 	 */
 	public DOMTokenList getClassList() {
-		if (classList == null) {
-			DOMAttr attr = nodeMap.getNamedItem("class");
-			if (getOwnerDocument().getComplianceMode() == CSSDocument.ComplianceMode.STRICT) {
-				classList = new ClassList();
-			} else {
-				classList = new QuirksClassList();
-			}
-			if (attr != null && attr.value.length() != 0) {
-				classList.setValue(attr.value);
+		ClassList list = classList;
+		if (list == null) {
+			synchronized (this) {
+				list = classList;
+				if (list == null) {
+					list = createClassList();
+					// Publish the list once filled
+					classList = list;
+				}
 			}
 		}
-		return classList;
+		return list;
+	}
+
+	private ClassList createClassList() {
+		ClassList list;
+		if (getOwnerDocument().getComplianceMode() == CSSDocument.ComplianceMode.STRICT) {
+			list = new ClassList();
+		} else {
+			list = new QuirksClassList();
+		}
+		DOMAttr attr = nodeMap.getNamedItem("class");
+		if (attr != null && attr.value.length() != 0) {
+			list.fill(attr.value);
+		}
+		return list;
 	}
 
 	class ClassList extends DOMTokenSetImpl {
@@ -334,6 +353,20 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 				value = "";
 			}
 			super.setValue(value);
+			invalidateComputedStyles();
+		}
+
+		/**
+		 * Fill this list from the value of the class attribute.
+		 * <p>
+		 * The value is the one that the attribute already had, so the computed
+		 * styles are not invalidated.
+		 * </p>
+		 * 
+		 * @param value the non-empty attribute value.
+		 */
+		void fill(String value) {
+			super.setValue(value);
 		}
 
 		@Override
@@ -345,6 +378,32 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 				DOMElement.this.nodeMap.setNamedItem(attr);
 				attr.setAttributeOwner(DOMElement.this);
 			}
+			invalidateComputedStyles();
+		}
+
+		@Override
+		protected void removeUnchecked(String token) throws DOMException {
+			super.removeUnchecked(token);
+			invalidateComputedStyles();
+		}
+
+		@Override
+		protected boolean toggleUnchecked(String token) throws DOMException {
+			boolean result = super.toggleUnchecked(token);
+			invalidateComputedStyles();
+			return result;
+		}
+
+		@Override
+		protected void replaceUnchecked(String oldToken, String newToken) throws DOMException {
+			super.replaceUnchecked(oldToken, newToken);
+			invalidateComputedStyles();
+		}
+
+		@Override
+		public void clear() {
+			super.clear();
+			invalidateComputedStyles();
 		}
 
 	}
@@ -361,6 +420,11 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 			super.setValue(value);
 		}
 
+		@Override
+		void fill(String value) {
+			super.fill(value.toLowerCase(Locale.ROOT));
+		}
+
 		@Override
 		public boolean contains(String token) {
 			if (token == null) {
@@ -948,25 +1012,47 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 	 */
 	@Override
 	public SelectorMatcher getSelectorMatcher() {
+		if (getOwnerDocument().getStyleSheetFactory().isConcurrentStyling()) {
+			// Each caller gets its own matcher state
+			return createSelectorMatcher();
+		}
 		SelectorMatcher matcher = null;
 		if (selectorMatcherRef != null) {
 			matcher = selectorMatcherRef.get();
 		}
 		if (matcher == null) {
-			matcher = new DOMSelectorMatcher(this) {
+			matcher = createSelectorMatcher();
+			selectorMatcherRef = new WeakReference<>(matcher);
+		}
+		return matcher;
+	}
+
+	private SelectorMatcher createSelectorMatcher() {
+		return new DOMSelectorMatcher(this) {
 
-				private static final long serialVersionUID = 1L;
+			private static final long serialVersionUID = 1L;
 
-				@Override
-				protected String localName(Node elm) {
-					// No need for a null check
-					return elm.getLocalName().toLowerCase(Locale.ROOT);
+			@Override
+			protected String localName(Node elm) {
+				// No need for a null check
+				return elm.getLocalName().toLowerCase(Locale.ROOT);
+			}
+
+			@Override
+			protected boolean hasClass(String className, CSSDocument.ComplianceMode mode) {
+				// Use the class list if it is kept in sync with the attribute
+				DOMAttr attr = nodeMap.getNamedItem("class");
+				if (attr instanceof DOMDocument.ClassAttr) {
+					DOMTokenList list = ((DOMDocument.ClassAttr) attr).getListValue();
+					if (list != null && (list instanceof QuirksClassList) == (mode
+							!= CSSDocument.ComplianceMode.STRICT)) {
+						return list.contains(className);
+					}
 				}
+				return super.hasClass(className, mode);
+			}
 
-			};
-			selectorMatcherRef = new WeakReference<>(matcher);
-		}
-		return matcher;
+		};
 	}
 
 	/**
@@ -977,7 +1063,7 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 		CSSParser parser = new CSSParser();
 		SelectorList list;
 		try {
-			list = parser.parseSelectors(new StringReader(selectorString));
+			list = parser.parseSelectors(selectorString);
 		} catch (Exception e) {
 			throw new DOMSyntaxException("Unable to parse selector in: " + selectorString);
 		}
@@ -1005,6 +1091,18 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 		return matcher.matches(selist) != -1;
 	}
 
+	/**
+	 * Check whether this element matches any of the given compiled selectors.
+	 * 
+	 * @param compiled the compiled selectors.
+	 * @return {@code true} if the element matches any of the selectors.
+	 */
+	boolean matches(CompiledSelector[] compiled) {
+		SelectorMatcher matcher = getSelectorMatcher();
+		matcher.setPseudoElement(null);
+		return CompiledSelector.matchesAny(compiled, matcher);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1084,7 +1182,17 @@ abstract public class DOMElement extends NamespacedNode implements CSSElement, P
 		} else {
 			peCond = null;
 		}
-		return (ComputedCSSStyle) getOwnerDocument().getStyleSheet().getComputedStyle(this, peCond);
+		DOMDocument doc = getOwnerDocument();
+		ComputedStyleCache cache = doc.getComputedStyleCache();
+		if (cache == null) {
+			return (ComputedCSSStyle) doc.getStyleSheet().getComputedStyle(this, peCond);
+		}
+		ComputedCSSStyle style = cache.get(this, pseudoElt);
+		if (style == null) {
+			style = (ComputedCSSStyle) doc.getStyleSheet().getComputedStyle(this, peCond);
+			cache.put(this, pseudoElt, style);
+		}
+		return style;
 	}
 
 	@Override
@@ -16,7 +16,7 @@ import java.util.LinkedList;
 
 import org.w3c.dom.Node;
 
-import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.om.CompiledSelector;
 
 class DOMElementLinkedList extends LinkedList<DOMElement> implements ElementList {
 
@@ -57,15 +57,15 @@ class DOMElementLinkedList extends LinkedList<DOMElement> implements ElementList
 		return buf.toString();
 	}
 
-	void fillQuerySelectorList(SelectorList selist, Node firstChild) {
+	void fillQuerySelectorList(CompiledSelector[] compiled, Node firstChild) {
 		Node node = firstChild;
 		while (node != null) {
 			if (node.getNodeType() == Node.ELEMENT_NODE) {
 				DOMElement element = (DOMElement) node;
-				if (element.matches(selist, null)) {
+				if (element.matches(compiled)) {
 					add(element);
 				}
-				fillQuerySelectorList(selist, element.getFirstChild());
+				fillQuerySelectorList(compiled, element.getFirstChild());
 			}
 			node = node.getNextSibling();
 		}
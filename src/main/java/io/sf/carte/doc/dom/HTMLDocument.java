@@ -396,6 +396,11 @@ abstract public class HTMLDocument extends DOMDocument {
 			helper.resetSheet();
 		}
 
+		@Override
+		public void resetSheetContent() {
+			helper.resetSheetContent();
+		}
+
 		@Override
 		void setParentNode(AbstractDOMNode parentNode) throws DOMException {
 			super.setParentNode(parentNode);
@@ -411,14 +416,14 @@ abstract public class HTMLDocument extends DOMDocument {
 
 		@Override
 		void postRemoveChild(AbstractDOMNode removed) {
-			resetSheet();
+			resetSheetContent();
 			getSheet();
 		}
 
 		@Override
 		public void setTextContent(String textContent) throws DOMException {
 			super.setTextContent(textContent);
-			resetSheet();
+			resetSheetContent();
 			getSheet();
 		}
 
@@ -11,7 +11,6 @@
 
 package io.sf.carte.doc.dom;
 
-import java.io.StringReader;
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.Locale;
@@ -27,6 +26,7 @@ import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.nsac.CSSNamespaceParseException;
 import io.sf.carte.doc.style.css.nsac.Parser;
 import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.om.CompiledSelector;
 import io.sf.carte.doc.style.css.parser.CSSParser;
 
 /**
@@ -201,18 +201,18 @@ abstract class NDTNode extends AbstractDOMNode implements NonDocumentTypeChildNo
 
 	static DOMElement querySelector(String selectors, Node firstChild) {
 		SelectorList selist = parseSelectors(selectors);
-		return matchQuerySelector(selist, firstChild);
+		return matchQuerySelector(CompiledSelector.compile(selist), firstChild);
 	}
 
-	private static DOMElement matchQuerySelector(SelectorList selist, Node firstChild) {
+	private static DOMElement matchQuerySelector(CompiledSelector[] compiled, Node firstChild) {
 		Node node = firstChild;
 		while (node != null) {
 			if (node.getNodeType() == Node.ELEMENT_NODE) {
 				DOMElement element = (DOMElement) node;
-				if (element.matches(selist, null)) {
+				if (element.matches(compiled)) {
 					return element;
 				}
-				DOMElement elt = matchQuerySelector(selist, element.getFirstChild());
+				DOMElement elt = matchQuerySelector(compiled, element.getFirstChild());
 				if (elt != null) {
 					return elt;
 				}
@@ -225,7 +225,7 @@ abstract class NDTNode extends AbstractDOMNode implements NonDocumentTypeChildNo
 	static ElementList querySelectorAll(String selectors, Node firstChild) {
 		SelectorList selist = parseSelectors(selectors);
 		DOMElementLinkedList list = new DOMElementLinkedList();
-		list.fillQuerySelectorList(selist, firstChild);
+		list.fillQuerySelectorList(CompiledSelector.compile(selist), firstChild);
 		return list;
 	}
 
@@ -233,7 +233,7 @@ abstract class NDTNode extends AbstractDOMNode implements NonDocumentTypeChildNo
 		Parser parser = new CSSParser();
 		SelectorList selist;
 		try {
-			selist = parser.parseSelectors(new StringReader(selectors));
+			selist = parser.parseSelectors(selectors);
 		} catch (CSSNamespaceParseException e) {
 			throw createDOMException(DOMException.NAMESPACE_ERR,
 					"Namespaces inside the selectors are not supported: " + selectors, e);
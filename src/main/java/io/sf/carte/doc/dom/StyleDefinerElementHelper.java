@@ -125,10 +125,26 @@ class StyleDefinerElementHelper {
 		element.getOwnerDocument().onSheetModify();
 	}
 
+	/**
+	 * Reset the sheet after a change in the style text, which does not affect the
+	 * media, title or type of the sheet.
+	 */
+	void resetSheetContent() {
+		// Local reference to sheet, to avoid race conditions.
+		final AbstractCSSStyleSheet sheet = definedSheet;
+		if (sheet == null) {
+			resetSheet();
+			return;
+		}
+		sheet.getCssRules().clear();
+		needsUpdate = true;
+		element.getOwnerDocument().onSheetContentModify(sheet);
+	}
+
 	void postAddChildInline(AbstractDOMNode newChild) {
 		// If newChild is not the only child, reset sheet
 		if (element.getFirstChild().getNextSibling() != null) {
-			resetSheet();
+			resetSheetContent();
 			getInlineSheet();
 		}
 	}
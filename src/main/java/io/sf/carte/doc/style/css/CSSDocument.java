@@ -17,11 +17,14 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import org.w3c.dom.DOMException;
 import org.w3c.dom.DOMStringList;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
+import org.w3c.dom.Node;
 import org.w3c.dom.stylesheets.DocumentStyle;
 
 /**
@@ -168,6 +171,58 @@ public interface CSSDocument extends Document, DocumentStyle, CSSNode {
 	 */
 	DocumentCSSStyleSheet getStyleSheet();
 
+	/**
+	 * Compute the styles of all the elements in this document, in document order.
+	 * <p>
+	 * Implementations may walk the document once, reusing the style of each element
+	 * as the parent style of its children, which is much faster than computing the
+	 * style of each element separately.
+	 * </p>
+	 * 
+	 * @param consumer the consumer of the computed styles.
+	 */
+	default void computeAllStyles(Consumer<? super CSSComputedProperties> consumer) {
+		Node node = getDocumentElement();
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				consumer.accept(((CSSElement) node).getComputedStyle(null));
+				Node child = node.getFirstChild();
+				if (child != null) {
+					node = child;
+					continue;
+				}
+			}
+			while (node.getNextSibling() == null) {
+				node = node.getParentNode();
+				if (node == null || node.getNodeType() == Node.DOCUMENT_NODE) {
+					return;
+				}
+			}
+			node = node.getNextSibling();
+		}
+	}
+
+	/**
+	 * Compute the styles of all the elements in this document, in parallel.
+	 * <p>
+	 * Implementations may split the document into subtrees that are styled by
+	 * separate tasks in the given pool. The style of an element is always computed
+	 * before the styles of its children, but the consumer may be called from
+	 * several threads at the same time, and not in document order.
+	 * </p>
+	 * <p>
+	 * The document must not be modified until this method returns. The default
+	 * implementation computes the styles in the current thread.
+	 * </p>
+	 * 
+	 * @param pool     the pool that runs the styling tasks.
+	 * @param consumer the thread-safe consumer of the computed styles.
+	 */
+	default void computeAllStyles(ForkJoinPool pool,
+			Consumer<? super CSSComputedProperties> consumer) {
+		computeAllStyles(consumer);
+	}
+
 	/**
 	 * Gets the style database currently used to apply specific styles to this
 	 * document.
@@ -13,8 +13,11 @@
  */
 package io.sf.carte.doc.style.css.nsac;
 
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
 
 import org.w3c.dom.Node;
 
@@ -178,6 +181,48 @@ public interface Parser {
 	void parseStyleSheet(Reader reader)
 		throws CSSParseException, IOException, IllegalStateException;
 
+	/**
+	 * Parse a CSS style sheet from a character buffer.
+	 * <p>
+	 * The buffer is read from its current position to its limit, and the position
+	 * is not modified.
+	 * </p>
+	 * <p>
+	 * This is a convenience method: the characters are not parsed in place, and
+	 * implementations may copy the remaining content of the buffer (for example
+	 * into a {@code String}) before parsing it. The default implementation reads
+	 * the backing array if the buffer has an accessible one, and otherwise
+	 * copies the buffer to a {@code String}, then calls
+	 * {@link #parseStyleSheet(Reader)}.
+	 * </p>
+	 * <p>
+	 * Note: in addition to the listed exceptions, this method may raise runtime
+	 * exceptions produced by the {@code CSSHandler}.
+	 * </p>
+	 *
+	 * @param buffer the buffer containing the CSS sheet.
+	 * 
+	 * @throws CSSParseException     if an error was found and no error handler was
+	 *                               set.
+	 * @throws IllegalStateException if the {@code CSSHandler} is not set.
+	 * @see #setDocumentHandler
+	 * @see #setErrorHandler
+	 */
+	default void parseStyleSheet(CharBuffer buffer) throws CSSParseException, IllegalStateException {
+		Reader re;
+		if (buffer.hasArray()) {
+			re = new CharArrayReader(buffer.array(), buffer.arrayOffset() + buffer.position(),
+					buffer.remaining());
+		} else {
+			re = new StringReader(buffer.toString());
+		}
+		try {
+			parseStyleSheet(re);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Parse a CSS sheet from a URI.
 	 * <p>
@@ -216,6 +261,22 @@ public interface Parser {
 	 */
 	SelectorList parseSelectors(Reader reader) throws CSSParseException, IOException;
 
+	/**
+	 * Parse a comma separated list of selectors.
+	 * 
+	 * @param selectorText the character sequence containing the selector list.
+	 * 
+	 * @return the selector list.
+	 * @throws CSSParseException if an error was found and no error handler was set.
+	 */
+	default SelectorList parseSelectors(CharSequence selectorText) throws CSSParseException {
+		try {
+			return parseSelectors(new StringReader(selectorText.toString()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Parse a comma separated list of selectors.
 	 * 
@@ -241,6 +302,25 @@ public interface Parser {
 	 */
 	void parseStyleDeclaration(Reader reader) throws CSSParseException, IOException, IllegalStateException;
 
+	/**
+	 * Parse a CSS style declaration (without '{' and '}').
+	 *
+	 * @param declaration the character sequence containing the CSS style
+	 *                    declaration.
+	 * 
+	 * @throws CSSParseException     if an error was found and no error handler was
+	 *                               set.
+	 * @throws IllegalStateException if the {@code CSSHandler} is not set.
+	 */
+	default void parseStyleDeclaration(CharSequence declaration)
+		throws CSSParseException, IllegalStateException {
+		try {
+			parseStyleDeclaration(new StringReader(declaration.toString()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Parse a CSS property value.
 	 * 
@@ -256,6 +336,25 @@ public interface Parser {
 	 */
 	LexicalUnit parsePropertyValue(Reader reader) throws CSSParseException, IOException;
 
+	/**
+	 * Parse a CSS property value.
+	 * 
+	 * @param value the character sequence containing the CSS property value.
+	 * 
+	 * @return the lexical unit containing the value, possibly chained to subsequent
+	 *         lexical units.
+	 * @throws CSSParseException    if an error was found and no error handler was
+	 *                              set.
+	 * @throws NullPointerException if {@code value} is {@code null}.
+	 */
+	default LexicalUnit parsePropertyValue(CharSequence value) throws CSSParseException {
+		try {
+			return parsePropertyValue(new StringReader(value.toString()));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Parse a CSS priority value (e.g. "!important").
 	 * 
@@ -305,6 +404,29 @@ public interface Parser {
 	void parseRule(Reader reader, NamespaceMap nsmap)
 		throws CSSParseException, IOException, IllegalStateException;
 
+	/**
+	 * Parse a CSS rule.
+	 * <p>
+	 * Note: in addition to the listed exceptions, this method may raise runtime
+	 * exceptions produced by the {@code CSSHandler}.
+	 * </p>
+	 *
+	 * @param rule  the character sequence containing the CSS rule.
+	 * @param nsmap the namespace map.
+	 *
+	 * @throws CSSParseException     if an error was found and no error handler was
+	 *                               set.
+	 * @throws IllegalStateException if the {@code CSSHandler} is not set.
+	 */
+	default void parseRule(CharSequence rule, NamespaceMap nsmap)
+		throws CSSParseException, IllegalStateException {
+		try {
+			parseRule(new StringReader(rule.toString()), nsmap);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Interface giving access to namespace URI from the prefix.
 	 */
@@ -13,6 +13,8 @@ package io.sf.carte.doc.style.css.om;
 
 import java.io.IOException;
 
+import org.w3c.dom.DOMException;
+
 import io.sf.carte.doc.DOMNotSupportedException;
 import io.sf.carte.doc.StringList;
 import io.sf.carte.doc.style.css.CSSRule;
@@ -81,6 +83,21 @@ abstract public class AbstractCSSRule implements CSSRule, java.io.Serializable {
 	 */
 	abstract public int getOrigin();
 
+	/**
+	 * Check that this rule can be modified.
+	 * 
+	 * @throws DOMException NO_MODIFICATION_ALLOWED_ERR if the rule belongs to a
+	 *                      default sheet whose rules are shared by several
+	 *                      documents.
+	 */
+	void checkModifiable() throws DOMException {
+		AbstractCSSStyleSheet sheet = getParentStyleSheet();
+		if (sheet != null && sheet.isFrozen()) {
+			throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+					"This rule is shared by several documents and cannot be modified.");
+		}
+	}
+
 	/**
 	 * Add to a new style sheet, cloning if necessary.
 	 * 
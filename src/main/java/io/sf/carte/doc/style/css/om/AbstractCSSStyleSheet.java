@@ -166,6 +166,23 @@ abstract public class AbstractCSSStyleSheet extends AbstractStyleSheet
 		addLocalRule(propertyRule);
 	}
 
+	/**
+	 * Notifies this sheet that the rules that take part in the cascade (or their
+	 * selectors) were modified.
+	 */
+	void onCascadeModify() {
+	}
+
+	/**
+	 * Check whether the rules of this sheet are shared by several sheets and
+	 * cannot be modified.
+	 * 
+	 * @return {@code true} if the rules of this sheet cannot be modified.
+	 */
+	boolean isFrozen() {
+		return false;
+	}
+
 	/**
 	 * Load the styles from <code>url</code> into this style sheet.
 	 * 
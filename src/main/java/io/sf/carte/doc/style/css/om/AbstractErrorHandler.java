@@ -14,10 +14,11 @@ package io.sf.carte.doc.style.css.om;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Node;
@@ -28,17 +29,22 @@ import io.sf.carte.doc.style.css.ErrorHandler;
 import io.sf.carte.doc.style.css.StyleDeclarationErrorHandler;
 import io.sf.carte.doc.style.css.property.CSSPropertyValueException;
 
+/*
+ * The maps that are used while computing styles are concurrent, so styles can be
+ * computed by several threads. The rest of the maps are synchronized on this
+ * handler.
+ */
 abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializable {
 
 	private static final long serialVersionUID = 2L;
 
 	private HashMap<Node,String> policyErrorMap = null;
 
-	private HashMap<CSSElement, StyleDeclarationErrorHandler> inlineErrorHandlerMap = null;
+	private volatile ConcurrentHashMap<CSSElement, StyleDeclarationErrorHandler> inlineErrorHandlerMap = null;
 
-	private HashMap<CSSElement, HashMap<String, CSSPropertyValueException>> computedStyleErrors = null;
+	private volatile ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> computedStyleErrors = null;
 
-	private HashMap<CSSElement, List<DOMException>> hintErrors = null;
+	private volatile ConcurrentHashMap<CSSElement, List<DOMException>> hintErrors = null;
 
 	private HashMap<Node, CSSMediaException> mediaQueryErrors = null;
 
@@ -46,7 +52,7 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	private HashMap<Node, String> genericErrors = null;
 
-	private HashMap<CSSElement, HashMap<String, CSSPropertyValueException>> computedStyleWarnings = null;
+	private volatile ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> computedStyleWarnings = null;
 
 	private HashMap<Node, CSSMediaException> mediaQueryWarnings = null;
 
@@ -56,17 +62,28 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	@Override
 	public StyleDeclarationErrorHandler getInlineStyleErrorHandler(CSSElement owner) {
-		if (inlineErrorHandlerMap == null) {
-			inlineErrorHandlerMap = new HashMap<>();
+		ConcurrentHashMap<CSSElement, StyleDeclarationErrorHandler> map = inlineErrorHandlerMap;
+		if (map == null) {
+			map = createInlineErrorHandlerMap();
 		}
-		StyleDeclarationErrorHandler handler = inlineErrorHandlerMap.get(owner);
+		StyleDeclarationErrorHandler handler = map.get(owner);
 		if (handler == null) {
 			handler = getStyleSheetFactory().createInlineStyleErrorHandler(owner);
-			inlineErrorHandlerMap.put(owner, handler);
+			StyleDeclarationErrorHandler previous = map.putIfAbsent(owner, handler);
+			if (previous != null) {
+				handler = previous;
+			}
 		}
 		return handler;
 	}
 
+	private synchronized ConcurrentHashMap<CSSElement, StyleDeclarationErrorHandler> createInlineErrorHandlerMap() {
+		if (inlineErrorHandlerMap == null) {
+			inlineErrorHandlerMap = new ConcurrentHashMap<>();
+		}
+		return inlineErrorHandlerMap;
+	}
+
 	/**
 	 * Gets the owners of inline styles that have been processed through this handler.
 	 * 
@@ -105,7 +122,7 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 	}
 
 	@Override
-	public void policyError(Node node, String message) {
+	public synchronized void policyError(Node node, String message) {
 		if (policyErrorMap == null) {
 			policyErrorMap = new HashMap<>();
 		}
@@ -114,23 +131,36 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	@Override
 	public void computedStyleError(CSSElement element, String propertyName, CSSPropertyValueException exception) {
-		HashMap<String, CSSPropertyValueException> map;
+		ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> errors = computedStyleErrors;
+		if (errors == null) {
+			errors = createComputedStyleErrors();
+		}
+		elementMap(errors, element).put(propertyName, exception);
+	}
+
+	private synchronized ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> createComputedStyleErrors() {
 		if (computedStyleErrors == null) {
-			computedStyleErrors = new HashMap<>();
-			map = new HashMap<>();
-			computedStyleErrors.put(element, map);
-		} else {
-			map = computedStyleErrors.get(element);
-			if (map == null) {
-				map = new HashMap<>();
-				computedStyleErrors.put(element, map);
+			computedStyleErrors = new ConcurrentHashMap<>();
+		}
+		return computedStyleErrors;
+	}
+
+	private static Map<String, CSSPropertyValueException> elementMap(
+			ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> elementMaps,
+			CSSElement element) {
+		Map<String, CSSPropertyValueException> map = elementMaps.get(element);
+		if (map == null) {
+			map = new ConcurrentHashMap<>();
+			Map<String, CSSPropertyValueException> previous = elementMaps.putIfAbsent(element, map);
+			if (previous != null) {
+				map = previous;
 			}
 		}
-		map.put(propertyName, exception);
+		return map;
 	}
 
 	@Override
-	public void mediaQueryError(Node ownerNode, CSSMediaException exception) {
+	public synchronized void mediaQueryError(Node ownerNode, CSSMediaException exception) {
 		if (mediaQueryErrors == null) {
 			mediaQueryErrors = new HashMap<>(5);
 		}
@@ -138,7 +168,7 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 	}
 
 	@Override
-	public void ioError(String uri, IOException exception) {
+	public synchronized void ioError(String uri, IOException exception) {
 		if (ioErrors == null) {
 			ioErrors = new HashMap<>();
 		}
@@ -146,7 +176,7 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 	}
 
 	@Override
-	public void nodeError(Node node, String message, Throwable exception) {
+	public synchronized void nodeError(Node node, String message, Throwable exception) {
 		if (message == null) {
 			if (exception != null) {
 				message = exception.getMessage();
@@ -229,23 +259,22 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	@Override
 	public void computedStyleWarning(CSSElement element, String propertyName, CSSPropertyValueException exception) {
-		HashMap<String, CSSPropertyValueException> map;
+		ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> warnings = computedStyleWarnings;
+		if (warnings == null) {
+			warnings = createComputedStyleWarnings();
+		}
+		elementMap(warnings, element).put(propertyName, exception);
+	}
+
+	private synchronized ConcurrentHashMap<CSSElement, Map<String, CSSPropertyValueException>> createComputedStyleWarnings() {
 		if (computedStyleWarnings == null) {
-			computedStyleWarnings = new HashMap<>();
-			map = new HashMap<>();
-			computedStyleWarnings.put(element, map);
-		} else {
-			map = computedStyleWarnings.get(element);
-			if (map == null) {
-				map = new HashMap<>();
-				computedStyleWarnings.put(element, map);
-			}
+			computedStyleWarnings = new ConcurrentHashMap<>();
 		}
-		map.put(propertyName, exception);
+		return computedStyleWarnings;
 	}
 
 	@Override
-	public void mediaQueryWarning(Node ownerNode, CSSMediaException exception) {
+	public synchronized void mediaQueryWarning(Node ownerNode, CSSMediaException exception) {
 		if (mediaQueryWarnings == null) {
 			mediaQueryWarnings = new HashMap<>(5);
 		}
@@ -257,15 +286,18 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 	}
 
 	public Map<String, CSSPropertyValueException> getComputedStyleErrors(CSSElement element) {
-		return computedStyleErrors != null ? computedStyleErrors.get(element) : null;
+		Map<CSSElement, Map<String, CSSPropertyValueException>> errors = computedStyleErrors;
+		return errors != null ? errors.get(element) : null;
 	}
 
 	public List<DOMException> getHintErrors(CSSElement element) {
-		return hintErrors != null ? hintErrors.get(element) : null;
+		Map<CSSElement, List<DOMException>> errors = hintErrors;
+		return errors != null ? errors.get(element) : null;
 	}
 
 	public Map<String, CSSPropertyValueException> getComputedStyleWarnings(CSSElement element) {
-		return computedStyleWarnings != null ? computedStyleWarnings.get(element) : null;
+		Map<CSSElement, Map<String, CSSPropertyValueException>> warnings = computedStyleWarnings;
+		return warnings != null ? warnings.get(element) : null;
 	}
 
 	public Map<Node, String> getPolicyErrors() {
@@ -291,14 +323,17 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	@Override
 	public void resetComputedStyleErrors(CSSElement element) {
-		if (computedStyleErrors != null) {
-			computedStyleErrors.remove(element);
+		Map<CSSElement, ?> map = computedStyleErrors;
+		if (map != null) {
+			map.remove(element);
 		}
-		if (hintErrors != null) {
-			hintErrors.remove(element);
+		map = hintErrors;
+		if (map != null) {
+			map.remove(element);
 		}
-		if (computedStyleWarnings != null) {
-			computedStyleWarnings.remove(element);
+		map = computedStyleWarnings;
+		if (map != null) {
+			map.remove(element);
 		}
 	}
 
@@ -311,22 +346,30 @@ abstract class AbstractErrorHandler implements ErrorHandler, java.io.Serializabl
 
 	@Override
 	public void presentationalHintError(CSSElement elm, DOMException ex) {
-		List<DOMException> exlist;
-		if (hintErrors == null) {
-			hintErrors = new HashMap<>();
-			exlist = new LinkedList<>();
-			hintErrors.put(elm, exlist);
-		} else {
-			exlist = hintErrors.get(elm);
-			if (exlist == null) {
-				exlist = new LinkedList<>();
+		ConcurrentHashMap<CSSElement, List<DOMException>> errors = hintErrors;
+		if (errors == null) {
+			errors = createHintErrors();
+		}
+		List<DOMException> exlist = errors.get(elm);
+		if (exlist == null) {
+			exlist = new CopyOnWriteArrayList<>();
+			List<DOMException> previous = errors.putIfAbsent(elm, exlist);
+			if (previous != null) {
+				exlist = previous;
 			}
 		}
 		exlist.add(ex);
 	}
 
+	private synchronized ConcurrentHashMap<CSSElement, List<DOMException>> createHintErrors() {
+		if (hintErrors == null) {
+			hintErrors = new ConcurrentHashMap<>();
+		}
+		return hintErrors;
+	}
+
 	@Override
-	public void reset() {
+	public synchronized void reset() {
 		if (inlineErrorHandlerMap != null) {
 			Iterator<StyleDeclarationErrorHandler> it = inlineErrorHandlerMap.values().iterator();
 			while (it.hasNext()) {
@@ -63,6 +63,15 @@ class AbstractRuleList<T extends CSSRule> extends ArrayList<T>
 		return size();
 	}
 
+	/**
+	 * Gives the number of times that this list has been structurally modified.
+	 * 
+	 * @return the modification count.
+	 */
+	int getModificationCount() {
+		return modCount;
+	}
+
 	/**
 	 * Used to retrieve a CSS rule by ordinal index. The order in this
 	 * collection represents the order of the rules in the CSS style sheet. If
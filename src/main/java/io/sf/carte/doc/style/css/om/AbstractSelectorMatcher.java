@@ -11,6 +11,7 @@
 
 package io.sf.carte.doc.style.css.om;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
@@ -45,6 +46,36 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 
 	private Condition pseudoElt = null;
 
+	/*
+	 * Filter of the ancestors of this element, set by top-down traversals.
+	 */
+	private transient AncestorFilter ancestorFilter = null;
+
+	/*
+	 * Cache of sibling positions, set by styling passes.
+	 */
+	private transient SiblingIndexCache siblingIndexCache = null;
+
+	/*
+	 * Cache of relative selector results, set by styling passes.
+	 */
+	private transient RelativeSelectorCache relativeSelectorCache = null;
+
+	/*
+	 * Cache of languages and directionalities, set by styling passes.
+	 */
+	private transient InheritedStateCache inheritedStateCache = null;
+
+	/*
+	 * The class attribute value from which classSet was obtained.
+	 */
+	private transient String classSource = null;
+
+	/*
+	 * The class names when the class attribute has more than one.
+	 */
+	private transient HashSet<String> classSet = null;
+
 	protected AbstractSelectorMatcher() {
 		super();
 	}
@@ -101,6 +132,90 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 		this.pseudoElt = pseudoElt;
 	}
 
+	/**
+	 * Get the filter of the ancestors of this element that was set by a top-down
+	 * traversal.
+	 * 
+	 * @return the ancestor filter, or {@code null} if none was set.
+	 */
+	AncestorFilter getAncestorFilter() {
+		return ancestorFilter;
+	}
+
+	/**
+	 * Set the filter of the ancestors of this element.
+	 * <p>
+	 * The filter must contain the ancestors of this element while it is set, so a
+	 * traversal that sets it has to reset it to {@code null} afterwards.
+	 * </p>
+	 * 
+	 * @param ancestorFilter the ancestor filter, or {@code null} to remove it.
+	 */
+	void setAncestorFilter(AncestorFilter ancestorFilter) {
+		this.ancestorFilter = ancestorFilter;
+	}
+
+	/**
+	 * Get the cache of sibling positions that was set by a styling pass.
+	 * 
+	 * @return the sibling index cache, or {@code null} if none was set.
+	 */
+	SiblingIndexCache getSiblingIndexCache() {
+		return siblingIndexCache;
+	}
+
+	/**
+	 * Set the cache of sibling positions, while this element is matched by a
+	 * styling pass.
+	 * 
+	 * @param siblingIndexCache the sibling index cache, or {@code null} to remove
+	 *                          it.
+	 */
+	void setSiblingIndexCache(SiblingIndexCache siblingIndexCache) {
+		this.siblingIndexCache = siblingIndexCache;
+	}
+
+	/**
+	 * Get the cache of relative selector results that was set by a styling pass.
+	 * 
+	 * @return the relative selector cache, or {@code null} if none was set.
+	 */
+	RelativeSelectorCache getRelativeSelectorCache() {
+		return relativeSelectorCache;
+	}
+
+	/**
+	 * Set the cache of relative selector results, while this element is matched by
+	 * a styling pass.
+	 * 
+	 * @param relativeSelectorCache the relative selector cache, or {@code null} to
+	 *                              remove it.
+	 */
+	void setRelativeSelectorCache(RelativeSelectorCache relativeSelectorCache) {
+		this.relativeSelectorCache = relativeSelectorCache;
+	}
+
+	/**
+	 * Get the cache of languages and directionalities that was set by a styling
+	 * pass.
+	 * 
+	 * @return the inherited state cache, or {@code null} if none was set.
+	 */
+	InheritedStateCache getInheritedStateCache() {
+		return inheritedStateCache;
+	}
+
+	/**
+	 * Set the cache of languages and directionalities, while this element is
+	 * matched by a styling pass.
+	 * 
+	 * @param inheritedStateCache the inherited state cache, or {@code null} to
+	 *                            remove it.
+	 */
+	void setInheritedStateCache(InheritedStateCache inheritedStateCache) {
+		this.inheritedStateCache = inheritedStateCache;
+	}
+
 	protected boolean isActivePseudoClass(String pseudoclassName) {
 		return false;
 	}
@@ -114,14 +229,60 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 	 */
 	@Override
 	public int matches(SelectorList selist) {
+		return matches(selist, null);
+	}
+
+	/**
+	 * Does this selector match the given selector list?
+	 * 
+	 * @param selist        the list of selectors to which this matcher will
+	 *                      compare.
+	 * @param specificities the precomputed packed specificities of the selectors
+	 *                      in the list, or {@code null} if they have to be
+	 *                      computed.
+	 * 
+	 * @return the index of the highest matching selector, or -1 if none matches.
+	 */
+	int matches(SelectorList selist, long[] specificities) {
+		return matches(selist, specificities, null, null, null);
+	}
+
+	/**
+	 * Does this selector match the given selector list?
+	 * 
+	 * @param selist         the list of selectors to which this matcher will
+	 *                       compare.
+	 * @param specificities  the precomputed packed specificities of the selectors
+	 *                       in the list, or {@code null} if they have to be
+	 *                       computed.
+	 * @param ancestorHashes the ancestor hashes of the selectors in the list, or
+	 *                       {@code null} if no filter is used.
+	 * @param filter         the filter of the ancestors of this element, or
+	 *                       {@code null}.
+	 * @param compiled       the compiled selectors of the list, or {@code null}
+	 *                       if the selectors have to be interpreted.
+	 * 
+	 * @return the index of the highest matching selector, or -1 if none matches.
+	 */
+	int matches(SelectorList selist, long[] specificities, int[][] ancestorHashes,
+			AncestorFilter filter, CompiledSelector[] compiled) {
+		if (ancestorHashes == null) {
+			filter = null;
+		}
 		int sz = selist.getLength();
-		Specificity matchedsp = null;
+		if (sz == 1) {
+			return rejectedByFilter(filter, ancestorHashes, 0) || !matches(selist, compiled, 0)
+					? -1
+					: 0;
+		}
+		long matchedsp = 0;
 		int matchedIdx = -1;
 		for (int i = 0; i < sz; i++) {
 			Selector sel = selist.item(i);
-			if (matches(sel)) {
-				Specificity sp = new Specificity(sel, this);
-				if (matchedsp == null || Specificity.selectorCompare(matchedsp, sp) < 0) {
+			if (!rejectedByFilter(filter, ancestorHashes, i) && matches(selist, compiled, i)) {
+				long sp = specificities != null ? specificities[i]
+						: Specificity.packedSpecificity(sel);
+				if (matchedIdx == -1 || Specificity.packedCompare(matchedsp, sp) < 0) {
 					matchedsp = sp;
 					matchedIdx = i;
 				}
@@ -130,6 +291,17 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 		return matchedIdx;
 	}
 
+	private boolean matches(SelectorList selist, CompiledSelector[] compiled, int index) {
+		return compiled != null ? compiled[index].match(this) : matches(selist.item(index));
+	}
+
+	private static boolean rejectedByFilter(AncestorFilter filter, int[][] ancestorHashes,
+			int index) {
+		int[] hashes;
+		return filter != null && (hashes = ancestorHashes[index]) != null
+				&& !filter.mightContainAll(hashes);
+	}
+
 	/**
 	 * Does this matcher match the given selector?
 	 * 
@@ -233,46 +405,7 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 				PseudoCondition pseudocond = (PseudoCondition) cond;
 				String pseudoClassName = pseudocond.getName();
 				pseudoClassName = pseudoClassName.toLowerCase(Locale.ROOT).intern();
-				if ("only-child".equals(pseudoClassName)) {
-					return isOnlyChild();
-				} else if ("only-of-type".equals(pseudoClassName)) {
-					return isOnlyOfType();
-				} else if ("any-link".equals(pseudoClassName)) {
-					return isAnyLink();
-				} else if ("link".equals(pseudoClassName)) {
-					return isNotVisitedLink();
-				} else if ("visited".equals(pseudoClassName)) {
-					return isVisitedLink();
-				} else if ("target".equals(pseudoClassName)) {
-					return isTarget();
-				} else if ("root".equals(pseudoClassName)) {
-					return isRoot();
-				} else if ("empty".equals(pseudoClassName)) {
-					return isEmpty();
-				} else if ("blank".equals(pseudoClassName)) {
-					return isBlank();
-				} else if ("disabled".equals(pseudoClassName)) {
-					return isDisabled();
-				} else if ("enabled".equals(pseudoClassName)) {
-					return isEnabled();
-				} else if ("read-write".equals(pseudoClassName)) {
-					return isReadWrite();
-				} else if ("read-only".equals(pseudoClassName)) {
-					return !isReadWrite();
-				} else if ("placeholder-shown".equals(pseudoClassName)) {
-					return isPlaceholderShown();
-				} else if ("default".equals(pseudoClassName)) {
-					return isUIDefault();
-				} else if ("checked".equals(pseudoClassName)) {
-					return isChecked();
-				} else if ("indeterminate".equals(pseudoClassName)) {
-					return isIndeterminate();
-				} else if ("dir".equals(pseudoClassName)) {
-					return isDir(pseudocond.getArgument());
-				} else if ("state".equals(pseudoClassName)) {
-					return isActivePseudoClass(pseudocond.getArgument());
-				}
-				return isActivePseudoClass(pseudoClassName);
+				return matchesPseudoClass(pseudoClassName, pseudocond.getArgument());
 			}
 			break;
 		case PSEUDO_ELEMENT:
@@ -303,18 +436,80 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 		return false;
 	}
 
+	/**
+	 * Does this matcher match the given non-functional pseudo-class, or the
+	 * {@code :dir()} and {@code :state()} pseudo-classes?
+	 * 
+	 * @param pseudoClassName the lowercase pseudo-class name.
+	 * @param argument        the argument, if any.
+	 * @return {@code true} if the pseudo-class matches.
+	 */
+	boolean matchesPseudoClass(String pseudoClassName, String argument) {
+		if ("only-child".equals(pseudoClassName)) {
+			return isOnlyChild();
+		} else if ("only-of-type".equals(pseudoClassName)) {
+			return isOnlyOfType();
+		} else if ("any-link".equals(pseudoClassName)) {
+			return isAnyLink();
+		} else if ("link".equals(pseudoClassName)) {
+			return isNotVisitedLink();
+		} else if ("visited".equals(pseudoClassName)) {
+			return isVisitedLink();
+		} else if ("target".equals(pseudoClassName)) {
+			return isTarget();
+		} else if ("root".equals(pseudoClassName)) {
+			return isRoot();
+		} else if ("empty".equals(pseudoClassName)) {
+			return isEmpty();
+		} else if ("blank".equals(pseudoClassName)) {
+			return isBlank();
+		} else if ("disabled".equals(pseudoClassName)) {
+			return isDisabled();
+		} else if ("enabled".equals(pseudoClassName)) {
+			return isEnabled();
+		} else if ("read-write".equals(pseudoClassName)) {
+			return isReadWrite();
+		} else if ("read-only".equals(pseudoClassName)) {
+			return !isReadWrite();
+		} else if ("placeholder-shown".equals(pseudoClassName)) {
+			return isPlaceholderShown();
+		} else if ("default".equals(pseudoClassName)) {
+			return isUIDefault();
+		} else if ("checked".equals(pseudoClassName)) {
+			return isChecked();
+		} else if ("indeterminate".equals(pseudoClassName)) {
+			return isIndeterminate();
+		} else if ("dir".equals(pseudoClassName)) {
+			return isDir(argument);
+		} else if ("state".equals(pseudoClassName)) {
+			return isActivePseudoClass(argument);
+		}
+		return isActivePseudoClass(pseudoClassName);
+	}
+
 	protected boolean matchesId(String value) {
 		CSSDocument.ComplianceMode mode = getComplianceMode();
-		String idAttr = getId();
+		String idAttr = getMatchingId(mode);
 		if (mode != CSSDocument.ComplianceMode.STRICT) {
-			if (idAttr.length() == 0) {
-				idAttr = getQuirksId();
-			}
 			return idAttr.equalsIgnoreCase(value);
 		}
 		return idAttr.equals(value);
 	}
 
+	/**
+	 * Gets the identifier that ID selectors are matched against.
+	 * 
+	 * @param mode the compliance mode.
+	 * @return the identifier, or the empty string if the element has no id.
+	 */
+	String getMatchingId(CSSDocument.ComplianceMode mode) {
+		String idAttr = getId();
+		if (mode != CSSDocument.ComplianceMode.STRICT && idAttr.length() == 0) {
+			idAttr = getQuirksId();
+		}
+		return idAttr;
+	}
+
 	private String getQuirksId() {
 		String idAttr = getAttributeValue("id");
 		if (idAttr.length() == 0) {
@@ -336,35 +531,48 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 	 * @param cond_value the class name.
 	 * @return <code>true</code> if matches, <code>false</code> otherwise.
 	 */
-	private boolean matchesClass(String cond_value) {
-		CSSDocument.ComplianceMode mode = getComplianceMode();
+	boolean matchesClass(String cond_value) {
+		return hasClass(cond_value, getComplianceMode());
+	}
+
+	/**
+	 * Check whether the element has the given class name.
+	 * <p>
+	 * The class names are obtained from the class attribute, and kept until the
+	 * value of the attribute changes. Subclasses that have direct access to the
+	 * class names of the element may override this.
+	 * </p>
+	 * 
+	 * @param className the class name.
+	 * @param mode      the compliance mode. Class names are case-insensitive in
+	 *                  quirks mode.
+	 * @return <code>true</code> if the element has the class name.
+	 */
+	protected boolean hasClass(String className, CSSDocument.ComplianceMode mode) {
 		String classAttr = getClassAttribute(mode);
-		if (!DOMTokenSetImpl.checkMultipleToken(classAttr)) {
-			classAttr = classAttr.trim();
-			if (mode != CSSDocument.ComplianceMode.STRICT) {
-				return classAttr.equalsIgnoreCase(cond_value);
-			}
-			return classAttr.equals(cond_value);
-		} else {
-			if (mode != CSSDocument.ComplianceMode.STRICT) {
+		if (!classAttr.equals(classSource)) {
+			if (DOMTokenSetImpl.checkMultipleToken(classAttr)) {
+				HashSet<String> set = new HashSet<>();
 				StringTokenizer st = new StringTokenizer(classAttr);
 				while (st.hasMoreTokens()) {
-					classAttr = st.nextToken();
-					if (classAttr.equalsIgnoreCase(cond_value)) {
-						return true;
-					}
+					set.add(st.nextToken());
 				}
+				classSet = set;
 			} else {
-				StringTokenizer st = new StringTokenizer(classAttr);
-				while (st.hasMoreTokens()) {
-					classAttr = st.nextToken();
-					if (classAttr.equals(cond_value)) {
-						return true;
-					}
-				}
+				classSet = null;
 			}
-			return false;
+			classSource = classAttr;
 		}
+		boolean quirks = mode != CSSDocument.ComplianceMode.STRICT;
+		if (classSet == null) {
+			classAttr = classAttr.trim();
+			return quirks ? classAttr.equalsIgnoreCase(className) : classAttr.equals(className);
+		}
+		if (quirks) {
+			// The class attribute was lowercased
+			className = className.toLowerCase(Locale.ROOT);
+		}
+		return classSet.contains(className);
 	}
 
 	private boolean matchesAttribute(AttributeCondition attrcond, SimpleSelector simple) {
@@ -636,6 +844,10 @@ abstract public class AbstractSelectorMatcher implements SelectorMatcher, java.i
 		switch (selector.getSelectorType()) {
 		case ELEMENT:
 		case CONDITIONAL:
+			if (relativeSelectorCache != null) {
+				// Same as a descendant combinator, and the result is cached
+				return matchesRelational(selector);
+			}
 			return scopeMatch(new CombinatorSelectorImpl(scope, (SimpleSelector) selector), scope);
 		case CHILD:
 		case DESCENDANT:
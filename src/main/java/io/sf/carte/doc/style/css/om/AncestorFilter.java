@@ -0,0 +1,316 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import io.sf.carte.doc.DOMTokenSetImpl;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.nsac.AttributeCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorSelector;
+import io.sf.carte.doc.style.css.nsac.Condition;
+import io.sf.carte.doc.style.css.nsac.ConditionalSelector;
+import io.sf.carte.doc.style.css.nsac.ElementSelector;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SimpleSelector;
+
+/**
+ * A counting Bloom filter of the ids, classes and local names of the ancestors
+ * of an element.
+ * <p>
+ * A selector that requires an ancestor with an id, class or local name whose
+ * hash is not in the filter cannot match the element, and can be rejected
+ * without walking up the tree. The filter may give false positives, but never
+ * false negatives.
+ * </p>
+ * <p>
+ * The filter can be built for the ancestors of a given element, or be maintained
+ * by a top-down traversal with {@link #pushElement(AbstractSelectorMatcher)} and
+ * {@link #popElement()}.
+ * </p>
+ */
+class AncestorFilter {
+
+	private static final int KEY_BITS = 12;
+
+	private static final int KEY_MASK = (1 << KEY_BITS) - 1;
+
+	/*
+	 * Counters that reach this value are never decremented.
+	 */
+	private static final byte SATURATED = (byte) 0xff;
+
+	/*
+	 * The maximum number of hashes that are kept for a selector.
+	 */
+	private static final int MAX_SELECTOR_HASHES = 4;
+
+	private static final int SALT_TAG = 0x6b43a9b5;
+
+	private static final int SALT_ID = 0x2c1b3c6d;
+
+	private static final int SALT_CLASS = 0x297a2d39;
+
+	private final byte[] counters = new byte[1 << KEY_BITS];
+
+	/*
+	 * The hashes added by the elements in the stack.
+	 */
+	private int[] hashes = new int[64];
+
+	private int hashCount = 0;
+
+	/*
+	 * For each element in the stack, the index of its first hash.
+	 */
+	private int[] elementStart = new int[32];
+
+	private int depth = 0;
+
+	AncestorFilter() {
+		super();
+	}
+
+	/**
+	 * Build a filter containing the ancestors of the element of the given matcher.
+	 * 
+	 * @param matcher the selector matcher of the element.
+	 * @return the filter.
+	 */
+	static AncestorFilter forAncestors(AbstractSelectorMatcher matcher) {
+		AncestorFilter filter = new AncestorFilter();
+		AbstractSelectorMatcher parentSM = matcher.getParentSelectorMatcher();
+		while (parentSM != null) {
+			filter.pushElement(parentSM);
+			parentSM = parentSM.getParentSelectorMatcher();
+		}
+		return filter;
+	}
+
+	/**
+	 * Add an element to the filter.
+	 * 
+	 * @param matcher the selector matcher of the element.
+	 */
+	void pushElement(AbstractSelectorMatcher matcher) {
+		if (depth == elementStart.length) {
+			elementStart = Arrays.copyOf(elementStart, depth * 2);
+		}
+		elementStart[depth++] = hashCount;
+
+		String localName = matcher.getLocalName();
+		if (localName != null) {
+			add(hash(SALT_TAG, localName));
+		}
+
+		CSSDocument.ComplianceMode mode = matcher.getComplianceMode();
+		String id = matcher.getMatchingId(mode);
+		if (id.length() != 0) {
+			add(hash(SALT_ID, id));
+		}
+
+		String classAttr = matcher.getClassAttribute(mode);
+		if (classAttr.length() != 0) {
+			if (!DOMTokenSetImpl.checkMultipleToken(classAttr)) {
+				add(hash(SALT_CLASS, classAttr.trim()));
+			} else {
+				StringTokenizer st = new StringTokenizer(classAttr);
+				while (st.hasMoreTokens()) {
+					add(hash(SALT_CLASS, st.nextToken()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove from the filter the last element that was added.
+	 */
+	void popElement() {
+		if (depth == 0) {
+			throw new IllegalStateException("No element to remove.");
+		}
+		int start = elementStart[--depth];
+		for (int i = start; i < hashCount; i++) {
+			int hash = hashes[i];
+			decrement(hash & KEY_MASK);
+			decrement((hash >>> KEY_BITS) & KEY_MASK);
+		}
+		hashCount = start;
+	}
+
+	/**
+	 * Get the number of elements in the filter.
+	 * 
+	 * @return the number of elements.
+	 */
+	int getDepth() {
+		return depth;
+	}
+
+	private void add(int hash) {
+		if (hashCount == hashes.length) {
+			hashes = Arrays.copyOf(hashes, hashCount * 2);
+		}
+		hashes[hashCount++] = hash;
+		increment(hash & KEY_MASK);
+		increment((hash >>> KEY_BITS) & KEY_MASK);
+	}
+
+	private void increment(int idx) {
+		if (counters[idx] != SATURATED) {
+			counters[idx]++;
+		}
+	}
+
+	private void decrement(int idx) {
+		if (counters[idx] != SATURATED) {
+			counters[idx]--;
+		}
+	}
+
+	/**
+	 * Check whether the filter may contain all the given hashes.
+	 * 
+	 * @param selectorHashes the hashes, as given by
+	 *                       {@link #selectorHashes(Selector)}.
+	 * @return {@code false} if at least one of the hashes is not in the filter.
+	 */
+	boolean mightContainAll(int[] selectorHashes) {
+		for (int hash : selectorHashes) {
+			if (counters[hash & KEY_MASK] == 0 || counters[(hash >>> KEY_BITS) & KEY_MASK] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The key is case-folded, so hashes do not depend on the compliance mode.
+	 */
+	private static int hash(int salt, String key) {
+		int h = RuleIndex.foldCase(key).hashCode() * 31 + salt;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Compute the hashes of the ids, classes and local names that the ancestors of
+	 * an element must have for the given selector to match it.
+	 * 
+	 * @param selector the selector.
+	 * @return the hashes, or {@code null} if the selector does not require any.
+	 */
+	static int[] selectorHashes(Selector selector) {
+		int[] buf = new int[MAX_SELECTOR_HASHES];
+		int count = 0;
+		/*
+		 * A compound selector is an ancestor of the subject if the combinator at its
+		 * right is a child or descendant combinator. Those found at the left of a
+		 * sibling combinator match the siblings of the subject or its ancestors.
+		 */
+		boolean ancestor = false;
+		while (count < MAX_SELECTOR_HASHES) {
+			switch (selector.getSelectorType()) {
+			case CHILD:
+			case DESCENDANT:
+			case DIRECT_ADJACENT:
+			case SUBSEQUENT_SIBLING:
+				CombinatorSelector comb = (CombinatorSelector) selector;
+				if (ancestor) {
+					count = compoundHashes(comb.getSecondSelector(), buf, count);
+				}
+				Selector.SelectorType type = selector.getSelectorType();
+				ancestor = type == Selector.SelectorType.CHILD
+						|| type == Selector.SelectorType.DESCENDANT;
+				selector = comb.getSelector();
+				continue;
+			default:
+				if (ancestor) {
+					count = compoundHashes(selector, buf, count);
+				}
+			}
+			break;
+		}
+		if (count == 0) {
+			return null;
+		}
+		return count == MAX_SELECTOR_HASHES ? buf : Arrays.copyOf(buf, count);
+	}
+
+	private static int compoundHashes(Selector selector, int[] buf, int count) {
+		switch (selector.getSelectorType()) {
+		case CONDITIONAL:
+			ConditionalSelector condsel = (ConditionalSelector) selector;
+			count = conditionHashes(condsel.getCondition(), buf, count);
+			SimpleSelector simple = condsel.getSimpleSelector();
+			if (simple.getSelectorType() == Selector.SelectorType.ELEMENT) {
+				count = elementHash((ElementSelector) simple, buf, count);
+			}
+			break;
+		case ELEMENT:
+			count = elementHash((ElementSelector) selector, buf, count);
+			break;
+		default:
+		}
+		return count;
+	}
+
+	private static int elementHash(ElementSelector selector, int[] buf, int count) {
+		String nsuri = selector.getNamespaceURI();
+		String elname = selector.getLocalName();
+		// An empty namespace matches any element without namespace
+		if ((nsuri == null || nsuri.length() != 0) && elname != null && !"*".equals(elname)) {
+			count = addHash(buf, count, hash(SALT_TAG, elname));
+		}
+		return count;
+	}
+
+	private static int conditionHashes(Condition cond, int[] buf, int count) {
+		switch (cond.getConditionType()) {
+		case ID:
+			String value = ((AttributeCondition) cond).getValue();
+			if (value != null) {
+				count = addHash(buf, count, hash(SALT_ID, value));
+			}
+			break;
+		case CLASS:
+			value = ((AttributeCondition) cond).getValue();
+			if (value != null) {
+				count = addHash(buf, count, hash(SALT_CLASS, value));
+			}
+			break;
+		case AND:
+			CombinatorCondition comb = (CombinatorCondition) cond;
+			int len = comb.getLength();
+			for (int i = 0; i < len; i++) {
+				count = conditionHashes(comb.getCondition(i), buf, count);
+			}
+			break;
+		default:
+		}
+		return count;
+	}
+
+	private static int addHash(int[] buf, int count, int hash) {
+		if (count < buf.length) {
+			buf[count++] = hash;
+		}
+		return count;
+	}
+
+}
@@ -12,8 +12,6 @@
 package io.sf.carte.doc.style.css.om;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -74,7 +72,7 @@ import io.sf.carte.util.SimpleWriter;
  */
 public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration implements CSS2Properties, Cloneable {
 
-	private static final long serialVersionUID = 3L;
+	private static final long serialVersionUID = 4L;
 
 	/**
 	 * The rule that contains this declaration block, if any.
@@ -85,7 +83,10 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 
 	private ArrayList<String> propertyList;
 
-	private ArrayList<String> priorities;
+	/**
+	 * The longhand properties that were set with important priority.
+	 */
+	private HashSet<String> importantSet;
 
 	private ArrayList<String> shorthandSet;
 
@@ -105,7 +106,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		this.parentRule = parentRule;
 		propValue = new HashMap<>();
 		propertyList = new ArrayList<>();
-		priorities = new ArrayList<>();
+		importantSet = new HashSet<>();
 		shorthandSet = new ArrayList<>(6);
 	}
 
@@ -114,7 +115,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		this.parentRule = null;
 		propValue = new HashMap<>();
 		propertyList = new ArrayList<>();
-		priorities = new ArrayList<>();
+		importantSet = new HashSet<>();
 		shorthandSet = new ArrayList<>(6);
 	}
 
@@ -132,10 +133,21 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 
 	@SuppressWarnings("unchecked")
 	void setProperties(BaseCSSStyleDeclaration other) {
-		priorities = (ArrayList<String>) other.priorities.clone();
+		importantSet = (HashSet<String>) other.importantSet.clone();
 		propertyList = (ArrayList<String>) other.propertyList.clone();
 		propValue = deepClone(other.propValue);
 		shorthandSet = (ArrayList<String>) other.shorthandSet.clone();
+		onDeclarationModify();
+	}
+
+	/**
+	 * Called when the values of this declaration were modified.
+	 * <p>
+	 * Subclasses that keep state derived from the declared values should reset it
+	 * here.
+	 * </p>
+	 */
+	void onDeclarationModify() {
 	}
 
 	private HashMap<String, StyleValue> deepClone(HashMap<String, StyleValue> cloneFrom) {
@@ -157,8 +169,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		StringBuilder sb = new StringBuilder(50 + sz * 10);
 		for (int i = 0; i < sz; i++) {
 			String ptyname = propertyList.get(i);
-			String prio = priorities.get(i);
-			boolean important = "important".equals(prio);
+			boolean important = importantSet.contains(ptyname);
 			StyleValue cssVal = propValue.get(ptyname);
 			CssType type = cssVal.getCssValueType();
 			// Verify if the property is a subproperty of a previously set
@@ -263,8 +274,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		int sz = propertyList.size();
 		for (int i = 0; i < sz; i++) {
 			String ptyname = propertyList.get(i);
-			String prio = priorities.get(i);
-			boolean important = "important".equals(prio);
+			boolean important = importantSet.contains(ptyname);
 			CSSValue cssVal = propValue.get(ptyname);
 			CssType type = cssVal.getCssValueType();
 			// Verify if the property is a subproperty of a previously set
@@ -372,8 +382,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		for (int i = 0; i < sz; i++) {
 			String ptyname = propertyList.get(i);
 			String shorthand = sdb.getShorthand(ptyname);
-			String prio = priorities.get(i);
-			boolean isimportant = "important".equals(prio);
+			boolean isimportant = importantSet.contains(ptyname);
 			if (shorthand != null) {
 				// Is a shorthand subproperty
 				// Get topmost shorthand
@@ -519,6 +528,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 */
 	@Override
 	public void setCssText(String cssText) throws DOMException {
+		checkModifiable();
 		// The following may cause a DOMException.NOT_SUPPORTED_ERR
 		// (documented above) but the W3C API does not allow for that.
 		Parser parser = createSACParser();
@@ -526,15 +536,11 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		handler.setLexicalPropertyListener(this);
 		parser.setErrorHandler(handler);
 		parser.setDocumentHandler(handler);
-		Reader re = new StringReader(cssText);
 		clear();
 		try {
-			parser.parseStyleDeclaration(re);
+			parser.parseStyleDeclaration(cssText);
 		} catch (CSSParseException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 	}
 
@@ -674,14 +680,13 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			 * Shorthand builders often use multiple declarations for more
 			 * efficiency in the full style serialization. Skip those cases.
 			 */
-			StringReader re = new StringReader(declaration);
 			CSSParser parser = new CSSParser();
 			PropertyCounterHandler handler = new PropertyCounterHandler();
 			parser.setDocumentHandler(handler);
 			parser.setErrorHandler(handler);
 			try {
-				parser.parseStyleDeclaration(re);
-			} catch (CSSException | IOException e) {
+				parser.parseStyleDeclaration(declaration);
+			} catch (CSSException e) {
 				// Could not parse
 				return "";
 			}
@@ -812,18 +817,20 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 */
 	@Override
 	public String removeProperty(String propertyName) {
+		checkModifiable();
 		if (propertyName == null) {
 			return "";
 		}
 		String oldcsstext = "";
 		ShorthandDatabase sdb;
 		propertyName = getCanonicalPropertyName(propertyName);
-		int idx = propertyList.indexOf(propertyName);
-		if (idx >= 0 && !propValue.get(propertyName).isSubproperty()) {
+		StyleValue value = propValue.get(propertyName);
+		if (value != null && value.getCssValueType() != CssType.SHORTHAND
+				&& !value.isSubproperty()) {
 			oldcsstext = propValue.remove(propertyName).getCssText();
 			// Is an explicitly-set longhand property.
-			propertyList.remove(idx);
-			priorities.remove(idx);
+			propertyList.remove(propertyName);
+			importantSet.remove(propertyName);
 			// Check whether there is a previous shorthand that has to have
 			// effect again
 			if (!shorthandSet.isEmpty() && (sdb = ShorthandDatabase.getInstance()).isShorthandSubproperty(propertyName)) {
@@ -861,6 +868,8 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			}
 		}
 
+		onDeclarationModify();
+
 		return oldcsstext;
 	}
 
@@ -890,7 +899,9 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			copy.setSubproperties(shorthand, shval.getLexicalUnit(), shval.isImportant(),
 					shval.isAttrTainted());
 			propValue.put(propertyName, copy.propValue.get(propertyName));
-			priorities.add(shidx, shval.isImportant() ? "important" : null);
+			if (shval.isImportant()) {
+				importantSet.add(propertyName);
+			}
 			propertyList.add(shidx, propertyName);
 			return true;
 		}
@@ -901,9 +912,8 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	private void removeSubproperties(ShorthandValue shval, ShorthandDatabase sdb) {
 		HashSet<String> longhands = shval.getLonghands();
 		for (String property : longhands) {
-			int idx = propertyList.indexOf(property);
-			propertyList.remove(idx);
-			priorities.remove(idx);
+			propertyList.remove(property);
+			importantSet.remove(property);
 			propValue.remove(property);
 			if (!shorthandSet.isEmpty()) {
 				resetFromShorthand(property, sdb);
@@ -923,16 +933,10 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 */
 	@Override
 	public String getPropertyPriority(String propertyName) {
-		int idx = propertyList.indexOf(propertyName);
-		if (idx == -1) {
+		if (!isPropertySet(propertyName)) {
 			return getUnknownPropertyPriority(propertyName);
 		}
-		String prio = priorities.get(idx);
-		if (prio != null) {
-			return prio;
-		} else {
-			return "";
-		}
+		return importantSet.contains(propertyName) ? "important" : "";
 	}
 
 	String getUnknownPropertyPriority(String propertyName) {
@@ -966,6 +970,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 
 	@Override
 	public void setLexicalProperty(String propertyName, LexicalUnit value, boolean important) throws DOMException {
+		checkModifiable();
 		propertyName = getCanonicalPropertyName(propertyName);
 		LexicalValue lexicalValue = new LexicalValue();
 		lexicalValue.setLexicalUnit(value);
@@ -974,6 +979,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 
 	@Override
 	public void setProperty(String propertyName, LexicalUnit value, boolean important) throws DOMException {
+		checkModifiable();
 		propertyName = getCanonicalPropertyName(propertyName);
 		// Check for shorthand properties
 		ShorthandDatabase sdb = ShorthandDatabase.getInstance();
@@ -1042,6 +1048,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 				}
 				propValue.put(propertyName, shVal);
 				shorthandSet.add(propertyName);
+				onDeclarationModify();
 			} else {
 				// Report warning
 				shorthandWarning(propertyName, value, important);
@@ -1239,15 +1246,11 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			// Could not create parser.
 			throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.getMessage());
 		}
-		Reader re = new StringReader(value);
 		LexicalUnit lunit;
 		try {
-			lunit = parser.parsePropertyValue(re);
+			lunit = parser.parsePropertyValue(value);
 		} catch (CSSParseException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 		boolean important = "important".equalsIgnoreCase(priority);
 		setProperty(propertyName, lunit, important);
@@ -1268,7 +1271,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	boolean setProperty(String propertyName, StyleValue cssValue, boolean important) {
 		propertyName = propertyName.intern();
 		String priority = important ? "important" : null;
-		if (!propertyList.contains(propertyName)) {
+		if (!isPropertySet(propertyName)) {
 			addProperty(propertyName, cssValue, priority);
 			return true;
 		} else {
@@ -1291,11 +1294,10 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 */
 	boolean replaceProperty(String propertyName, StyleValue cssValue, String priority) {
 		int idx = propertyList.indexOf(propertyName);
-		boolean overriddenImportant = "important".equals(priorities.get(idx));
+		boolean overriddenImportant = importantSet.contains(propertyName);
 		if ((!overriddenImportant || "important".equals(priority))
 				&& addOverrideProperty(propertyName, cssValue, priority)) {
 			propertyList.remove(idx);
-			priorities.remove(idx);
 			return true;
 		}
 		return false;
@@ -1308,13 +1310,14 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			addShorthandName(propertyName);
 		} else {
 			propertyList.add(propertyName);
-			priorities.add(priority);
+			setImportant(propertyName, priority);
 			StyleValue ovValue = propValue.get(propertyName);
 			if (ovValue != null && ovValue.isSubproperty()) {
 				overrideShorthands(propertyName, priority);
 			}
 		}
 		propValue.put(propertyName, cssValue);
+		onDeclarationModify();
 	}
 
 	protected boolean addOverrideProperty(String propertyName, StyleValue cssValue, String priority) {
@@ -1322,6 +1325,14 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		return true;
 	}
 
+	private void setImportant(String propertyName, String priority) {
+		if ("important".equals(priority)) {
+			importantSet.add(propertyName);
+		} else {
+			importantSet.remove(propertyName);
+		}
+	}
+
 	private void addShorthandName(String shorthandName) {
 		if (shorthandSet.contains(shorthandName)) {
 			shorthandSet.remove(shorthandName);
@@ -1377,13 +1388,14 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 				return false;
 			}
 			propertyList.add(propertyName);
-			priorities.add(priority);
+			setImportant(propertyName, priority);
 			StyleValue ovValue = propValue.get(propertyName);
 			if (ovValue != null && ovValue.isSubproperty()) {
 				overrideShorthands(propertyName, priority);
 			}
 		}
 		propValue.put(propertyName, cssValue);
+		onDeclarationModify();
 		return true;
 	}
 
@@ -1436,7 +1448,8 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	}
 
 	boolean isPropertySet(String propertyName) {
-		return propertyList.contains(propertyName);
+		StyleValue value = propValue.get(propertyName);
+		return value != null && value.getCssValueType() != CssType.SHORTHAND;
 	}
 
 	/**
@@ -1448,12 +1461,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 *         <code>false</code> otherwise.
 	 */
 	boolean isPropertyImportant(String propertyName) {
-		int idx = propertyList.indexOf(propertyName);
-		String prio;
-		if (idx != -1) {
-			return (prio = priorities.get(idx)) != null && prio.length() != 0;
-		}
-		return false;
+		return importantSet.contains(propertyName);
 	}
 
 	/**
@@ -1467,13 +1475,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 *         <code>false</code> otherwise.
 	 */
 	boolean isPropertySet(String propertyName, boolean important) {
-		int idx = propertyList.indexOf(propertyName);
-		String prio;
-		if (idx != -1) {
-			boolean prioImportant = (prio = priorities.get(idx)) != null && prio.length() != 0;
-			return prioImportant == important;
-		}
-		return false;
+		return isPropertySet(propertyName) && importantSet.contains(propertyName) == important;
 	}
 
 	@Override
@@ -1514,9 +1516,10 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	void clear() {
 		propValue.clear();
 		propertyList.clear();
-		priorities.clear();
+		importantSet.clear();
 		shorthandSet.clear();
 		prefValues = null;
+		onDeclarationModify();
 		StyleDeclarationErrorHandler errHandler = getStyleDeclarationErrorHandler();
 		if (errHandler != null) {
 			errHandler.reset();
@@ -1534,6 +1537,18 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		return parentRule;
 	}
 
+	/**
+	 * Check that this declaration can be modified.
+	 * 
+	 * @throws DOMException NO_MODIFICATION_ALLOWED_ERR if the declaration belongs
+	 *                      to a rule that is shared by several documents.
+	 */
+	private void checkModifiable() throws DOMException {
+		if (parentRule instanceof AbstractCSSRule) {
+			((AbstractCSSRule) parentRule).checkModifiable();
+		}
+	}
+
 	/**
 	 * The node that owns this declaration.
 	 * <p>
@@ -1556,21 +1571,24 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	 *            the style declaration whose properties have to be added.
 	 */
 	public void addStyle(BaseCSSStyleDeclaration style) {
+		checkModifiable();
 		ShorthandDatabase sdb = ShorthandDatabase.getInstance();
 		HashSet<String> addedShorthands = new HashSet<>(style.shorthandSet.size());
 		// Process individual properties
-		int i = -1;
 		for (String propertyName : style.propertyList) {
-			i++;
-			int pIndex = propertyList.indexOf(propertyName);
-			if (pIndex == -1) {
+			boolean important = style.importantSet.contains(propertyName);
+			if (!isPropertySet(propertyName)) {
 				// Property has no value set currently.
 				propertyList.add(propertyName);
-				priorities.add(style.priorities.get(i));
-			} else if (!"important".equals(priorities.get(pIndex))) {
+				if (important) {
+					importantSet.add(propertyName);
+				}
+			} else if (!importantSet.contains(propertyName)) {
 				// Current value is not !important, added value may or may not be.
-				priorities.set(pIndex, style.priorities.get(i));
-			} else if (!"important".equals(style.priorities.get(i))) {
+				if (important) {
+					importantSet.add(propertyName);
+				}
+			} else if (!important) {
 				// Current value is !important, added value is not.
 				continue;
 			}
@@ -1618,6 +1636,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 
 	protected void setPropertyCSSValue(String propertyName, StyleValue value, String hrefcontext) {
 		propValue.put(propertyName, value);
+		onDeclarationModify();
 	}
 
 	/**
@@ -1635,8 +1654,8 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		for (int i = 0; i < psz; i++) {
 			String propertyName = propertyList.get(i);
 			StyleValue value = propValue.get(propertyName);
-			String priority = priorities.get(i);
-			if ("important".equals(priority)) {
+			String priority = importantSet.contains(propertyName) ? "important" : null;
+			if (priority != null) {
 				importantDecl.addProperty(propertyName, value, priority);
 			} else {
 				normalDecl.addProperty(propertyName, value, priority);
@@ -1835,8 +1854,7 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 		for (String property : propertyNames) {
 			result = prime * result + property.hashCode();
 			result = prime * result + propValue.get(property).hashCode();
-			String prio = priorities.get(propertyList.indexOf(property));
-			result = prime * result + ((prio == null) ? 0 : prio.hashCode());
+			result = prime * result + (importantSet.contains(property) ? 1231 : 1237);
 		}
 		return result;
 	}
@@ -1855,22 +1873,14 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 			return false;
 		}
 		for (String property : propertyList) {
-			if (!other.propertyList.contains(property)) {
+			if (!other.isPropertySet(property)) {
 				return false;
 			}
 			StyleValue value = propValue.get(property);
 			if (!value.equals(other.propValue.get(property))) {
 				return false;
 			}
-			int idx = propertyList.indexOf(property);
-			int idxo = other.propertyList.indexOf(property);
-			String prio = priorities.get(idx);
-			String prioo = other.priorities.get(idxo);
-			if (prio == null) {
-				if (prioo != null) {
-					return false;
-				}
-			} else if (!prio.equals(prioo)) {
+			if (importantSet.contains(property) != other.importantSet.contains(property)) {
 				return false;
 			}
 		}
@@ -1892,29 +1902,20 @@ public class BaseCSSStyleDeclaration extends AbstractCSSStyleDeclaration impleme
 	public Diff<String> diff(BaseCSSStyleDeclaration other) {
 		PropertyDiff diff = new PropertyDiff();
 		for (String property : propertyList) {
-			if (!other.propertyList.contains(property)) {
+			if (!other.isPropertySet(property)) {
 				diff.leftSide.add(property);
 			} else {
 				StyleValue value = getCSSValue(property);
 				StyleValue otherValue = other.getCSSValue(property);
-				if (valueEquals(value, otherValue)) {
-					int idx = propertyList.indexOf(property);
-					int idxo = other.propertyList.indexOf(property);
-					String prio = priorities.get(idx);
-					String prioo = other.priorities.get(idxo);
-					if (prio == null) {
-						if (prioo == null) {
-							continue;
-						}
-					} else if (prio.equals(prioo)) {
-						continue;
-					}
+				if (valueEquals(value, otherValue) && importantSet
+						.contains(property) == other.importantSet.contains(property)) {
+					continue;
 				}
 				diff.differentValues.add(property);
 			}
 		}
 		for (String property : other.propertyList) {
-			if (!propertyList.contains(property)) {
+			if (!isPropertySet(property)) {
 				diff.rightSide.add(property);
 			}
 		}
@@ -14,7 +14,6 @@ package io.sf.carte.doc.style.css.om;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
@@ -132,6 +131,17 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 		}
 	}
 
+	/*
+	 * Give the supplied sheet its own copy of the namespaces of this sheet, so it
+	 * can merge other namespaces without modifying this one.
+	 */
+	@SuppressWarnings("unchecked")
+	void copyNamespacesTo(BaseCSSStyleSheet myCopy) {
+		if (namespaces != null) {
+			myCopy.namespaces = (HashMap<String, String>) namespaces.clone();
+		}
+	}
+
 	protected void copyRulesTo(BaseCSSStyleSheet myCopy) {
 		myCopy.cssRules.ensureCapacity(cssRules.getLength());
 		Iterator<AbstractCSSRule> it = cssRules.iterator();
@@ -216,10 +226,10 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	 */
 	@Override
 	public int insertRule(String rule, int index) throws DOMException {
+		checkModifiable();
 		if (index > getCssRules().getLength() || index < 0) {
 			throw new DOMException(DOMException.INDEX_SIZE_ERR, "Invalid index: " + index);
 		}
-		Reader re = new StringReader(rule);
 		// The following may cause an (undocumented)
 		// DOMException.NOT_SUPPORTED_ERR
 		Parser psr = getStyleSheetFactory().createSACParser();
@@ -228,16 +238,13 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 		psr.setErrorHandler(handler);
 		currentInsertionIndex = index - 1;
 		try {
-			psr.parseRule(re, handler);
+			psr.parseRule(rule, handler);
 		} catch (CSSNamespaceParseException e) {
 			DOMException ex = new DOMException(DOMException.NAMESPACE_ERR, e.getMessage());
 			ex.initCause(e);
 			throw ex;
 		} catch (CSSException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 		if (currentInsertionIndex != index && handler.getOutOfRuleException() != null) {
 			DOMException ex;
@@ -263,6 +270,7 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	 */
 	@Override
 	public void addRule(AbstractCSSRule cssrule) throws DOMException {
+		checkModifiable();
 		cssrule.addToSheetAsLocal(this);
 		cssrule.setParentStyleSheet(this);
 	}
@@ -301,6 +309,7 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	@Override
 	protected void addLocalRule(CSSRule cssrule) {
 		currentInsertionIndex = cssRules.insertRule(cssrule, ++currentInsertionIndex);
+		onCascadeModify();
 	}
 
 	/**
@@ -317,6 +326,7 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	 */
 	@Override
 	public void deleteRule(int index) throws DOMException {
+		checkModifiable();
 		CSSRule rule;
 		try {
 			rule = cssRules.get(index);
@@ -328,6 +338,14 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 			throw new DOMException(DOMException.NAMESPACE_ERR, "There are style rules with ");
 		}
 		cssRules.remove(index);
+		onCascadeModify();
+	}
+
+	private void checkModifiable() throws DOMException {
+		if (isFrozen()) {
+			throw new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+					"The rules of this sheet are shared by several documents.");
+		}
 	}
 
 	private boolean containsRuleWithNamespace(String namespaceURI) {
@@ -354,6 +372,7 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	 */
 	@Override
 	public void addStyleSheet(AbstractCSSStyleSheet sheet) {
+		checkModifiable();
 		if (!sheet.getDisabled()) {
 			MediaQueryList mediaList = sheet.getMedia();
 			if (mediaList.isAllMedia()) { // all media
@@ -1276,6 +1295,7 @@ abstract public class BaseCSSStyleSheet extends AbstractCSSStyleSheet {
 	@Override
 	public boolean parseStyleSheet(Reader reader, short commentMode)
 			throws DOMException, IOException {
+		checkModifiable();
 		if (sheetErrorHandler != null) {
 			sheetErrorHandler.reset();
 		}
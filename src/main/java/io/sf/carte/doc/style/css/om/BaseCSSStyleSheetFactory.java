@@ -11,6 +11,7 @@
 
 package io.sf.carte.doc.style.css.om;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,6 +32,7 @@ import io.sf.carte.doc.DOMInvalidAccessException;
 import io.sf.carte.doc.agent.DeviceFactory;
 import io.sf.carte.doc.agent.HeadlessDeviceFactory;
 import io.sf.carte.doc.style.css.CSSDeclarationRule;
+import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.CSSElement;
 import io.sf.carte.doc.style.css.CSSPropertyDefinition;
 import io.sf.carte.doc.style.css.CSSRule;
@@ -82,12 +84,25 @@ abstract public class BaseCSSStyleSheetFactory extends AbstractCSSStyleSheetFact
 
 	private boolean lenientSystemValues = true;
 
+	private boolean styleSharing = false;
+
+	private boolean computedStyleCaching = false;
+
+	private volatile boolean concurrentStyling = false;
+
+	private int parallelStylingThreshold = 1024;
+
 	private AbstractCSSStyleSheet userImportantSheet = null;
 
 	private AbstractCSSStyleSheet userNormalSheet = null;
 
 	private DeviceFactory deviceFactory = null;
 
+	/*
+	 * The number of default sheets that were built from their snapshots.
+	 */
+	private transient int snapshotLoadCount = 0;
+
 	protected BaseCSSStyleSheetFactory() {
 		this(EnumSet.noneOf(Parser.Flag.class));
 	}
@@ -277,6 +292,28 @@ abstract public class BaseCSSStyleSheetFactory extends AbstractCSSStyleSheetFact
 		return userNormalSheet;
 	}
 
+	@Override
+	abstract protected BaseDocumentCSSStyleSheet getDefaultStyleSheet(CSSDocument.ComplianceMode mode);
+
+	/**
+	 * Create the sheet where a document merges its own style sheets with the
+	 * default style sheet for the given mode.
+	 * <p>
+	 * The rules of the default sheet (the user agent sheet and the non-important
+	 * part of the user sheet) are owned by this factory, and are shared by
+	 * reference with all the sheets created by this method instead of being cloned
+	 * for each document. The document rules are added on top of them.
+	 * </p>
+	 *
+	 * @param mode         the compliance mode.
+	 * @param targetMedium the target medium, or {@code null} for all media.
+	 * @return the new document sheet.
+	 */
+	public synchronized BaseDocumentCSSStyleSheet createMergedStyleSheet(
+			CSSDocument.ComplianceMode mode, String targetMedium) {
+		return getDefaultStyleSheet(mode).sharedClone(targetMedium);
+	}
+
 	/**
 	 * Returns a default user agent style sheet for (X)HTML documents, strict mode.
 	 * 
@@ -285,9 +322,8 @@ abstract public class BaseCSSStyleSheetFactory extends AbstractCSSStyleSheetFact
 	 *             if a problem arose when reading the default sheet.
 	 */
 	protected BaseDocumentCSSStyleSheet htmlDefaultSheet() throws IllegalStateException {
-		InputStream is = loadCSSfromClasspath(HTML_DEFAULT_SHEET);
 		try {
-			return loadDefaultSheet(is);
+			return loadDefaultSheet(HTML_DEFAULT_SHEET);
 		} catch (IOException e) {
 			throw new IllegalStateException("Could not read the default style sheet", e);
 		}
@@ -301,39 +337,81 @@ abstract public class BaseCSSStyleSheetFactory extends AbstractCSSStyleSheetFact
 	 *             if a problem arose when reading the default sheet.
 	 */
 	protected BaseDocumentCSSStyleSheet htmlQuirksDefaultSheet() throws IllegalStateException {
-		InputStream is = loadCSSfromClasspath(HTML_DEFAULT_SHEET_QUIRKS);
 		try {
-			return loadDefaultSheet(is);
+			return loadDefaultSheet(HTML_DEFAULT_SHEET_QUIRKS);
 		} catch (IOException e) {
 			throw new IllegalStateException("Could not read the default style sheet", e);
 		}
 	}
 
 	/**
-	 * Loads a default CSS style sheet from an input stream.
+	 * Loads a default CSS style sheet from the classpath.
+	 * <p>
+	 * If a binary snapshot of the sheet is found next to it, and corresponds to its
+	 * current contents, the rules are built from the snapshot instead of parsing
+	 * the sheet.
+	 * </p>
 	 * 
+	 * @param cssFilename the path to the sheet.
 	 * @return the default style sheet.
 	 * @throws IOException
 	 *             if a problem arose when reading the default sheet.
 	 */
-	private BaseDocumentCSSStyleSheet loadDefaultSheet(InputStream is) throws IOException {
-		BaseDocumentCSSStyleSheet cssSheet;
-		Reader re = null;
-		try {
-			re = new InputStreamReader(is, "UTF-8");
+	private BaseDocumentCSSStyleSheet loadDefaultSheet(String cssFilename) throws IOException {
+		InputStream is = loadCSSfromClasspath(cssFilename);
+		if (is == null) {
+			throw new IOException("Resource not found: " + cssFilename);
+		}
+		byte[] source = SheetSnapshot.readAll(is);
+		BaseDocumentCSSStyleSheet cssSheet = loadSnapshot(
+				cssFilename + SheetSnapshot.FILENAME_SUFFIX, source);
+		if (cssSheet == null) {
 			cssSheet = createDocumentStyleSheet(ORIGIN_USER_AGENT);
+			Reader re = new InputStreamReader(new ByteArrayInputStream(source),
+					StandardCharsets.UTF_8);
 			cssSheet.parseStyleSheet(re, CSSStyleSheet.COMMENTS_IGNORE);
+		}
+		return cssSheet;
+	}
+
+	/**
+	 * Build a default sheet from its binary snapshot.
+	 * 
+	 * @param filename the path to the snapshot.
+	 * @param source   the contents of the sheet.
+	 * @return the sheet, or {@code null} if the snapshot could not be found or
+	 *         used, and the sheet must be parsed.
+	 */
+	private BaseDocumentCSSStyleSheet loadSnapshot(String filename, byte[] source) {
+		InputStream is = loadCSSfromClasspath(filename);
+		if (is == null) {
+			return null;
+		}
+		BaseDocumentCSSStyleSheet cssSheet = createDocumentStyleSheet(ORIGIN_USER_AGENT);
+		try {
+			if (SheetSnapshot.replay(is, source, getParserFlags(), cssSheet)) {
+				snapshotLoadCount++;
+				return cssSheet;
+			}
 		} catch (IOException e) {
-			throw e;
+			// Damaged snapshot, parse the sheet instead
 		} finally {
-			if (re != null) {
-				try {
-					re.close();
-				} catch (IOException e) {
-				}
+			try {
+				is.close();
+			} catch (IOException e) {
 			}
 		}
-		return cssSheet;
+		return null;
+	}
+
+	/**
+	 * Gives the number of default sheets that were built from their binary
+	 * snapshots instead of being parsed.
+	 * 
+	 * @return the number of sheets built from snapshots.
+	 */
+	int getSnapshotLoadCount() {
+		return snapshotLoadCount;
 	}
 
 	private InputStream loadCSSfromClasspath(final String cssFilename) {
@@ -390,6 +468,151 @@ abstract public class BaseCSSStyleSheetFactory extends AbstractCSSStyleSheetFact
 		this.lenientSystemValues = lenient;
 	}
 
+	/**
+	 * Enable or disable the sharing of matching rules between sibling elements.
+	 * <p>
+	 * When enabled, the rules that match an element are reused for its following
+	 * siblings that have the same local name, namespace and class attribute, no
+	 * id, and the same values for the attributes used by the selectors, unless
+	 * any of the rules that could apply to them depends on the position, content
+	 * or state of the element.
+	 * <p>
+	 * The shared results are discarded when the style sheets are modified or the
+	 * cascade is rebuilt, but not when the document changes: if you modify a
+	 * document after computing its styles, call
+	 * {@link io.sf.carte.doc.style.css.CSSDocument#rebuildCascade()
+	 * rebuildCascade()} before computing them again.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 * 
+	 * @param enable
+	 *            <code>true</code> to enable style sharing, <code>false</code> to
+	 *            disable it.
+	 */
+	public void setStyleSharing(boolean enable) {
+		this.styleSharing = enable;
+	}
+
+	/**
+	 * Check whether the sharing of matching rules between sibling elements is
+	 * enabled.
+	 * 
+	 * @return <code>true</code> if style sharing is enabled.
+	 */
+	public boolean isStyleSharing() {
+		return styleSharing;
+	}
+
+	/**
+	 * Enable or disable the caching of computed styles in the documents created by
+	 * this factory.
+	 * <p>
+	 * When enabled, the computed style of an element (and pseudo-element) is kept
+	 * by its document until the document or its style sheets are modified, so
+	 * that repeated requests for the same style do not compute it again.
+	 * <p>
+	 * Changes that the document cannot detect, like changes in the state of the
+	 * canvas (viewport dimensions or active pseudo-classes) or, for wrapped
+	 * documents, changes made directly to the wrapped DOM, require a call to
+	 * {@link io.sf.carte.doc.style.css.CSSDocument#rebuildCascade()
+	 * rebuildCascade()}.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 * 
+	 * @param enable
+	 *            <code>true</code> to enable the cache, <code>false</code> to
+	 *            disable it.
+	 */
+	public void setComputedStyleCaching(boolean enable) {
+		this.computedStyleCaching = enable;
+	}
+
+	/**
+	 * Check whether the caching of computed styles is enabled.
+	 * 
+	 * @return <code>true</code> if computed styles are cached.
+	 */
+	public boolean isComputedStyleCaching() {
+		return computedStyleCaching;
+	}
+
+	/**
+	 * Enable or disable the concurrent read mode, where the styles of a native DOM
+	 * document ({@link io.sf.carte.doc.dom.DOMDocument DOMDocument}) can be
+	 * computed by several threads at the same time.
+	 * <p>
+	 * In this mode, each style computation uses its own selector matcher instead
+	 * of the one that each element keeps for later reuse, and computed styles are
+	 * not cached even if {@link #setComputedStyleCaching(boolean) computed style
+	 * caching} is enabled. The error handlers and the property database can be
+	 * used concurrently in any mode.
+	 * </p>
+	 * <p>
+	 * The document must not be modified while its styles are being computed
+	 * concurrently, and its style sheet should have been obtained (with
+	 * {@link io.sf.carte.doc.style.css.CSSDocument#getStyleSheet()
+	 * getStyleSheet()}) before the threads are started. The computed styles
+	 * themselves are not meant to be shared between threads.
+	 * </p>
+	 * <p>
+	 * Wrapped documents ({@link StylableDocumentWrapper}) do not support this
+	 * mode, as they create their nodes on demand.
+	 * </p>
+	 * <p>
+	 * Default value is <code>false</code>.
+	 * </p>
+	 * 
+	 * @param enable
+	 *            <code>true</code> to enable the concurrent read mode,
+	 *            <code>false</code> to disable it.
+	 */
+	public void setConcurrentStyling(boolean enable) {
+		this.concurrentStyling = enable;
+	}
+
+	/**
+	 * Check whether the concurrent read mode is enabled.
+	 * 
+	 * @return <code>true</code> if the styles of a document can be computed by
+	 *         several threads at the same time.
+	 */
+	public boolean isConcurrentStyling() {
+		return concurrentStyling;
+	}
+
+	/**
+	 * Set the minimum number of elements that a subtree must contain to be styled
+	 * as a separate task, when the styles of a document are computed in parallel.
+	 * <p>
+	 * Smaller subtrees are styled by the task that styles their parent, as the
+	 * overhead of a new task would exceed the gain. Default value is
+	 * <code>1024</code>.
+	 * </p>
+	 * 
+	 * @param threshold
+	 *            the minimum number of elements of a parallel subtree.
+	 * @throws IllegalArgumentException
+	 *             if the threshold is not positive.
+	 * @see io.sf.carte.doc.style.css.CSSDocument#computeAllStyles(java.util.concurrent.ForkJoinPool,
+	 *      java.util.function.Consumer)
+	 */
+	public void setParallelStylingThreshold(int threshold) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException("Threshold must be positive.");
+		}
+		this.parallelStylingThreshold = threshold;
+	}
+
+	/**
+	 * Get the minimum number of elements that a subtree must contain to be styled
+	 * as a separate task, when the styles of a document are computed in parallel.
+	 * 
+	 * @return the minimum number of elements of a parallel subtree.
+	 */
+	public int getParallelStylingThreshold() {
+		return parallelStylingThreshold;
+	}
+
 	/**
 	 * Get a system default value for the given property.
 	 * <p>
@@ -13,13 +13,11 @@ package io.sf.carte.doc.style.css.om;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import org.w3c.dom.DOMException;
 
@@ -33,7 +31,6 @@ import io.sf.carte.doc.style.css.DocumentCSSStyleSheet;
 import io.sf.carte.doc.style.css.ErrorHandler;
 import io.sf.carte.doc.style.css.SelectorMatcher;
 import io.sf.carte.doc.style.css.nsac.Condition;
-import io.sf.carte.doc.style.css.om.StyleRule.RuleSpecificity;
 
 /**
  * Base implementation for <code>DocumentCSSStyleSheet</code>.
@@ -47,6 +44,16 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 
 	private Map<String, CSSPropertyDefinition> registeredPropertyMap;
 
+	/*
+	 * Lazily built index of the rules in this sheet.
+	 */
+	private transient RuleIndex ruleIndex = null;
+
+	/*
+	 * Whether the rules were prepared to be shared with other sheets.
+	 */
+	private transient volatile boolean sharedRulesPrepared = false;
+
 	protected BaseDocumentCSSStyleSheet(String medium, int origin) {
 		super(null, new MediaQueryListImpl(medium), null, origin);
 		if ("all".equals(medium)) {
@@ -113,6 +120,67 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		}
 	}
 
+	/*
+	 * Add the rules of this style sheet to the supplied one, without cloning
+	 * them, but only those compatible with the target medium of the receiving
+	 * sheet, if it has one.
+	 */
+	protected void copySharedRulesTo(BaseDocumentCSSStyleSheet myCopy) {
+		String medium = myCopy.getTargetMedium();
+		if (medium != null && !getMedia().matches(medium, null)) {
+			throw new IllegalArgumentException("Incompatible target medium: " + medium);
+		}
+		prepareSharedRules();
+		copyFieldsTo(myCopy);
+		copyNamespacesTo(myCopy);
+		myCopy.registeredPropertyMap.putAll(registeredPropertyMap);
+		myCopy.cssRules.ensureCapacity(cssRules.getLength());
+		for (AbstractCSSRule rule : cssRules) {
+			if (medium != null) {
+				int type = rule.getType();
+				if ((type == CSSRule.MEDIA_RULE
+						&& !((MediaRule) rule).getMedia().matches(medium, null))
+						|| (type == CSSRule.IMPORT_RULE
+								&& !((ImportRule) rule).getMedia().matches(medium, null))) {
+					continue;
+				}
+			}
+			myCopy.cssRules.add(rule);
+		}
+	}
+
+	/*
+	 * Compute the selector data that the style rules cache lazily, so the rules
+	 * that are shared by several sheets are only read by their cascades.
+	 */
+	private void prepareSharedRules() {
+		if (!sharedRulesPrepared) {
+			synchronized (this) {
+				if (!sharedRulesPrepared) {
+					prepareRules(cssRules);
+					sharedRulesPrepared = true;
+				}
+			}
+		}
+	}
+
+	private static void prepareRules(CSSRuleArrayList list) {
+		for (AbstractCSSRule rule : list) {
+			if (rule.getType() == CSSRule.STYLE_RULE) {
+				StyleRule stylerule = (StyleRule) rule;
+				stylerule.getSelectorSpecificities();
+				stylerule.getSelectorAncestorHashes();
+				stylerule.getCompiledSelectors();
+			}
+			if (rule instanceof GroupingRule) {
+				CSSRuleArrayList nested = ((GroupingRule) rule).getCssRules();
+				if (nested != null) {
+					prepareRules(nested);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Get the definition for the given property.
 	 * 
@@ -139,6 +207,47 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		registerProperty(propertyRule);
 	}
 
+	@Override
+	void onCascadeModify() {
+		ruleIndex = null;
+	}
+
+	@Override
+	boolean isFrozen() {
+		return sharedRulesPrepared;
+	}
+
+	/**
+	 * Get the index of the rules in this sheet, building it if necessary.
+	 * 
+	 * @return the rule index.
+	 */
+	RuleIndex getRuleIndex() {
+		RuleIndex index = ruleIndex;
+		if (index == null || !index.isValid(cssRules)) {
+			index = new RuleIndex(cssRules);
+			ruleIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Create a tracker of the elements whose computed style may change after a
+	 * batch of DOM mutations, according to the rules of this sheet.
+	 * <p>
+	 * The tracker is only valid as long as the rules of this sheet are not
+	 * modified.
+	 * </p>
+	 * 
+	 * @return the restyle tracker.
+	 */
+	public RestyleTracker createRestyleTracker() {
+		CSSDocument doc = getOwnerNode();
+		boolean caseInsensitive = doc != null
+				&& doc.getComplianceMode() != CSSDocument.ComplianceMode.STRICT;
+		return new RestyleTracker(getRuleIndex().getInvalidationSets(), caseInsensitive);
+	}
+
 	@Override
 	public int insertRule(String ruleText, int index) throws DOMException {
 		InternalSheet sheet = new InternalSheet();
@@ -225,6 +334,35 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 	@Override
 	abstract public BaseDocumentCSSStyleSheet clone(String targetMedium);
 
+	/**
+	 * Create a sheet that holds the rules of this one by reference, optionally
+	 * preserving only the rules targeting the given medium.
+	 * <p>
+	 * Unlike the sheets obtained with {@link #clone()} or {@link #clone(String)},
+	 * the rules are not cloned: they keep this sheet as their parent, and are
+	 * shared by all the sheets created by this method, which is appropriate for a
+	 * default sheet that is reused by many documents. The rules that are added
+	 * later to the new sheet only belong to it.
+	 * </p>
+	 * <p>
+	 * Once shared, the rules of this sheet are read-only: their mutators (and those
+	 * of their style declarations and of this sheet) throw a {@link DOMException}
+	 * with the {@code NO_MODIFICATION_ALLOWED_ERR} code. Their
+	 * {@code getParentStyleSheet()} method keeps returning this sheet, and the
+	 * values obtained from their declarations must not be modified either.
+	 * </p>
+	 * <p>
+	 * This default implementation does not share anything, and just returns a
+	 * clone.
+	 * </p>
+	 *
+	 * @param targetMedium the medium, or {@code null} to keep all the rules.
+	 * @return a sheet that shares the rules of this one.
+	 */
+	public BaseDocumentCSSStyleSheet sharedClone(String targetMedium) {
+		return targetMedium == null ? clone() : clone(targetMedium);
+	}
+
 	/**
 	 * Compute the style for an element.
 	 * 
@@ -259,23 +397,13 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		 * We build a sorted set of styles that apply to the given element.
 		 */
 		Cascade matchingStyles = new Cascade();
-		matchingStyles.cascade(matcher, style, getTargetMedium(), cssRules);
+		matchingStyles.cascadeSheet(matcher, style, getTargetMedium());
 		/*
-		 * The styles are sorted according to its specificity, per the
-		 * SpecificityComparator.
+		 * Now we add all the styles to form a single declaration. The styles are
+		 * sorted according to origin and specificity, and each more specific style
+		 * is added, starting with the less specific declaration.
 		 */
-		Iterator<StyleRule> styleit = matchingStyles.iterator();
-		/*
-		 * Now we add all the styles to form a single declaration. We add them according
-		 * to the order specified by the sorted set.
-		 * 
-		 * Each more specific style is added, starting with the less specific
-		 * declaration.
-		 */
-		while (styleit.hasNext()) {
-			StyleRule rule = styleit.next();
-			style.addStyle((BaseCSSStyleDeclaration) rule.getStyle());
-		}
+		matchingStyles.addStylesTo(style);
 		// The inline style has higher priority, so we add it at the end.
 		if (inlineStyle != null && !inlineStyle.isEmpty()) {
 			style.addStyle(inlineStyle);
@@ -294,11 +422,7 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 			Cascade usercascade = new Cascade();
 			usercascade.cascade(matcher, style, getTargetMedium(),
 					userImportantStyleSheet.getCssRules());
-			styleit = usercascade.iterator();
-			while (styleit.hasNext()) {
-				StyleRule rule = styleit.next();
-				style.addStyle((BaseCSSStyleDeclaration) rule.getStyle());
-			}
+			usercascade.addStylesTo(style);
 		}
 		return style;
 	}
@@ -322,23 +446,13 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		 * We build a sorted set of styles that apply to the given element.
 		 */
 		Cascade matchingStyles = new Cascade();
-		matchingStyles.cascade(matcher, style, getTargetMedium(), cssRules, origin);
+		matchingStyles.cascadeSheet(matcher, style, getTargetMedium(), origin);
 		/*
-		 * The styles are sorted according to its specificity, per the
-		 * SpecificityComparator.
+		 * Now we add all the styles to form a single declaration. The styles are
+		 * sorted according to origin and specificity, and each more specific style
+		 * is added, starting with the less specific declaration.
 		 */
-		Iterator<StyleRule> styleit = matchingStyles.iterator();
-		/*
-		 * Now we add all the styles to form a single declaration. We add them according
-		 * to the order specified by the sorted set.
-		 * 
-		 * Each more specific style is added, starting with the less specific
-		 * declaration.
-		 */
-		while (styleit.hasNext()) {
-			StyleRule rule = styleit.next();
-			style.addStyle((BaseCSSStyleDeclaration) rule.getStyle());
-		}
+		matchingStyles.addStylesTo(style);
 		if (origin >= CSSStyleSheetFactory.ORIGIN_AUTHOR) {
 			// The inline style has higher priority, so we add it at the end.
 			if (inlineStyle != null && !inlineStyle.isEmpty()) {
@@ -358,11 +472,7 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 				Cascade usercascade = new Cascade();
 				usercascade.cascade(matcher, style, getTargetMedium(),
 						userImportantStyleSheet.getCssRules());
-				styleit = usercascade.iterator();
-				while (styleit.hasNext()) {
-					StyleRule rule = styleit.next();
-					style.addStyle((BaseCSSStyleDeclaration) rule.getStyle());
-				}
+				usercascade.addStylesTo(style);
 			}
 		}
 		return style;
@@ -378,10 +488,76 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		return canvas;
 	}
 
+	/*
+	 * The arrays used by a cascade, that are reused by the next cascade computed in
+	 * the same thread.
+	 */
+	private static final class CascadeBuffer {
+
+		private static final ThreadLocal<CascadeBuffer> threadBuffer = new ThreadLocal<>();
+
+		/*
+		 * Buffers that grew beyond this capacity are not kept.
+		 */
+		private static final int MAX_RETAINED_CAPACITY = 4096;
+
+		private StyleRule[] rules = new StyleRule[32];
+
+		private long[] keys = new long[32];
+
+		/**
+		 * Obtain the buffer of the current thread, or a new one if that buffer is
+		 * being used by another cascade.
+		 * 
+		 * @return the buffer.
+		 */
+		static CascadeBuffer acquire() {
+			CascadeBuffer buffer = threadBuffer.get();
+			if (buffer != null) {
+				threadBuffer.set(null);
+			} else {
+				buffer = new CascadeBuffer();
+			}
+			return buffer;
+		}
+
+		/**
+		 * Clear the buffer and make it available to the next cascade in this thread.
+		 * 
+		 * @param size the number of rules that were added to the buffer.
+		 */
+		void recycle(int size) {
+			if (rules.length <= MAX_RETAINED_CAPACITY) {
+				Arrays.fill(rules, 0, size, null);
+				threadBuffer.set(this);
+			}
+		}
+
+		void grow() {
+			int capacity = rules.length * 2;
+			rules = Arrays.copyOf(rules, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+		}
+
+	}
+
+	/**
+	 * The set of style rules that match an element, in cascade order.
+	 * <p>
+	 * The rules are collected into arrays that are sorted once, according to their
+	 * origin and specificity and then the order in which they were added.
+	 * </p>
+	 */
 	class Cascade {
 
-		private final SortedMap<StyleRule.RuleSpecificity, LinkedList<StyleRule>> matchingStyles = new TreeMap<>(
-				new StyleRule.SpecificityComparator());
+		/*
+		 * Null until the first rule is added.
+		 */
+		private CascadeBuffer buffer = null;
+
+		private int size = 0;
+
+		private boolean sorted = true;
 
 		Cascade() {
 			super();
@@ -395,13 +571,39 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 		}
 
 		void add(StyleRule.RuleSpecificity sp) {
-			if (matchingStyles.containsKey(sp)) {
-				matchingStyles.get(sp).add(sp.getCSSStyleRule());
-			} else {
-				LinkedList<StyleRule> matchingRules = new LinkedList<>();
-				matchingRules.add(sp.getCSSStyleRule());
-				matchingStyles.put(sp, matchingRules);
+			add(sp.getCSSStyleRule(), sp.toPacked());
+		}
+
+		/**
+		 * Add a matching rule to this cascade.
+		 * 
+		 * @param rule        the style rule.
+		 * @param specificity the packed specificity of the matching selector.
+		 */
+		void add(StyleRule rule, long specificity) {
+			addWeighted(rule, StyleRule.cascadeWeight(rule.getOrigin(), specificity));
+		}
+
+		/**
+		 * Add a matching rule with the given cascade weight.
+		 * 
+		 * @param rule   the style rule.
+		 * @param weight the cascade weight.
+		 */
+		void addWeighted(StyleRule rule, int weight) {
+			if (buffer == null) {
+				buffer = CascadeBuffer.acquire();
+			} else if (size == buffer.rules.length) {
+				buffer.grow();
 			}
+			/*
+			 * The key holds the cascade weight in the high half, and the index of the
+			 * rule in the low half, so rules of equal weight keep their order.
+			 */
+			buffer.keys[size] = (long) weight << 32 | size;
+			buffer.rules[size] = rule;
+			size++;
+			sorted = false;
 		}
 
 		public void cascade(SelectorMatcher matcher, ComputedCSSStyle style, String targetMedium,
@@ -413,6 +615,124 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 			}
 		}
 
+		/**
+		 * Cascade the rules of the enclosing sheet.
+		 * <p>
+		 * If style sharing is enabled in the factory, the rules that match a previous
+		 * sibling with the same sharing key are reused.
+		 * </p>
+		 * 
+		 * @param matcher      the selector matcher.
+		 * @param style        the style being computed.
+		 * @param targetMedium the target medium.
+		 */
+		void cascadeSheet(SelectorMatcher matcher, ComputedCSSStyle style, String targetMedium) {
+			if (matcher instanceof AbstractSelectorMatcher && getStyleSheetFactory().isStyleSharing()) {
+				AbstractSelectorMatcher absMatcher = (AbstractSelectorMatcher) matcher;
+				RuleIndex index = getRuleIndex();
+				// Must be obtained first, as it may discard the sharing cache
+				MediaConditionCache mediaCache = index.getMediaConditionCache(getCanvas(),
+						targetMedium);
+				StyleSharingCache cache = index.getStyleSharingCache();
+				StyleSharingCache.SharingKey key = cache.createKey(style.getOwnerNode(),
+						absMatcher);
+				if (key != null) {
+					if (!cache.apply(key, this) && index.cascade(this, absMatcher, style,
+							targetMedium, 0, mediaCache)) {
+						cache.put(key, this);
+					}
+					return;
+				}
+			}
+			cascadeSheet(matcher, style, targetMedium, 0);
+		}
+
+		/**
+		 * Cascade the rules of the enclosing sheet that have at least the given
+		 * origin.
+		 * <p>
+		 * If the matcher allows it, only the rules found by the rule index are tried,
+		 * and the results of the media conditions are reused until the state of the
+		 * canvas changes.
+		 * </p>
+		 * 
+		 * @param matcher      the selector matcher.
+		 * @param style        the style being computed.
+		 * @param targetMedium the target medium.
+		 * @param origin       the minimum origin.
+		 */
+		void cascadeSheet(SelectorMatcher matcher, ComputedCSSStyle style, String targetMedium,
+				int origin) {
+			if (matcher instanceof AbstractSelectorMatcher) {
+				RuleIndex index = getRuleIndex();
+				index.cascade(this, (AbstractSelectorMatcher) matcher, style, targetMedium, origin,
+						index.getMediaConditionCache(getCanvas(), targetMedium));
+			} else {
+				cascade(matcher, style, targetMedium, cssRules, origin);
+			}
+		}
+
+		private void sort() {
+			if (!sorted) {
+				Arrays.sort(buffer.keys, 0, size);
+				sorted = true;
+			}
+		}
+
+		int getLength() {
+			return size;
+		}
+
+		/**
+		 * Get the rule at the given position in cascade order.
+		 * 
+		 * @param index the index.
+		 * @return the style rule.
+		 */
+		StyleRule item(int index) {
+			sort();
+			return buffer.rules[(int) buffer.keys[index]];
+		}
+
+		/**
+		 * Get the cascade weight of the rule at the given position in cascade order.
+		 * 
+		 * @param index the index.
+		 * @return the cascade weight.
+		 */
+		int weight(int index) {
+			sort();
+			return (int) (buffer.keys[index] >> 32);
+		}
+
+		/**
+		 * Add the styles of the matching rules to the given style, in cascade order.
+		 * <p>
+		 * Afterwards this cascade is empty, and its buffer is available to other
+		 * cascades.
+		 * </p>
+		 * 
+		 * @param style the style being computed.
+		 */
+		void addStylesTo(ComputedCSSStyle style) {
+			if (buffer == null) {
+				return;
+			}
+			try {
+				sort();
+				StyleRule[] rules = buffer.rules;
+				long[] keys = buffer.keys;
+				for (int i = 0; i < size; i++) {
+					style.addStyle((BaseCSSStyleDeclaration) rules[(int) keys[i]].getStyle());
+				}
+			} finally {
+				buffer.recycle(size);
+				buffer = null;
+				size = 0;
+				sorted = true;
+			}
+		}
+
 		Iterator<StyleRule> iterator() {
 			return new RuleIterator();
 		}
@@ -430,41 +750,21 @@ abstract public class BaseDocumentCSSStyleSheet extends BaseCSSStyleSheet
 
 		class RuleIterator implements Iterator<StyleRule> {
 
-			private final Iterator<RuleSpecificity> keyit;
-			private Iterator<StyleRule> currentList;
+			private int index = 0;
 
 			RuleIterator() {
 				super();
-				keyit = matchingStyles.keySet().iterator();
-				if (keyit.hasNext()) {
-					findCurrentList();
-				} else {
-					currentList = null;
-				}
-			}
-
-			private void findCurrentList() {
-				while (currentList == null || !currentList.hasNext()) {
-					if (keyit.hasNext()) {
-						currentList = matchingStyles.get(keyit.next()).iterator();
-					} else {
-						currentList = null;
-						break;
-					}
-				}
 			}
 
 			@Override
 			public boolean hasNext() {
-				return currentList != null;
+				return index < size;
 			}
 
 			@Override
 			public StyleRule next() {
-				if (currentList != null && currentList.hasNext()) {
-					StyleRule thenext = currentList.next();
-					findCurrentList();
-					return thenext;
+				if (index < size) {
+					return item(index++);
 				}
 				throw new NoSuchElementException();
 			}
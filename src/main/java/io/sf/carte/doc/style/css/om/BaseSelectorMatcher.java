@@ -83,6 +83,11 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 	@SuppressWarnings("unchecked")
 	@Override
 	protected int indexOf(SelectorList selectors) {
+		SiblingIndexCache.Positions positions = cachedPositions(selectors, null);
+		if (positions != null) {
+			return positions.indexOf(element);
+		}
+
 		Node node = element.getParentNode().getFirstChild();
 		int idx = 0;
 		while (node != null) {
@@ -101,6 +106,11 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 	@SuppressWarnings("unchecked")
 	@Override
 	protected int reverseIndexOf(SelectorList selectors) {
+		SiblingIndexCache.Positions positions = cachedPositions(selectors, null);
+		if (positions != null) {
+			return positions.reverseIndexOf(element);
+		}
+
 		Node node = element.getParentNode().getLastChild();
 		int idx = 0;
 		while (node != null) {
@@ -116,6 +126,50 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 		return -1;
 	}
 
+	/**
+	 * Get the cached positions of the siblings of this element that match the
+	 * given selectors or local name, sweeping the siblings if they were not
+	 * computed yet.
+	 * 
+	 * @param selectors the selector list, or {@code null}.
+	 * @param typeName  the local name, or {@code null} if the positions are for
+	 *                  {@code selectors}.
+	 * @return the positions, or {@code null} if no cache was set.
+	 */
+	@SuppressWarnings("unchecked")
+	private SiblingIndexCache.Positions cachedPositions(SelectorList selectors,
+			String typeName) {
+		SiblingIndexCache cache = getSiblingIndexCache();
+		if (cache == null) {
+			return null;
+		}
+
+		Node parent = element.getParentNode();
+		Object key;
+		if (typeName != null) {
+			key = typeName;
+		} else if (selectors != null) {
+			key = selectors;
+		} else {
+			key = SiblingIndexCache.ALL_ELEMENTS;
+		}
+
+		SiblingIndexCache.Positions positions = cache.getPositions(parent, key);
+		if (positions == null) {
+			positions = cache.createPositions(parent, key);
+			Node node = parent.getFirstChild();
+			while (node != null) {
+				if (node.getNodeType() == Node.ELEMENT_NODE && (typeName != null
+						? typeName.equals(localName(node))
+						: matchSelectors(selectors, (E) node))) {
+					positions.add(node);
+				}
+				node = node.getNextSibling();
+			}
+		}
+		return positions;
+	}
+
 	private boolean matchSelectors(SelectorList selectors, E element) {
 		if (selectors == null) {
 			return true;
@@ -185,8 +239,16 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 
 	@Override
 	protected boolean isNthOfType(int step, int offset) {
+		int idx;
+		SiblingIndexCache.Positions positions = cachedPositions(null, getLocalName());
+		if (positions != null) {
+			idx = positions.indexOf(element);
+			idx -= offset;
+			return step == 0 ? idx == 0 : Math.floorMod(idx, step) == 0;
+		}
+
 		Node node = element.getParentNode().getFirstChild();
-		int idx = 0;
+		idx = 0;
 		while (node != null) {
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& getLocalName().equals(localName(node))) {
@@ -204,8 +266,16 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 
 	@Override
 	protected boolean isNthLastOfType(int step, int offset) {
+		int idx;
+		SiblingIndexCache.Positions positions = cachedPositions(null, getLocalName());
+		if (positions != null) {
+			idx = positions.reverseIndexOf(element);
+			idx -= offset;
+			return step == 0 ? idx == 0 : Math.floorMod(idx, step) == 0;
+		}
+
 		Node node = element.getParentNode().getLastChild();
-		int idx = 0;
+		idx = 0;
 		while (node != null) {
 			if (node.getNodeType() == Node.ELEMENT_NODE
 					&& getLocalName().equals(localName(node))) {
@@ -408,6 +478,10 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 		 * In (X)HTML, the lang attribute contains the language, but that may
 		 * not be true for other XML.
 		 */
+		InheritedStateCache cache = getInheritedStateCache();
+		if (cache != null) {
+			return cache.getLanguage(element);
+		}
 		String lang = element.getAttribute("lang");
 		Node parent = element;
 		while (lang.length() == 0) {
@@ -426,6 +500,10 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 
 	@Override
 	protected Directionality getDirectionality() {
+		InheritedStateCache cache = getInheritedStateCache();
+		if (cache != null) {
+			return cache.getDirectionality(element);
+		}
 		return DirectionalityHelper.getDirectionality(element);
 	}
 
@@ -449,16 +527,56 @@ abstract public class BaseSelectorMatcher<E extends Element> extends AbstractSel
 	@Override
 	protected boolean scopeMatchDescendant(CombinatorSelector selector) {
 		SimpleSelector desc = selector.getSecondSelector();
+		RelativeSelectorCache cache = getRelativeSelectorCache();
+		if (cache != null) {
+			return descendantMatches(element, desc, cache);
+		}
 		Node first = element.getFirstChild();
 		return scopeMatchRecursive(first, desc);
 	}
 
 	@Override
 	public boolean matchesRelational(Selector selector) {
+		RelativeSelectorCache cache = getRelativeSelectorCache();
+		if (cache != null) {
+			return descendantMatches(element, selector, cache);
+		}
 		Node first = element.getFirstChild();
 		return scopeMatchRecursive(first, selector);
 	}
 
+	/**
+	 * Check whether the descendants of {@code parent} contain an element that
+	 * matches the selector, recording in the cache the result for {@code parent}
+	 * and for the descendants that were scanned.
+	 * 
+	 * @param parent the parent node.
+	 * @param desc   the selector.
+	 * @param cache  the cache.
+	 * @return {@code true} if a descendant matches the selector.
+	 */
+	private boolean descendantMatches(Node parent, Selector desc, RelativeSelectorCache cache) {
+		Boolean result = cache.getDescendantMatch(parent, desc);
+		if (result != null) {
+			return result;
+		}
+		boolean found = false;
+		Node node = parent.getFirstChild();
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				@SuppressWarnings("unchecked")
+				SelectorMatcher childSM = obtainSelectorMatcher((E) node);
+				if (childSM.matches(desc) || descendantMatches(node, desc, cache)) {
+					found = true;
+					break;
+				}
+			}
+			node = node.getNextSibling();
+		}
+		cache.setDescendantMatch(parent, desc, found);
+		return found;
+	}
+
 	private boolean scopeMatchRecursive(Node node, Selector desc) {
 		while (node != null) {
 			if (node.getNodeType() == Node.ELEMENT_NODE) {
@@ -0,0 +1,701 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import io.sf.carte.doc.style.css.SelectorMatcher;
+import io.sf.carte.doc.style.css.nsac.ArgumentCondition;
+import io.sf.carte.doc.style.css.nsac.AttributeCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorSelector;
+import io.sf.carte.doc.style.css.nsac.Condition;
+import io.sf.carte.doc.style.css.nsac.ConditionalSelector;
+import io.sf.carte.doc.style.css.nsac.ElementSelector;
+import io.sf.carte.doc.style.css.nsac.PositionalCondition;
+import io.sf.carte.doc.style.css.nsac.PseudoCondition;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.nsac.SimpleSelector;
+
+/**
+ * A selector that was translated into a tree of specialized matching nodes.
+ * <p>
+ * The selector type and condition type switches, the pseudo-class and argument
+ * name comparisons and the case handling of element names are resolved once at
+ * compile time, instead of at each element that is tested. The type, class and
+ * id selectors, the structural and positional pseudo-classes, the link and
+ * form state pseudo-classes, {@code :not()}, {@code :is()} and
+ * {@code :where()} have specialized nodes.
+ * </p>
+ * <p>
+ * The user action pseudo-classes (like {@code :hover}), {@code :dir()} and
+ * {@code :state()} are checked by name in the matcher. The conditions that
+ * have no specialized node (like the attribute conditions, the {@code of S}
+ * lists of {@code :nth-child()} or {@code :has()}) are delegated to the
+ * interpreter in {@link AbstractSelectorMatcher}, so a compiled selector always
+ * gives the same result as the selector it was compiled from.
+ * </p>
+ */
+abstract public class CompiledSelector {
+
+	private final Selector selector;
+
+	CompiledSelector(Selector selector) {
+		super();
+		this.selector = selector;
+	}
+
+	/**
+	 * Get the selector from which this one was compiled.
+	 *
+	 * @return the selector.
+	 */
+	public Selector getSelector() {
+		return selector;
+	}
+
+	/**
+	 * Does the given matcher match this selector?
+	 *
+	 * @param matcher the selector matcher.
+	 * @return {@code true} if the matcher matches this selector.
+	 */
+	public boolean matches(SelectorMatcher matcher) {
+		if (matcher instanceof AbstractSelectorMatcher) {
+			return match((AbstractSelectorMatcher) matcher);
+		}
+		return matcher.matches(selector);
+	}
+
+	/**
+	 * Does the given matcher match this selector?
+	 *
+	 * @param matcher the selector matcher.
+	 * @return {@code true} if the matcher matches this selector.
+	 */
+	abstract boolean match(AbstractSelectorMatcher matcher);
+
+	/**
+	 * Compile the given selector.
+	 *
+	 * @param selector the selector.
+	 * @return the compiled selector.
+	 */
+	public static CompiledSelector compile(Selector selector) {
+		switch (selector.getSelectorType()) {
+		case ELEMENT:
+			return new TypeSelector((ElementSelector) selector);
+		case UNIVERSAL:
+		case SCOPE_MARKER:
+			return new AnySelector(selector);
+		case CONDITIONAL:
+			return compileConditional((ConditionalSelector) selector);
+		case CHILD:
+			CombinatorSelector comb = (CombinatorSelector) selector;
+			return new ChildSelector(comb, compile(comb.getSelector()),
+					compile(comb.getSecondSelector()));
+		case DESCENDANT:
+			comb = (CombinatorSelector) selector;
+			return new DescendantSelector(comb, compile(comb.getSelector()),
+					compile(comb.getSecondSelector()));
+		case DIRECT_ADJACENT:
+			comb = (CombinatorSelector) selector;
+			return new AdjacentSelector(comb, compile(comb.getSelector()),
+					compile(comb.getSecondSelector()));
+		case SUBSEQUENT_SIBLING:
+			comb = (CombinatorSelector) selector;
+			return new SubsequentSiblingSelector(comb, compile(comb.getSelector()),
+					compile(comb.getSecondSelector()));
+		default:
+			return new InterpretedSelector(selector);
+		}
+	}
+
+	/**
+	 * Compile the selectors in the given list.
+	 *
+	 * @param selist the selector list.
+	 * @return the compiled selectors, in the order of the list.
+	 */
+	public static CompiledSelector[] compile(SelectorList selist) {
+		int sz = selist.getLength();
+		CompiledSelector[] compiled = new CompiledSelector[sz];
+		for (int i = 0; i < sz; i++) {
+			compiled[i] = compile(selist.item(i));
+		}
+		return compiled;
+	}
+
+	/**
+	 * Does the given matcher match any of the compiled selectors?
+	 *
+	 * @param compiled the compiled selectors.
+	 * @param matcher  the selector matcher.
+	 * @return {@code true} if the matcher matches any of the selectors.
+	 */
+	public static boolean matchesAny(CompiledSelector[] compiled, SelectorMatcher matcher) {
+		for (CompiledSelector sel : compiled) {
+			if (sel.matches(matcher)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static CompiledSelector compileConditional(ConditionalSelector selector) {
+		SimpleSelector simple = selector.getSimpleSelector();
+		ArrayList<ConditionNode> nodes = new ArrayList<>(2);
+		addConditionNodes(nodes, selector.getCondition(), simple);
+		return new CompoundSelector(selector, compile(simple),
+				nodes.toArray(new ConditionNode[0]));
+	}
+
+	private static void addConditionNodes(ArrayList<ConditionNode> nodes, Condition cond,
+			SimpleSelector simple) {
+		switch (cond.getConditionType()) {
+		case AND:
+			CombinatorCondition comb = (CombinatorCondition) cond;
+			int len = comb.getLength();
+			for (int i = 0; i < len; i++) {
+				addConditionNodes(nodes, comb.getCondition(i), simple);
+			}
+			break;
+		case CLASS:
+			nodes.add(new ClassNode(((AttributeCondition) cond).getValue()));
+			break;
+		case ID:
+			nodes.add(new IdNode(((AttributeCondition) cond).getValue()));
+			break;
+		case PSEUDO_CLASS:
+			PseudoCondition pseudocond = (PseudoCondition) cond;
+			String name = pseudocond.getName().toLowerCase(Locale.ROOT).intern();
+			String argument = pseudocond.getArgument();
+			int state = argument == null ? StateNode.stateOf(name) : -1;
+			if (state != -1) {
+				nodes.add(new StateNode(state));
+			} else {
+				nodes.add(new PseudoClassNode(name, argument));
+			}
+			break;
+		case ONLY_CHILD:
+			nodes.add(new StateNode(StateNode.ONLY_CHILD));
+			break;
+		case ONLY_TYPE:
+			nodes.add(new StateNode(StateNode.ONLY_OF_TYPE));
+			break;
+		case POSITIONAL:
+			nodes.add(new PositionalNode((PositionalCondition) cond));
+			break;
+		case SELECTOR_ARGUMENT:
+			ArgumentCondition argcond = (ArgumentCondition) cond;
+			String argname = argcond.getName();
+			if ("not".equals(argname)) {
+				nodes.add(new NotNode(compile(argcond.getSelectors())));
+				break;
+			} else if ("is".equals(argname) || "where".equals(argname)) {
+				nodes.add(new IsNode(compile(argcond.getSelectors())));
+				break;
+			}
+		default:
+			nodes.add(new InterpretedCondition(cond, simple));
+		}
+	}
+
+	/**
+	 * Fallback to the interpreter.
+	 */
+	private static class InterpretedSelector extends CompiledSelector {
+
+		InterpretedSelector(Selector selector) {
+			super(selector);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return matcher.matches(getSelector());
+		}
+
+	}
+
+	private static class AnySelector extends CompiledSelector {
+
+		AnySelector(Selector selector) {
+			super(selector);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return true;
+		}
+
+	}
+
+	private static class TypeSelector extends CompiledSelector {
+
+		private final String namespaceURI;
+
+		private final String localName;
+
+		/*
+		 * The interned lowercase local name, or null if any name matches.
+		 */
+		private final String lcLocalName;
+
+		TypeSelector(ElementSelector selector) {
+			super(selector);
+			namespaceURI = selector.getNamespaceURI();
+			String name = selector.getLocalName();
+			if (name == null || "*".equals(name)) {
+				localName = null;
+				lcLocalName = null;
+			} else {
+				localName = name;
+				lcLocalName = name.toLowerCase(Locale.ROOT).intern();
+			}
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			String nsuri = matcher.getNamespaceURI();
+			if (namespaceURI == null || namespaceURI.equals(nsuri)) {
+				if (lcLocalName == null) {
+					return true;
+				}
+				// The local name of the matcher is lowercase, and generally interned
+				String name = matcher.getLocalName();
+				return name == lcLocalName || name.equalsIgnoreCase(localName);
+			}
+			// Only matches no namespace
+			return namespaceURI.length() == 0 && nsuri == null;
+		}
+
+	}
+
+	private static class CompoundSelector extends CompiledSelector {
+
+		private final CompiledSelector simple;
+
+		private final ConditionNode[] conditions;
+
+		CompoundSelector(ConditionalSelector selector, CompiledSelector simple,
+				ConditionNode[] conditions) {
+			super(selector);
+			this.simple = simple;
+			this.conditions = conditions;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (!simple.match(matcher)) {
+				return false;
+			}
+			for (ConditionNode cond : conditions) {
+				if (!cond.match(matcher)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private static abstract class CombinatorNode extends CompiledSelector {
+
+		final CompiledSelector left;
+
+		final CompiledSelector right;
+
+		CombinatorNode(CombinatorSelector selector, CompiledSelector left,
+				CompiledSelector right) {
+			super(selector);
+			this.left = left;
+			this.right = right;
+		}
+
+	}
+
+	private static class ChildSelector extends CombinatorNode {
+
+		ChildSelector(CombinatorSelector selector, CompiledSelector left,
+				CompiledSelector right) {
+			super(selector, left, right);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (right.match(matcher)) {
+				AbstractSelectorMatcher parentSM = matcher.getParentSelectorMatcher();
+				return parentSM != null && left.match(parentSM);
+			}
+			return false;
+		}
+
+	}
+
+	private static class DescendantSelector extends CombinatorNode {
+
+		DescendantSelector(CombinatorSelector selector, CompiledSelector left,
+				CompiledSelector right) {
+			super(selector, left, right);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (right.match(matcher)) {
+				AbstractSelectorMatcher parentSM = matcher.getParentSelectorMatcher();
+				while (parentSM != null) {
+					if (left.match(parentSM)) {
+						return true;
+					}
+					parentSM = parentSM.getParentSelectorMatcher();
+				}
+			}
+			return false;
+		}
+
+	}
+
+	private static class AdjacentSelector extends CombinatorNode {
+
+		AdjacentSelector(CombinatorSelector selector, CompiledSelector left,
+				CompiledSelector right) {
+			super(selector, left, right);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (right.match(matcher)) {
+				AbstractSelectorMatcher siblingSM = matcher.getPreviousSiblingSelectorMatcher();
+				return siblingSM != null && left.match(siblingSM);
+			}
+			return false;
+		}
+
+	}
+
+	private static class SubsequentSiblingSelector extends CombinatorNode {
+
+		SubsequentSiblingSelector(CombinatorSelector selector, CompiledSelector left,
+				CompiledSelector right) {
+			super(selector, left, right);
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (right.match(matcher)) {
+				AbstractSelectorMatcher siblingSM = matcher.getPreviousSiblingSelectorMatcher();
+				while (siblingSM != null) {
+					if (left.match(siblingSM)) {
+						return true;
+					}
+					siblingSM = siblingSM.getPreviousSiblingSelectorMatcher();
+				}
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * A condition in a compound selector, that is tested after the simple
+	 * selector.
+	 */
+	private static abstract class ConditionNode {
+
+		abstract boolean match(AbstractSelectorMatcher matcher);
+
+	}
+
+	/**
+	 * Fallback to the interpreter.
+	 */
+	private static class InterpretedCondition extends ConditionNode {
+
+		private final Condition condition;
+
+		private final SimpleSelector simple;
+
+		InterpretedCondition(Condition condition, SimpleSelector simple) {
+			super();
+			this.condition = condition;
+			this.simple = simple;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return matcher.matchCondition(condition, simple);
+		}
+
+	}
+
+	private static class ClassNode extends ConditionNode {
+
+		private final String className;
+
+		ClassNode(String className) {
+			super();
+			this.className = className;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return matcher.matchesClass(className);
+		}
+
+	}
+
+	private static class IdNode extends ConditionNode {
+
+		private final String id;
+
+		IdNode(String id) {
+			super();
+			this.id = id;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return matcher.matchesId(id);
+		}
+
+	}
+
+	/**
+	 * A non-functional pseudo-class that is answered by a single method of the
+	 * matcher.
+	 */
+	private static class StateNode extends ConditionNode {
+
+		static final int ONLY_CHILD = 0;
+		static final int ONLY_OF_TYPE = 1;
+		static final int ROOT = 2;
+		static final int EMPTY = 3;
+		static final int BLANK = 4;
+		static final int ANY_LINK = 5;
+		static final int LINK = 6;
+		static final int VISITED = 7;
+		static final int TARGET = 8;
+		static final int DISABLED = 9;
+		static final int ENABLED = 10;
+		static final int READ_WRITE = 11;
+		static final int READ_ONLY = 12;
+		static final int PLACEHOLDER_SHOWN = 13;
+		static final int DEFAULT = 14;
+		static final int CHECKED = 15;
+		static final int INDETERMINATE = 16;
+
+		private final int state;
+
+		StateNode(int state) {
+			super();
+			this.state = state;
+		}
+
+		/**
+		 * Get the state that corresponds to the given pseudo-class.
+		 * 
+		 * @param name the lowercase pseudo-class name.
+		 * @return the state, or {@code -1} if the pseudo-class has no state node.
+		 */
+		static int stateOf(String name) {
+			switch (name) {
+			case "only-child":
+				return ONLY_CHILD;
+			case "only-of-type":
+				return ONLY_OF_TYPE;
+			case "root":
+				return ROOT;
+			case "empty":
+				return EMPTY;
+			case "blank":
+				return BLANK;
+			case "any-link":
+				return ANY_LINK;
+			case "link":
+				return LINK;
+			case "visited":
+				return VISITED;
+			case "target":
+				return TARGET;
+			case "disabled":
+				return DISABLED;
+			case "enabled":
+				return ENABLED;
+			case "read-write":
+				return READ_WRITE;
+			case "read-only":
+				return READ_ONLY;
+			case "placeholder-shown":
+				return PLACEHOLDER_SHOWN;
+			case "default":
+				return DEFAULT;
+			case "checked":
+				return CHECKED;
+			case "indeterminate":
+				return INDETERMINATE;
+			default:
+				return -1;
+			}
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			switch (state) {
+			case ONLY_CHILD:
+				return matcher.isOnlyChild();
+			case ONLY_OF_TYPE:
+				return matcher.isOnlyOfType();
+			case ROOT:
+				return matcher.isRoot();
+			case EMPTY:
+				return matcher.isEmpty();
+			case BLANK:
+				return matcher.isBlank();
+			case ANY_LINK:
+				return matcher.isAnyLink();
+			case LINK:
+				return matcher.isNotVisitedLink();
+			case VISITED:
+				return matcher.isVisitedLink();
+			case TARGET:
+				return matcher.isTarget();
+			case DISABLED:
+				return matcher.isDisabled();
+			case ENABLED:
+				return matcher.isEnabled();
+			case READ_WRITE:
+				return matcher.isReadWrite();
+			case READ_ONLY:
+				return !matcher.isReadWrite();
+			case PLACEHOLDER_SHOWN:
+				return matcher.isPlaceholderShown();
+			case DEFAULT:
+				return matcher.isUIDefault();
+			case CHECKED:
+				return matcher.isChecked();
+			default:
+				return matcher.isIndeterminate();
+			}
+		}
+
+	}
+
+	/**
+	 * The {@code :first-child}, {@code :nth-child()}, {@code :nth-of-type()}
+	 * and similar pseudo-classes, with the step and offset resolved at compile
+	 * time.
+	 */
+	private static class PositionalNode extends ConditionNode {
+
+		private final int step;
+
+		private final int offset;
+
+		private final boolean forward;
+
+		private final boolean ofType;
+
+		private final SelectorList ofList;
+
+		PositionalNode(PositionalCondition cond) {
+			super();
+			this.step = cond.getFactor();
+			this.offset = cond.getOffset();
+			this.forward = cond.isForwardCondition();
+			this.ofType = cond.isOfType();
+			this.ofList = cond.getOfList();
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			if (ofType) {
+				return forward ? matcher.isNthOfType(step, offset)
+						: matcher.isNthLastOfType(step, offset);
+			}
+			int idx = forward ? matcher.indexOf(ofList) : matcher.reverseIndexOf(ofList);
+			if (idx == -1) {
+				return false;
+			}
+			idx -= offset;
+			return step == 0 ? idx == 0 : Math.floorMod(idx, step) == 0;
+		}
+
+	}
+
+	/**
+	 * The other pseudo-classes, like the user action pseudo-classes or
+	 * {@code :dir()}.
+	 */
+	private static class PseudoClassNode extends ConditionNode {
+
+		private final String name;
+
+		private final String argument;
+
+		PseudoClassNode(String name, String argument) {
+			super();
+			this.name = name;
+			this.argument = argument;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			return matcher.matchesPseudoClass(name, argument);
+		}
+
+	}
+
+	private static class NotNode extends ConditionNode {
+
+		private final CompiledSelector[] selectors;
+
+		NotNode(CompiledSelector[] selectors) {
+			super();
+			this.selectors = selectors;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			for (CompiledSelector sel : selectors) {
+				if (sel.match(matcher)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private static class IsNode extends ConditionNode {
+
+		private final CompiledSelector[] selectors;
+
+		IsNode(CompiledSelector[] selectors) {
+			super();
+			this.selectors = selectors;
+		}
+
+		@Override
+		boolean match(AbstractSelectorMatcher matcher) {
+			for (CompiledSelector sel : selectors) {
+				if (sel.match(matcher)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -12,9 +12,9 @@
 package io.sf.carte.doc.style.css.om;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
@@ -129,6 +129,25 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 
 	private transient Set<String> attrTaintedProperties = null;
 
+	/**
+	 * Memoized computed values, by property name. May contain {@code null} values
+	 * for properties that could not be computed.
+	 */
+	private transient HashMap<String, StyleValue> computedValues = null;
+
+	/**
+	 * Memoized computed font size, in typographic points, or {@code NaN} if not
+	 * yet computed.
+	 */
+	private transient float computedFontSize = Float.NaN;
+
+	/**
+	 * Inherited custom properties with their {@code var()} substitutions already
+	 * resolved. Shared with the parent style when this one declares no custom
+	 * properties.
+	 */
+	private transient HashMap<String, LexicalUnit> resolvedCustomProperties = null;
+
 	protected ComputedCSSStyle(BaseDocumentCSSStyleSheet docSheet) {
 		super();
 		this.ownerSheet = docSheet;
@@ -162,6 +181,13 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 		return null;
 	}
 
+	@Override
+	void onDeclarationModify() {
+		computedValues = null;
+		computedFontSize = Float.NaN;
+		resolvedCustomProperties = null;
+	}
+
 	@Override
 	String getUnknownPropertyPriority(String propertyName) {
 		return checkShorthandPriority(propertyName);
@@ -300,6 +326,18 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 	 */
 	@Override
 	public StyleValue getCSSValue(String property) throws StyleDatabaseRequiredException {
+		if (computedValues != null && computedValues.containsKey(property)) {
+			return computedValues.get(property);
+		}
+		StyleValue comp = computeCSSValue(property);
+		if (computedValues == null) {
+			computedValues = new HashMap<>();
+		}
+		computedValues.put(property, comp);
+		return comp;
+	}
+
+	private StyleValue computeCSSValue(String property) throws StyleDatabaseRequiredException {
 		// Is a regular inherited property ?
 		boolean inherited = PropertyDatabase.getInstance().isInherited(property);
 		// Compute value
@@ -1297,6 +1335,9 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 				Set<String> ptySet = new HashSet<>(customPtySet.size() + 1);
 				ptySet.addAll(customPtySet);
 
+				// attr() values are specific to this element and property
+				counter.uncacheable = true;
+
 				LexicalUnit newlu = replacementAttrUnit(property, lu, counter, customPtySet, ptySet);
 
 				if (newlu != null) {
@@ -1410,12 +1451,18 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 		LexicalUnit lu;
 
 		if (checkPtySet.contains(customProperty)) {
+			// Errors must be reported for each property
+			counter.uncacheable = true;
 			computedStyleError(property, null, "Circularity evaluating custom property "
 					+ customProperty + ": " + checkPtySet.toString());
 			if (definition == null || (lu = definition.getInitialValue()) == null) {
 				return null;
 			}
 		} else {
+			if (inherited && (lu = getResolvedCustomProperties().get(customProperty)) != null) {
+				return lu.clone();
+			}
+
 			LexicalValue custom = getCustomPropertyValue(customProperty, inherited, counter,
 					checkPtySet);
 
@@ -1427,6 +1474,8 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 				// Verify whether we got another proxy value.
 				Set<String> ptySet = new HashSet<>(checkPtySet.size() + 1);
 				ptySet.add(customProperty);
+				boolean outerUncacheable = counter.uncacheable;
+				counter.uncacheable = false;
 				lu = replaceLexicalProxy(property, lu, counter, ptySet);
 				// Check syntax
 				if (definition != null) {
@@ -1437,6 +1486,10 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 						}
 					}
 				}
+				if (inherited && lu != null && !counter.uncacheable) {
+					getResolvedCustomProperties().put(customProperty, lu.clone());
+				}
+				counter.uncacheable |= outerUncacheable;
 				return lu;
 			} else {
 				if (definition != null) {
@@ -1463,6 +1516,38 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 		return replaceLexicalProxy(property, lu.clone(), counter, ptySet);
 	}
 
+	/**
+	 * Get the map of resolved inherited custom properties.
+	 * <p>
+	 * If this style does not declare custom properties, all of them are obtained
+	 * from the ancestors and resolve the same as in the parent style, so the map
+	 * of the parent is shared.
+	 * </p>
+	 * 
+	 * @return the map of resolved custom properties.
+	 */
+	private HashMap<String, LexicalUnit> getResolvedCustomProperties() {
+		if (resolvedCustomProperties == null) {
+			ComputedCSSStyle parent;
+			if (!hasCustomPropertyDeclarations() && (parent = getParentComputedStyle()) != null) {
+				resolvedCustomProperties = parent.getResolvedCustomProperties();
+			} else {
+				resolvedCustomProperties = new HashMap<>();
+			}
+		}
+		return resolvedCustomProperties;
+	}
+
+	private boolean hasCustomPropertyDeclarations() {
+		int len = getLength();
+		for (int i = 0; i < len; i++) {
+			if (isCustomPropertyName(item(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private LexicalUnit replacementAttrUnit(String propertyName, LexicalUnit attr,
 			CounterRef counter, Set<String> checkSet, Set<String> putSet) throws DOMException {
 		// Obtain attribute name and type (if set)
@@ -1552,10 +1637,7 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 			if (attrNode != null || lu == null) {
 				String s = ParseHelper.quote(attrvalue, '"');
 				try {
-					substValue = parser.parsePropertyValue(new StringReader(s));
-				} catch (IOException e) {
-					// This won't happen
-					substValue = null;
+					substValue = parser.parsePropertyValue(s);
 				} catch (CSSParseException e) {
 					// Possibly a budget error
 					computedStyleError(propertyName, attr.getCssText(),
@@ -1566,8 +1648,8 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 						substValue = lu.clone();
 					} else {
 						try {
-							substValue = parser.parsePropertyValue(new StringReader("\"\""));
-						} catch (CSSParseException | IOException e1) {
+							substValue = parser.parsePropertyValue("\"\"");
+						} catch (CSSParseException e1) {
 							substValue = null; // cannot happen
 						}
 					}
@@ -1589,10 +1671,7 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 
 			LexicalUnit substValue;
 			try {
-				substValue = parser.parsePropertyValue(new StringReader(attrvalue));
-			} catch (IOException e) {
-				// This won't happen
-				throw new IllegalStateException(e);
+				substValue = parser.parsePropertyValue(attrvalue);
 			} catch (CSSParseException e) {
 				computedStyleError(propertyName, attr.getCssText(),
 						"Error parsing attribute '" + attrname + "', value: " + attrvalue, e);
@@ -2169,6 +2248,13 @@ abstract public class ComputedCSSStyle extends BaseCSSStyleDeclaration implement
 	 */
 	@Override
 	public float getComputedFontSize() {
+		if (Float.isNaN(computedFontSize)) {
+			computedFontSize = computeFontSize();
+		}
+		return computedFontSize;
+	}
+
+	private float computeFontSize() {
 		StyleValue value = super.getCSSValue("font-size");
 		if (value != null) {
 			if (value.getPrimitiveType() == Type.INTERNAL) {
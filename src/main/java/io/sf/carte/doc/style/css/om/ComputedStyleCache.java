@@ -0,0 +1,137 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import io.sf.carte.doc.style.css.CSSElement;
+
+/**
+ * Cache of the computed styles of the elements of a document, keyed by element
+ * and pseudo-element.
+ * <p>
+ * The document clears the cache when it, or its style sheets, are modified.
+ * </p>
+ */
+public class ComputedStyleCache {
+
+	private final IdentityHashMap<CSSElement, ComputedCSSStyle> styles = new IdentityHashMap<>();
+
+	private final IdentityHashMap<CSSElement, HashMap<String, ComputedCSSStyle>> pseudoStyles = new IdentityHashMap<>();
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	public ComputedStyleCache() {
+		super();
+	}
+
+	/**
+	 * Get the cached computed style of the given element and pseudo-element.
+	 * 
+	 * @param elt       the element.
+	 * @param pseudoElt the pseudo-element, or {@code null} if none.
+	 * @return the computed style, or {@code null} if it is not in the cache.
+	 */
+	public ComputedCSSStyle get(CSSElement elt, String pseudoElt) {
+		ComputedCSSStyle style;
+		if (pseudoElt == null) {
+			style = styles.get(elt);
+		} else {
+			HashMap<String, ComputedCSSStyle> map = pseudoStyles.get(elt);
+			style = map != null ? map.get(pseudoElt) : null;
+		}
+		if (style == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return style;
+	}
+
+	/**
+	 * Put a computed style in the cache.
+	 * 
+	 * @param elt       the element.
+	 * @param pseudoElt the pseudo-element, or {@code null} if none.
+	 * @param style     the computed style.
+	 */
+	public void put(CSSElement elt, String pseudoElt, ComputedCSSStyle style) {
+		if (pseudoElt == null) {
+			styles.put(elt, style);
+		} else {
+			HashMap<String, ComputedCSSStyle> map = pseudoStyles.get(elt);
+			if (map == null) {
+				map = new HashMap<>(4);
+				pseudoStyles.put(elt, map);
+			}
+			map.put(pseudoElt, style);
+		}
+	}
+
+	/**
+	 * Remove all the styles from the cache.
+	 * <p>
+	 * The hit and miss counters are not reset.
+	 * </p>
+	 */
+	public void clear() {
+		if (!styles.isEmpty()) {
+			styles.clear();
+		}
+		if (!pseudoStyles.isEmpty()) {
+			pseudoStyles.clear();
+		}
+	}
+
+	/**
+	 * Get the number of styles in the cache.
+	 * 
+	 * @return the number of cached styles.
+	 */
+	public int size() {
+		int sz = styles.size();
+		for (HashMap<String, ComputedCSSStyle> map : pseudoStyles.values()) {
+			sz += map.size();
+		}
+		return sz;
+	}
+
+	/**
+	 * Get the number of requests that were found in the cache.
+	 * 
+	 * @return the number of cache hits.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Get the number of requests that were not found in the cache.
+	 * 
+	 * @return the number of cache misses.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Reset the hit and miss counters.
+	 */
+	public void resetCounters() {
+		hitCount = 0;
+		missCount = 0;
+	}
+
+}
@@ -26,6 +26,9 @@ class CounterRef {
 	// Counter for replaceBy()
 	int replaceCounter = 0;
 
+	// Whether the current substitution depends on more than the custom properties
+	boolean uncacheable = false;
+
 	boolean increment() {
 		counter++;
 		if (isInRange()) {
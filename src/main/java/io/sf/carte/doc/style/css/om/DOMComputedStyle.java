@@ -53,6 +53,15 @@ abstract public class DOMComputedStyle extends ComputedCSSStyle {
 		return parentStyle;
 	}
 
+	/**
+	 * Set the computed style of the parent element, when it is already known.
+	 * 
+	 * @param parentStyle the computed style of the parent element.
+	 */
+	void setParentComputedStyle(ComputedCSSStyle parentStyle) {
+		this.parentStyle = parentStyle;
+	}
+
 	/**
 	 * Gets the style database which is used to compute the style.
 	 * 
@@ -11,8 +11,17 @@
 
 package io.sf.carte.doc.style.css.om;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import org.w3c.dom.Node;
+
 import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.SelectorMatcher;
 import io.sf.carte.doc.style.css.nsac.Condition;
 
 /**
@@ -60,6 +69,359 @@ abstract public class DOMDocumentCSSStyleSheet extends BaseDocumentCSSStyleSheet
 		return computeStyle(style, elm.getSelectorMatcher(), pseudoElt, inline);
 	}
 
+	/**
+	 * Compute the styles of all the elements of the owner document, in document
+	 * order.
+	 * <p>
+	 * The document is walked once from the root element, and the style of each
+	 * element is given as the parent style of its children, so the ancestor styles
+	 * are not computed again. The ancestors that were already visited are also
+	 * used to quickly reject the descendant and child selectors that cannot match,
+	 * and the positions of the children of each element are computed once for all
+	 * the {@code :nth-*()} pseudo-classes.
+	 * </p>
+	 * <p>
+	 * The styles are computed for the current state of the document, which should
+	 * not be modified by the consumer.
+	 * </p>
+	 * 
+	 * @param consumer the consumer of the computed styles.
+	 */
+	public void computeAllStyles(Consumer<? super ComputedCSSStyle> consumer) {
+		if (ownerNode != null) {
+			CSSElement root = ownerNode.getDocumentElement();
+			if (root != null) {
+				computeSubtreeStyles(root, null, new AncestorFilter(), new SiblingIndexCache(),
+						new RelativeSelectorCache(), new InheritedStateCache(), consumer, null);
+			}
+		}
+	}
+
+	/**
+	 * Compute the styles of all the elements of the owner document, in parallel.
+	 * <p>
+	 * The document is split into subtrees that contain at least
+	 * {@code threshold} elements, and into runs of consecutive sibling subtrees
+	 * that are smaller but contain at least {@code threshold} elements together.
+	 * Those are styled by separate tasks in the given pool. Each task walks its
+	 * subtrees like {@link #computeAllStyles(Consumer)} does, so the style of an
+	 * element is computed before the styles of its children, but the consumer may
+	 * be called from several threads and not in document order.
+	 * </p>
+	 * <p>
+	 * The styles are only computed in parallel if the
+	 * {@link BaseCSSStyleSheetFactory#setConcurrentStyling(boolean) concurrent
+	 * read mode} of the factory is enabled; otherwise this method behaves like
+	 * {@link #computeAllStyles(Consumer)}. The document must not be modified until
+	 * this method returns.
+	 * </p>
+	 * 
+	 * @param pool      the pool that runs the styling tasks.
+	 * @param threshold the minimum number of elements that are styled by a
+	 *                  separate task.
+	 * @param consumer  the thread-safe consumer of the computed styles.
+	 */
+	public void computeAllStyles(ForkJoinPool pool, int threshold,
+			Consumer<? super ComputedCSSStyle> consumer) {
+		if (!getStyleSheetFactory().isConcurrentStyling()
+				|| ownerNode instanceof StylableDocumentWrapper) {
+			computeAllStyles(consumer);
+		} else if (ownerNode != null) {
+			CSSElement root = ownerNode.getDocumentElement();
+			if (root != null) {
+				pool.invoke(new SubtreeStylingTask(root, root.getNextSibling(), null, threshold,
+						consumer));
+			}
+		}
+	}
+
+	/**
+	 * Compute the styles of an element and its descendants.
+	 * <p>
+	 * The ancestor filter and the caches are set on the selector matcher of each
+	 * element only while its style is computed. The caches assume that the
+	 * document is not modified, so they are created by each styling pass and never
+	 * outlive it, and the entries of a subtree are removed once it was styled.
+	 * </p>
+	 * 
+	 * @param elm         the element.
+	 * @param parentStyle the computed style of the parent element, or {@code null}
+	 *                    if the element is the root.
+	 * @param filter      the filter with the ancestors of the element, or
+	 *                    {@code null} if it is not available.
+	 * @param indexCache  the cache of sibling positions.
+	 * @param relCache    the cache of relative selector results.
+	 * @param stateCache  the cache of languages and directionalities.
+	 * @param consumer    the consumer of the computed styles.
+	 * @param task        the task that can fork the large subtrees, or {@code null}
+	 *                    if the subtree must be styled by the current thread.
+	 */
+	private void computeSubtreeStyles(CSSElement elm, ComputedCSSStyle parentStyle,
+			AncestorFilter filter, SiblingIndexCache indexCache, RelativeSelectorCache relCache,
+			InheritedStateCache stateCache, Consumer<? super ComputedCSSStyle> consumer,
+			SubtreeStylingTask task) {
+		SelectorMatcher matcher = elm.getSelectorMatcher();
+		AbstractSelectorMatcher absMatcher;
+		if (matcher instanceof AbstractSelectorMatcher) {
+			absMatcher = (AbstractSelectorMatcher) matcher;
+		} else {
+			absMatcher = null;
+			// The descendants would miss this element in the filter
+			filter = null;
+		}
+
+		ComputedCSSStyle style = createComputedCSSStyle();
+		style.setOwnerNode(elm);
+		if (style instanceof DOMComputedStyle) {
+			((DOMComputedStyle) style).setParentComputedStyle(parentStyle);
+		}
+		if (absMatcher != null) {
+			absMatcher.setAncestorFilter(filter);
+			absMatcher.setSiblingIndexCache(indexCache);
+			absMatcher.setRelativeSelectorCache(relCache);
+			absMatcher.setInheritedStateCache(stateCache);
+		}
+		try {
+			style = computeStyle(style, matcher, null, (InlineStyle) elm.getStyle());
+		} finally {
+			if (absMatcher != null) {
+				absMatcher.setAncestorFilter(null);
+				absMatcher.setSiblingIndexCache(null);
+				absMatcher.setRelativeSelectorCache(null);
+				absMatcher.setInheritedStateCache(null);
+			}
+		}
+		consumer.accept(style);
+
+		Node node = elm.getFirstChild();
+		if (node == null) {
+			relCache.removeNode(elm);
+			stateCache.removeElement(elm);
+			return;
+		}
+		if (filter != null) {
+			filter.pushElement(absMatcher);
+		}
+		if (task == null) {
+			while (node != null) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					computeSubtreeStyles((CSSElement) node, style, filter, indexCache, relCache,
+							stateCache, consumer, null);
+				}
+				node = node.getNextSibling();
+			}
+		} else {
+			task.computeChildStyles(node, style, filter, indexCache, relCache, stateCache);
+		}
+		if (filter != null) {
+			filter.popElement();
+		}
+		// The positions of the children are no longer needed
+		indexCache.removeParent(elm);
+		// The ancestors were already styled, so the subtree results are not needed
+		relCache.removeNode(elm);
+		stateCache.removeElement(elm);
+	}
+
+	/**
+	 * Task that styles a range of sibling subtrees, and forks new tasks for the
+	 * large subtrees and runs of subtrees inside them.
+	 */
+	private class SubtreeStylingTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CSSElement first;
+
+		private final Node end;
+
+		private final ComputedCSSStyle parentStyle;
+
+		private final int threshold;
+
+		private final Consumer<? super ComputedCSSStyle> consumer;
+
+		private List<SubtreeStylingTask> forked = null;
+
+		/**
+		 * Create a task that styles a range of sibling subtrees.
+		 * 
+		 * @param first       the first element of the range.
+		 * @param end         the sibling that follows the last node of the range, or
+		 *                    {@code null} if the range includes the last child.
+		 * @param parentStyle the computed style of the parent of the range, or
+		 *                    {@code null} if {@code first} is the root element.
+		 * @param threshold   the minimum number of elements styled by a task.
+		 * @param consumer    the consumer of the computed styles.
+		 */
+		SubtreeStylingTask(CSSElement first, Node end, ComputedCSSStyle parentStyle,
+				int threshold, Consumer<? super ComputedCSSStyle> consumer) {
+			super();
+			this.first = first;
+			this.end = end;
+			this.parentStyle = parentStyle;
+			this.threshold = threshold;
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected void compute() {
+			SelectorMatcher matcher = first.getSelectorMatcher();
+			AncestorFilter filter = null;
+			if (matcher instanceof AbstractSelectorMatcher) {
+				filter = AncestorFilter.forAncestors((AbstractSelectorMatcher) matcher);
+			}
+			SiblingIndexCache indexCache = new SiblingIndexCache();
+			RelativeSelectorCache relCache = new RelativeSelectorCache();
+			InheritedStateCache stateCache = new InheritedStateCache();
+			Node node = first;
+			while (node != end) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					computeSubtreeStyles((CSSElement) node, parentStyle, filter, indexCache,
+							relCache, stateCache, consumer, this);
+				}
+				node = node.getNextSibling();
+			}
+			if (forked != null) {
+				for (SubtreeStylingTask task : forked) {
+					task.join();
+				}
+			}
+		}
+
+		/**
+		 * Style the given child and its following siblings.
+		 * <p>
+		 * Each subtree that has at least {@code threshold} elements is styled by a
+		 * new task, and so is each run of consecutive smaller subtrees once it reaches
+		 * {@code threshold} elements. The remaining subtrees are styled by this
+		 * thread.
+		 * </p>
+		 * 
+		 * @param node        the first child.
+		 * @param parentStyle the computed style of the parent.
+		 * @param filter      the filter with the ancestors of the children, or
+		 *                    {@code null} if it is not available.
+		 * @param indexCache  the cache of sibling positions.
+		 * @param relCache    the cache of relative selector results.
+		 * @param stateCache  the cache of languages and directionalities.
+		 */
+		void computeChildStyles(Node node, ComputedCSSStyle parentStyle, AncestorFilter filter,
+				SiblingIndexCache indexCache, RelativeSelectorCache relCache,
+				InheritedStateCache stateCache) {
+			Node runStart = null;
+			int runSize = 0;
+			while (node != null) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					int size = subtreeSize(node);
+					if (size == threshold) {
+						fork((CSSElement) node, node.getNextSibling(), parentStyle);
+						if (runStart != null) {
+							// The run is too small for a separate task
+							computeRangeStyles(runStart, node, parentStyle, filter, indexCache,
+									relCache, stateCache);
+							runStart = null;
+							runSize = 0;
+						}
+					} else {
+						if (runStart == null) {
+							runStart = node;
+						}
+						runSize += size;
+						if (runSize >= threshold) {
+							fork((CSSElement) runStart, node.getNextSibling(), parentStyle);
+							runStart = null;
+							runSize = 0;
+						}
+					}
+				}
+				node = node.getNextSibling();
+			}
+			if (runStart != null) {
+				computeRangeStyles(runStart, null, parentStyle, filter, indexCache, relCache,
+						stateCache);
+			}
+		}
+
+		private void computeRangeStyles(Node node, Node runEnd, ComputedCSSStyle parentStyle,
+				AncestorFilter filter, SiblingIndexCache indexCache,
+				RelativeSelectorCache relCache, InheritedStateCache stateCache) {
+			while (node != runEnd) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					// The descendants of a small subtree are styled by this thread
+					computeSubtreeStyles((CSSElement) node, parentStyle, filter, indexCache,
+							relCache, stateCache, consumer, null);
+				}
+				node = node.getNextSibling();
+			}
+		}
+
+		/**
+		 * Count the elements of the given subtree, up to {@code threshold}.
+		 * 
+		 * @param node the element.
+		 * @return the number of elements in the subtree, counting itself, or
+		 *         {@code threshold} if it has at least that number of elements.
+		 */
+		int subtreeSize(Node node) {
+			int count = 0;
+			Node top = node;
+			while (node != null) {
+				if (node.getNodeType() == Node.ELEMENT_NODE) {
+					if (++count == threshold) {
+						break;
+					}
+					Node child = node.getFirstChild();
+					if (child != null) {
+						node = child;
+						continue;
+					}
+				}
+				while (node != top && node.getNextSibling() == null) {
+					node = node.getParentNode();
+				}
+				if (node == top) {
+					break;
+				}
+				node = node.getNextSibling();
+			}
+			return count;
+		}
+
+		/**
+		 * Fork a task that styles a range of sibling subtrees.
+		 * <p>
+		 * The computed styles memoize the values that are obtained from them, so the
+		 * new task is given a private copy of the ancestor styles.
+		 * </p>
+		 * 
+		 * @param first       the first element of the range.
+		 * @param end         the sibling that follows the range, or {@code null}.
+		 * @param parentStyle the computed style of the parent of the range.
+		 */
+		void fork(CSSElement first, Node end, ComputedCSSStyle parentStyle) {
+			SubtreeStylingTask task = new SubtreeStylingTask(first, end,
+					copyStyleChain(parentStyle), threshold, consumer);
+			task.fork();
+			if (forked == null) {
+				forked = new ArrayList<>();
+			}
+			forked.add(task);
+		}
+
+	}
+
+	private static ComputedCSSStyle copyStyleChain(ComputedCSSStyle style) {
+		ComputedCSSStyle copy = style.clone();
+		if (copy instanceof DOMComputedStyle) {
+			ComputedCSSStyle parent = ((DOMComputedStyle) style).getParentComputedStyle();
+			if (parent != null) {
+				((DOMComputedStyle) copy).setParentComputedStyle(copyStyleChain(parent));
+			}
+		}
+		return copy;
+	}
+
 	abstract protected DOMDocumentCSSStyleSheet createDocumentStyleSheet(String medium, int origin);
 
 	@Override
@@ -89,4 +451,15 @@ abstract public class DOMDocumentCSSStyleSheet extends BaseDocumentCSSStyleSheet
 		return myClone;
 	}
 
+	@Override
+	public DOMDocumentCSSStyleSheet sharedClone(String targetMedium) {
+		if (targetMedium == null) {
+			targetMedium = getTargetMedium();
+		}
+		DOMDocumentCSSStyleSheet myClone = createDocumentStyleSheet(targetMedium, getOrigin());
+		myClone.setOwnerDocument(ownerNode);
+		copySharedRulesTo(myClone);
+		return myClone;
+	}
+
 }
@@ -94,6 +94,7 @@ abstract public class GroupingRule extends BaseCSSRule implements CSSGroupingRul
 	 */
 	@Override
 	public int insertRule(String rule, int index) throws DOMException {
+		checkModifiable();
 		if (index < 0 || index > cssRules.size()) {
 			throw new DOMException(DOMException.INDEX_SIZE_ERR, "Index out of bounds in rule list");
 		}
@@ -179,11 +180,13 @@ abstract public class GroupingRule extends BaseCSSRule implements CSSGroupingRul
 
 	@Override
 	public void deleteRule(int index) throws DOMException {
+		checkModifiable();
 		if (index < 0 || index >= cssRules.size()) {
 			throw new DOMException(DOMException.INDEX_SIZE_ERR,
 					"Could not delete rule in rule list: index out of bounds.");
 		}
 		cssRules.remove(index);
+		notifyCascadeModify();
 	}
 
 	/**
@@ -200,7 +203,9 @@ abstract public class GroupingRule extends BaseCSSRule implements CSSGroupingRul
 	 */
 	int insertRule(AbstractCSSRule cssrule, int index) {
 		cssrule.setParentRule(this);
-		return cssRules.insertRule(cssrule, index);
+		index = cssRules.insertRule(cssrule, index);
+		notifyCascadeModify();
+		return index;
 	}
 
 	/**
@@ -213,6 +218,30 @@ abstract public class GroupingRule extends BaseCSSRule implements CSSGroupingRul
 	public void addRule(AbstractCSSRule cssrule) {
 		cssRules.add(cssrule);
 		cssrule.setParentRule(this);
+		notifyCascadeModify();
+	}
+
+	/**
+	 * Notify the parent style sheet that the rules participating in the cascade
+	 * were modified.
+	 */
+	void notifyCascadeModify() {
+		AbstractCSSStyleSheet sheet = getParentStyleSheet();
+		if (sheet != null) {
+			sheet.onCascadeModify();
+		}
+	}
+
+	/**
+	 * Check whether the rules contained by this grouping rule apply to the given
+	 * style and target medium.
+	 * 
+	 * @param style        the style being computed.
+	 * @param targetMedium the target medium, or {@code null} if all media.
+	 * @return {@code true} if the condition of this rule (if any) holds.
+	 */
+	boolean matchesCondition(ComputedCSSStyle style, String targetMedium) {
+		return true;
 	}
 
 	@Override
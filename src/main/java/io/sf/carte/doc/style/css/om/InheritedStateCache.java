@@ -0,0 +1,115 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.IdentityHashMap;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import io.sf.carte.doc.DirectionalityHelper;
+import io.sf.carte.doc.DirectionalityHelper.Directionality;
+
+/**
+ * A cache of the language and directionality of elements, for the
+ * {@code :lang()} and {@code :dir()} pseudo-classes.
+ * <p>
+ * Both are inherited from the ancestors, so the state of an element is obtained
+ * from the one of its parent element, which in a top-down traversal is already
+ * in the cache.
+ * </p>
+ */
+class InheritedStateCache {
+
+	private final IdentityHashMap<Node, String> langMap = new IdentityHashMap<>();
+
+	private final IdentityHashMap<Node, Directionality> dirMap = new IdentityHashMap<>();
+
+	InheritedStateCache() {
+		super();
+	}
+
+	/**
+	 * Get the language of the given element, as specified by the {@code lang}
+	 * attribute of the element or of its nearest ancestor that has it.
+	 * 
+	 * @param element the element.
+	 * @return the language, or the empty string if none was specified.
+	 */
+	String getLanguage(Element element) {
+		String lang = langMap.get(element);
+		if (lang == null) {
+			lang = element.getAttribute("lang");
+			if (lang.length() == 0) {
+				Element parent = parentElement(element);
+				if (parent != null) {
+					lang = getLanguage(parent);
+				}
+			}
+			langMap.put(element, lang);
+		}
+		return lang;
+	}
+
+	private static Element parentElement(Node node) {
+		node = node.getParentNode();
+		while (node != null) {
+			if (node instanceof Element) {
+				return (Element) node;
+			}
+			node = node.getParentNode();
+		}
+		return null;
+	}
+
+	/**
+	 * Get the directionality of the given element.
+	 * 
+	 * @param element the element.
+	 * @return the directionality.
+	 */
+	Directionality getDirectionality(Element element) {
+		Directionality dir = dirMap.get(element);
+		if (dir == null) {
+			dir = DirectionalityHelper.getOwnDirectionality(element);
+			if (dir == null) {
+				Node node = element.getParentNode();
+				if (node != null && node.getNodeType() == Node.ELEMENT_NODE) {
+					dir = getDirectionality((Element) node);
+				} else {
+					dir = Directionality.LTR;
+				}
+			}
+			dirMap.put(element, dir);
+		}
+		return dir;
+	}
+
+	/**
+	 * Remove the state of the given element, once it is no longer needed.
+	 * 
+	 * @param element the element.
+	 */
+	void removeElement(Node element) {
+		langMap.remove(element);
+		dirMap.remove(element);
+	}
+
+	/**
+	 * Remove all the cached states.
+	 */
+	void clear() {
+		langMap.clear();
+		dirMap.clear();
+	}
+
+}
@@ -0,0 +1,329 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.sf.carte.doc.style.css.nsac.ArgumentCondition;
+import io.sf.carte.doc.style.css.nsac.AttributeCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorSelector;
+import io.sf.carte.doc.style.css.nsac.Condition;
+import io.sf.carte.doc.style.css.nsac.ConditionalSelector;
+import io.sf.carte.doc.style.css.nsac.PositionalCondition;
+import io.sf.carte.doc.style.css.nsac.PseudoCondition;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+
+/**
+ * The elements whose selector matching may be affected by a change in a class,
+ * id, attribute or pseudo-class of an element, according to the selectors of a
+ * set of rules.
+ * <p>
+ * For each class, id, attribute name and pseudo-class that appears in the
+ * selectors, a set of flags tells which relatives of the changed element are
+ * affected: the element itself, its descendants, its siblings (and their
+ * descendants) or, for features inside {@code :has()}, its ancestors.
+ * </p>
+ */
+class InvalidationSets {
+
+	/**
+	 * The element itself is affected.
+	 */
+	static final int SELF = 1;
+
+	/**
+	 * The descendants of the element are affected.
+	 */
+	static final int DESCENDANTS = 2;
+
+	/**
+	 * The element siblings are affected.
+	 */
+	static final int SIBLINGS = 4;
+
+	/**
+	 * The descendants of the element siblings are affected.
+	 */
+	static final int SIBLING_DESCENDANTS = 8;
+
+	/**
+	 * The ancestors of the element, and the preceding siblings of the element and
+	 * of its ancestors are affected.
+	 */
+	static final int RELATIONAL = 16;
+
+	/**
+	 * Any element in the document may be affected.
+	 */
+	static final int DOCUMENT = 32;
+
+	private final HashMap<String, Integer> classMap = new HashMap<>();
+
+	private final HashMap<String, Integer> lcClassMap = new HashMap<>();
+
+	private final HashMap<String, Integer> idMap = new HashMap<>();
+
+	private final HashMap<String, Integer> lcIdMap = new HashMap<>();
+
+	private final HashMap<String, Integer> attrMap = new HashMap<>();
+
+	private final HashMap<String, Integer> pseudoClassMap = new HashMap<>();
+
+	/*
+	 * Whether a selector has a :has() pseudo-class.
+	 */
+	private boolean relational = false;
+
+	/*
+	 * The relations of the elements that are reached through a sibling combinator.
+	 */
+	private int siblingFlags = 0;
+
+	InvalidationSets() {
+		super();
+	}
+
+	/**
+	 * Add the features of the selectors in the given list.
+	 *
+	 * @param selist the selector list.
+	 */
+	void addSelectors(SelectorList selist) {
+		for (Selector selector : selist) {
+			addSelector(selector, SELF);
+		}
+	}
+
+	private void addSelector(Selector selector, int rel) {
+		switch (selector.getSelectorType()) {
+		case CONDITIONAL:
+			ConditionalSelector condsel = (ConditionalSelector) selector;
+			addSelector(condsel.getSimpleSelector(), rel);
+			addCondition(condsel.getCondition(), rel);
+			break;
+		case CHILD:
+		case DESCENDANT:
+			CombinatorSelector comb = (CombinatorSelector) selector;
+			addSelector(comb.getSecondSelector(), rel);
+			addSelector(comb.getSelector(), ancestorRelation(rel));
+			break;
+		case DIRECT_ADJACENT:
+		case SUBSEQUENT_SIBLING:
+			comb = (CombinatorSelector) selector;
+			addSelector(comb.getSecondSelector(), rel);
+			int sibRel = siblingRelation(rel);
+			siblingFlags |= sibRel & (SIBLINGS | SIBLING_DESCENDANTS);
+			addSelector(comb.getSelector(), sibRel);
+			break;
+		default:
+		}
+	}
+
+	/**
+	 * Compute the relation of an ancestor of the element that has the given
+	 * relation.
+	 */
+	private static int ancestorRelation(int rel) {
+		if ((rel & (SIBLINGS | SIBLING_DESCENDANTS)) != 0) {
+			// The siblings of an element are descendants of its ancestors
+			rel = (rel & ~(SIBLINGS | SIBLING_DESCENDANTS)) | DESCENDANTS;
+		}
+		if ((rel & SELF) != 0) {
+			rel = (rel & ~SELF) | DESCENDANTS;
+		}
+		return rel;
+	}
+
+	/**
+	 * Compute the relation of a sibling of the element that has the given
+	 * relation.
+	 */
+	private static int siblingRelation(int rel) {
+		if ((rel & SELF) != 0) {
+			rel = (rel & ~SELF) | SIBLINGS;
+		}
+		if ((rel & DESCENDANTS) != 0) {
+			rel = (rel & ~DESCENDANTS) | SIBLING_DESCENDANTS;
+		}
+		return rel;
+	}
+
+	/**
+	 * Compute the relation for a feature whose effect is inherited by the
+	 * descendants, like the language.
+	 */
+	private static int inheritedRelation(int rel) {
+		if ((rel & SELF) != 0) {
+			rel |= DESCENDANTS;
+		}
+		if ((rel & SIBLINGS) != 0) {
+			rel |= SIBLING_DESCENDANTS;
+		}
+		return rel;
+	}
+
+	private void addCondition(Condition cond, int rel) {
+		switch (cond.getConditionType()) {
+		case AND:
+			CombinatorCondition comb = (CombinatorCondition) cond;
+			int len = comb.getLength();
+			for (int i = 0; i < len; i++) {
+				addCondition(comb.getCondition(i), rel);
+			}
+			break;
+		case CLASS:
+			String value = ((AttributeCondition) cond).getValue();
+			add(classMap, value, rel);
+			add(lcClassMap, value.toLowerCase(Locale.ROOT), rel);
+			break;
+		case ID:
+			value = ((AttributeCondition) cond).getValue();
+			add(idMap, value, rel);
+			add(lcIdMap, value.toLowerCase(Locale.ROOT), rel);
+			break;
+		case ATTRIBUTE:
+		case ONE_OF_ATTRIBUTE:
+		case BEGIN_HYPHEN_ATTRIBUTE:
+		case BEGINS_ATTRIBUTE:
+		case ENDS_ATTRIBUTE:
+		case SUBSTRING_ATTRIBUTE:
+			String name = ((AttributeCondition) cond).getLocalName();
+			add(attrMap, name.toLowerCase(Locale.ROOT), rel);
+			break;
+		case LANG:
+			add(attrMap, "lang", inheritedRelation(rel));
+			break;
+		case PSEUDO_CLASS:
+			name = ((PseudoCondition) cond).getName().toLowerCase(Locale.ROOT);
+			if ("dir".equals(name)) {
+				add(attrMap, "dir", inheritedRelation(rel));
+			} else {
+				add(pseudoClassMap, name, rel);
+			}
+			break;
+		case POSITIONAL:
+			SelectorList oflist = ((PositionalCondition) cond).getOfList();
+			if (oflist != null) {
+				// Whether a sibling matches changes the position of the element
+				for (Selector selector : oflist) {
+					addSelector(selector, siblingRelation(rel));
+				}
+			}
+			break;
+		case SELECTOR_ARGUMENT:
+			ArgumentCondition argcond = (ArgumentCondition) cond;
+			SelectorList selist = argcond.getSelectors();
+			if ("has".equals(argcond.getName())) {
+				relational = true;
+				/*
+				 * The subject is an ancestor or preceding sibling of the changed element, and
+				 * more distant relations would have to be tracked from each of those.
+				 */
+				int hasRel = rel == SELF ? RELATIONAL : DOCUMENT;
+				for (Selector selector : selist) {
+					addSelector(selector, hasRel);
+				}
+			} else {
+				for (Selector selector : selist) {
+					addSelector(selector, rel);
+				}
+			}
+			break;
+		default:
+		}
+	}
+
+	private static void add(HashMap<String, Integer> map, String key, int rel) {
+		Integer flags = map.get(key);
+		map.put(key, flags == null ? rel : flags | rel);
+	}
+
+	private static int flags(HashMap<String, Integer> map, String key) {
+		Integer flags = map.get(key);
+		return flags == null ? 0 : flags;
+	}
+
+	/**
+	 * Get the relatives affected by a change in the given class.
+	 *
+	 * @param className       the class name.
+	 * @param caseInsensitive {@code true} if class names are matched
+	 *                        case-insensitively (quirks mode).
+	 * @return the flags.
+	 */
+	int getClassFlags(String className, boolean caseInsensitive) {
+		if (caseInsensitive) {
+			return flags(lcClassMap, className.toLowerCase(Locale.ROOT));
+		}
+		return flags(classMap, className);
+	}
+
+	/**
+	 * Get the relatives affected by a change in the given id.
+	 *
+	 * @param id              the id.
+	 * @param caseInsensitive {@code true} if ids are matched case-insensitively
+	 *                        (quirks mode).
+	 * @return the flags.
+	 */
+	int getIdFlags(String id, boolean caseInsensitive) {
+		if (caseInsensitive) {
+			return flags(lcIdMap, id.toLowerCase(Locale.ROOT));
+		}
+		return flags(idMap, id);
+	}
+
+	/**
+	 * Get the relatives affected by a change in the given attribute, as seen by
+	 * attribute selectors.
+	 *
+	 * @param name the lowercase attribute name.
+	 * @return the flags.
+	 */
+	int getAttributeFlags(String name) {
+		return flags(attrMap, name);
+	}
+
+	/**
+	 * Get the relatives affected by a change in the given pseudo-class.
+	 *
+	 * @param name the lowercase pseudo-class name.
+	 * @return the flags.
+	 */
+	int getPseudoClassFlags(String name) {
+		return flags(pseudoClassMap, name);
+	}
+
+	/**
+	 * Get the relatives of an element that can be reached from it through a
+	 * sibling combinator.
+	 *
+	 * @return the {@code SIBLINGS} and {@code SIBLING_DESCENDANTS} flags, or zero
+	 *         if no selector has a sibling combinator.
+	 */
+	int getSiblingFlags() {
+		return siblingFlags;
+	}
+
+	/**
+	 * Check whether any selector has a {@code :has()} pseudo-class.
+	 *
+	 * @return {@code true} if a selector has a {@code :has()} pseudo-class.
+	 */
+	boolean isRelational() {
+		return relational;
+	}
+
+}
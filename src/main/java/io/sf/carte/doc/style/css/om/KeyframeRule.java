@@ -141,6 +141,7 @@ public class KeyframeRule extends BaseCSSDeclarationRule implements CSSKeyframeR
 
 	@Override
 	public void setCssText(String cssText) throws DOMException {
+		checkModifiable();
 		PropertyCSSHandler handler = new MyKFHandler();
 		handler.setLexicalPropertyListener(getStyle());
 
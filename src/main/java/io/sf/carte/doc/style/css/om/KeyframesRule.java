@@ -61,6 +61,7 @@ public class KeyframesRule extends BaseCSSRule implements CSSKeyframesRule {
 
 	@Override
 	public void setName(String keyframesName) {
+		checkModifiable();
 		name = keyframesName;
 	}
 
@@ -82,6 +83,7 @@ public class KeyframesRule extends BaseCSSRule implements CSSKeyframesRule {
 	 */
 	@Override
 	public void appendRule(String rule) throws DOMException {
+		checkModifiable();
 		KeyframeRule krule = new KeyframeRule(KeyframesRule.this);
 		krule.setCssText(rule);
 		cssRules.add(krule);
@@ -89,6 +91,7 @@ public class KeyframesRule extends BaseCSSRule implements CSSKeyframesRule {
 
 	@Override
 	public void deleteRule(String select) {
+		checkModifiable();
 		try {
 			select = keyframeSelector(select);
 		} catch (DOMException e) {
@@ -0,0 +1,146 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import io.sf.carte.doc.style.css.CSSCanvas;
+import io.sf.carte.doc.style.css.StyleDatabase;
+import io.sf.carte.doc.style.css.Viewport;
+
+/**
+ * The results of the evaluation of the media conditions of a {@link RuleIndex},
+ * for a given state of the canvas.
+ * <p>
+ * The state (or generation) of the canvas is given by the canvas itself, the
+ * target medium, the style database and the dimensions of the viewport (or of
+ * the device, if the canvas has no viewport). When any of those change, a new
+ * cache has to be used.
+ * </p>
+ * <p>
+ * The results are stored without synchronization: the evaluation of a media
+ * condition always gives the same result for a given state, so concurrent
+ * writers can only store the same value.
+ * </p>
+ */
+class MediaConditionCache {
+
+	/*
+	 * Condition states, same as in RuleIndex.
+	 */
+	static final byte UNKNOWN = 0;
+
+	static final byte MATCHES = 1;
+
+	static final byte NO_MATCH = 2;
+
+	private final CSSCanvas canvas;
+
+	private final String targetMedium;
+
+	private final StyleDatabase styleDatabase;
+
+	/*
+	 * The width and height of the viewport or, if there is no viewport, of the
+	 * device.
+	 */
+	private final float width;
+
+	private final float height;
+
+	private final byte[] states;
+
+	/**
+	 * Create a cache for the current state of the given canvas.
+	 * 
+	 * @param canvas       the canvas, or {@code null} if there is none.
+	 * @param targetMedium the target medium.
+	 * @param length       the number of conditions.
+	 */
+	MediaConditionCache(CSSCanvas canvas, String targetMedium, int length) {
+		super();
+		this.canvas = canvas;
+		this.targetMedium = targetMedium;
+		if (canvas != null) {
+			styleDatabase = canvas.getStyleDatabase();
+			Viewport viewport = canvas.getViewport();
+			if (viewport != null) {
+				width = viewport.getViewportWidth();
+				height = viewport.getViewportHeight();
+			} else if (styleDatabase != null) {
+				width = styleDatabase.getDeviceWidth();
+				height = styleDatabase.getDeviceHeight();
+			} else {
+				width = -1f;
+				height = -1f;
+			}
+		} else {
+			styleDatabase = null;
+			width = -1f;
+			height = -1f;
+		}
+		states = new byte[length];
+	}
+
+	/**
+	 * Check whether this cache holds results for the current state of the given
+	 * canvas.
+	 * 
+	 * @param canvas       the canvas, or {@code null} if there is none.
+	 * @param targetMedium the target medium.
+	 * @return {@code true} if the results of this cache are valid.
+	 */
+	boolean isValidFor(CSSCanvas canvas, String targetMedium) {
+		if (canvas != this.canvas || !equalMedia(targetMedium)) {
+			return false;
+		}
+		if (canvas == null) {
+			return true;
+		}
+		StyleDatabase sdb = canvas.getStyleDatabase();
+		if (sdb != styleDatabase) {
+			return false;
+		}
+		Viewport viewport = canvas.getViewport();
+		if (viewport != null) {
+			return viewport.getViewportWidth() == width
+					&& viewport.getViewportHeight() == height;
+		}
+		if (sdb != null) {
+			return sdb.getDeviceWidth() == width && sdb.getDeviceHeight() == height;
+		}
+		return true;
+	}
+
+	private boolean equalMedia(String medium) {
+		return targetMedium == null ? medium == null : targetMedium.equals(medium);
+	}
+
+	/**
+	 * Get the cached state of a condition.
+	 * 
+	 * @param index the index of the condition.
+	 * @return the state: {@link #UNKNOWN}, {@link #MATCHES} or {@link #NO_MATCH}.
+	 */
+	byte getState(int index) {
+		return states[index];
+	}
+
+	/**
+	 * Store the state of a condition.
+	 * 
+	 * @param index the index of the condition.
+	 * @param state the state, {@link #MATCHES} or {@link #NO_MATCH}.
+	 */
+	void setState(int index, byte state) {
+		states[index] = state;
+	}
+
+}
@@ -85,24 +85,33 @@ public class MediaRule extends GroupingRule implements CSSMediaRule {
 	@Override
 	void cascade(Cascade cascade, SelectorMatcher matcher, ComputedCSSStyle style,
 			String targetMedium) {
-		MediaQueryList mediaList = getMedia();
-		if (((MediaListAccess) mediaList).hasProxy()) {
-			mediaList = replaceProxyFeatures(mediaList, style);
-		}
 		// If we target a specific media, account for matching @media rules
-		if (mediaList.matches(targetMedium, getCanvas())) {
+		if (matchesCondition(style, targetMedium)) {
 			CSSRuleArrayList ruleList = getCssRules();
 			ruleList.cascade(cascade, matcher, style, targetMedium);
 		}
 	}
 
+	@Override
+	boolean matchesCondition(ComputedCSSStyle style, String targetMedium) {
+		MediaQueryList mediaList = getMedia();
+		if (((MediaListAccess) mediaList).hasProxy()) {
+			mediaList = replaceProxyFeatures(mediaList, style);
+		}
+		return mediaList.matches(targetMedium, getCanvas(style));
+	}
+
 	private MediaQueryList replaceProxyFeatures(MediaQueryList mql, ComputedCSSStyle style) {
 		// TODO
 		return mql;
 	}
 
-	private CSSCanvas getCanvas() {
+	private CSSCanvas getCanvas(ComputedCSSStyle style) {
 		Node owner = getParentStyleSheet().getOwnerNode();
+		if (owner == null && style != null) {
+			// A rule from a default sheet that is shared by several documents
+			owner = style.getOwnerNode();
+		}
 		CSSCanvas canvas = null;
 		if (owner != null) {
 			CSSDocument doc = (CSSDocument) owner.getOwnerDocument();
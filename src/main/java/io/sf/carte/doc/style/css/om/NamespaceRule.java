@@ -51,6 +51,7 @@ public class NamespaceRule extends BaseCSSRule implements CSSNamespaceRule {
 
 	@Override
 	public void setPrefix(String prefix) {
+		checkModifiable();
 		this.prefix = prefix;
 		AbstractCSSStyleSheet parentSheet = getParentStyleSheet();
 		if (parentSheet != null) {
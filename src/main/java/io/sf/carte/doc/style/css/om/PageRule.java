@@ -128,6 +128,7 @@ public class PageRule extends BaseCSSDeclarationRule implements CSSPageRule {
 
 	@Override
 	public void setSelectorText(String selectorText) throws DOMException {
+		checkModifiable();
 		CSSParser parser = new CSSParser();
 		selectorList = parser.parsePageSelectorList(selectorText);
 	}
@@ -0,0 +1,88 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.IdentityHashMap;
+
+import org.w3c.dom.Node;
+
+import io.sf.carte.doc.style.css.nsac.Selector;
+
+/**
+ * A cache that records whether the descendants of a node contain an element that
+ * matches a selector, for the {@code :has()} pseudo-class.
+ * <p>
+ * When the subtree of an element is scanned, the result for each of its
+ * descendant elements is recorded as well, so the later checks on those
+ * descendants (or on other elements that share them) are a lookup. Since a
+ * top-down pass checks the ancestors of a node before the node itself, the
+ * results for a subtree can be removed once it was matched.
+ * </p>
+ */
+class RelativeSelectorCache {
+
+	private final IdentityHashMap<Node, IdentityHashMap<Selector, Boolean>> nodeMap = new IdentityHashMap<>();
+
+	RelativeSelectorCache() {
+		super();
+	}
+
+	/**
+	 * Get whether the descendants of {@code node} contain an element that matches
+	 * the given selector.
+	 *
+	 * @param node     the node.
+	 * @param selector the selector.
+	 * @return the result, or {@code null} if it was not computed yet.
+	 */
+	Boolean getDescendantMatch(Node node, Selector selector) {
+		IdentityHashMap<Selector, Boolean> selMap = nodeMap.get(node);
+		if (selMap != null) {
+			return selMap.get(selector);
+		}
+		return null;
+	}
+
+	/**
+	 * Record whether the descendants of {@code node} contain an element that
+	 * matches the given selector.
+	 *
+	 * @param node     the node.
+	 * @param selector the selector.
+	 * @param matches  {@code true} if a descendant matches the selector.
+	 */
+	void setDescendantMatch(Node node, Selector selector, boolean matches) {
+		IdentityHashMap<Selector, Boolean> selMap = nodeMap.get(node);
+		if (selMap == null) {
+			selMap = new IdentityHashMap<>();
+			nodeMap.put(node, selMap);
+		}
+		selMap.put(selector, matches);
+	}
+
+	/**
+	 * Remove the results for the given node, once they are no longer needed.
+	 *
+	 * @param node the node.
+	 */
+	void removeNode(Node node) {
+		nodeMap.remove(node);
+	}
+
+	/**
+	 * Remove all the cached results.
+	 */
+	void clear() {
+		nodeMap.clear();
+	}
+
+}
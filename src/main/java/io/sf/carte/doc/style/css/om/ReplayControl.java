@@ -0,0 +1,68 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import io.sf.carte.doc.style.css.nsac.CSSErrorHandler;
+import io.sf.carte.doc.style.css.nsac.CSSHandler;
+import io.sf.carte.doc.style.css.nsac.Locator;
+import io.sf.carte.doc.style.css.nsac.ParserControl;
+
+/**
+ * Parser control for the replay of recorded parse events, which lets the sheet
+ * handler switch to the handlers of its sub-rules.
+ */
+class ReplayControl implements ParserControl {
+
+	CSSHandler handler;
+
+	private CSSErrorHandler errorHandler;
+
+	ReplayControl(CSSHandler handler, CSSErrorHandler errorHandler) {
+		super();
+		this.handler = handler;
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public void setDocumentHandler(CSSHandler handler) {
+		this.handler = handler;
+	}
+
+	@Override
+	public void setErrorHandler(CSSErrorHandler handler) {
+		this.errorHandler = handler;
+	}
+
+	@Override
+	public CSSErrorHandler getErrorHandler() {
+		return errorHandler;
+	}
+
+	@Override
+	public Locator createLocator() {
+		// The source positions are not recorded
+		return new Locator() {
+
+			@Override
+			public int getLineNumber() {
+				return -1;
+			}
+
+			@Override
+			public int getColumnNumber() {
+				return -1;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,363 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tracks the elements whose computed style may have changed after a batch of
+ * DOM mutations.
+ * <p>
+ * The tracker is told about each mutation (a change of class, id, another
+ * attribute or a state pseudo-class, a change in the children of a node or in
+ * the data of a text node),
+ * and uses the invalidation sets of the document sheet to find the elements
+ * whose rule matching may be affected by it. Only those elements need to have
+ * their styles recomputed, although the descendants of the elements whose
+ * style actually changed may still see a different value through inheritance.
+ * </p>
+ * <p>
+ * The tracker is obtained from
+ * {@link BaseDocumentCSSStyleSheet#createRestyleTracker()} and is only valid as
+ * long as the rules of the sheet do not change.
+ * </p>
+ */
+public class RestyleTracker {
+
+	/*
+	 * The state pseudo-classes whose matching depends on the value of an attribute.
+	 */
+	private static final HashMap<String, String[]> statePseudoClasses = new HashMap<>(16);
+
+	static {
+		statePseudoClasses.put("disabled",
+				new String[] { "disabled", "enabled", "read-only", "read-write", "default" });
+		statePseudoClasses.put("checked", new String[] { "checked", "default" });
+		statePseudoClasses.put("selected", new String[] { "checked", "default" });
+		statePseudoClasses.put("type", new String[] { "checked", "default" });
+		String[] links = { "any-link", "link", "visited" };
+		statePseudoClasses.put("href", links);
+		statePseudoClasses.put("xlink:href", links);
+		String[] placeholder = { "placeholder-shown" };
+		statePseudoClasses.put("placeholder", placeholder);
+		statePseudoClasses.put("value", placeholder);
+		String[] readWrite = { "read-only", "read-write" };
+		statePseudoClasses.put("readonly", readWrite);
+		statePseudoClasses.put("contenteditable", readWrite);
+	}
+
+	private final InvalidationSets sets;
+
+	private final boolean caseInsensitive;
+
+	private final LinkedHashSet<Element> elements = new LinkedHashSet<>();
+
+	RestyleTracker(InvalidationSets sets, boolean caseInsensitive) {
+		super();
+		this.sets = sets;
+		this.caseInsensitive = caseInsensitive;
+	}
+
+	/**
+	 * Record a change in the {@code class} attribute of an element.
+	 *
+	 * @param element  the element.
+	 * @param oldValue the previous value of the attribute, or {@code null} if it
+	 *                 was not set.
+	 * @param newValue the new value of the attribute, or {@code null} if it was
+	 *                 removed.
+	 */
+	public void classChanged(Element element, String oldValue, String newValue) {
+		Set<String> oldClasses = classNames(oldValue);
+		Set<String> newClasses = classNames(newValue);
+		int flags = 0;
+		for (String className : oldClasses) {
+			if (!newClasses.contains(className)) {
+				flags |= sets.getClassFlags(className, caseInsensitive);
+			}
+		}
+		for (String className : newClasses) {
+			if (!oldClasses.contains(className)) {
+				flags |= sets.getClassFlags(className, caseInsensitive);
+			}
+		}
+		flags |= sets.getAttributeFlags("class");
+		invalidate(element, flags);
+	}
+
+	private Set<String> classNames(String value) {
+		if (value == null || value.length() == 0) {
+			return Collections.emptySet();
+		}
+		if (caseInsensitive) {
+			value = value.toLowerCase(Locale.ROOT);
+		}
+		HashSet<String> classes = new HashSet<>();
+		StringTokenizer st = new StringTokenizer(value);
+		while (st.hasMoreTokens()) {
+			classes.add(st.nextToken());
+		}
+		return classes;
+	}
+
+	/**
+	 * Record a change in an attribute of an element.
+	 * <p>
+	 * Changes in the {@code class} and {@code id} attributes are also handled, as
+	 * well as the attributes that determine whether an element matches a state
+	 * pseudo-class like {@code :disabled}, {@code :checked} or {@code :link}.
+	 * </p>
+	 *
+	 * @param element  the element.
+	 * @param name     the attribute name.
+	 * @param oldValue the previous value of the attribute, or {@code null} if it
+	 *                 was not set.
+	 * @param newValue the new value of the attribute, or {@code null} if it was
+	 *                 removed.
+	 */
+	public void attributeChanged(Element element, String name, String oldValue,
+			String newValue) {
+		name = name.toLowerCase(Locale.ROOT);
+		if ("class".equals(name)) {
+			classChanged(element, oldValue, newValue);
+			return;
+		}
+		int flags = sets.getAttributeFlags(name);
+		if ("id".equals(name)) {
+			if (oldValue != null) {
+				flags |= sets.getIdFlags(oldValue, caseInsensitive);
+			}
+			if (newValue != null) {
+				flags |= sets.getIdFlags(newValue, caseInsensitive);
+			}
+		} else if ("style".equals(name)) {
+			flags |= InvalidationSets.SELF;
+		} else {
+			String[] pseudoClasses = statePseudoClasses.get(name);
+			if (pseudoClasses != null) {
+				int stateFlags = 0;
+				for (String pseudoClass : pseudoClasses) {
+					stateFlags |= sets.getPseudoClassFlags(pseudoClass);
+				}
+				if (stateFlags != 0 && "disabled".equals(name)
+						&& "fieldset".equalsIgnoreCase(element.getLocalName())) {
+					// The form controls inside a disabled fieldset are disabled as well
+					stateFlags |= InvalidationSets.DESCENDANTS;
+				}
+				flags |= stateFlags;
+			}
+			if ("value".equals(name) && "auto".equalsIgnoreCase(element.getAttribute("dir"))) {
+				flags |= sets.getAttributeFlags("dir");
+			}
+		}
+		invalidate(element, flags);
+	}
+
+	/**
+	 * Record a change in the state of an element, like {@code :hover} or
+	 * {@code :focus}.
+	 *
+	 * @param element     the element.
+	 * @param pseudoClass the name of the pseudo-class, without the colon.
+	 */
+	public void pseudoClassChanged(Element element, String pseudoClass) {
+		invalidate(element, sets.getPseudoClassFlags(pseudoClass.toLowerCase(Locale.ROOT)));
+	}
+
+	/**
+	 * Record that children were added to, or removed from, the given node.
+	 * <p>
+	 * The node and all its descendants are invalidated, as the structural
+	 * pseudo-classes and the combinators may now give a different result for
+	 * them. If the selectors have sibling combinators, the following siblings of
+	 * the node are invalidated too, as the node may now match a pseudo-class like
+	 * {@code :empty} or {@code :has()} differently.
+	 * </p>
+	 *
+	 * @param parent the parent node.
+	 */
+	public void childListChanged(Node parent) {
+		int flags = InvalidationSets.DESCENDANTS;
+		if (sets.isRelational()) {
+			flags |= InvalidationSets.RELATIONAL;
+		}
+		if (parent.getNodeType() == Node.ELEMENT_NODE) {
+			Element element = (Element) parent;
+			flags |= InvalidationSets.SELF;
+			invalidate(element, flags);
+			int siblingFlags = sets.getSiblingFlags();
+			if (siblingFlags != 0) {
+				addFollowingSiblings(element,
+						(siblingFlags & InvalidationSets.SIBLING_DESCENDANTS) != 0);
+			}
+			textContentChanged(element);
+		} else {
+			addDescendants(parent);
+		}
+	}
+
+	/**
+	 * Record a change in the data of a text node.
+	 * <p>
+	 * The parent element may now match {@code :empty} or {@code :blank}
+	 * differently, and the directionality of the elements whose {@code dir}
+	 * attribute is {@code auto} may depend on the text.
+	 * </p>
+	 *
+	 * @param node the text node.
+	 */
+	public void characterDataChanged(Node node) {
+		Node parent = node.getParentNode();
+		if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) {
+			Element element = (Element) parent;
+			invalidate(element,
+					sets.getPseudoClassFlags("empty") | sets.getPseudoClassFlags("blank"));
+			textContentChanged(element);
+		}
+	}
+
+	/**
+	 * Invalidate the elements whose directionality is computed from a text content
+	 * that includes the content of the given element.
+	 *
+	 * @param element the element whose text content changed.
+	 */
+	private void textContentChanged(Element element) {
+		int flags = sets.getAttributeFlags("dir");
+		if (flags == 0) {
+			return;
+		}
+		Node node = element;
+		do {
+			element = (Element) node;
+			String dir = element.getAttribute("dir");
+			String name = element.getLocalName();
+			boolean bdi = "bdi".equals(name);
+			if (bdi || "auto".equalsIgnoreCase(dir)) {
+				invalidate(element, flags);
+			}
+			// The text of these elements is not seen by the ancestors
+			if (bdi || "ltr".equalsIgnoreCase(dir) || "rtl".equalsIgnoreCase(dir)
+					|| "script".equals(name) || "style".equals(name)
+					|| "textarea".equals(name)) {
+				break;
+			}
+			node = node.getParentNode();
+		} while (node != null && node.getNodeType() == Node.ELEMENT_NODE);
+	}
+
+	private void invalidate(Element element, int flags) {
+		if (flags == 0) {
+			return;
+		}
+		if ((flags & InvalidationSets.DOCUMENT) != 0) {
+			Element root = element.getOwnerDocument().getDocumentElement();
+			elements.add(root);
+			addDescendants(root);
+			return;
+		}
+		if ((flags & InvalidationSets.SELF) != 0) {
+			elements.add(element);
+		}
+		if ((flags & InvalidationSets.DESCENDANTS) != 0) {
+			addDescendants(element);
+		}
+		if ((flags & (InvalidationSets.SIBLINGS | InvalidationSets.SIBLING_DESCENDANTS)) != 0) {
+			boolean descendants = (flags & InvalidationSets.SIBLING_DESCENDANTS) != 0;
+			Node parent = element.getParentNode();
+			if (parent != null) {
+				Node node = parent.getFirstChild();
+				while (node != null) {
+					if (node.getNodeType() == Node.ELEMENT_NODE && node != element) {
+						elements.add((Element) node);
+						if (descendants) {
+							addDescendants(node);
+						}
+					}
+					node = node.getNextSibling();
+				}
+			}
+		}
+		if ((flags & InvalidationSets.RELATIONAL) != 0) {
+			Node node = element;
+			do {
+				addPrecedingSiblings(node);
+				node = node.getParentNode();
+				if (node == null || node.getNodeType() != Node.ELEMENT_NODE) {
+					break;
+				}
+				elements.add((Element) node);
+			} while (true);
+		}
+	}
+
+	private void addFollowingSiblings(Node node, boolean descendants) {
+		node = node.getNextSibling();
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				elements.add((Element) node);
+				if (descendants) {
+					addDescendants(node);
+				}
+			}
+			node = node.getNextSibling();
+		}
+	}
+
+	private void addPrecedingSiblings(Node node) {
+		node = node.getPreviousSibling();
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				elements.add((Element) node);
+			}
+			node = node.getPreviousSibling();
+		}
+	}
+
+	private void addDescendants(Node parent) {
+		Node node = parent.getFirstChild();
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE) {
+				elements.add((Element) node);
+				addDescendants(node);
+			}
+			node = node.getNextSibling();
+		}
+	}
+
+	/**
+	 * Get the elements whose computed style may have changed after the recorded
+	 * mutations.
+	 *
+	 * @return the set of elements.
+	 */
+	public Set<Element> getElements() {
+		return Collections.unmodifiableSet(elements);
+	}
+
+	/**
+	 * Clear the recorded elements, for example after they were restyled.
+	 */
+	public void clear() {
+		elements.clear();
+	}
+
+}
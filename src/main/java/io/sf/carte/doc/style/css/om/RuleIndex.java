@@ -0,0 +1,852 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import io.sf.carte.doc.DOMTokenSetImpl;
+import io.sf.carte.doc.style.css.CSSCanvas;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSRule;
+import io.sf.carte.doc.style.css.impl.MediaListAccess;
+import io.sf.carte.doc.style.css.nsac.ArgumentCondition;
+import io.sf.carte.doc.style.css.nsac.AttributeCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorCondition;
+import io.sf.carte.doc.style.css.nsac.CombinatorSelector;
+import io.sf.carte.doc.style.css.nsac.Condition;
+import io.sf.carte.doc.style.css.nsac.ConditionalSelector;
+import io.sf.carte.doc.style.css.nsac.ElementSelector;
+import io.sf.carte.doc.style.css.nsac.PseudoCondition;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.nsac.SimpleSelector;
+import io.sf.carte.doc.style.css.om.BaseDocumentCSSStyleSheet.Cascade;
+
+/**
+ * Index of the rules that take part in the cascade of a document sheet.
+ * <p>
+ * Each style rule is filed under the keys of the rightmost compound selectors of
+ * its selector list (id, class, local name, attribute name or, if none of those
+ * is available, the universal bucket). When cascading, the selector matcher only
+ * has to be run on the rules filed under the keys of the element, and those
+ * rules are visited in the same order as a full walk of the rule tree, so the
+ * specificity and source-order result is the same.
+ * </p>
+ */
+class RuleIndex {
+
+	/*
+	 * Key kinds, from the most selective to the least.
+	 */
+	private static final byte KEY_ID = 0;
+
+	private static final byte KEY_CLASS = 1;
+
+	private static final byte KEY_TAG = 2;
+
+	private static final byte KEY_ATTRIBUTE = 3;
+
+	private static final byte KEY_UNIVERSAL = 4;
+
+	private static final int[] EMPTY_INDEXES = new int[0];
+
+	private final CSSRuleArrayList ruleList;
+
+	private final int modCount;
+
+	/*
+	 * The indexed rules, in cascade order.
+	 */
+	private final AbstractCSSRule[] rules;
+
+	/*
+	 * The origin of the top-level rule that contains each indexed rule.
+	 */
+	private final int[] origins;
+
+	/*
+	 * For each indexed rule, the indexes (in conditionRules) of the enclosing
+	 * conditional grouping rules.
+	 */
+	private final int[][] ruleConditions;
+
+	private final GroupingRule[] conditionRules;
+
+	/*
+	 * Whether the result of each condition rule only depends on the state of the
+	 * canvas, and can be kept in the media condition cache.
+	 */
+	private final boolean[] cacheableConditions;
+
+	private final HashMap<String, int[]> idMap;
+
+	private final HashMap<String, int[]> classMap;
+
+	private final HashMap<String, int[]> tagMap;
+
+	private final String[] attrNames;
+
+	private final int[][] attrRules;
+
+	private final int[] universalRules;
+
+	/*
+	 * Whether the matching of each indexed rule only depends on the inputs that
+	 * are part of a style sharing key.
+	 */
+	private final boolean[] shareable;
+
+	/*
+	 * The names of the attributes that the shareable rules depend on.
+	 */
+	private final String[] sharingAttributes;
+
+	/*
+	 * The state pseudo-classes that the shareable rules depend on.
+	 */
+	private final String[] statePseudoClasses;
+
+	private StyleSharingCache sharingCache = null;
+
+	private InvalidationSets invalidationSets = null;
+
+	private volatile MediaConditionCache mediaCache = null;
+
+	/**
+	 * Build an index for the given top-level rule list.
+	 * 
+	 * @param ruleList the rule list.
+	 */
+	RuleIndex(CSSRuleArrayList ruleList) {
+		super();
+		this.ruleList = ruleList;
+		this.modCount = ruleList.getModificationCount();
+
+		Builder builder = new Builder();
+		for (AbstractCSSRule rule : ruleList) {
+			builder.addRule(rule, rule.getOrigin(), EMPTY_INDEXES);
+		}
+
+		int sz = builder.ruleArray.size();
+		rules = builder.ruleArray.toArray(new AbstractCSSRule[sz]);
+		origins = builder.originList.toArray();
+		ruleConditions = builder.conditionArray.toArray(new int[sz][]);
+		conditionRules = builder.conditionRuleArray
+				.toArray(new GroupingRule[builder.conditionRuleArray.size()]);
+		cacheableConditions = new boolean[conditionRules.length];
+		for (int i = 0; i < conditionRules.length; i++) {
+			GroupingRule rule = conditionRules[i];
+			cacheableConditions[i] = rule.getType() == CSSRule.MEDIA_RULE
+					&& !((MediaListAccess) ((MediaRule) rule).getMedia()).hasProxy();
+		}
+		idMap = freeze(builder.idMap);
+		classMap = freeze(builder.classMap);
+		tagMap = freeze(builder.tagMap);
+		int attrsz = builder.attrMap.size();
+		attrNames = new String[attrsz];
+		attrRules = new int[attrsz][];
+		int i = 0;
+		for (Map.Entry<String, IntList> entry : builder.attrMap.entrySet()) {
+			attrNames[i] = entry.getKey();
+			attrRules[i] = entry.getValue().toArray();
+			i++;
+		}
+		universalRules = builder.universalList.toArray();
+		shareable = new boolean[sz];
+		for (i = 0; i < sz; i++) {
+			shareable[i] = builder.shareableList.get(i);
+		}
+		sharingAttributes = builder.sharingAttributes
+				.toArray(new String[builder.sharingAttributes.size()]);
+		statePseudoClasses = builder.statePseudoClasses
+				.toArray(new String[builder.statePseudoClasses.size()]);
+	}
+
+	private static HashMap<String, int[]> freeze(HashMap<String, IntList> map) {
+		HashMap<String, int[]> frozen = new HashMap<>(map.size());
+		Iterator<Map.Entry<String, IntList>> it = map.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, IntList> entry = it.next();
+			frozen.put(entry.getKey(), entry.getValue().toArray());
+		}
+		return frozen;
+	}
+
+	/**
+	 * Check whether this index is still valid for the given rule list.
+	 * 
+	 * @param list the top-level rule list.
+	 * @return {@code true} if this index was built from the given list and the
+	 *         list was not modified since.
+	 */
+	boolean isValid(CSSRuleArrayList list) {
+		return list == ruleList && list.getModificationCount() == modCount;
+	}
+
+	/**
+	 * Get the number of indexed rules.
+	 * 
+	 * @return the number of indexed rules.
+	 */
+	int getLength() {
+		return rules.length;
+	}
+
+	/**
+	 * Get the names of the attributes whose values determine the matching of the
+	 * shareable rules.
+	 * 
+	 * @return the attribute names.
+	 */
+	String[] getSharingAttributes() {
+		return sharingAttributes;
+	}
+
+	/**
+	 * Get the names of the attributes that are used as index keys.
+	 * <p>
+	 * The presence of these attributes determines which rules are candidates for
+	 * an element, including the rules that cannot be shared.
+	 * </p>
+	 * 
+	 * @return the attribute names.
+	 */
+	String[] getIndexedAttributes() {
+		return attrNames;
+	}
+
+	/**
+	 * Get the state pseudo-classes that appear in the shareable rules.
+	 * 
+	 * @return the pseudo-class names.
+	 */
+	String[] getStatePseudoClasses() {
+		return statePseudoClasses;
+	}
+
+	/**
+	 * Get the style sharing cache for this index, creating it if necessary.
+	 * <p>
+	 * As the index is rebuilt when the rules change, so is the cache.
+	 * </p>
+	 * 
+	 * @return the style sharing cache.
+	 */
+	synchronized StyleSharingCache getStyleSharingCache() {
+		if (sharingCache == null) {
+			sharingCache = new StyleSharingCache(this);
+		}
+		return sharingCache;
+	}
+
+	/**
+	 * Get the invalidation sets of the selectors of the indexed rules, building
+	 * them if necessary.
+	 * 
+	 * @return the invalidation sets.
+	 */
+	synchronized InvalidationSets getInvalidationSets() {
+		if (invalidationSets == null) {
+			InvalidationSets sets = new InvalidationSets();
+			for (AbstractCSSRule rule : rules) {
+				if (rule.getType() == CSSRule.STYLE_RULE) {
+					sets.addSelectors(((StyleRule) rule).getAbsoluteSelectorList());
+				}
+			}
+			invalidationSets = sets;
+		}
+		return invalidationSets;
+	}
+
+	/**
+	 * Get the media condition cache for the current state of the given canvas.
+	 * <p>
+	 * If the state of the canvas changed since the last call, the results of the
+	 * previous state are discarded, together with the style sharing cache (whose
+	 * results depend on the media conditions).
+	 * </p>
+	 * 
+	 * @param canvas       the canvas, or {@code null} if there is none.
+	 * @param targetMedium the target medium.
+	 * @return the media condition cache, or {@code null} if this index has no
+	 *         conditional rules.
+	 */
+	MediaConditionCache getMediaConditionCache(CSSCanvas canvas, String targetMedium) {
+		if (conditionRules.length == 0) {
+			return null;
+		}
+		MediaConditionCache cache = mediaCache;
+		if (cache == null || !cache.isValidFor(canvas, targetMedium)) {
+			cache = new MediaConditionCache(canvas, targetMedium, conditionRules.length);
+			synchronized (this) {
+				mediaCache = cache;
+				sharingCache = null;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Add to the cascade the indexed rules that match the given selector matcher.
+	 * 
+	 * @param cascade      the cascade.
+	 * @param matcher      the selector matcher.
+	 * @param style        the style being computed.
+	 * @param targetMedium the target medium.
+	 * @param origin       the minimum origin of the rules to be cascaded.
+	 * @param mediaCache   the media condition cache for the current canvas state,
+	 *                     or {@code null} if media conditions are to be evaluated
+	 *                     for this cascade only.
+	 * @return {@code true} if the matching of all the rules that were tried only
+	 *         depends on the inputs of a style sharing key.
+	 */
+	boolean cascade(Cascade cascade, AbstractSelectorMatcher matcher, ComputedCSSStyle style,
+			String targetMedium, int origin, MediaConditionCache mediaCache) {
+		int[] candidates = candidates(matcher);
+		int len = candidates.length;
+		if (len == 0) {
+			return true;
+		}
+		Arrays.sort(candidates);
+
+		/*
+		 * State of the conditional rules for this cascade: 0 is unknown, 1 means that
+		 * the condition holds, and 2 that it does not.
+		 */
+		byte[] conditionState = conditionRules.length == 0 ? null
+				: new byte[conditionRules.length];
+
+		/*
+		 * The ancestor filter is built the first time that a rule needs it, unless a
+		 * top-down traversal already provides one.
+		 */
+		AncestorFilter filter = matcher.getAncestorFilter();
+
+		boolean result = true;
+		int previous = -1;
+		for (int i = 0; i < len; i++) {
+			int idx = candidates[i];
+			if (idx == previous) {
+				continue;
+			}
+			previous = idx;
+			if (origins[idx] < origin || !conditionsHold(ruleConditions[idx], conditionState,
+					mediaCache, style, targetMedium)) {
+				continue;
+			}
+			result = result && shareable[idx];
+			AbstractCSSRule rule = rules[idx];
+			if (rule.getType() == CSSRule.STYLE_RULE) {
+				StyleRule stylerule = (StyleRule) rule;
+				if (filter == null && stylerule.getSelectorAncestorHashes() != null) {
+					filter = AncestorFilter.forAncestors(matcher);
+				}
+				int selIdx = stylerule.matchSelectors(matcher, filter);
+				if (selIdx != -1) {
+					cascade.add(stylerule, stylerule.getSelectorSpecificities()[selIdx]);
+				}
+			} else {
+				rule.cascade(cascade, matcher, style, targetMedium);
+			}
+		}
+		return result;
+	}
+
+	private boolean conditionsHold(int[] conditions, byte[] conditionState,
+			MediaConditionCache mediaCache, ComputedCSSStyle style, String targetMedium) {
+		for (int condIdx : conditions) {
+			byte state = conditionState[condIdx];
+			if (state == MediaConditionCache.UNKNOWN) {
+				boolean cacheable = mediaCache != null && cacheableConditions[condIdx];
+				if (cacheable) {
+					state = mediaCache.getState(condIdx);
+				}
+				if (state == MediaConditionCache.UNKNOWN) {
+					state = conditionRules[condIdx].matchesCondition(style, targetMedium)
+							? MediaConditionCache.MATCHES
+							: MediaConditionCache.NO_MATCH;
+					if (cacheable) {
+						mediaCache.setState(condIdx, state);
+					}
+				}
+				conditionState[condIdx] = state;
+			}
+			if (state == MediaConditionCache.NO_MATCH) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gather the indexes of the rules that could match the element of the given
+	 * matcher.
+	 * 
+	 * @param matcher the selector matcher.
+	 * @return the (unsorted, possibly repeated) candidate indexes.
+	 */
+	private int[] candidates(AbstractSelectorMatcher matcher) {
+		ArrayList<int[]> buckets = new ArrayList<>(8);
+		int total = 0;
+
+		if (!idMap.isEmpty() || !classMap.isEmpty()) {
+			CSSDocument.ComplianceMode mode = matcher.getComplianceMode();
+			if (!idMap.isEmpty()) {
+				String id = matcher.getMatchingId(mode);
+				if (id.length() != 0) {
+					total += addBucket(buckets, idMap.get(foldCase(id)));
+				}
+			}
+			if (!classMap.isEmpty()) {
+				String classAttr = matcher.getClassAttribute(mode);
+				if (classAttr.length() != 0) {
+					if (!DOMTokenSetImpl.checkMultipleToken(classAttr)) {
+						total += addBucket(buckets, classMap.get(foldCase(classAttr.trim())));
+					} else {
+						StringTokenizer st = new StringTokenizer(classAttr);
+						while (st.hasMoreTokens()) {
+							total += addBucket(buckets, classMap.get(foldCase(st.nextToken())));
+						}
+					}
+				}
+			}
+		}
+
+		String localName = matcher.getLocalName();
+		if (localName != null) {
+			total += addBucket(buckets, tagMap.get(foldCase(localName)));
+		}
+
+		for (int i = 0; i < attrNames.length; i++) {
+			if (matcher.hasAttribute(attrNames[i])) {
+				total += addBucket(buckets, attrRules[i]);
+			}
+		}
+
+		total += addBucket(buckets, universalRules);
+
+		int[] candidates = new int[total];
+		int pos = 0;
+		for (int[] bucket : buckets) {
+			System.arraycopy(bucket, 0, candidates, pos, bucket.length);
+			pos += bucket.length;
+		}
+		return candidates;
+	}
+
+	private static int addBucket(ArrayList<int[]> buckets, int[] bucket) {
+		if (bucket == null || bucket.length == 0) {
+			return 0;
+		}
+		buckets.add(bucket);
+		return bucket.length;
+	}
+
+	/**
+	 * Fold the case of the given string, so that strings which are equal when
+	 * ignoring case become equal.
+	 * 
+	 * @param s the string.
+	 * @return the case-folded string.
+	 */
+	static String foldCase(String s) {
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			int cp = s.codePointAt(i);
+			if (Character.toLowerCase(Character.toUpperCase(cp)) != cp) {
+				StringBuilder buf = new StringBuilder(len);
+				buf.append(s, 0, i);
+				while (i < len) {
+					cp = s.codePointAt(i);
+					buf.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+					i += Character.charCount(cp);
+				}
+				return buf.toString();
+			}
+			if (Character.isSupplementaryCodePoint(cp)) {
+				i++;
+			}
+		}
+		return s;
+	}
+
+	private static class Builder {
+
+		private final ArrayList<AbstractCSSRule> ruleArray = new ArrayList<>(256);
+
+		private final IntList originList = new IntList(256);
+
+		private final ArrayList<int[]> conditionArray = new ArrayList<>(256);
+
+		private final ArrayList<GroupingRule> conditionRuleArray = new ArrayList<>();
+
+		private final HashMap<String, IntList> idMap = new HashMap<>();
+
+		private final HashMap<String, IntList> classMap = new HashMap<>();
+
+		private final HashMap<String, IntList> tagMap = new HashMap<>();
+
+		private final HashMap<String, IntList> attrMap = new HashMap<>();
+
+		private final IntList universalList = new IntList(64);
+
+		private final ArrayList<Boolean> shareableList = new ArrayList<>(256);
+
+		private final LinkedHashSet<String> sharingAttributes = new LinkedHashSet<>();
+
+		private final LinkedHashSet<String> statePseudoClasses = new LinkedHashSet<>();
+
+		/*
+		 * The best key found so far for the selector being indexed.
+		 */
+		private byte keyKind;
+
+		private String key;
+
+		Builder() {
+			super();
+		}
+
+		/*
+		 * Only style rules, the contents of conditional grouping rules and the rules
+		 * with side effects (font faces) take part in the cascade.
+		 */
+		void addRule(AbstractCSSRule rule, int origin, int[] conditions) {
+			switch (rule.getType()) {
+			case CSSRule.STYLE_RULE:
+				StyleRule stylerule = (StyleRule) rule;
+				SelectorList selist = stylerule.getAbsoluteSelectorList();
+				if (selist != null) {
+					int idx = addEntry(rule, origin, conditions);
+					int sz = selist.getLength();
+					boolean share = true;
+					for (int i = 0; i < sz; i++) {
+						Selector selector = selist.item(i);
+						indexSelector(selector, idx);
+						share = selectorSharing(selector) && share;
+					}
+					shareableList.set(idx, share);
+				}
+				if (stylerule.cssRules != null) {
+					addRuleList(stylerule.cssRules, origin, conditions);
+				}
+				break;
+			case CSSRule.MEDIA_RULE:
+			case CSSRule.SUPPORTS_RULE:
+				GroupingRule grouping = (GroupingRule) rule;
+				int condIdx = conditionRuleArray.size();
+				conditionRuleArray.add(grouping);
+				int[] nested = Arrays.copyOf(conditions, conditions.length + 1);
+				nested[conditions.length] = condIdx;
+				addRuleList(grouping.getCssRules(), origin, nested);
+				break;
+			case CSSRule.FONT_FACE_RULE:
+				universalList.addIndex(addEntry(rule, origin, conditions));
+				break;
+			default:
+			}
+		}
+
+		private void addRuleList(CSSRuleArrayList list, int origin, int[] conditions) {
+			for (AbstractCSSRule rule : list) {
+				addRule(rule, origin, conditions);
+			}
+		}
+
+		private int addEntry(AbstractCSSRule rule, int origin, int[] conditions) {
+			int idx = ruleArray.size();
+			ruleArray.add(rule);
+			originList.add(origin);
+			conditionArray.add(conditions);
+			shareableList.add(Boolean.TRUE);
+			return idx;
+		}
+
+		private void indexSelector(Selector selector, int idx) {
+			keyKind = KEY_UNIVERSAL;
+			key = null;
+
+			rightmostKey(selector);
+
+			switch (keyKind) {
+			case KEY_ID:
+				addToMap(idMap, key, idx);
+				break;
+			case KEY_CLASS:
+				addToMap(classMap, key, idx);
+				break;
+			case KEY_TAG:
+				addToMap(tagMap, key, idx);
+				break;
+			case KEY_ATTRIBUTE:
+				addToMap(attrMap, key, idx);
+				break;
+			default:
+				universalList.addIndex(idx);
+			}
+		}
+
+		private void rightmostKey(Selector selector) {
+			switch (selector.getSelectorType()) {
+			case CHILD:
+			case DESCENDANT:
+			case DIRECT_ADJACENT:
+			case SUBSEQUENT_SIBLING:
+				rightmostKey(((CombinatorSelector) selector).getSecondSelector());
+				break;
+			case CONDITIONAL:
+				ConditionalSelector condsel = (ConditionalSelector) selector;
+				/*
+				 * Every condition also requires the simple selector to match, so both
+				 * can provide the key.
+				 */
+				conditionKey(condsel.getCondition());
+				SimpleSelector simple = condsel.getSimpleSelector();
+				if (simple.getSelectorType() == Selector.SelectorType.ELEMENT) {
+					elementKey((ElementSelector) simple);
+				}
+				break;
+			case ELEMENT:
+				elementKey((ElementSelector) selector);
+				break;
+			default:
+			}
+		}
+
+		private void elementKey(ElementSelector selector) {
+			String nsuri = selector.getNamespaceURI();
+			String elname = selector.getLocalName();
+			// An empty namespace matches any element without namespace
+			if ((nsuri == null || nsuri.length() != 0) && elname != null && !"*".equals(elname)) {
+				setKey(KEY_TAG, elname);
+			}
+		}
+
+		private void conditionKey(Condition cond) {
+			switch (cond.getConditionType()) {
+			case ID:
+				setKey(KEY_ID, ((AttributeCondition) cond).getValue());
+				break;
+			case CLASS:
+				setKey(KEY_CLASS, ((AttributeCondition) cond).getValue());
+				break;
+			case ATTRIBUTE:
+			case ONE_OF_ATTRIBUTE:
+			case BEGIN_HYPHEN_ATTRIBUTE:
+			case BEGINS_ATTRIBUTE:
+			case ENDS_ATTRIBUTE:
+			case SUBSTRING_ATTRIBUTE:
+				String attrName = ((AttributeCondition) cond).getLocalName();
+				if (attrName != null && keyKind > KEY_ATTRIBUTE) {
+					// Attribute names are matched as written
+					keyKind = KEY_ATTRIBUTE;
+					key = attrName;
+				}
+				break;
+			case AND:
+				CombinatorCondition comb = (CombinatorCondition) cond;
+				int len = comb.getLength();
+				for (int i = 0; i < len; i++) {
+					conditionKey(comb.getCondition(i));
+				}
+				break;
+			default:
+			}
+		}
+
+		private void setKey(byte kind, String value) {
+			if (value != null && kind < keyKind) {
+				keyKind = kind;
+				key = foldCase(value);
+			}
+		}
+
+		/*
+		 * Check whether the matching of the given selector only depends on the local
+		 * name, namespace, classes and id of the element, its ancestors (which are the
+		 * same for siblings), the attributes collected in sharingAttributes and the
+		 * state pseudo-classes collected in statePseudoClasses.
+		 */
+		private boolean selectorSharing(Selector selector) {
+			switch (selector.getSelectorType()) {
+			case CHILD:
+			case DESCENDANT:
+				return simpleSharing(((CombinatorSelector) selector).getSecondSelector());
+			case DIRECT_ADJACENT:
+			case SUBSEQUENT_SIBLING:
+				return false;
+			default:
+				return simpleSharing(selector);
+			}
+		}
+
+		private boolean simpleSharing(Selector selector) {
+			switch (selector.getSelectorType()) {
+			case CONDITIONAL:
+				return conditionSharing(((ConditionalSelector) selector).getCondition());
+			case ELEMENT:
+			case UNIVERSAL:
+			case SCOPE_MARKER:
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		private boolean conditionSharing(Condition cond) {
+			switch (cond.getConditionType()) {
+			case ID:
+			case CLASS:
+			case PSEUDO_ELEMENT:
+				return true;
+			case ATTRIBUTE:
+			case ONE_OF_ATTRIBUTE:
+			case BEGIN_HYPHEN_ATTRIBUTE:
+			case BEGINS_ATTRIBUTE:
+			case ENDS_ATTRIBUTE:
+			case SUBSTRING_ATTRIBUTE:
+				String attrName = ((AttributeCondition) cond).getLocalName();
+				if (attrName == null) {
+					return false;
+				}
+				sharingAttributes.add(attrName);
+				return true;
+			case LANG:
+				// The language of the ancestors is the same for siblings
+				sharingAttributes.add("lang");
+				return true;
+			case PSEUDO_CLASS:
+				return pseudoClassSharing((PseudoCondition) cond);
+			case AND:
+				CombinatorCondition comb = (CombinatorCondition) cond;
+				int len = comb.getLength();
+				boolean share = true;
+				for (int i = 0; i < len; i++) {
+					share = conditionSharing(comb.getCondition(i)) && share;
+				}
+				return share;
+			case SELECTOR_ARGUMENT:
+				ArgumentCondition argcond = (ArgumentCondition) cond;
+				String name = argcond.getName();
+				if ("not".equals(name) || "is".equals(name) || "where".equals(name)) {
+					SelectorList selist = argcond.getSelectors();
+					share = true;
+					for (int i = 0; i < selist.getLength(); i++) {
+						share = selectorSharing(selist.item(i)) && share;
+					}
+					return share;
+				}
+				return false;
+			default:
+				// Positional conditions depend on the siblings
+				return false;
+			}
+		}
+
+		private boolean pseudoClassSharing(PseudoCondition cond) {
+			String name = cond.getName().toLowerCase(Locale.ROOT);
+			switch (name) {
+			case "any-link":
+			case "link":
+			case "visited":
+				sharingAttributes.add("href");
+				sharingAttributes.add("xlink:href");
+				return true;
+			case "root":
+				return true;
+			case "state":
+				String argument = cond.getArgument();
+				if (argument == null) {
+					return false;
+				}
+				statePseudoClasses.add(argument);
+				return true;
+			case "only-child":
+			case "only-of-type":
+			case "target":
+			case "empty":
+			case "blank":
+			case "disabled":
+			case "enabled":
+			case "read-write":
+			case "read-only":
+			case "placeholder-shown":
+			case "default":
+			case "checked":
+			case "indeterminate":
+			case "dir":
+				return false;
+			default:
+				// A state pseudo-class, as given by the canvas
+				statePseudoClasses.add(name);
+				return true;
+			}
+		}
+
+		private static void addToMap(HashMap<String, IntList> map, String key, int idx) {
+			IntList list = map.get(key);
+			if (list == null) {
+				list = new IntList(4);
+				map.put(key, list);
+			}
+			list.addIndex(idx);
+		}
+
+	}
+
+	/**
+	 * A growable list of integers.
+	 */
+	private static class IntList {
+
+		private int[] array;
+
+		private int size = 0;
+
+		IntList(int initialCapacity) {
+			super();
+			array = new int[initialCapacity];
+		}
+
+		/**
+		 * Add a rule index, unless it is the same as the last one (which happens when
+		 * several selectors of a rule share a key).
+		 * 
+		 * @param index the index.
+		 */
+		void addIndex(int index) {
+			if (size == 0 || array[size - 1] != index) {
+				add(index);
+			}
+		}
+
+		void add(int value) {
+			if (size == array.length) {
+				array = Arrays.copyOf(array, size + (size >> 1) + 4);
+			}
+			array[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(array, size);
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.zip.CRC32;
+
+import io.sf.carte.doc.style.css.CSSStyleSheet;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+import io.sf.carte.doc.style.css.nsac.Parser;
+
+/**
+ * Binary snapshot of a parsed style sheet.
+ * <p>
+ * A snapshot is a small header followed by the sheet in the format of
+ * {@link StyleSheetBinaryWriter}. Reading it back with a
+ * {@link StyleSheetBinaryReader} builds the same rules as parsing the source
+ * sheet. The selectors and property values are decoded without tokenizing, but
+ * the media queries and supports conditions are stored as text and parsed
+ * again.
+ * </p>
+ * <p>
+ * The header contains a checksum of the source sheet and the parser flags, so a
+ * snapshot that does not correspond to the sheet that it was made from, or that
+ * was made with different flags, is not used.
+ * </p>
+ * <p>
+ * The snapshots of the default HTML sheets are written at build time by the
+ * {@link #main(String[])} method.
+ * </p>
+ */
+final class SheetSnapshot {
+
+	/**
+	 * The suffix that is appended to the name of a sheet to obtain the name of its
+	 * snapshot.
+	 */
+	static final String FILENAME_SUFFIX = ".bin";
+
+	private static final int MAGIC = 0x43535353; // "CSSS"
+
+	private static final short FORMAT_VERSION = 3;
+
+	private SheetSnapshot() {
+		super();
+	}
+
+	/**
+	 * Compute the checksum of the given source sheet.
+	 *
+	 * @param source the bytes of the source sheet.
+	 * @return the checksum.
+	 */
+	static long checksum(byte[] source) {
+		CRC32 crc = new CRC32();
+		crc.update(source, 0, source.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * Parse a UTF-8 source sheet and write its snapshot.
+	 * <p>
+	 * The sheet is parsed with the parser flags of its factory, which are recorded
+	 * in the header.
+	 * </p>
+	 *
+	 * @param source the bytes of the source sheet.
+	 * @param sheet  an empty sheet, to parse the source into.
+	 * @param os     the output stream. Not closed by this method.
+	 * @throws IOException if an I/O problem occurred.
+	 */
+	static void write(byte[] source, BaseCSSStyleSheet sheet, OutputStream os)
+			throws IOException {
+		Reader re = new InputStreamReader(new ByteArrayInputStream(source),
+				StandardCharsets.UTF_8);
+		sheet.parseStyleSheet(re, CSSStyleSheet.COMMENTS_IGNORE);
+
+		DataOutputStream out = new DataOutputStream(os);
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeLong(checksum(source));
+		out.writeUTF(sheet.getStyleSheetFactory().getParserFlags().toString());
+		out.flush();
+
+		new StyleSheetBinaryWriter(Channels.newChannel(os)).write(sheet);
+	}
+
+	/**
+	 * Read a snapshot into the given sheet.
+	 *
+	 * @param is     the input stream with the snapshot. Not closed by this method.
+	 * @param source the bytes of the source sheet, to verify that the snapshot is
+	 *               up to date.
+	 * @param flags  the flags of the parser that would be used to parse the source.
+	 * @param sheet  the sheet to fill.
+	 * @return {@code true} if the snapshot was read, {@code false} if it does not
+	 *         correspond to the given source or flags, in which case the sheet was
+	 *         not modified.
+	 * @throws IOException if an I/O problem occurred or the snapshot is corrupt.
+	 */
+	static boolean replay(InputStream is, byte[] source, EnumSet<Parser.Flag> flags,
+			BaseCSSStyleSheet sheet) throws IOException {
+		// The header is read without buffering, so the binary reader gets the rest
+		DataInputStream in = new DataInputStream(is);
+		if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION
+				|| in.readLong() != checksum(source) || !flags.toString().equals(in.readUTF())) {
+			return false;
+		}
+
+		new StyleSheetBinaryReader(Channels.newChannel(is)).read(sheet,
+				CSSStyleSheet.COMMENTS_IGNORE);
+		return true;
+	}
+
+	/**
+	 * Write the snapshots of the given sheets.
+	 * <p>
+	 * The snapshot of each sheet is written to the output directory, with the name
+	 * of the sheet followed by {@link #FILENAME_SUFFIX}.
+	 * </p>
+	 *
+	 * @param args the output directory, followed by the paths to the UTF-8 sheets.
+	 * @throws IOException if an I/O problem occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: SheetSnapshot <output-directory> <sheet>...");
+			System.exit(1);
+		}
+		File outDir = new File(args[0]);
+		if (!outDir.isDirectory() && !outDir.mkdirs()) {
+			throw new IOException("Could not create directory " + outDir);
+		}
+		DOMCSSStyleSheetFactory factory = new DOMCSSStyleSheetFactory();
+		for (int i = 1; i < args.length; i++) {
+			File file = new File(args[i]);
+			byte[] source = readAll(new FileInputStream(file));
+			File outFile = new File(outDir, file.getName() + FILENAME_SUFFIX);
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(outFile));
+			try {
+				write(source, factory.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT), os);
+			} finally {
+				os.close();
+			}
+		}
+	}
+
+	/**
+	 * Read all the bytes from the given stream, and close it.
+	 *
+	 * @param is the input stream.
+	 * @return the bytes.
+	 * @throws IOException if an I/O problem occurred.
+	 */
+	static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(20480);
+		byte[] b = new byte[4096];
+		try {
+			int n;
+			while ((n = is.read(b)) != -1) {
+				buf.write(b, 0, n);
+			}
+		} finally {
+			is.close();
+		}
+		return buf.toByteArray();
+	}
+
+}
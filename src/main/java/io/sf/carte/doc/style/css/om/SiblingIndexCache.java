@@ -0,0 +1,144 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import org.w3c.dom.Node;
+
+/**
+ * A cache of the positions of elements among their siblings, for the
+ * {@code :nth-child()}, {@code :nth-of-type()} and {@code :nth-last-*}
+ * pseudo-classes.
+ * <p>
+ * The positions of all the children of a parent node that satisfy a given key
+ * (all elements, the elements that match a selector list, or the elements with
+ * a given local name) are obtained in a single sweep of the children, after
+ * which the index of each of them is a lookup. The positions of the children
+ * of a node can be removed once all of them were matched.
+ * </p>
+ */
+class SiblingIndexCache {
+
+	/*
+	 * Key for the positions among all the element siblings.
+	 */
+	static final Object ALL_ELEMENTS = new Object();
+
+	private final IdentityHashMap<Node, HashMap<Object, Positions>> parentMap = new IdentityHashMap<>();
+
+	SiblingIndexCache() {
+		super();
+	}
+
+	/**
+	 * Get the positions of the children of {@code parent} that satisfy the given
+	 * key.
+	 *
+	 * @param parent the parent node.
+	 * @param key    the key: {@link #ALL_ELEMENTS}, a selector list or a local
+	 *               name.
+	 * @return the positions, or {@code null} if they were not computed yet.
+	 */
+	Positions getPositions(Node parent, Object key) {
+		HashMap<Object, Positions> keyMap = parentMap.get(parent);
+		if (keyMap != null) {
+			return keyMap.get(key);
+		}
+		return null;
+	}
+
+	/**
+	 * Create an empty set of positions for the children of {@code parent} that
+	 * satisfy the given key, to be filled by the caller in document order.
+	 *
+	 * @param parent the parent node.
+	 * @param key    the key.
+	 * @return the new positions.
+	 */
+	Positions createPositions(Node parent, Object key) {
+		HashMap<Object, Positions> keyMap = parentMap.get(parent);
+		if (keyMap == null) {
+			keyMap = new HashMap<>();
+			parentMap.put(parent, keyMap);
+		}
+		Positions positions = new Positions();
+		keyMap.put(key, positions);
+		return positions;
+	}
+
+	/**
+	 * Remove the positions of the children of the given parent, once they are no
+	 * longer needed.
+	 *
+	 * @param parent the parent node.
+	 */
+	void removeParent(Node parent) {
+		parentMap.remove(parent);
+	}
+
+	/**
+	 * Remove all the cached positions.
+	 */
+	void clear() {
+		parentMap.clear();
+	}
+
+	/**
+	 * The positions of the element siblings that satisfy a key.
+	 */
+	static class Positions {
+
+		private final IdentityHashMap<Node, Integer> indexMap = new IdentityHashMap<>();
+
+		private int count = 0;
+
+		Positions() {
+			super();
+		}
+
+		/**
+		 * Add the next element in document order.
+		 *
+		 * @param element the element.
+		 */
+		void add(Node element) {
+			count++;
+			indexMap.put(element, count);
+		}
+
+		/**
+		 * Get the one-based index of the element.
+		 *
+		 * @param element the element.
+		 * @return the index, or -1 if the element is not among the positions.
+		 */
+		int indexOf(Node element) {
+			Integer idx = indexMap.get(element);
+			return idx != null ? idx : -1;
+		}
+
+		/**
+		 * Get the one-based index of the element, counting from the last one.
+		 *
+		 * @param element the element.
+		 * @return the index, or -1 if the element is not among the positions.
+		 */
+		int reverseIndexOf(Node element) {
+			Integer idx = indexMap.get(element);
+			return idx != null ? count - idx + 1 : -1;
+		}
+
+	}
+
+}
@@ -36,6 +36,12 @@ public class Specificity implements java.io.Serializable {
 
 	private static final long serialVersionUID = 2L;
 
+	private static final long NAMES_ONE = 1L;
+
+	private static final long ATTRIB_CLASSES_ONE = 1L << 16;
+
+	private static final long ID_ONE = 1L << 32;
+
 	short id_count = 0;
 
 	short attrib_classes_count = 0;
@@ -51,18 +57,51 @@ public class Specificity implements java.io.Serializable {
 	 * @param matcher  the selector matcher.
 	 */
 	public Specificity(Selector selector, SelectorMatcher matcher) {
+		this(packedSpecificity(selector), matcher);
+	}
+
+	/**
+	 * Construct a specificity from its packed form.
+	 * 
+	 * @param packed  the packed specificity.
+	 * @param matcher the selector matcher.
+	 */
+	Specificity(long packed, SelectorMatcher matcher) {
 		super();
 		this.selectorMatcher = matcher;
-		specificity(selector);
+		id_count = (short) (packed >>> 32);
+		attrib_classes_count = (short) (packed >>> 16);
+		names_pseudoelements_count = (short) packed;
+	}
+
+	/**
+	 * Get the packed form of this specificity.
+	 * 
+	 * @return the packed specificity.
+	 */
+	long toPacked() {
+		return pack(id_count, attrib_classes_count, names_pseudoelements_count);
 	}
 
-	private void add(Specificity specificity) {
-		id_count += specificity.id_count;
-		attrib_classes_count += specificity.attrib_classes_count;
-		names_pseudoelements_count += specificity.names_pseudoelements_count;
+	private static long pack(long idCount, long attribClassesCount, long namesCount) {
+		return ((idCount & 0xffff) << 32) | ((attribClassesCount & 0xffff) << 16)
+				| (namesCount & 0xffff);
 	}
 
-	private void specificity(Selector selector) {
+	/**
+	 * Compute the specificity of the given selector, packed into a {@code long}.
+	 * <p>
+	 * The selector specificity does not depend on the element being matched, so it
+	 * can be computed once per selector and kept in this primitive form. The id
+	 * count is found at bits 32 to 47, the count of attributes, classes and
+	 * pseudo-classes at bits 16 to 31, and the count of element names and
+	 * pseudo-elements at the lowest 16 bits.
+	 * </p>
+	 * 
+	 * @param selector the selector.
+	 * @return the packed specificity.
+	 */
+	static long packedSpecificity(Selector selector) {
 		switch (selector.getSelectorType()) {
 		case ELEMENT:
 			String elname = ((ElementSelector) selector).getLocalName();
@@ -70,33 +109,32 @@ public class Specificity implements java.io.Serializable {
 				// "ignore the universal selector"
 				break;
 			}
-			names_pseudoelements_count++;
-			break;
+			return NAMES_ONE;
 		case CONDITIONAL:
 			ConditionalSelector condsel = (ConditionalSelector) selector;
 			SimpleSelector simple = condsel.getSimpleSelector();
-			specificity(simple);
-			conditionSpecificity(condsel.getCondition());
-			break;
+			return packedSpecificity(simple) + conditionSpecificity(condsel.getCondition());
 		case DESCENDANT:
 		case CHILD:
 		case DIRECT_ADJACENT:
 		case SUBSEQUENT_SIBLING:
-			specificity(((CombinatorSelector) selector).getSecondSelector());
-			specificity(((CombinatorSelector) selector).getSelector());
-			break;
+			return packedSpecificity(((CombinatorSelector) selector).getSecondSelector())
+					+ packedSpecificity(((CombinatorSelector) selector).getSelector());
 		default:
 		}
+		return 0;
 	}
 
-	private void conditionSpecificity(Condition cond) {
+	private static long conditionSpecificity(Condition cond) {
 		switch (cond.getConditionType()) {
 		case POSITIONAL:
 			PositionalCondition pcond = (PositionalCondition) cond;
 			SelectorList ofList = pcond.getOfList();
+			long sp = ATTRIB_CLASSES_ONE;
 			if (ofList != null) {
-				mostSpecific(ofList);
+				sp += mostSpecific(ofList);
 			}
+			return sp;
 		case CLASS:
 		case ATTRIBUTE:
 		case ONE_OF_ATTRIBUTE:
@@ -108,21 +146,19 @@ public class Specificity implements java.io.Serializable {
 		case LANG:
 		case ONLY_CHILD:
 		case ONLY_TYPE:
-			attrib_classes_count++;
-			break;
+			return ATTRIB_CLASSES_ONE;
 		case PSEUDO_ELEMENT:
-			names_pseudoelements_count++;
-			break;
+			return NAMES_ONE;
 		case ID:
-			id_count++;
-			break;
+			return ID_ONE;
 		case AND:
 			CombinatorCondition comb = (CombinatorCondition) cond;
 			int len = comb.getLength();
+			sp = 0;
 			for (int i = 0; i < len; i++) {
-				conditionSpecificity(comb.getCondition(i));
+				sp += conditionSpecificity(comb.getCondition(i));
 			}
-			break;
+			return sp;
 		case SELECTOR_ARGUMENT:
 			ArgumentCondition acond = (ArgumentCondition) cond;
 			String name = acond.getName();
@@ -133,30 +169,29 @@ public class Specificity implements java.io.Serializable {
 			SelectorList argList = acond.getSelectors();
 			// Assume it is not(), is() or has()
 			// Just compute the most specific in the list
-			mostSpecific(argList);
-			break;
+			return mostSpecific(argList);
 		default:
 		}
+		return 0;
 	}
 
 	/**
-	 * Add the specificity of the most specific selector in the list.
+	 * Find the specificity of the most specific selector in the list.
 	 * 
 	 * @param selectorList the selector list.
+	 * @return the packed specificity of the most specific selector.
 	 */
-	private void mostSpecific(SelectorList selectorList) {
+	private static long mostSpecific(SelectorList selectorList) {
 		// Find the most specific selector
 		int sz = selectorList.getLength();
-		Selector selector = selectorList.item(0);
-		Specificity spMost = new Specificity(selector, selectorMatcher);
+		long spMost = packedSpecificity(selectorList.item(0));
 		for (int i = 1; i < sz; i++) {
-			Selector sel = selectorList.item(i);
-			Specificity sp = new Specificity(sel, selectorMatcher);
-			if (selectorCompare(spMost, sp) < 0) {
+			long sp = packedSpecificity(selectorList.item(i));
+			if (packedCompare(spMost, sp) < 0) {
 				spMost = sp;
 			}
 		}
-		add(spMost);
+		return spMost;
 	}
 
 	@Override
@@ -200,6 +235,20 @@ public class Specificity implements java.io.Serializable {
 				+ (s1.names_pseudoelements_count - s2.names_pseudoelements_count);
 	}
 
+	/**
+	 * Compare two packed specificities, in the same way as
+	 * {@link #selectorCompare(Specificity, Specificity)}.
+	 * 
+	 * @param s1 the first packed specificity being compared.
+	 * @param s2 the other packed specificity (to compare against the first).
+	 * @return a negative integer, zero, or a positive integer as the first argument
+	 *         is less than, equal to, or greater than the second.
+	 */
+	static int packedCompare(long s1, long s2) {
+		return ((short) (s1 >>> 32) - (short) (s2 >>> 32)) * 16384
+				+ ((short) (s1 >>> 16) - (short) (s2 >>> 16)) * 128 + ((short) s1 - (short) s2);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder buf = new StringBuilder(82);
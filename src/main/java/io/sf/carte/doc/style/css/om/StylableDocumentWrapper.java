@@ -26,6 +26,7 @@ import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.CDATASection;
@@ -53,6 +54,7 @@ import io.sf.carte.doc.DOMPolicyException;
 import io.sf.carte.doc.DOMSyntaxException;
 import io.sf.carte.doc.agent.DeviceFactory;
 import io.sf.carte.doc.style.css.CSSCanvas;
+import io.sf.carte.doc.style.css.CSSComputedProperties;
 import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.CSSElement;
 import io.sf.carte.doc.style.css.CSSMediaException;
@@ -88,6 +90,8 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 
 	private BaseDocumentCSSStyleSheet mergedStyleSheet = null;
 
+	private ComputedStyleCache computedStyleCache = null;
+
 	Set<LinkStyleDefiner> linkedStyle = new LinkedHashSet<>(4);
 
 	Set<LinkStyleDefiner> embeddedStyle = new LinkedHashSet<>(3);
@@ -734,6 +738,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		@Override
 		public void setValue(String value) throws DOMException {
 			((Attr) rawnode).setValue(value);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -917,6 +922,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		@Override
 		public void setAttribute(String name, String value) throws DOMException {
 			element.setAttribute(name, value);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -924,6 +930,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			Attr attr = element.getAttributeNode(name);
 			nodemap.remove(attr);
 			element.removeAttribute(name);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -942,6 +949,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			element.setAttributeNode(rawnode);
 			// In case that the attribute was removed from map
 			nodemap.put(rawnode, node);
+			invalidateComputedStyles();
 			return newAttr;
 		}
 
@@ -955,6 +963,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			}
 			element.removeAttributeNode(rawAttr);
 			nodemap.remove(rawAttr);
+			invalidateComputedStyles();
 			return oldAttr;
 		}
 
@@ -975,6 +984,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		@Override
 		public void setAttributeNS(String namespaceURI, String qualifiedName, String value) throws DOMException {
 			element.setAttributeNS(namespaceURI, qualifiedName, value);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -985,6 +995,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			}
 			nodemap.remove(attr);
 			element.removeAttributeNS(namespaceURI, localName);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -1005,6 +1016,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 				rawAttr = newAttr;
 			}
 			element.setAttributeNodeNS(rawAttr);
+			invalidateComputedStyles();
 			return newAttr;
 		}
 
@@ -1131,6 +1143,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		public void setTextContent(String textContent) throws DOMException {
 			removeAllChild();
 			element.setTextContent(textContent);
+			invalidateComputedStyles();
 		}
 
 		@Override
@@ -1151,7 +1164,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			CSSParser parser = new CSSParser();
 			SelectorList list;
 			try {
-				list = parser.parseSelectors(new StringReader(selectorString));
+				list = parser.parseSelectors(selectorString);
 			} catch (Exception e) {
 				throw new DOMSyntaxException("Unable to parse selector in: " + selectorString);
 			}
@@ -1243,7 +1256,16 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 			} else {
 				peCond = null;
 			}
-			return (ComputedCSSStyle) getStyleSheet().getComputedStyle(this, peCond);
+			ComputedStyleCache cache = getComputedStyleCache();
+			if (cache == null) {
+				return (ComputedCSSStyle) getStyleSheet().getComputedStyle(this, peCond);
+			}
+			ComputedCSSStyle style = cache.get(this, pseudoElt);
+			if (style == null) {
+				style = (ComputedCSSStyle) getStyleSheet().getComputedStyle(this, peCond);
+				cache.put(this, pseudoElt, style);
+			}
+			return style;
 		}
 
 		@Override
@@ -1708,6 +1730,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		}
 		registeredPropertySet.add(definition);
 		mergedStyleSheet = null;
+		invalidateComputedStyles();
 	}
 
 	/**
@@ -1923,14 +1946,30 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		return mergedStyleSheet;
 	}
 
-	private void mergeStyleSheets() {
-		getStyleSheets(); // Make sure that sheets is up to date
-		BaseDocumentCSSStyleSheet defSheet = getStyleSheetFactory().getDefaultStyleSheet(getComplianceMode());
-		if (targetMedium == null) {
-			mergedStyleSheet = defSheet.clone();
+	/**
+	 * Compute the styles of all the elements in this document, in document order.
+	 * <p>
+	 * The document is walked once, and the style of each element is reused as the
+	 * parent style of its children.
+	 * </p>
+	 * 
+	 * @param consumer the consumer of the computed styles.
+	 */
+	@Override
+	public void computeAllStyles(Consumer<? super CSSComputedProperties> consumer) {
+		DocumentCSSStyleSheet sheet = getStyleSheet();
+		if (sheet instanceof DOMDocumentCSSStyleSheet) {
+			((DOMDocumentCSSStyleSheet) sheet).computeAllStyles(consumer);
 		} else {
-			mergedStyleSheet = defSheet.clone(targetMedium);
+			CSSDocument.super.computeAllStyles(consumer);
 		}
+	}
+
+	private void mergeStyleSheets() {
+		getStyleSheets(); // Make sure that sheets is up to date
+		// The rules of the default sheet are shared with other documents
+		mergedStyleSheet = getStyleSheetFactory().createMergedStyleSheet(getComplianceMode(),
+				targetMedium);
 		mergedStyleSheet.setOwnerDocument(this);
 		// Add styles referenced by link and style elements
 		Iterator<AbstractCSSStyleSheet> it = sheets.iterator();
@@ -2093,6 +2132,35 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		} else if (sheets != null) {
 			sheets.setNeedsUpdate(true);
 		}
+		invalidateComputedStyles();
+	}
+
+	/**
+	 * Gets the cache of computed styles of this document.
+	 * <p>
+	 * The cache is only used if the style sheet factory has computed style caching
+	 * enabled, see {@link BaseCSSStyleSheetFactory#setComputedStyleCaching(boolean)}.
+	 * Changes made directly to the wrapped document are not tracked, so
+	 * {@link #rebuildCascade()} must be called after them.
+	 * </p>
+	 * 
+	 * @return the computed style cache, or {@code null} if computed styles are not
+	 *         being cached.
+	 */
+	public ComputedStyleCache getComputedStyleCache() {
+		if (!getStyleSheetFactory().isComputedStyleCaching()) {
+			return null;
+		}
+		if (computedStyleCache == null) {
+			computedStyleCache = new ComputedStyleCache();
+		}
+		return computedStyleCache;
+	}
+
+	void invalidateComputedStyles() {
+		if (computedStyleCache != null) {
+			computedStyleCache.clear();
+		}
 	}
 
 	/**
@@ -2409,6 +2477,7 @@ abstract public class StylableDocumentWrapper extends DOMNode implements CSSDocu
 		embeddedStyle.clear();
 		errorHandler.reset();
 		mergedStyleSheet = null;
+		invalidateComputedStyles();
 	}
 
 	class MyOMStyleSheetList extends StyleSheetList {
@@ -14,7 +14,6 @@ package io.sf.carte.doc.style.css.om;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Objects;
@@ -48,6 +47,31 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 
 	private SelectorList absSelectorList = null;
 
+	/*
+	 * The lazily computed fields are volatile, so other threads computing styles
+	 * only see them once they are filled. Computing them twice is harmless.
+	 */
+
+	/*
+	 * Lazily computed packed specificities of the absolute selectors.
+	 */
+	private transient volatile long[] specificities = null;
+
+	/*
+	 * Lazily computed ancestor filter hashes of the absolute selectors.
+	 */
+	private transient volatile int[][] ancestorHashes = null;
+
+	/*
+	 * Set after ancestorHashes.
+	 */
+	private transient volatile boolean ancestorHashesComputed = false;
+
+	/*
+	 * Lazily compiled absolute selectors.
+	 */
+	private transient volatile CompiledSelector[] compiledSelectors = null;
+
 	String selectorText = "";
 
 	private BaseCSSStyleDeclaration declaration = null;
@@ -165,6 +189,7 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 
 	@Override
 	public void setSelectorText(String selectorText) throws DOMException {
+		checkModifiable();
 		Parser parser = createSACParser();
 		SelectorList selist;
 		try {
@@ -189,6 +214,7 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 	 */
 	@Override
 	public void setSelectorList(SelectorList selectorList) {
+		checkModifiable();
 		if (selectorList == null) {
 			throw new NullPointerException("Null selector list");
 		}
@@ -198,6 +224,7 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 		this.selectorList = selectorList;
 		updateSelectorText();
 		updateAbsoluteSelectorList();
+		notifyCascadeModify();
 	}
 
 	void updateSelectorText() {
@@ -212,6 +239,10 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 
 	private void updateAbsoluteSelectorList() {
 		this.absSelectorList = selectorList;
+		this.specificities = null;
+		this.ancestorHashes = null;
+		this.ancestorHashesComputed = false;
+		this.compiledSelectors = null;
 		AbstractCSSRule parent = getParentRule();
 		if (parent != null) {
 			LinkedList<SelectorList> selStack = new LinkedList<>();
@@ -248,6 +279,53 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 
 	void setAbsoluteSelectorList(SelectorList absSelectorList) {
 		this.absSelectorList = absSelectorList;
+		this.specificities = null;
+		this.ancestorHashes = null;
+		this.ancestorHashesComputed = false;
+		this.compiledSelectors = null;
+	}
+
+	/**
+	 * Get the packed specificities of the absolute selectors of this rule.
+	 * 
+	 * @return the packed specificities, in the order of the absolute selector
+	 *         list.
+	 */
+	long[] getSelectorSpecificities() {
+		long[] sp = specificities;
+		if (sp == null) {
+			SelectorList selist = getAbsoluteSelectorList();
+			int sz = selist.getLength();
+			sp = new long[sz];
+			for (int i = 0; i < sz; i++) {
+				sp[i] = Specificity.packedSpecificity(selist.item(i));
+			}
+			specificities = sp;
+		}
+		return sp;
+	}
+
+	/**
+	 * Get the hashes that the ancestor filter must contain for each of the absolute
+	 * selectors of this rule to match.
+	 * 
+	 * @return the ancestor hashes, in the order of the absolute selector list, or
+	 *         {@code null} if no selector requires any.
+	 */
+	int[][] getSelectorAncestorHashes() {
+		if (!ancestorHashesComputed) {
+			SelectorList selist = getAbsoluteSelectorList();
+			int sz = selist.getLength();
+			int[][] hashes = new int[sz][];
+			boolean found = false;
+			for (int i = 0; i < sz; i++) {
+				hashes[i] = AncestorFilter.selectorHashes(selist.item(i));
+				found = found || hashes[i] != null;
+			}
+			ancestorHashes = found ? hashes : null;
+			ancestorHashesComputed = true;
+		}
+		return ancestorHashes;
 	}
 
 	@Override
@@ -314,9 +392,9 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 	@Override
 	void cascade(Cascade cascade, SelectorMatcher matcher, ComputedCSSStyle style,
 			String targetMedium) {
-		int selIdx = matcher.matches(getAbsoluteSelectorList());
+		int selIdx = matchSelectors(matcher);
 		if (selIdx != -1) {
-			cascade.add(getSpecificity(selIdx, matcher));
+			cascade.add(this, getSelectorSpecificities()[selIdx]);
 		}
 		if (cssRules != null) {
 			cssRules.cascade(cascade, matcher, style, targetMedium);
@@ -335,7 +413,51 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 	 * @return the specificity.
 	 */
 	RuleSpecificity getSpecificity(int index, SelectorMatcher matcher) {
-		return new RuleSpecificity(getAbsoluteSelectorList().item(index), matcher);
+		return new RuleSpecificity(getSelectorSpecificities()[index], matcher);
+	}
+
+	/**
+	 * Match the absolute selectors of this rule with the given matcher.
+	 * 
+	 * @param matcher the selector matcher.
+	 * @return the index of the most specific matching selector, or -1 if none
+	 *         matches.
+	 */
+	int matchSelectors(SelectorMatcher matcher) {
+		if (matcher instanceof AbstractSelectorMatcher) {
+			AbstractSelectorMatcher absMatcher = (AbstractSelectorMatcher) matcher;
+			return matchSelectors(absMatcher, absMatcher.getAncestorFilter());
+		}
+		return matcher.matches(getAbsoluteSelectorList());
+	}
+
+	/**
+	 * Match the absolute selectors of this rule with the given matcher, rejecting
+	 * first the selectors whose required ancestors are not in the filter.
+	 * 
+	 * @param matcher the selector matcher.
+	 * @param filter  the filter of the ancestors of the element, or {@code null}.
+	 * @return the index of the most specific matching selector, or -1 if none
+	 *         matches.
+	 */
+	int matchSelectors(AbstractSelectorMatcher matcher, AncestorFilter filter) {
+		return matcher.matches(getAbsoluteSelectorList(), getSelectorSpecificities(),
+				filter != null ? getSelectorAncestorHashes() : null, filter,
+				getCompiledSelectors());
+	}
+
+	/**
+	 * Get the compiled absolute selectors of this rule.
+	 * 
+	 * @return the compiled selectors, in the order of the absolute selector list.
+	 */
+	CompiledSelector[] getCompiledSelectors() {
+		CompiledSelector[] compiled = compiledSelectors;
+		if (compiled == null) {
+			compiled = CompiledSelector.compile(getAbsoluteSelectorList());
+			compiledSelectors = compiled;
+		}
+		return compiled;
 	}
 
 	class RuleSpecificity extends Specificity {
@@ -346,6 +468,10 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 			super(selector, matcher);
 		}
 
+		RuleSpecificity(long packed, SelectorMatcher matcher) {
+			super(packed, matcher);
+		}
+
 		@Override
 		public int hashCode() {
 			return 31 * super.hashCode() + getCSSStyleRule().getOrigin();
@@ -374,23 +500,22 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 		}
 	}
 
-	/*
-	 * This comparator ignores rule insertion index, so any users of this class
-	 * have to deal with that elsewhere.
+	/**
+	 * Computes the weight of a rule with the given origin and selector specificity
+	 * in the cascade.
+	 * <p>
+	 * Rules with a lower weight are applied first, and rules with the same weight
+	 * have to be applied in the order in which they were found.
+	 * </p>
+	 * 
+	 * @param origin      the origin of the rule.
+	 * @param specificity the packed specificity of the matching selector.
+	 * @return the cascade weight.
 	 */
-	static class SpecificityComparator implements Comparator<RuleSpecificity> {
-
-		/*
-		 * Compares the two arguments for order. <p> Returns a negative integer,
-		 * zero, or a positive integer as the first argument is less than, equal
-		 * to, or greater than the second.
-		 */
-		@Override
-		public int compare(RuleSpecificity o1, RuleSpecificity o2) {
-			// 0x1fff = 8191 is a Mersenne prime
-			return (o2.getCSSStyleRule().getOrigin() - o1.getCSSStyleRule().getOrigin()) * 0x1fff
-					+ Specificity.selectorCompare(o1, o2);
-		}
+	static int cascadeWeight(int origin, long specificity) {
+		// 0x1fff = 8191 is a Mersenne prime
+		return -origin * 0x1fff + (short) (specificity >>> 32) * 16384
+				+ (short) (specificity >>> 16) * 128 + (short) specificity;
 	}
 
 	@Override
@@ -505,6 +630,10 @@ public class StyleRule extends GroupingRule implements CSSStyleRule, ExtendedCSS
 		rule.selectorList = getSelectorList();
 		rule.selectorText = getSelectorText();
 		rule.absSelectorList = getAbsoluteSelectorList();
+		rule.specificities = specificities;
+		rule.ancestorHashes = ancestorHashes;
+		rule.ancestorHashesComputed = ancestorHashesComputed;
+		rule.compiledSelectors = compiledSelectors;
 		rule.setPrecedingComments(getPrecedingComments());
 		rule.setTrailingComments(getTrailingComments());
 		if (cssRules != null) {
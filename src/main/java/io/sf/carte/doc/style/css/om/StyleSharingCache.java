@@ -0,0 +1,246 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.w3c.dom.Node;
+
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.om.BaseDocumentCSSStyleSheet.Cascade;
+
+/**
+ * Cache of the rules that match sibling elements which have the same matching
+ * inputs.
+ * <p>
+ * Two siblings share the matching rules if they have the same local name,
+ * namespace and class attribute, neither has an id, the attributes that the
+ * selectors depend on have the same values, the attributes used as index keys
+ * are present on both or neither, and no state pseudo-class is active on them.
+ * The elements for which any of the candidate rules depends on other inputs
+ * (like the position among siblings) never share.
+ * </p>
+ * <p>
+ * The cache belongs to a {@link RuleIndex}, and is discarded with it when the
+ * rules change.
+ * </p>
+ */
+class StyleSharingCache {
+
+	/*
+	 * The maximum number of entries.
+	 */
+	private static final int MAX_ENTRIES = 512;
+
+	private final RuleIndex index;
+
+	private final LinkedHashMap<SharingKey, SharedRules> cache;
+
+	StyleSharingCache(RuleIndex index) {
+		super();
+		this.index = index;
+		cache = new LinkedHashMap<SharingKey, SharedRules>(64, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<SharingKey, SharedRules> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+
+		};
+	}
+
+	/**
+	 * Create the sharing key of the given element.
+	 * 
+	 * @param elt     the element.
+	 * @param matcher the selector matcher of the element.
+	 * @return the key, or {@code null} if the element cannot share the matching
+	 *         rules.
+	 */
+	SharingKey createKey(CSSElement elt, AbstractSelectorMatcher matcher) {
+		Node parent;
+		if (matcher.getPseudoElement() != null || (parent = elt.getParentNode()) == null) {
+			return null;
+		}
+
+		CSSDocument.ComplianceMode mode = matcher.getComplianceMode();
+		if (matcher.getMatchingId(mode).length() != 0) {
+			return null;
+		}
+
+		for (String pseudoClass : index.getStatePseudoClasses()) {
+			if (matcher.isActivePseudoClass(pseudoClass)) {
+				return null;
+			}
+		}
+
+		String[] attrNames = index.getSharingAttributes();
+		String[] attrValues = new String[attrNames.length];
+		for (int i = 0; i < attrNames.length; i++) {
+			String name = attrNames[i];
+			if (matcher.hasAttribute(name)) {
+				attrValues[i] = matcher.getAttributeValue(name);
+			}
+		}
+
+		/*
+		 * The indexed attributes decide which rules are candidates, and some of those
+		 * rules may not be shareable (like a sibling selector with an attribute),
+		 * so their presence must be the same for the elements that share.
+		 */
+		String[] indexedNames = index.getIndexedAttributes();
+		boolean[] attrPresence = new boolean[indexedNames.length];
+		for (int i = 0; i < indexedNames.length; i++) {
+			attrPresence[i] = matcher.hasAttribute(indexedNames[i]);
+		}
+
+		return new SharingKey(parent, matcher.getLocalName(), matcher.getNamespaceURI(),
+				matcher.getClassAttribute(mode), attrValues, attrPresence);
+	}
+
+	/**
+	 * If there are rules stored for the given key, add them to the cascade.
+	 * 
+	 * @param key     the sharing key.
+	 * @param cascade the cascade, which must be empty.
+	 * @return {@code true} if the rules were found.
+	 */
+	boolean apply(SharingKey key, Cascade cascade) {
+		SharedRules shared;
+		synchronized (cache) {
+			shared = cache.get(key);
+		}
+		if (shared == null) {
+			return false;
+		}
+		int len = shared.rules.length;
+		for (int i = 0; i < len; i++) {
+			cascade.addWeighted(shared.rules[i], shared.weights[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Store the rules of a cascade for the given key.
+	 * 
+	 * @param key     the sharing key.
+	 * @param cascade the cascade with the rules that match the element.
+	 */
+	void put(SharingKey key, Cascade cascade) {
+		int len = cascade.getLength();
+		StyleRule[] rules = new StyleRule[len];
+		int[] weights = new int[len];
+		for (int i = 0; i < len; i++) {
+			rules[i] = cascade.item(i);
+			weights[i] = cascade.weight(i);
+		}
+		SharedRules shared = new SharedRules(rules, weights);
+		synchronized (cache) {
+			cache.put(key, shared);
+		}
+	}
+
+	/**
+	 * Get the number of entries in this cache.
+	 * 
+	 * @return the number of entries.
+	 */
+	int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/*
+	 * The matching rules in cascade order, with their cascade weights.
+	 */
+	private static class SharedRules {
+
+		final StyleRule[] rules;
+
+		final int[] weights;
+
+		SharedRules(StyleRule[] rules, int[] weights) {
+			super();
+			this.rules = rules;
+			this.weights = weights;
+		}
+
+	}
+
+	static class SharingKey {
+
+		private final Node parent;
+
+		private final String localName;
+
+		private final String namespaceURI;
+
+		private final String classAttr;
+
+		private final String[] attrValues;
+
+		private final boolean[] attrPresence;
+
+		private final int hash;
+
+		SharingKey(Node parent, String localName, String namespaceURI, String classAttr,
+				String[] attrValues, boolean[] attrPresence) {
+			super();
+			this.parent = parent;
+			this.localName = localName;
+			this.namespaceURI = namespaceURI;
+			this.classAttr = classAttr;
+			this.attrValues = attrValues;
+			this.attrPresence = attrPresence;
+			final int prime = 31;
+			int result = System.identityHashCode(parent);
+			result = prime * result + Objects.hashCode(localName);
+			result = prime * result + Objects.hashCode(namespaceURI);
+			result = prime * result + classAttr.hashCode();
+			result = prime * result + Arrays.hashCode(attrValues);
+			result = prime * result + Arrays.hashCode(attrPresence);
+			hash = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			SharingKey other = (SharingKey) obj;
+			// The ancestors must be the same nodes
+			return parent == other.parent && hash == other.hash
+					&& Objects.equals(localName, other.localName)
+					&& Objects.equals(namespaceURI, other.namespaceURI)
+					&& classAttr.equals(other.classAttr)
+					&& Arrays.equals(attrValues, other.attrValues)
+					&& Arrays.equals(attrPresence, other.attrPresence);
+		}
+
+	}
+
+}
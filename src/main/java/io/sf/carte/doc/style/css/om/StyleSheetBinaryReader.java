@@ -0,0 +1,354 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+
+import org.w3c.dom.DOMException;
+
+import io.sf.carte.doc.style.css.BooleanCondition;
+import io.sf.carte.doc.style.css.CSSStyleSheet;
+import io.sf.carte.doc.style.css.MediaQueryList;
+import io.sf.carte.doc.style.css.nsac.CSSException;
+import io.sf.carte.doc.style.css.nsac.CSSHandler;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
+import io.sf.carte.doc.style.css.nsac.PageSelectorList;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.parser.CSSParser;
+import io.sf.carte.doc.style.css.parser.LexicalUnitCodec;
+import io.sf.carte.doc.style.css.parser.SelectorCodec;
+
+/**
+ * Reads style sheets that were written by a {@link StyleSheetBinaryWriter}.
+ * <p>
+ * The rules are built by the same handler that is used when a sheet is
+ * parsed, so the resulting sheet is equivalent to the one obtained by parsing
+ * the serialization of the original sheet.
+ * </p>
+ * <p>
+ * If several sheets were written to the same channel, they can be read by
+ * successive calls to {@link #read(BaseCSSStyleSheet, short)} on the same
+ * reader, which buffers its input. The channel is not closed by this class.
+ * </p>
+ */
+public class StyleSheetBinaryReader {
+
+	/*
+	 * The maximum number of family names of a font feature values rule.
+	 */
+	private static final int MAX_FAMILY_NAMES = 0x10000;
+
+	private final DataInputStream in;
+
+	/**
+	 * Construct a reader for the given channel.
+	 *
+	 * @param channel the channel to read from.
+	 */
+	public StyleSheetBinaryReader(ReadableByteChannel channel) {
+		super();
+		in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 8192));
+	}
+
+	/**
+	 * Read a style sheet.
+	 * <p>
+	 * If the given sheet is not empty, the rules that are read are added at the
+	 * end of its rule list.
+	 * </p>
+	 *
+	 * @param sheet       the style sheet to fill.
+	 * @param commentMode {@code 0} if comments have to be ignored, {@code 1} if all
+	 *                    comments are considered as preceding a rule, {@code 2} if
+	 *                    the handler should try to figure out which comments are
+	 *                    preceding and trailing a rule (auto mode).
+	 * @throws IOException  if an I/O problem occurred, the data is corrupt, or it
+	 *                      was written with an unsupported version of the format.
+	 * @throws DOMException if raised by the sheet handler.
+	 */
+	public void read(BaseCSSStyleSheet sheet, short commentMode)
+			throws IOException, DOMException {
+		if (in.readInt() != StyleSheetBinaryWriter.MAGIC) {
+			throw new StreamCorruptedException("Not a binary style sheet.");
+		}
+		short version = in.readShort();
+		if (version != StyleSheetBinaryWriter.FORMAT_VERSION) {
+			throw new StreamCorruptedException("Unsupported format version: " + version);
+		}
+
+		SheetHandler handler = sheet.createSheetHandler(commentMode);
+		try {
+			new Replayer(sheet, handler).replay();
+		} catch (DOMException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			// Corrupt data that was not detected by the checks
+			throw corrupt("Invalid data: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Read a style sheet, ignoring the comments.
+	 *
+	 * @param sheet the style sheet to fill.
+	 * @throws IOException  if an I/O problem occurred, the data is corrupt, or it
+	 *                      was written with an unsupported version of the format.
+	 * @throws DOMException if raised by the sheet handler.
+	 */
+	public void read(BaseCSSStyleSheet sheet) throws IOException, DOMException {
+		read(sheet, CSSStyleSheet.COMMENTS_IGNORE);
+	}
+
+	/**
+	 * Replays the events of a sheet into its handler.
+	 */
+	private class Replayer {
+
+		private final BaseCSSStyleSheet sheet;
+
+		private final SheetHandler sheetHandler;
+
+		private final ReplayControl control;
+
+		private final LexicalUnitCodec codec = new LexicalUnitCodec();
+
+		private final SelectorCodec selectorCodec = new SelectorCodec(codec);
+
+		private CSSParser parser = null;
+
+		/*
+		 * The start events that were not ended yet, and their arguments, to be
+		 * supplied to the matching end events.
+		 */
+		private final LinkedList<Byte> startEvents = new LinkedList<>();
+
+		private final LinkedList<Object> startArgs = new LinkedList<>();
+
+		Replayer(BaseCSSStyleSheet sheet, SheetHandler handler) {
+			super();
+			this.sheet = sheet;
+			this.sheetHandler = handler;
+			control = new ReplayControl(handler, handler);
+		}
+
+		void replay() throws IOException {
+			sheetHandler.parseStart(control);
+			byte event;
+			while ((event = in.readByte()) != StyleSheetBinaryWriter.END) {
+				replayEvent(event);
+			}
+			sheetHandler.endOfStream();
+		}
+
+		private CSSParser getParser() {
+			if (parser == null) {
+				parser = (CSSParser) sheet.getStyleSheetFactory().createSACParser();
+			}
+			return parser;
+		}
+
+		private void replayEvent(byte event) throws IOException {
+			CSSHandler handler = control.handler;
+			switch (event) {
+			case StyleSheetBinaryWriter.COMMENT:
+				handler.comment(codec.readString(in), in.readBoolean());
+				break;
+			case StyleSheetBinaryWriter.IGNORABLE_AT_RULE:
+				handler.ignorableAtRule(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.NAMESPACE:
+				String prefix = codec.readString(in);
+				String nsUri = codec.readString(in);
+				// Decoded selectors serialize their namespaces with the declared prefixes
+				selectorCodec.registerNamespacePrefix(prefix, nsUri);
+				handler.namespaceDeclaration(prefix, nsUri);
+				break;
+			case StyleSheetBinaryWriter.IMPORT:
+				String uri = codec.readString(in);
+				String layerName = codec.readString(in);
+				BooleanCondition condition = readCondition(codec.readString(in));
+				MediaQueryList media = readMedia(codec.readString(in));
+				handler.importStyle(uri, layerName, condition, media, codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.START_MEDIA:
+				media = readMedia(codec.readString(in));
+				pushStartArg(event, media);
+				handler.startMedia(media);
+				break;
+			case StyleSheetBinaryWriter.END_MEDIA:
+				handler.endMedia(
+						popStartArg(StyleSheetBinaryWriter.START_MEDIA, MediaQueryList.class));
+				break;
+			case StyleSheetBinaryWriter.START_PAGE:
+				PageSelectorList pageSelectors = readPageSelectors(codec.readString(in));
+				pushStartArg(event, pageSelectors);
+				handler.startPage(pageSelectors);
+				break;
+			case StyleSheetBinaryWriter.END_PAGE:
+				handler.endPage(
+						popStartArg(StyleSheetBinaryWriter.START_PAGE, PageSelectorList.class));
+				break;
+			case StyleSheetBinaryWriter.START_MARGIN:
+				handler.startMargin(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.END_MARGIN:
+				handler.endMargin();
+				break;
+			case StyleSheetBinaryWriter.START_FONT_FACE:
+				handler.startFontFace();
+				break;
+			case StyleSheetBinaryWriter.END_FONT_FACE:
+				handler.endFontFace();
+				break;
+			case StyleSheetBinaryWriter.START_COUNTER_STYLE:
+				handler.startCounterStyle(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.END_COUNTER_STYLE:
+				handler.endCounterStyle();
+				break;
+			case StyleSheetBinaryWriter.START_KEYFRAMES:
+				handler.startKeyframes(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.END_KEYFRAMES:
+				handler.endKeyframes();
+				break;
+			case StyleSheetBinaryWriter.START_KEYFRAME:
+				handler.startKeyframe(codec.readLexicalUnit(in));
+				break;
+			case StyleSheetBinaryWriter.END_KEYFRAME:
+				handler.endKeyframe();
+				break;
+			case StyleSheetBinaryWriter.START_FONT_FEATURES:
+				int len = LexicalUnitCodec.readVarInt(in);
+				if (len < 0 || len > MAX_FAMILY_NAMES) {
+					throw new StreamCorruptedException("Invalid number of families: " + len);
+				}
+				String[] familyName = new String[len];
+				for (int i = 0; i < len; i++) {
+					familyName[i] = codec.readString(in);
+				}
+				handler.startFontFeatures(familyName);
+				break;
+			case StyleSheetBinaryWriter.END_FONT_FEATURES:
+				handler.endFontFeatures();
+				break;
+			case StyleSheetBinaryWriter.START_FEATURE_MAP:
+				handler.startFeatureMap(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.END_FEATURE_MAP:
+				handler.endFeatureMap();
+				break;
+			case StyleSheetBinaryWriter.START_PROPERTY:
+				handler.startProperty(codec.readString(in));
+				break;
+			case StyleSheetBinaryWriter.END_PROPERTY:
+				handler.endProperty(in.readBoolean());
+				break;
+			case StyleSheetBinaryWriter.START_SUPPORTS:
+				condition = readCondition(codec.readString(in));
+				pushStartArg(event, condition);
+				handler.startSupports(condition);
+				break;
+			case StyleSheetBinaryWriter.END_SUPPORTS:
+				handler.endSupports(
+						popStartArg(StyleSheetBinaryWriter.START_SUPPORTS, BooleanCondition.class));
+				break;
+			case StyleSheetBinaryWriter.START_SELECTOR:
+				SelectorList selectors = selectorCodec.readSelectorList(in);
+				pushStartArg(event, selectors);
+				handler.startSelector(selectors);
+				break;
+			case StyleSheetBinaryWriter.END_SELECTOR:
+				handler.endSelector(
+						popStartArg(StyleSheetBinaryWriter.START_SELECTOR, SelectorList.class));
+				break;
+			case StyleSheetBinaryWriter.START_VIEWPORT:
+				handler.startViewport();
+				break;
+			case StyleSheetBinaryWriter.END_VIEWPORT:
+				handler.endViewport();
+				break;
+			case StyleSheetBinaryWriter.PROPERTY:
+				String name = codec.readString(in);
+				LexicalUnit value = codec.readLexicalUnit(in);
+				handler.property(name, value, in.readBoolean());
+				break;
+			case StyleSheetBinaryWriter.LEXICAL_PROPERTY:
+				name = codec.readString(in);
+				value = codec.readLexicalUnit(in);
+				handler.lexicalProperty(name, value, in.readBoolean());
+				break;
+			default:
+				throw new StreamCorruptedException("Unknown event: " + event);
+			}
+		}
+
+		private void pushStartArg(byte event, Object arg) {
+			startEvents.push(event);
+			startArgs.push(arg);
+		}
+
+		private <T> T popStartArg(byte startEvent, Class<T> argClass) throws IOException {
+			if (startEvents.isEmpty() || startEvents.pop() != startEvent) {
+				throw new StreamCorruptedException("Unmatched end event.");
+			}
+			return argClass.cast(startArgs.pop());
+		}
+
+		private MediaQueryList readMedia(String mediaText) throws IOException {
+			if (mediaText == null) {
+				return null;
+			}
+			try {
+				return getParser().parseMediaQueryList(mediaText, null);
+			} catch (CSSException e) {
+				throw corrupt("Invalid media: " + mediaText, e);
+			}
+		}
+
+		private BooleanCondition readCondition(String conditionText) throws IOException {
+			if (conditionText == null) {
+				return null;
+			}
+			try {
+				return getParser().parseSupportsCondition(conditionText, null, sheet);
+			} catch (CSSException e) {
+				throw corrupt("Invalid condition: " + conditionText, e);
+			}
+		}
+
+		private PageSelectorList readPageSelectors(String selectorText) throws IOException {
+			if (selectorText == null) {
+				return null;
+			}
+			try {
+				return getParser().parsePageSelectorList(selectorText);
+			} catch (DOMException e) {
+				throw corrupt("Invalid page selector: " + selectorText, e);
+			}
+		}
+
+	}
+
+	private static StreamCorruptedException corrupt(String message, Throwable cause) {
+		StreamCorruptedException ex = new StreamCorruptedException(message);
+		ex.initCause(cause);
+		return ex;
+	}
+
+}
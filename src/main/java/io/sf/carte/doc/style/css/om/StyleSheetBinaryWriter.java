@@ -0,0 +1,429 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import io.sf.carte.doc.style.css.BooleanCondition;
+import io.sf.carte.doc.style.css.MediaQueryList;
+import io.sf.carte.doc.style.css.nsac.CSSErrorHandler;
+import io.sf.carte.doc.style.css.nsac.CSSHandler;
+import io.sf.carte.doc.style.css.nsac.CSSParseException;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
+import io.sf.carte.doc.style.css.nsac.PageSelectorList;
+import io.sf.carte.doc.style.css.nsac.Parser;
+import io.sf.carte.doc.style.css.nsac.ParserControl;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.parser.LexicalUnitCodec;
+import io.sf.carte.doc.style.css.parser.SelectorCodec;
+
+/**
+ * Writes style sheets in a compact binary format, that can be read back with a
+ * {@link StyleSheetBinaryReader} much faster than parsing their text.
+ * <p>
+ * The format is a sequence of parse events. Selectors, property values and
+ * keyframe selectors are written as trees that can be instantiated without
+ * parsing, and their strings go through a string table. Media queries,
+ * supports conditions and page selectors are kept as text, and are parsed
+ * again when read.
+ * </p>
+ * <p>
+ * Several sheets can be written to the same channel, each one with its own
+ * header and string table. The channel is not closed by this class.
+ * </p>
+ */
+public class StyleSheetBinaryWriter {
+
+	static final int MAGIC = 0x43535342; // "CSSB"
+
+	static final short FORMAT_VERSION = 2;
+
+	static final byte END = 0;
+	static final byte COMMENT = 1;
+	static final byte IGNORABLE_AT_RULE = 2;
+	static final byte NAMESPACE = 3;
+	static final byte IMPORT = 4;
+	static final byte START_MEDIA = 5;
+	static final byte END_MEDIA = 6;
+	static final byte START_PAGE = 7;
+	static final byte END_PAGE = 8;
+	static final byte START_MARGIN = 9;
+	static final byte END_MARGIN = 10;
+	static final byte START_FONT_FACE = 11;
+	static final byte END_FONT_FACE = 12;
+	static final byte START_COUNTER_STYLE = 13;
+	static final byte END_COUNTER_STYLE = 14;
+	static final byte START_KEYFRAMES = 15;
+	static final byte END_KEYFRAMES = 16;
+	static final byte START_KEYFRAME = 17;
+	static final byte END_KEYFRAME = 18;
+	static final byte START_FONT_FEATURES = 19;
+	static final byte END_FONT_FEATURES = 20;
+	static final byte START_FEATURE_MAP = 21;
+	static final byte END_FEATURE_MAP = 22;
+	static final byte START_PROPERTY = 23;
+	static final byte END_PROPERTY = 24;
+	static final byte START_SUPPORTS = 25;
+	static final byte END_SUPPORTS = 26;
+	static final byte START_SELECTOR = 27;
+	static final byte END_SELECTOR = 28;
+	static final byte START_VIEWPORT = 29;
+	static final byte END_VIEWPORT = 30;
+	static final byte PROPERTY = 31;
+	static final byte LEXICAL_PROPERTY = 32;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Construct a writer for the given channel.
+	 *
+	 * @param channel the channel to write to.
+	 */
+	public StyleSheetBinaryWriter(WritableByteChannel channel) {
+		super();
+		out = new DataOutputStream(
+				new BufferedOutputStream(Channels.newOutputStream(channel), 8192));
+	}
+
+	/**
+	 * Write a style sheet.
+	 * <p>
+	 * The events are obtained by parsing the serialization of the sheet, so what
+	 * is written is the serialized form of the sheet: it is read back as the sheet
+	 * that results from parsing {@code sheet.toString()}, and the comments are only
+	 * written if the sheet keeps them in its rules.
+	 * </p>
+	 * <p>
+	 * If the serialization cannot be parsed again without errors, nothing is
+	 * written.
+	 * </p>
+	 *
+	 * @param sheet the style sheet.
+	 * @throws IOException if an I/O problem occurred, or the serialization of the
+	 *                     sheet could not be parsed without errors.
+	 */
+	public void write(BaseCSSStyleSheet sheet) throws IOException {
+		Recorder recorder = new Recorder();
+		Parser parser = sheet.getStyleSheetFactory().createSACParser();
+		parser.setDocumentHandler(recorder);
+		parser.setErrorHandler(recorder);
+		try {
+			parser.parseStyleSheet(new StringReader(sheet.toString()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (recorder.error != null) {
+			throw new IOException("Error parsing the serialized sheet: "
+					+ recorder.error.getMessage(), recorder.error);
+		}
+
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		recorder.buffer.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Records the NSAC events into a buffer, which is only written to the data
+	 * stream if the sheet was parsed without errors.
+	 */
+	private class Recorder implements CSSHandler, CSSErrorHandler {
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+		// Hides the data stream of the writer
+		private final DataOutputStream out = new DataOutputStream(buffer);
+
+		private final LexicalUnitCodec codec = new LexicalUnitCodec();
+
+		private final SelectorCodec selectorCodec = new SelectorCodec(codec);
+
+		private CSSParseException error = null;
+
+		Recorder() {
+			super();
+		}
+
+		private void event(byte event) {
+			try {
+				out.writeByte(event);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void event(byte event, String arg) {
+			try {
+				out.writeByte(event);
+				codec.writeString(out, arg);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void event(byte event, String arg1, String arg2) {
+			try {
+				out.writeByte(event);
+				codec.writeString(out, arg1);
+				codec.writeString(out, arg2);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void event(byte event, boolean flag) {
+			try {
+				out.writeByte(event);
+				out.writeBoolean(flag);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void propertyEvent(byte event, String name, LexicalUnit value,
+				boolean important) {
+			try {
+				out.writeByte(event);
+				codec.writeString(out, name);
+				codec.writeLexicalUnit(out, value);
+				out.writeBoolean(important);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void parseStart(ParserControl parserctl) {
+		}
+
+		@Override
+		public void endOfStream() {
+			event(END);
+		}
+
+		@Override
+		public void comment(String text, boolean precededByLF) {
+			try {
+				out.writeByte(COMMENT);
+				codec.writeString(out, text);
+				out.writeBoolean(precededByLF);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void ignorableAtRule(String atRule) {
+			event(IGNORABLE_AT_RULE, atRule);
+		}
+
+		@Override
+		public void namespaceDeclaration(String prefix, String uri) {
+			event(NAMESPACE, prefix, uri);
+		}
+
+		@Override
+		public void importStyle(String uri, String layerName, BooleanCondition supportsCondition,
+				MediaQueryList media, String defaultNamespaceURI) {
+			try {
+				out.writeByte(IMPORT);
+				codec.writeString(out, uri);
+				codec.writeString(out, layerName);
+				codec.writeString(out,
+						supportsCondition != null ? supportsCondition.toString() : null);
+				codec.writeString(out, media != null ? media.getMedia() : null);
+				codec.writeString(out, defaultNamespaceURI);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void startMedia(MediaQueryList media) {
+			event(START_MEDIA, media.getMedia());
+		}
+
+		@Override
+		public void endMedia(MediaQueryList media) {
+			event(END_MEDIA);
+		}
+
+		@Override
+		public void startPage(PageSelectorList pageSelectorList) {
+			event(START_PAGE, pageSelectorList != null ? pageSelectorList.toString() : null);
+		}
+
+		@Override
+		public void endPage(PageSelectorList pageSelectorList) {
+			event(END_PAGE);
+		}
+
+		@Override
+		public void startMargin(String name) {
+			event(START_MARGIN, name);
+		}
+
+		@Override
+		public void endMargin() {
+			event(END_MARGIN);
+		}
+
+		@Override
+		public void startFontFace() {
+			event(START_FONT_FACE);
+		}
+
+		@Override
+		public void endFontFace() {
+			event(END_FONT_FACE);
+		}
+
+		@Override
+		public void startCounterStyle(String name) {
+			event(START_COUNTER_STYLE, name);
+		}
+
+		@Override
+		public void endCounterStyle() {
+			event(END_COUNTER_STYLE);
+		}
+
+		@Override
+		public void startKeyframes(String name) {
+			event(START_KEYFRAMES, name);
+		}
+
+		@Override
+		public void endKeyframes() {
+			event(END_KEYFRAMES);
+		}
+
+		@Override
+		public void startKeyframe(LexicalUnit keyframeSelector) {
+			try {
+				out.writeByte(START_KEYFRAME);
+				codec.writeLexicalUnit(out, keyframeSelector);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void endKeyframe() {
+			event(END_KEYFRAME);
+		}
+
+		@Override
+		public void startFontFeatures(String[] familyName) {
+			try {
+				out.writeByte(START_FONT_FEATURES);
+				LexicalUnitCodec.writeVarInt(out, familyName.length);
+				for (String name : familyName) {
+					codec.writeString(out, name);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void endFontFeatures() {
+			event(END_FONT_FEATURES);
+		}
+
+		@Override
+		public void startFeatureMap(String mapName) {
+			event(START_FEATURE_MAP, mapName);
+		}
+
+		@Override
+		public void endFeatureMap() {
+			event(END_FEATURE_MAP);
+		}
+
+		@Override
+		public void startProperty(String name) {
+			event(START_PROPERTY, name);
+		}
+
+		@Override
+		public void endProperty(boolean discard) {
+			event(END_PROPERTY, discard);
+		}
+
+		@Override
+		public void startSupports(BooleanCondition condition) {
+			event(START_SUPPORTS, condition.toString());
+		}
+
+		@Override
+		public void endSupports(BooleanCondition condition) {
+			event(END_SUPPORTS);
+		}
+
+		@Override
+		public void startSelector(SelectorList selectors) {
+			try {
+				out.writeByte(START_SELECTOR);
+				selectorCodec.writeSelectorList(out, selectors);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void endSelector(SelectorList selectors) {
+			event(END_SELECTOR);
+		}
+
+		@Override
+		public void startViewport() {
+			event(START_VIEWPORT);
+		}
+
+		@Override
+		public void endViewport() {
+			event(END_VIEWPORT);
+		}
+
+		@Override
+		public void property(String name, LexicalUnit value, boolean important) {
+			propertyEvent(PROPERTY, name, value, important);
+		}
+
+		@Override
+		public void lexicalProperty(String name, LexicalUnit value, boolean important) {
+			propertyEvent(LEXICAL_PROPERTY, name, value, important);
+		}
+
+		@Override
+		public void warning(CSSParseException exception) throws CSSParseException {
+			// Warnings do not change the events
+		}
+
+		@Override
+		public void error(CSSParseException exception) throws CSSParseException {
+			if (error == null) {
+				error = exception;
+			}
+		}
+
+	}
+
+}
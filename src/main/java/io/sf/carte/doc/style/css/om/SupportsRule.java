@@ -44,6 +44,12 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 
 	private BooleanCondition condition = null;
 
+	/*
+	 * The last result of the condition, and the database that it was evaluated
+	 * against.
+	 */
+	private transient volatile SupportsResult supportsResult = null;
+
 	protected SupportsRule(AbstractCSSStyleSheet parentSheet, int origin) {
 		super(parentSheet, SUPPORTS_RULE, origin);
 		cssRules = new CSSRuleArrayList();
@@ -52,6 +58,7 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 	SupportsRule(AbstractCSSStyleSheet parentSheet, SupportsRule copyfrom) {
 		super(parentSheet, copyfrom);
 		condition = copyfrom.getCondition();
+		supportsResult = copyfrom.supportsResult;
 	}
 
 	protected SupportsRule(AbstractCSSStyleSheet parentSheet, BooleanCondition condition, int origin) {
@@ -70,6 +77,7 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 
 	@Override
 	public void setConditionText(String conditionText) throws DOMException {
+		checkModifiable();
 		parseConditionText(conditionText);
 	}
 
@@ -82,6 +90,7 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 		CSSParser parser = (CSSParser) createSACParser();
 		try {
 			condition = parser.parseSupportsCondition(conditionText, null, getParentStyleSheet());
+			supportsResult = null;
 		} catch (CSSBudgetException e) {
 			throw new CSSResourceLimitException(
 					"Limit found while parsing condition " + conditionText, e);
@@ -178,14 +187,42 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 	@Override
 	void cascade(Cascade cascade, SelectorMatcher matcher, ComputedCSSStyle style,
 			String targetMedium) {
-		DeviceFactory df = getParentStyleSheet().getStyleSheetFactory().getDeviceFactory();
-		StyleDatabase sdb;
-		if (df != null && (sdb = df.getStyleDatabase(targetMedium)) != null && supports(sdb)) {
+		if (matchesCondition(style, targetMedium)) {
 			CSSRuleArrayList rules = getCssRules();
 			rules.cascade(cascade, matcher, style, targetMedium);
 		}
 	}
 
+	@Override
+	boolean matchesCondition(ComputedCSSStyle style, String targetMedium) {
+		DeviceFactory df = getParentStyleSheet().getStyleSheetFactory().getDeviceFactory();
+		StyleDatabase sdb;
+		return df != null && (sdb = df.getStyleDatabase(targetMedium)) != null
+				&& memoizedSupports(sdb);
+	}
+
+	/**
+	 * Check whether the condition is supported by the given database, reusing the
+	 * previous result if it was obtained with the same database.
+	 * <p>
+	 * The result is keyed by the identity of the database, so replacing the
+	 * database of a medium (for example with
+	 * {@link io.sf.carte.doc.agent.AbstractDeviceFactory#setStyleDatabase(String, StyleDatabase)
+	 * AbstractDeviceFactory.setStyleDatabase()}) causes a new evaluation.
+	 * </p>
+	 * 
+	 * @param styleDatabase the style database.
+	 * @return {@code true} if the condition is supported.
+	 */
+	boolean memoizedSupports(StyleDatabase styleDatabase) {
+		SupportsResult result = supportsResult;
+		if (result == null || result.styleDatabase != styleDatabase) {
+			result = new SupportsResult(styleDatabase, supports(styleDatabase));
+			supportsResult = result;
+		}
+		return result.supported;
+	}
+
 	@Override
 	public String getCssText() {
 		StyleFormattingContext context = getStyleFormattingContext();
@@ -269,4 +306,18 @@ public class SupportsRule extends GroupingRule implements CSSSupportsRule {
 		return new SupportsRule(parentSheet, this);
 	}
 
+	private static class SupportsResult {
+
+		final StyleDatabase styleDatabase;
+
+		final boolean supported;
+
+		SupportsResult(StyleDatabase styleDatabase, boolean supported) {
+			super();
+			this.styleDatabase = styleDatabase;
+			this.supported = supported;
+		}
+
+	}
+
 }
@@ -84,6 +84,7 @@ public class UnknownRule extends BaseCSSRule implements CSSUnknownRule {
 	 * @throws NullPointerException if the text is {@code null}.
 	 */
 	public void setRuleCssText(String cssText) {
+		checkModifiable();
 		if (cssText == null) {
 			throw new NullPointerException("Null rule text.");
 		}
@@ -22,6 +22,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
@@ -182,6 +183,32 @@ public class CSSParser implements Parser, Cloneable {
 	@Override
 	public void parseStyleSheet(Reader reader)
 			throws CSSParseException, IOException, IllegalStateException {
+		TokenProducer tp = startRuleList();
+		tp.parse(reader, "/*", "*/");
+	}
+
+	/**
+	 * Parse a CSS style sheet from a character buffer.
+	 * <p>
+	 * The remaining content of the buffer is copied once into a {@code String},
+	 * which is what the tokenizer consumes. The buffer position is not modified.
+	 * </p>
+	 *
+	 * @param buffer the buffer containing the CSS sheet.
+	 *
+	 * @throws CSSParseException     if an error was found and no error handler was
+	 *                               set.
+	 * @throws IllegalStateException if the {@code CSSHandler} is not set.
+	 */
+	@Override
+	public void parseStyleSheet(CharBuffer buffer)
+			throws CSSParseException, IllegalStateException {
+		String sheet = buffer.toString();
+		TokenProducer tp = startRuleList();
+		tp.parse(sheet, "/*", "*/");
+	}
+
+	private TokenProducer startRuleList() throws IllegalStateException {
 		if (this.handler == null) {
 			throw new IllegalStateException("No document handler was set.");
 		}
@@ -194,7 +221,7 @@ public class CSSParser implements Parser, Cloneable {
 		TokenProducer tp = manager.createTokenProducer();
 		tp.setAcceptEofEndingQuoted(true);
 		manager.parseStart();
-		tp.parse(reader, "/*", "*/");
+		return tp;
 	}
 
 	/**
@@ -341,6 +368,20 @@ public class CSSParser implements Parser, Cloneable {
 		tp.parse(reader, "/*", "*/");
 	}
 
+	@Override
+	public void parseStyleDeclaration(CharSequence declaration)
+			throws CSSParseException, IllegalStateException {
+		if (this.handler == null) {
+			throw new IllegalStateException("No document handler was set.");
+		}
+
+		String decl = declaration.toString();
+		DeclarationListManager manager = new DeclarationListManager();
+		TokenProducer tp = manager.createTokenProducer();
+		manager.parseStart();
+		tp.parse(decl, "/*", "*/");
+	}
+
 	public void parseStyleDeclaration(InputSource source)
 			throws CSSException, IOException, IllegalStateException {
 		if (this.handler == null) {
@@ -550,6 +591,20 @@ public class CSSParser implements Parser, Cloneable {
 		tp.parse(reader, "/*", "*/");
 	}
 
+	@Override
+	public void parseRule(CharSequence rule, NamespaceMap nsmap)
+			throws CSSParseException, IllegalStateException {
+		if (this.handler == null) {
+			throw new IllegalStateException("No document handler was set.");
+		}
+
+		String text = rule.toString();
+		RuleManager manager = new RuleManager(nsmap);
+		TokenProducer tp = manager.createTokenProducer();
+		manager.parseStart();
+		tp.parse(text, "/*", "*/");
+	}
+
 	public void parseRule(InputSource source) throws CSSParseException, IOException {
 		if (this.handler == null) {
 			throw new IllegalStateException("No document handler was set.");
@@ -2331,6 +2386,11 @@ public class CSSParser implements Parser, Cloneable {
 		return manager.getTrimmedSelectorList();
 	}
 
+	@Override
+	public SelectorList parseSelectors(CharSequence selectorText) throws CSSParseException {
+		return parseSelectors(selectorText.toString());
+	}
+
 	private SelectorList parseSelectors(String seltext, NSACSelectorFactory factory)
 			throws CSSParseException {
 		SelectorManager manager = new SelectorManager(factory);
@@ -2375,6 +2435,15 @@ public class CSSParser implements Parser, Cloneable {
 		return manager.getLexicalUnit();
 	}
 
+	@Override
+	public LexicalUnit parsePropertyValue(CharSequence value) throws CSSParseException {
+		String text = value.toString();
+		DeclarationValueManager manager = new DeclarationValueManager();
+		TokenProducer tp = manager.createTokenProducer();
+		tp.parse(text, "/*", "*/");
+		return manager.getLexicalUnit();
+	}
+
 	private LexicalUnit parsePropertyValue(Reader reader, HandlerManager parent, int index)
 			throws CSSParseException, IOException {
 		DeclarationValueManager manager = new DeclarationValueManager() {
@@ -2399,6 +2468,15 @@ public class CSSParser implements Parser, Cloneable {
 		return manager.getLexicalUnit();
 	}
 
+	public LexicalUnit parsePropertyValue(String propertyName, CharSequence value)
+			throws CSSParseException {
+		String text = value.toString();
+		DeclarationValueManager manager = new DeclarationValueManager(propertyName);
+		TokenProducer tp = manager.createTokenProducer();
+		tp.parse(text, "/*", "*/");
+		return manager.getLexicalUnit();
+	}
+
 	public LexicalUnit parsePropertyValue(InputSource source)
 			throws CSSParseException, IOException {
 		Reader re = getReaderFromSource(source);
@@ -0,0 +1,624 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import io.sf.carte.doc.style.css.CSSMathFunctionValue.MathFunction;
+import io.sf.carte.doc.style.css.CSSUnit;
+import io.sf.carte.doc.style.css.CSSValueSyntax;
+import io.sf.carte.doc.style.css.TransformFunctions;
+import io.sf.carte.doc.style.css.nsac.CSSException;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit.LexicalType;
+
+/**
+ * Binary encoding of lexical units.
+ * <p>
+ * The lexical units are written in a compact form that allows to build them
+ * again without parsing. The strings found in the units (identifiers, function
+ * names, dimension units...) are written through a string table, so each
+ * distinct string is only written once.
+ * </p>
+ * <p>
+ * A codec instance must be used to either write or read a single stream, as
+ * the string table is built while the stream is processed. Strings that do not
+ * belong to a lexical unit, like property names or those found in selectors,
+ * can share the same table through the {@link #writeString(DataOutput, String)}
+ * and {@link #readString(DataInput)} methods.
+ * </p>
+ */
+public class LexicalUnitCodec {
+
+	/*
+	 * Kinds of lexical units, one per implementation class.
+	 */
+	private static final byte NULL_UNIT = 0;
+	private static final byte PLAIN = 1;
+	private static final byte ANCHOR_SIZE = 2;
+	private static final byte ANGLE_FUNCTION = 3;
+	private static final byte ATTR = 4;
+	private static final byte BASIC_SHAPE = 5;
+	private static final byte COLOR = 6;
+	private static final byte COUNTER = 7;
+	private static final byte EASING_FUNCTION = 8;
+	private static final byte ELEMENT_REFERENCE = 9;
+	private static final byte EMPTY = 10;
+	private static final byte ENV = 11;
+	private static final byte EXPRESSION = 12;
+	private static final byte GENERIC_FUNCTION = 13;
+	private static final byte IMAGE_FUNCTION = 14;
+	private static final byte MULTI_ARG_SCALING_FUNCTION = 15;
+	private static final byte OPERATOR = 16;
+	private static final byte POW_FUNCTION = 17;
+	private static final byte PREFIXED_FUNCTION = 18;
+	private static final byte RGB_COLOR = 19;
+	private static final byte ROUND_FUNCTION = 20;
+	private static final byte SCALING_FUNCTION = 21;
+	private static final byte SQRT_FUNCTION = 22;
+	private static final byte SUB_EXPRESSION = 23;
+	private static final byte SYNTAX = 24;
+	private static final byte TRANSFORM_FUNCTION = 25;
+	private static final byte URL = 26;
+	private static final byte UNICODE_RANGE = 27;
+	private static final byte UNITLESS_FUNCTION = 28;
+	private static final byte VAR_FUNCTION = 29;
+	private static final byte UNICODE_WILDCARD = 30;
+
+	private static final HashMap<Class<?>, Byte> unitKinds = new HashMap<>(48);
+
+	static {
+		unitKinds.put(LexicalUnitImpl.class, PLAIN);
+		unitKinds.put(AnchorSizeUnitImpl.class, ANCHOR_SIZE);
+		unitKinds.put(AngleFunctionUnitImpl.class, ANGLE_FUNCTION);
+		unitKinds.put(AttrUnitImpl.class, ATTR);
+		unitKinds.put(BasicShapeUnitImpl.class, BASIC_SHAPE);
+		unitKinds.put(ColorUnitImpl.class, COLOR);
+		unitKinds.put(CounterUnitImpl.class, COUNTER);
+		unitKinds.put(EasingFunctionUnitImpl.class, EASING_FUNCTION);
+		unitKinds.put(ElementReferenceUnitImpl.class, ELEMENT_REFERENCE);
+		unitKinds.put(EmptyUnitImpl.class, EMPTY);
+		unitKinds.put(EnvUnitImpl.class, ENV);
+		unitKinds.put(ExpressionUnitImpl.class, EXPRESSION);
+		unitKinds.put(GenericFunctionUnitImpl.class, GENERIC_FUNCTION);
+		unitKinds.put(ImageFunctionUnitImpl.class, IMAGE_FUNCTION);
+		unitKinds.put(MultiArgScalingFunctionUnitImpl.class, MULTI_ARG_SCALING_FUNCTION);
+		unitKinds.put(OperatorUnitImpl.class, OPERATOR);
+		unitKinds.put(PowFunctionUnitImpl.class, POW_FUNCTION);
+		unitKinds.put(PrefixedFunctionUnitImpl.class, PREFIXED_FUNCTION);
+		unitKinds.put(RGBColorUnitImpl.class, RGB_COLOR);
+		unitKinds.put(RoundFunctionUnitImpl.class, ROUND_FUNCTION);
+		unitKinds.put(ScalingFunctionUnitImpl.class, SCALING_FUNCTION);
+		unitKinds.put(SqrtFunctionUnitImpl.class, SQRT_FUNCTION);
+		unitKinds.put(SubExpressionUnitImpl.class, SUB_EXPRESSION);
+		unitKinds.put(SyntaxUnitImpl.class, SYNTAX);
+		unitKinds.put(TransformFunctionUnitImpl.class, TRANSFORM_FUNCTION);
+		unitKinds.put(URLUnitImpl.class, URL);
+		unitKinds.put(UnicodeRangeUnitImpl.class, UNICODE_RANGE);
+		unitKinds.put(UnitlessFunctionUnitImpl.class, UNITLESS_FUNCTION);
+		unitKinds.put(VarFunctionUnitImpl.class, VAR_FUNCTION);
+		unitKinds.put(UnicodeWildcardUnitImpl.class, UNICODE_WILDCARD);
+	}
+
+	/*
+	 * Flags telling which fields of a unit were written.
+	 */
+	private static final int HAS_CSS_UNIT = 0x01;
+	private static final int HAS_INT_VALUE = 0x02;
+	private static final int HAS_FLOAT_VALUE = 0x04;
+	private static final int HAS_DIMENSION_TEXT = 0x08;
+	private static final int HAS_VALUE = 0x10;
+	private static final int HAS_IDENT_TEXT = 0x20;
+	private static final int HAS_PARAMETERS = 0x40;
+	private static final int HAS_NEXT = 0x80;
+
+	/*
+	 * String references: null, a new string follows, or an index into the table
+	 * plus STRING_INDEX_BASE.
+	 */
+	private static final int NULL_STRING = 0;
+	private static final int NEW_STRING = 1;
+	private static final int STRING_INDEX_BASE = 2;
+
+	/*
+	 * The maximum nesting of function parameters that is accepted when reading,
+	 * which is far beyond what real values use.
+	 */
+	private static final int MAX_DEPTH = 128;
+
+	/*
+	 * The size of the chunks in which long strings are read, so a corrupt length
+	 * cannot cause a large allocation before the data is found to be missing.
+	 */
+	private static final int STRING_CHUNK_SIZE = 0x10000;
+
+	private HashMap<String, Integer> stringIndex = null;
+
+	private ArrayList<String> stringTable = null;
+
+	private byte[] utfBuffer = new byte[128];
+
+	private char[] charBuffer = new char[64];
+
+	private SyntaxParser syntaxParser = null;
+
+	private int depth = 0;
+
+	/**
+	 * Construct a codec with an empty string table.
+	 */
+	public LexicalUnitCodec() {
+		super();
+	}
+
+	/**
+	 * Write a lexical unit, together with the units that follow it.
+	 *
+	 * @param out   the data output.
+	 * @param lunit the lexical unit, or {@code null}.
+	 * @throws IOException              if an I/O problem occurred.
+	 * @throws IllegalArgumentException if the lexical unit was not produced by
+	 *                                  this library's parser.
+	 */
+	public void writeLexicalUnit(DataOutput out, LexicalUnit lunit) throws IOException {
+		if (lunit == null) {
+			out.writeByte(NULL_UNIT);
+		} else if (lunit instanceof LexicalUnitImpl) {
+			writeChain(out, (LexicalUnitImpl) lunit);
+		} else {
+			throw new IllegalArgumentException(
+					"Unsupported lexical unit: " + lunit.getClass().getName());
+		}
+	}
+
+	private void writeChain(DataOutput out, LexicalUnitImpl lu) throws IOException {
+		do {
+			writeUnit(out, lu);
+			lu = lu.nextLexicalUnit;
+		} while (lu != null);
+	}
+
+	private void writeUnit(DataOutput out, LexicalUnitImpl lu) throws IOException {
+		Byte kind = unitKinds.get(lu.getClass());
+		if (kind == null) {
+			throw new IllegalArgumentException(
+					"Unsupported lexical unit: " + lu.getClass().getName());
+		}
+		out.writeByte(kind);
+		writeString(out, lu.getLexicalUnitType().name());
+		if (lu instanceof MathFunctionUnitImpl) {
+			writeString(out, ((MathFunctionUnitImpl) lu).getMathFunction().name());
+		} else if (kind == TRANSFORM_FUNCTION) {
+			writeString(out, ((TransformFunctionUnitImpl) lu).getTransformFunction().name());
+		}
+
+		short cssUnit = lu.getCssUnit();
+		int flags = 0;
+		if (cssUnit != CSSUnit.CSS_INVALID) {
+			flags |= HAS_CSS_UNIT;
+		}
+		if (lu.intValue != 0) {
+			flags |= HAS_INT_VALUE;
+		}
+		if (!Float.isNaN(lu.floatValue)) {
+			flags |= HAS_FLOAT_VALUE;
+		}
+		if (lu.dimensionUnitText == null || lu.dimensionUnitText.length() != 0) {
+			flags |= HAS_DIMENSION_TEXT;
+		}
+		if (lu.value != null) {
+			flags |= HAS_VALUE;
+		}
+		if (lu.identCssText != null) {
+			flags |= HAS_IDENT_TEXT;
+		}
+		if (lu.parameters != null) {
+			flags |= HAS_PARAMETERS;
+		}
+		if (lu.nextLexicalUnit != null) {
+			flags |= HAS_NEXT;
+		}
+		out.writeByte(flags);
+
+		if ((flags & HAS_CSS_UNIT) != 0) {
+			writeVarInt(out, cssUnit & 0xffff);
+		}
+		if ((flags & HAS_INT_VALUE) != 0) {
+			// Zigzag encoding, so small negative values are short
+			writeVarInt(out, (lu.intValue << 1) ^ (lu.intValue >> 31));
+		}
+		if ((flags & HAS_FLOAT_VALUE) != 0) {
+			out.writeFloat(lu.floatValue);
+		}
+		if ((flags & HAS_DIMENSION_TEXT) != 0) {
+			writeString(out, lu.dimensionUnitText);
+		}
+		if ((flags & HAS_VALUE) != 0) {
+			writeString(out, lu.value);
+		}
+		if ((flags & HAS_IDENT_TEXT) != 0) {
+			writeString(out, lu.identCssText);
+		}
+		if (kind == SYNTAX) {
+			CSSValueSyntax syntax = ((SyntaxUnitImpl) lu).syntax;
+			writeString(out, syntax != null ? syntax.toString() : null);
+		}
+		if ((flags & HAS_PARAMETERS) != 0) {
+			writeChain(out, lu.parameters);
+		}
+	}
+
+	/**
+	 * Read a lexical unit, together with the units that follow it.
+	 *
+	 * @param in the data input.
+	 * @return the lexical unit, or {@code null} if a {@code null} unit was
+	 *         written.
+	 * @throws IOException if an I/O problem occurred, or the data is corrupt.
+	 */
+	public LexicalUnit readLexicalUnit(DataInput in) throws IOException {
+		byte kind = in.readByte();
+		if (kind == NULL_UNIT) {
+			return null;
+		}
+		depth = 0;
+		return readChain(in, kind, null);
+	}
+
+	private LexicalUnitImpl readChain(DataInput in, byte kind, LexicalUnitImpl owner)
+			throws IOException {
+		if (++depth > MAX_DEPTH) {
+			throw new StreamCorruptedException("Lexical units nested too deeply.");
+		}
+		LexicalUnitImpl first = null;
+		LexicalUnitImpl prev = null;
+		int flags;
+		do {
+			LexicalType type = readEnum(in, LexicalType.class);
+			LexicalUnitImpl lu = createUnit(in, kind, type);
+			lu.setUnitType(type);
+			lu.ownerLexicalUnit = owner;
+			if (prev == null) {
+				first = lu;
+			} else {
+				prev.nextLexicalUnit = lu;
+				lu.previousLexicalUnit = prev;
+			}
+			flags = readFields(in, kind, lu);
+			if ((flags & HAS_NEXT) != 0) {
+				prev = lu;
+				kind = in.readByte();
+			}
+		} while ((flags & HAS_NEXT) != 0);
+		depth--;
+		return first;
+	}
+
+	private int readFields(DataInput in, byte kind, LexicalUnitImpl lu) throws IOException {
+		int flags = in.readUnsignedByte();
+		if ((flags & HAS_CSS_UNIT) != 0) {
+			lu.setCssUnit((short) readVarInt(in));
+		}
+		if ((flags & HAS_INT_VALUE) != 0) {
+			int zz = readVarInt(in);
+			lu.intValue = (zz >>> 1) ^ -(zz & 1);
+		}
+		if ((flags & HAS_FLOAT_VALUE) != 0) {
+			lu.floatValue = in.readFloat();
+		}
+		if ((flags & HAS_DIMENSION_TEXT) != 0) {
+			lu.dimensionUnitText = readString(in);
+		}
+		if ((flags & HAS_VALUE) != 0) {
+			lu.value = readString(in);
+		}
+		if ((flags & HAS_IDENT_TEXT) != 0) {
+			lu.identCssText = readString(in);
+		}
+		if (kind == SYNTAX) {
+			String syntax = readString(in);
+			if (syntax != null) {
+				if (syntaxParser == null) {
+					syntaxParser = new SyntaxParser();
+				}
+				try {
+					((SyntaxUnitImpl) lu).syntax = syntaxParser.parseSyntax(syntax);
+				} catch (CSSException e) {
+					throw corrupt("Invalid syntax: " + syntax, e);
+				}
+			}
+		}
+		if ((flags & HAS_PARAMETERS) != 0) {
+			lu.parameters = readChain(in, in.readByte(), lu);
+		}
+		return flags;
+	}
+
+	private LexicalUnitImpl createUnit(DataInput in, byte kind, LexicalType type)
+			throws IOException {
+		switch (kind) {
+		case PLAIN:
+			return new LexicalUnitImpl(type);
+		case ANCHOR_SIZE:
+			// The function is implied by the class
+			readEnum(in, MathFunction.class);
+			return new AnchorSizeUnitImpl();
+		case ANGLE_FUNCTION:
+			return new AngleFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case ATTR:
+			return new AttrUnitImpl();
+		case BASIC_SHAPE:
+			return new BasicShapeUnitImpl(type);
+		case COLOR:
+			return new ColorUnitImpl(type);
+		case COUNTER:
+			return new CounterUnitImpl(type);
+		case EASING_FUNCTION:
+			return new EasingFunctionUnitImpl(type);
+		case ELEMENT_REFERENCE:
+			return new ElementReferenceUnitImpl();
+		case EMPTY:
+			return new EmptyUnitImpl();
+		case ENV:
+			return new EnvUnitImpl();
+		case EXPRESSION:
+			return new ExpressionUnitImpl(type);
+		case GENERIC_FUNCTION:
+			return new GenericFunctionUnitImpl(type);
+		case IMAGE_FUNCTION:
+			return new ImageFunctionUnitImpl(type);
+		case MULTI_ARG_SCALING_FUNCTION:
+			return new MultiArgScalingFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case OPERATOR:
+			return new OperatorUnitImpl(type);
+		case POW_FUNCTION:
+			return new PowFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case PREFIXED_FUNCTION:
+			return new PrefixedFunctionUnitImpl();
+		case RGB_COLOR:
+			return new RGBColorUnitImpl();
+		case ROUND_FUNCTION:
+			return new RoundFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case SCALING_FUNCTION:
+			return new ScalingFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case SQRT_FUNCTION:
+			return new SqrtFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case SUB_EXPRESSION:
+			return new SubExpressionUnitImpl();
+		case SYNTAX:
+			return new SyntaxUnitImpl();
+		case TRANSFORM_FUNCTION:
+			return new TransformFunctionUnitImpl(readEnum(in, TransformFunctions.class));
+		case URL:
+			return new URLUnitImpl();
+		case UNICODE_RANGE:
+			return new UnicodeRangeUnitImpl();
+		case UNITLESS_FUNCTION:
+			return new UnitlessFunctionUnitImpl(readEnum(in, MathFunction.class));
+		case VAR_FUNCTION:
+			return new VarFunctionUnitImpl();
+		case UNICODE_WILDCARD:
+			return new UnicodeWildcardUnitImpl();
+		default:
+			throw new StreamCorruptedException("Unknown lexical unit kind: " + kind);
+		}
+	}
+
+	<E extends Enum<E>> E readEnum(DataInput in, Class<E> enumClass)
+			throws IOException {
+		String name = readString(in);
+		if (name != null) {
+			try {
+				return Enum.valueOf(enumClass, name);
+			} catch (IllegalArgumentException e) {
+				// Probably written by a different version of the library
+			}
+		}
+		throw new StreamCorruptedException(
+				"Unknown " + enumClass.getSimpleName() + ": " + name);
+	}
+
+	private static StreamCorruptedException corrupt(String message, Throwable cause) {
+		StreamCorruptedException ex = new StreamCorruptedException(message);
+		ex.initCause(cause);
+		return ex;
+	}
+
+	/**
+	 * Write a string through the string table.
+	 * <p>
+	 * The first time that a string is written, its characters are written in a
+	 * modified UTF-8 encoding that, unlike {@link DataOutput#writeUTF(String)}, has
+	 * no length limit. Later occurrences are written as a reference to the table.
+	 * </p>
+	 *
+	 * @param out the data output.
+	 * @param str the string, or {@code null}.
+	 * @throws IOException if an I/O problem occurred.
+	 */
+	public void writeString(DataOutput out, String str) throws IOException {
+		if (str == null) {
+			writeVarInt(out, NULL_STRING);
+			return;
+		}
+
+		if (stringIndex == null) {
+			stringIndex = new HashMap<>();
+		}
+		Integer idx = stringIndex.get(str);
+		if (idx != null) {
+			writeVarInt(out, idx + STRING_INDEX_BASE);
+			return;
+		}
+		stringIndex.put(str, stringIndex.size());
+		writeVarInt(out, NEW_STRING);
+
+		int len = str.length();
+		int utflen = 0;
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+			if (c != 0 && c < 0x80) {
+				utflen++;
+			} else if (c < 0x800) {
+				utflen += 2;
+			} else {
+				utflen += 3;
+			}
+		}
+		writeVarInt(out, utflen);
+
+		byte[] buf = utfBuffer;
+		if (buf.length < utflen) {
+			buf = new byte[Math.max(utflen, buf.length * 2)];
+			utfBuffer = buf;
+		}
+		int count = 0;
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+			if (c != 0 && c < 0x80) {
+				buf[count++] = (byte) c;
+			} else if (c < 0x800) {
+				buf[count++] = (byte) (0xc0 | (c >> 6));
+				buf[count++] = (byte) (0x80 | (c & 0x3f));
+			} else {
+				buf[count++] = (byte) (0xe0 | (c >> 12));
+				buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buf[count++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		out.write(buf, 0, utflen);
+	}
+
+	/**
+	 * Read a string that was written by {@link #writeString(DataOutput, String)}.
+	 *
+	 * @param in the data input.
+	 * @return the string, or {@code null} if a {@code null} string was written.
+	 * @throws IOException if an I/O problem occurred, or the data is corrupt.
+	 */
+	public String readString(DataInput in) throws IOException {
+		int ref = readVarInt(in);
+		if (ref == NULL_STRING) {
+			return null;
+		}
+
+		if (stringTable == null) {
+			stringTable = new ArrayList<>();
+		}
+		if (ref != NEW_STRING) {
+			int idx = ref - STRING_INDEX_BASE;
+			if (idx < 0 || idx >= stringTable.size()) {
+				throw new StreamCorruptedException("Invalid string reference: " + ref);
+			}
+			return stringTable.get(idx);
+		}
+
+		int utflen = readVarInt(in);
+		if (utflen < 0) {
+			throw new StreamCorruptedException("Invalid string length: " + utflen);
+		}
+		byte[] buf = utfBuffer;
+		int pos = 0;
+		while (pos < utflen) {
+			int chunk = Math.min(utflen - pos, STRING_CHUNK_SIZE);
+			if (buf.length < pos + chunk) {
+				buf = Arrays.copyOf(buf, Math.max(pos + chunk, Math.min(utflen, buf.length * 2)));
+				utfBuffer = buf;
+			}
+			in.readFully(buf, pos, chunk);
+			pos += chunk;
+		}
+		char[] chars = charBuffer;
+		if (chars.length < utflen) {
+			chars = new char[Math.max(utflen, chars.length * 2)];
+			charBuffer = chars;
+		}
+
+		int count = 0;
+		int len = 0;
+		while (count < utflen) {
+			int c = buf[count] & 0xff;
+			if (c < 0x80) {
+				count++;
+				chars[len++] = (char) c;
+			} else if ((c & 0xe0) == 0xc0) {
+				if (count + 1 >= utflen) {
+					throw new UTFDataFormatException("Truncated character.");
+				}
+				int c2 = buf[count + 1];
+				count += 2;
+				chars[len++] = (char) (((c & 0x1f) << 6) | (c2 & 0x3f));
+			} else if ((c & 0xf0) == 0xe0) {
+				if (count + 2 >= utflen) {
+					throw new UTFDataFormatException("Truncated character.");
+				}
+				int c2 = buf[count + 1];
+				int c3 = buf[count + 2];
+				count += 3;
+				chars[len++] = (char) (((c & 0x0f) << 12) | ((c2 & 0x3f) << 6) | (c3 & 0x3f));
+			} else {
+				throw new UTFDataFormatException("Malformed input around byte " + count);
+			}
+		}
+
+		String str = new String(chars, 0, len);
+		stringTable.add(str);
+		return str;
+	}
+
+	/**
+	 * Write a non-negative integer in a variable-length encoding, with seven bits
+	 * per byte.
+	 *
+	 * @param out   the data output.
+	 * @param value the value. Negative values are written as large unsigned ones,
+	 *              taking five bytes.
+	 * @throws IOException if an I/O problem occurred.
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read an integer that was written by {@link #writeVarInt(DataOutput, int)}.
+	 *
+	 * @param in the data input.
+	 * @return the value.
+	 * @throws IOException if an I/O problem occurred, or the data is corrupt.
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 28) {
+				throw new StreamCorruptedException("Malformed variable-length integer.");
+			}
+			b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
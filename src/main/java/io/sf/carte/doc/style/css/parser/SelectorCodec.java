@@ -0,0 +1,486 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import io.sf.carte.doc.style.css.nsac.AttributeCondition;
+import io.sf.carte.doc.style.css.nsac.Condition;
+import io.sf.carte.doc.style.css.nsac.Condition.ConditionType;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.Selector.SelectorType;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.nsac.SimpleSelector;
+import io.sf.carte.doc.style.css.parser.NSACSelectorFactory.AttributeConditionImpl;
+import io.sf.carte.doc.style.css.parser.NSACSelectorFactory.CombinatorSelectorImpl;
+import io.sf.carte.doc.style.css.parser.NSACSelectorFactory.ElementSelectorImpl;
+
+/**
+ * Binary encoding of selector lists.
+ * <p>
+ * The selectors and their conditions are written as trees that allow to build
+ * them again without parsing. Namespace prefixes are resolved when the
+ * selectors are parsed, so the trees contain namespace URIs and do not depend
+ * on the namespace declarations of the sheet.
+ * </p>
+ * <p>
+ * The strings are written through the string table of a
+ * {@link LexicalUnitCodec}, so a selector codec must be used together with the
+ * lexical unit codec of the same stream.
+ * </p>
+ */
+public class SelectorCodec {
+
+	/*
+	 * Kinds of selectors.
+	 */
+	private static final byte NULL_SELECTOR = 0;
+	private static final byte ANY_NODE = 1;
+	private static final byte UNIVERSAL = 2;
+	private static final byte ELEMENT = 3;
+	private static final byte CONDITIONAL = 4;
+	private static final byte COMBINATOR = 5;
+	private static final byte SCOPE = 6;
+
+	/*
+	 * Kinds of conditions.
+	 */
+	private static final byte ATTRIBUTE = 1;
+	private static final byte LANG = 2;
+	private static final byte PSEUDO = 3;
+	private static final byte POSITIONAL = 4;
+	private static final byte SELECTOR_ARGUMENT = 5;
+	private static final byte SELECTOR_ARGUMENT_PE = 6;
+	private static final byte AND = 7;
+	private static final byte NESTING = 8;
+
+	/*
+	 * Flags of attribute conditions.
+	 */
+	private static final byte ATTR_CASE_I = 1;
+	private static final byte ATTR_CASE_S = 2;
+
+	/*
+	 * Flags of positional conditions.
+	 */
+	private static final int POS_HAS_ARGUMENT = 0x01;
+	private static final int POS_FORWARD = 0x02;
+	private static final int POS_OF_TYPE = 0x04;
+	private static final int POS_HAS_KEYWORD = 0x08;
+	private static final int POS_OF_LIST = 0x10;
+
+	/*
+	 * The maximum nesting of selectors and conditions that is accepted when
+	 * reading, which is far beyond what real sheets use.
+	 */
+	private static final int MAX_DEPTH = 128;
+
+	/*
+	 * The maximum number of selectors in a list, or conditions in a compound
+	 * condition.
+	 */
+	private static final int MAX_COUNT = 0x100000;
+
+	private final LexicalUnitCodec stringCodec;
+
+	private NSACSelectorFactory factory = null;
+
+	private int depth;
+
+	/**
+	 * Construct a selector codec.
+	 *
+	 * @param stringCodec the lexical unit codec that holds the string table of the
+	 *                    stream.
+	 */
+	public SelectorCodec(LexicalUnitCodec stringCodec) {
+		super();
+		this.stringCodec = stringCodec;
+	}
+
+	/**
+	 * Register a namespace prefix, so the selectors that are read afterwards
+	 * serialize their namespace URIs with it.
+	 *
+	 * @param prefix the namespace prefix.
+	 * @param uri    the namespace URI.
+	 */
+	public void registerNamespacePrefix(String prefix, String uri) {
+		getFactory().registerNamespacePrefix(prefix, uri);
+	}
+
+	private NSACSelectorFactory getFactory() {
+		if (factory == null) {
+			factory = new NSACSelectorFactory();
+		}
+		return factory;
+	}
+
+	/**
+	 * Write a selector list.
+	 *
+	 * @param out  the data output.
+	 * @param list the selector list.
+	 * @throws IOException              if an I/O problem occurred.
+	 * @throws IllegalArgumentException if a selector was not produced by this
+	 *                                  library's parser.
+	 */
+	public void writeSelectorList(DataOutput out, SelectorList list) throws IOException {
+		int len = list.getLength();
+		LexicalUnitCodec.writeVarInt(out, len);
+		for (int i = 0; i < len; i++) {
+			writeSelector(out, list.item(i));
+		}
+	}
+
+	private void writeOptionalList(DataOutput out, SelectorList list) throws IOException {
+		if (list == null) {
+			out.writeBoolean(false);
+		} else {
+			out.writeBoolean(true);
+			writeSelectorList(out, list);
+		}
+	}
+
+	private void writeSelector(DataOutput out, Selector sel) throws IOException {
+		if (sel == null) {
+			out.writeByte(NULL_SELECTOR);
+			return;
+		}
+
+		switch (sel.getSelectorType()) {
+		case UNIVERSAL:
+			if (sel == NSACSelectorFactory.getUniversalSelector()) {
+				out.writeByte(ANY_NODE);
+				return;
+			}
+			if (sel instanceof ElementSelectorImpl) {
+				out.writeByte(UNIVERSAL);
+				stringCodec.writeString(out, ((ElementSelectorImpl) sel).namespaceUri);
+				return;
+			}
+			break;
+		case ELEMENT:
+			if (sel instanceof ElementSelectorImpl) {
+				ElementSelectorImpl elm = (ElementSelectorImpl) sel;
+				out.writeByte(ELEMENT);
+				stringCodec.writeString(out, elm.namespaceUri);
+				stringCodec.writeString(out, elm.localName);
+				return;
+			}
+			break;
+		case CONDITIONAL:
+			if (sel instanceof ConditionalSelectorImpl) {
+				ConditionalSelectorImpl cond = (ConditionalSelectorImpl) sel;
+				out.writeByte(CONDITIONAL);
+				writeSelector(out, cond.selector);
+				writeCondition(out, cond.condition);
+				return;
+			}
+			break;
+		case SCOPE_MARKER:
+			if (sel instanceof ScopeSelector) {
+				out.writeByte(SCOPE);
+				return;
+			}
+			break;
+		default:
+			if (sel instanceof CombinatorSelectorImpl) {
+				CombinatorSelectorImpl comb = (CombinatorSelectorImpl) sel;
+				out.writeByte(COMBINATOR);
+				stringCodec.writeString(out, comb.getSelectorType().name());
+				writeSelector(out, comb.selector);
+				writeSelector(out, comb.simpleSelector);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported selector: " + sel.getClass().getName());
+	}
+
+	private void writeCondition(DataOutput out, Condition cond) throws IOException {
+		if (cond instanceof AttributeConditionImpl) {
+			AttributeConditionImpl attr = (AttributeConditionImpl) cond;
+			out.writeByte(ATTRIBUTE);
+			stringCodec.writeString(out, attr.getConditionType().name());
+			stringCodec.writeString(out, attr.getNamespaceURI());
+			stringCodec.writeString(out, attr.getLocalName());
+			stringCodec.writeString(out, attr.getValue());
+			int flag = 0;
+			if (attr.hasFlag(AttributeCondition.Flag.CASE_I)) {
+				flag = ATTR_CASE_I;
+			} else if (attr.hasFlag(AttributeCondition.Flag.CASE_S)) {
+				flag = ATTR_CASE_S;
+			}
+			out.writeByte(flag);
+		} else if (cond instanceof LangConditionImpl) {
+			out.writeByte(LANG);
+			stringCodec.writeString(out, ((LangConditionImpl) cond).lang);
+		} else if (cond instanceof PseudoConditionImpl) {
+			PseudoConditionImpl pseudo = (PseudoConditionImpl) cond;
+			out.writeByte(PSEUDO);
+			stringCodec.writeString(out, pseudo.getConditionType().name());
+			stringCodec.writeString(out, pseudo.name);
+			stringCodec.writeString(out, pseudo.argument);
+		} else if (cond instanceof PositionalConditionImpl) {
+			PositionalConditionImpl pos = (PositionalConditionImpl) cond;
+			int flags = 0;
+			if (pos.hasArgument()) {
+				flags |= POS_HAS_ARGUMENT;
+			}
+			if (pos.forwardCondition) {
+				flags |= POS_FORWARD;
+			}
+			if (pos.oftype) {
+				flags |= POS_OF_TYPE;
+			}
+			if (pos.hasKeyword) {
+				flags |= POS_HAS_KEYWORD;
+			}
+			if (pos.ofList != null) {
+				flags |= POS_OF_LIST;
+			}
+			out.writeByte(POSITIONAL);
+			out.writeByte(flags);
+			writeSignedVarInt(out, pos.offset);
+			writeSignedVarInt(out, pos.slope);
+			if (pos.ofList != null) {
+				writeSelectorList(out, pos.ofList);
+			}
+		} else if (cond instanceof SelectorArgumentConditionImpl) {
+			SelectorArgumentConditionImpl arg = (SelectorArgumentConditionImpl) cond;
+			out.writeByte(cond instanceof SelectorArgumentPEConditionImpl ? SELECTOR_ARGUMENT_PE
+					: SELECTOR_ARGUMENT);
+			stringCodec.writeString(out, arg.name);
+			writeOptionalList(out, arg.arguments);
+		} else if (cond instanceof CombinatorConditionImpl) {
+			AbstractCondition[] conditions = ((CombinatorConditionImpl) cond).conditions;
+			out.writeByte(AND);
+			LexicalUnitCodec.writeVarInt(out, conditions.length);
+			for (AbstractCondition c : conditions) {
+				writeCondition(out, c);
+			}
+		} else if (cond instanceof NestingCondition) {
+			out.writeByte(NESTING);
+		} else {
+			throw new IllegalArgumentException("Unsupported condition: "
+					+ (cond != null ? cond.getClass().getName() : "null"));
+		}
+	}
+
+	private static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+		// Zigzag encoding, so small negative values are short
+		LexicalUnitCodec.writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Read a selector list that was written by
+	 * {@link #writeSelectorList(DataOutput, SelectorList)}.
+	 *
+	 * @param in the data input.
+	 * @return the selector list.
+	 * @throws IOException if an I/O problem occurred, or the data is corrupt.
+	 */
+	public SelectorList readSelectorList(DataInput in) throws IOException {
+		depth = 0;
+		return readList(in);
+	}
+
+	private SelectorListImpl readList(DataInput in) throws IOException {
+		int len = readCount(in);
+		SelectorListImpl list = new SelectorListImpl(Math.min(len, 16));
+		for (int i = 0; i < len; i++) {
+			Selector sel = readSelector(in);
+			if (sel == null) {
+				throw new StreamCorruptedException("Null selector in list.");
+			}
+			list.add(sel);
+		}
+		return list;
+	}
+
+	private Selector readSelector(DataInput in) throws IOException {
+		if (++depth > MAX_DEPTH) {
+			throw new StreamCorruptedException("Selectors nested too deeply.");
+		}
+		Selector sel;
+		byte kind = in.readByte();
+		switch (kind) {
+		case NULL_SELECTOR:
+			sel = null;
+			break;
+		case ANY_NODE:
+			sel = NSACSelectorFactory.getUniversalSelector();
+			break;
+		case UNIVERSAL:
+			sel = getFactory().createUniversalSelector(stringCodec.readString(in));
+			break;
+		case ELEMENT:
+			ElementSelectorImpl elm = getFactory().createElementSelector();
+			elm.setNamespaceUri(stringCodec.readString(in));
+			elm.setLocalName(stringCodec.readString(in));
+			sel = elm;
+			break;
+		case CONDITIONAL:
+			SimpleSelector simple = readSimpleSelector(in);
+			sel = getFactory().createConditionalSelector(simple, readCondition(in));
+			break;
+		case COMBINATOR:
+			SelectorType type = stringCodec.readEnum(in, SelectorType.class);
+			switch (type) {
+			case CHILD:
+			case DESCENDANT:
+			case DIRECT_ADJACENT:
+			case SUBSEQUENT_SIBLING:
+			case COLUMN_COMBINATOR:
+				break;
+			default:
+				throw new StreamCorruptedException("Not a combinator: " + type);
+			}
+			CombinatorSelectorImpl comb = getFactory().createCombinatorSelector(type,
+					readSelector(in));
+			comb.simpleSelector = readSimpleSelector(in);
+			sel = comb;
+			break;
+		case SCOPE:
+			sel = getFactory().createScopeSelector();
+			break;
+		default:
+			throw new StreamCorruptedException("Unknown selector kind: " + kind);
+		}
+		depth--;
+		return sel;
+	}
+
+	private SimpleSelector readSimpleSelector(DataInput in) throws IOException {
+		Selector sel = readSelector(in);
+		if (sel != null && !(sel instanceof SimpleSelector)) {
+			throw new StreamCorruptedException("Not a simple selector: " + sel.getSelectorType());
+		}
+		return (SimpleSelector) sel;
+	}
+
+	private AbstractCondition readCondition(DataInput in) throws IOException {
+		if (++depth > MAX_DEPTH) {
+			throw new StreamCorruptedException("Conditions nested too deeply.");
+		}
+		AbstractCondition cond;
+		byte kind = in.readByte();
+		switch (kind) {
+		case ATTRIBUTE:
+			ConditionType type = stringCodec.readEnum(in, ConditionType.class);
+			switch (type) {
+			case ID:
+			case CLASS:
+			case ONLY_CHILD:
+			case ONLY_TYPE:
+			case ATTRIBUTE:
+			case ONE_OF_ATTRIBUTE:
+			case BEGIN_HYPHEN_ATTRIBUTE:
+			case BEGINS_ATTRIBUTE:
+			case ENDS_ATTRIBUTE:
+			case SUBSTRING_ATTRIBUTE:
+				break;
+			default:
+				throw new StreamCorruptedException("Not an attribute condition: " + type);
+			}
+			AttributeConditionImpl attr = getFactory().createAttributeCondition(type);
+			attr.setNamespaceURI(stringCodec.readString(in));
+			attr.setLocalName(stringCodec.readString(in));
+			attr.setValue(stringCodec.readString(in));
+			byte flag = in.readByte();
+			if (flag == ATTR_CASE_I) {
+				attr.setFlag(AttributeCondition.Flag.CASE_I);
+			} else if (flag == ATTR_CASE_S) {
+				attr.setFlag(AttributeCondition.Flag.CASE_S);
+			} else if (flag != 0) {
+				throw new StreamCorruptedException("Unknown attribute flag: " + flag);
+			}
+			cond = attr;
+			break;
+		case LANG:
+			LangConditionImpl lang = new LangConditionImpl();
+			lang.lang = stringCodec.readString(in);
+			cond = lang;
+			break;
+		case PSEUDO:
+			type = stringCodec.readEnum(in, ConditionType.class);
+			if (type != ConditionType.PSEUDO_CLASS && type != ConditionType.PSEUDO_ELEMENT) {
+				throw new StreamCorruptedException("Not a pseudo condition: " + type);
+			}
+			PseudoConditionImpl pseudo = new PseudoConditionImpl(type);
+			pseudo.setName(stringCodec.readString(in));
+			pseudo.argument = stringCodec.readString(in);
+			cond = pseudo;
+			break;
+		case POSITIONAL:
+			int flags = in.readUnsignedByte();
+			PositionalConditionImpl pos = new PositionalConditionImpl(
+					(flags & POS_HAS_ARGUMENT) != 0);
+			pos.forwardCondition = (flags & POS_FORWARD) != 0;
+			pos.oftype = (flags & POS_OF_TYPE) != 0;
+			pos.hasKeyword = (flags & POS_HAS_KEYWORD) != 0;
+			pos.offset = readSignedVarInt(in);
+			pos.slope = readSignedVarInt(in);
+			if ((flags & POS_OF_LIST) != 0) {
+				pos.ofList = readList(in);
+			}
+			cond = pos;
+			break;
+		case SELECTOR_ARGUMENT:
+		case SELECTOR_ARGUMENT_PE:
+			SelectorArgumentConditionImpl arg = kind == SELECTOR_ARGUMENT
+					? new SelectorArgumentConditionImpl()
+					: new SelectorArgumentPEConditionImpl();
+			arg.setName(stringCodec.readString(in));
+			if (in.readBoolean()) {
+				arg.arguments = readList(in);
+			}
+			cond = arg;
+			break;
+		case AND:
+			int len = readCount(in);
+			if (len < 2) {
+				throw new StreamCorruptedException("Invalid compound condition length: " + len);
+			}
+			CombinatorConditionImpl comb = new CombinatorConditionImpl(len);
+			for (int i = 0; i < len; i++) {
+				comb.conditions[i] = readCondition(in);
+			}
+			cond = comb;
+			break;
+		case NESTING:
+			cond = NestingCondition.getInstance();
+			break;
+		default:
+			throw new StreamCorruptedException("Unknown condition kind: " + kind);
+		}
+		depth--;
+		return cond;
+	}
+
+	private static int readCount(DataInput in) throws IOException {
+		int len = LexicalUnitCodec.readVarInt(in);
+		if (len < 0 || len > MAX_COUNT) {
+			throw new StreamCorruptedException("Invalid count: " + len);
+		}
+		return len;
+	}
+
+	private static int readSignedVarInt(DataInput in) throws IOException {
+		int zz = LexicalUnitCodec.readVarInt(in);
+		return (zz >>> 1) ^ -(zz & 1);
+	}
+
+}
@@ -12,7 +12,6 @@
 package io.sf.carte.doc.style.css.property;
 
 import java.io.IOException;
-import java.io.StringReader;
 
 import org.w3c.dom.DOMException;
 
@@ -188,8 +187,8 @@ public abstract class AbstractLexicalValue extends ProxyValue implements CSSLexi
 		checkModifiableProperty();
 		CSSOMParser parser = new CSSOMParser();
 		try {
-			lexicalUnit = parser.parsePropertyValue(new StringReader(cssText));
-		} catch (CSSException | IOException e) {
+			lexicalUnit = parser.parsePropertyValue(cssText);
+		} catch (CSSException e) {
 			throw new DOMSyntaxException(e);
 		}
 	}
@@ -12,7 +12,6 @@
 package io.sf.carte.doc.style.css.property;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.Objects;
 
 import org.w3c.dom.DOMException;
@@ -314,11 +313,9 @@ class ColorMixFunction extends ColorValue implements CSSColorMixFunction {
 		CSSParser parser = new CSSParser();
 		LexicalUnit lunit;
 		try {
-			lunit = parser.parsePropertyValue(new StringReader(cssText));
+			lunit = parser.parsePropertyValue(cssText);
 		} catch (CSSParseException e) {
 			throw new DOMSyntaxException("Wrong color-mix() value: " + cssText, e);
-		} catch (IOException e) {
-			lunit = null;
 		}
 
 		LexicalSetter setter = newLexicalSetter();
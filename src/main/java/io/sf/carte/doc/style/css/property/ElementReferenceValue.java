@@ -12,7 +12,6 @@
 package io.sf.carte.doc.style.css.property;
 
 import java.io.IOException;
-import java.io.StringReader;
 
 import org.w3c.dom.DOMException;
 
@@ -61,9 +60,7 @@ class ElementReferenceValue extends TypedValue {
 		CSSParser parser = new CSSParser();
 		LexicalUnit lu;
 		try {
-			lu = parser.parsePropertyValue(new StringReader(cssText));
-		} catch (IOException e) {
-			lu = null;
+			lu = parser.parsePropertyValue(cssText);
 		} catch (CSSException e) {
 			DOMException ex = new DOMException(DOMException.INVALID_CHARACTER_ERR,
 					"Invalid element reference: " + cssText);
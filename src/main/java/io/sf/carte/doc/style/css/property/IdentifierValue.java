@@ -12,7 +12,6 @@
 package io.sf.carte.doc.style.css.property;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.Locale;
 
 import org.w3c.dom.DOMException;
@@ -70,9 +69,7 @@ public class IdentifierValue extends AbstractTextValue {
 		CSSParser parser = new CSSParser();
 		LexicalUnit lu;
 		try {
-			lu = parser.parsePropertyValue(new StringReader(cssText));
-		} catch (IOException e) {
-			lu = null;
+			lu = parser.parsePropertyValue(cssText);
 		} catch (CSSException e) {
 			DOMException ex = new DOMException(DOMException.INVALID_CHARACTER_ERR,
 					"Invalid identifier: " + cssText);
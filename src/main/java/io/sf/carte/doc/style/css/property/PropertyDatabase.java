@@ -12,10 +12,10 @@
 package io.sf.carte.doc.style.css.property;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Database of device-independent CSS property information.
@@ -27,6 +27,9 @@ public final class PropertyDatabase {
 
 	/**
 	 * Map of initial property values.
+	 * <p>
+	 * The values are parsed lazily, and the map can be accessed concurrently.
+	 * </p>
 	 */
 	private final Map<String, Object> initialValueMap;
 
@@ -119,7 +122,10 @@ public final class PropertyDatabase {
 		if (value != null && value.getClass() == String.class) {
 			svalue = valueFactory.parseProperty((String) value);
 			svalue.setReadOnly();
-			initialValueMap.put(propertyName, svalue);
+			if (!initialValueMap.replace(propertyName, value, svalue)) {
+				// Another thread parsed it first
+				svalue = (StyleValue) initialValueMap.get(propertyName);
+			}
 		} else {
 			svalue = (StyleValue) value;
 		}
@@ -366,7 +372,7 @@ public final class PropertyDatabase {
 			{"writing-mode", "horizontal-tb"},
 			{"z-index", "auto"}
 		};
-		Map<String, Object> initialValueMap = new HashMap<>(initialArray.length);
+		Map<String, Object> initialValueMap = new ConcurrentHashMap<>(initialArray.length);
 		for (String[] iniTuple : initialArray) {
 			initialValueMap.put(iniTuple[0], iniTuple[1]);
 		}
@@ -11,8 +11,6 @@
 
 package io.sf.carte.doc.style.css.property;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.net.URI;
 import java.net.URL;
 
@@ -78,11 +76,9 @@ public class URIValue extends StringValue {
 		CSSParser parser = new CSSParser();
 		LexicalUnit lunit;
 		try {
-			lunit = parser.parsePropertyValue(new StringReader(cssText));
+			lunit = parser.parsePropertyValue(cssText);
 		} catch (CSSException e) {
 			throw new DOMSyntaxException("Error parsing text: " + e.getMessage(), e);
-		} catch (IOException e) {
-			lunit = null;
 		}
 		if (lunit == null || lunit.getLexicalUnitType() != LexicalUnit.LexicalType.URI) {
 			throw new DOMException(DOMException.INVALID_MODIFICATION_ERR, "Not a URI value.");
@@ -11,9 +11,6 @@
 
 package io.sf.carte.doc.style.css.property;
 
-import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 
 import org.w3c.dom.DOMException;
 
@@ -542,15 +539,11 @@ public class ValueFactory implements CSSValueFactory {
 	 *             if a problem was found parsing the property.
 	 */
 	public StyleValue parseProperty(String propertyName, String value, CSSParser parser) throws DOMException {
-		Reader re = new StringReader(value);
 		LexicalUnit lunit = null;
 		try {
-			lunit = parser.parsePropertyValue(propertyName, re);
+			lunit = parser.parsePropertyValue(propertyName, value);
 		} catch (CSSException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 		StyleValue css = createCSSValue(lunit);
 		if (css == null) {
@@ -571,15 +564,11 @@ public class ValueFactory implements CSSValueFactory {
 	 *             if a problem was found parsing the property.
 	 */
 	public StyleValue parseProperty(String propertyName, String value, Parser parser) throws DOMException {
-		Reader re = new StringReader(value);
 		LexicalUnit lunit = null;
 		try {
-			lunit = parser.parsePropertyValue(re);
+			lunit = parser.parsePropertyValue(value);
 		} catch (CSSException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 		StyleValue css = createCSSValue(lunit);
 		if (css == null) {
@@ -652,15 +641,11 @@ public class ValueFactory implements CSSValueFactory {
 	 * @throws DOMException if a problem was found parsing the feature.
 	 */
 	public PrimitiveValue parseMediaFeature(String feature, Parser parser) throws DOMException {
-		Reader re = new StringReader(feature);
 		LexicalUnit lunit = null;
 		try {
-			lunit = parser.parsePropertyValue(re);
+			lunit = parser.parsePropertyValue(feature);
 		} catch (CSSException e) {
 			throw new DOMSyntaxException(e);
-		} catch (IOException e) {
-			// This should never happen!
-			throw new DOMException(DOMException.INVALID_STATE_ERR, e.getMessage());
 		}
 		LexicalSetter item = createCSSPrimitiveValueItem(lunit, true, false);
 		if (item.getNextLexicalUnit() != null) {
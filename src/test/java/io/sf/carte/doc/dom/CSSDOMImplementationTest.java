@@ -14,7 +14,9 @@ package io.sf.carte.doc.dom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -28,8 +30,10 @@ import org.w3c.dom.DocumentType;
 import io.sf.carte.doc.style.css.CSSComputedProperties;
 import io.sf.carte.doc.style.css.CSSDocument;
 import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSMediaException;
 import io.sf.carte.doc.style.css.CSSRule;
 import io.sf.carte.doc.style.css.CSSUnit;
+import io.sf.carte.doc.style.css.DocumentCSSStyleSheet;
 import io.sf.carte.doc.style.css.om.BaseCSSStyleSheet;
 import io.sf.carte.doc.style.css.om.CSSRuleArrayList;
 import io.sf.carte.doc.style.css.om.DOMCSSStyleSheetFactoryTest;
@@ -137,6 +141,103 @@ public class CSSDOMImplementationTest {
 		assertEquals("<!DOCTYPE html SYSTEM \"&quot;&gt;&lt;injection foo=&quot;\">", doctype.toString());
 	}
 
+	@Test
+	public void testSharedDefaultSheet() throws CSSMediaException {
+		TestDOMImplementation impl = new TestDOMImplementation(true);
+		CSSDocument doc1 = impl.createDocument(null, null, null);
+		CSSElement html1 = doc1.createElement("html");
+		doc1.appendChild(html1);
+		CSSElement p1 = doc1.createElement("p");
+		html1.appendChild(p1);
+		CSSDocument doc2 = impl.createDocument(null, null, null);
+		CSSElement html2 = doc2.createElement("html");
+		doc2.appendChild(html2);
+		CSSElement p2 = doc2.createElement("p");
+		html2.appendChild(p2);
+
+		CSSRuleArrayList defRules = impl.getDefaultStyleSheet(doc1.getComplianceMode())
+				.getCssRules();
+		int defSz = defRules.getLength();
+		DocumentCSSStyleSheet sheet1 = doc1.getStyleSheet();
+		DocumentCSSStyleSheet sheet2 = doc2.getStyleSheet();
+		assertNotSame(sheet1, sheet2);
+		assertEquals(defSz, sheet1.getCssRules().getLength());
+		assertEquals(defSz, sheet2.getCssRules().getLength());
+		// The rules of the default sheet are not cloned
+		for (int i = 0; i < defSz; i++) {
+			assertSame(defRules.item(i), sheet1.getCssRules().item(i));
+			assertSame(defRules.item(i), sheet2.getCssRules().item(i));
+		}
+
+		// Author rules only belong to their document
+		CSSElement style = doc1.createElement("style");
+		style.setTextContent("p {display: inline;}");
+		html1.appendChild(style);
+		sheet1 = doc1.getStyleSheet();
+		assertEquals(defSz + 1, sheet1.getCssRules().getLength());
+		assertEquals(defSz, sheet2.getCssRules().getLength());
+		assertEquals(defSz, defRules.getLength());
+		assertEquals("inline", p1.getComputedStyle(null).getPropertyValue("display"));
+		assertEquals("block", p2.getComputedStyle(null).getPropertyValue("display"));
+
+		// Medium-specific sheet
+		doc2.setTargetMedium("screen");
+		sheet2 = doc2.getStyleSheet();
+		assertEquals(defSz - 1, sheet2.getCssRules().getLength());
+		assertEquals(defSz, defRules.getLength());
+		assertEquals("block", p2.getComputedStyle(null).getPropertyValue("display"));
+	}
+
+	@Test
+	public void testSharedDefaultSheetReadOnly() {
+		TestDOMImplementation impl = new TestDOMImplementation(true);
+		CSSDocument doc = impl.createDocument(null, null, null);
+		CSSElement html = doc.createElement("html");
+		doc.appendChild(html);
+		CSSElement style = doc.createElement("style");
+		style.setTextContent("p {display: inline;}");
+		html.appendChild(style);
+
+		DocumentCSSStyleSheet sheet = doc.getStyleSheet();
+		CSSRuleArrayList rules = (CSSRuleArrayList) sheet.getCssRules();
+		assertTrue(rules.getLength() > 1);
+		StyleRule defRule = null;
+		for (int i = 0; i < rules.getLength(); i++) {
+			CSSRule rule = rules.item(i);
+			if (rule.getType() == CSSRule.STYLE_RULE) {
+				defRule = (StyleRule) rule;
+				break;
+			}
+		}
+		assertNotNull(defRule);
+		String defText = defRule.getCssText();
+
+		try {
+			defRule.getStyle().setProperty("color", "red", null);
+			fail("Must throw exception");
+		} catch (DOMException e) {
+			assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+		}
+		try {
+			defRule.getStyle().setCssText("color: red");
+			fail("Must throw exception");
+		} catch (DOMException e) {
+			assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+		}
+		try {
+			defRule.setSelectorText("p");
+			fail("Must throw exception");
+		} catch (DOMException e) {
+			assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+		}
+		assertEquals(defText, defRule.getCssText());
+
+		// Author rules can be modified
+		StyleRule authorRule = (StyleRule) rules.item(rules.getLength() - 1);
+		authorRule.getStyle().setProperty("color", "red", null);
+		assertEquals("red", authorRule.getStyle().getPropertyValue("color"));
+	}
+
 	@Test
 	public void getFontSize() {
 		TestDOMImplementation impl = new TestDOMImplementation();
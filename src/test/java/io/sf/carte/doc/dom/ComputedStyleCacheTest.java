@@ -0,0 +1,161 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.dom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.style.css.CSSPropertyDefinition;
+import io.sf.carte.doc.style.css.CSSValueSyntax;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
+import io.sf.carte.doc.style.css.om.ComputedCSSStyle;
+import io.sf.carte.doc.style.css.om.ComputedStyleCache;
+import io.sf.carte.doc.style.css.parser.CSSParser;
+import io.sf.carte.doc.style.css.parser.SyntaxParser;
+
+public class ComputedStyleCacheTest {
+
+	private CSSDOMImplementation domImpl;
+
+	private DOMDocument document;
+
+	private DOMElement body;
+
+	private DOMElement p;
+
+	@BeforeEach
+	public void setUp() {
+		domImpl = new CSSDOMImplementation();
+		domImpl.setComputedStyleCaching(true);
+		document = domImpl.createDocument("", "html", null);
+		DOMElement style = document.createElement("style");
+		style.setAttribute("type", "text/css");
+		style.setTextContent("p {margin-left: 1px}.foo {margin-left: 2px}"
+				+ "div + p {margin-left: 3px}");
+		document.getDocumentElement().appendChild(style);
+		body = document.createElement("body");
+		document.getDocumentElement().appendChild(body);
+		p = document.createElement("p");
+		body.appendChild(p);
+	}
+
+	@Test
+	public void testGetComputedStyle() {
+		ComputedStyleCache cache = document.getComputedStyleCache();
+		assertNotNull(cache);
+		assertEquals(0, cache.size());
+
+		ComputedCSSStyle style = p.getComputedStyle(null);
+		assertEquals("1px", style.getPropertyValue("margin-left"));
+		assertEquals(1, cache.getMissCount());
+		assertSame(style, p.getComputedStyle(null));
+		assertEquals(1, cache.getHitCount());
+
+		ComputedCSSStyle before = p.getComputedStyle("::before");
+		assertNotSame(style, before);
+		assertSame(before, p.getComputedStyle("::before"));
+		assertEquals(2, cache.getHitCount());
+
+		cache.resetCounters();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void testInvalidateAttribute() {
+		ComputedStyleCache cache = document.getComputedStyleCache();
+		ComputedCSSStyle style = p.getComputedStyle(null);
+		assertEquals("1px", style.getPropertyValue("margin-left"));
+
+		p.setAttribute("class", "foo");
+		assertEquals(0, cache.size());
+		style = p.getComputedStyle(null);
+		assertEquals("2px", style.getPropertyValue("margin-left"));
+
+		p.getClassList().remove("foo");
+		assertEquals(0, cache.size());
+		assertEquals("1px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		p.getClassList().add("foo");
+		assertEquals("2px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+	}
+
+	@Test
+	public void testClassListRead() {
+		ComputedStyleCache cache = document.getComputedStyleCache();
+		DOMElement q = document.createElement("p");
+		q.setAttribute("class", "foo");
+		body.appendChild(q);
+		assertEquals("1px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+		assertEquals(1, cache.size());
+
+		// Filling the class list from the attribute is not a change
+		assertEquals(1, q.getClassList().getLength());
+		assertEquals(1, cache.size());
+		assertEquals("2px", q.getComputedStyle(null).getPropertyValue("margin-left"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testInvalidateRegisterProperty() {
+		ComputedCSSStyle style = p.getComputedStyle(null);
+		ComputedStyleCache cache = document.getComputedStyleCache();
+		assertEquals(1, cache.size());
+
+		CSSValueSyntax syn = new SyntaxParser().parseSyntax("<length>");
+		LexicalUnit lunit = new CSSParser().parsePropertyValue("15pt");
+		CSSPropertyDefinition pdef = document.getStyleSheet().getStyleSheetFactory()
+				.createPropertyDefinition("--foo", syn, false, lunit);
+		document.registerProperty(pdef);
+		assertEquals(0, cache.size());
+		assertNotSame(style, p.getComputedStyle(null));
+	}
+
+	@Test
+	public void testInvalidateTree() {
+		assertEquals("1px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		DOMElement div = document.createElement("div");
+		body.insertBefore(div, p);
+		assertEquals(0, document.getComputedStyleCache().size());
+		assertEquals("3px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		body.removeChild(div);
+		assertEquals("1px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+	}
+
+	@Test
+	public void testInvalidateRebuildCascade() {
+		ComputedStyleCache cache = document.getComputedStyleCache();
+		ComputedCSSStyle style = p.getComputedStyle(null);
+		assertEquals(1, cache.size());
+
+		document.rebuildCascade();
+		assertEquals(0, cache.size());
+		assertNotSame(style, p.getComputedStyle(null));
+	}
+
+	@Test
+	public void testCachingDisabled() {
+		domImpl.setComputedStyleCaching(false);
+		assertNull(document.getComputedStyleCache());
+		ComputedCSSStyle style = p.getComputedStyle(null);
+		assertNotSame(style, p.getComputedStyle(null));
+	}
+
+}
@@ -0,0 +1,272 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.dom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.DOMTokenList;
+import io.sf.carte.doc.style.css.CSSStyleDeclaration;
+import io.sf.carte.doc.style.css.om.ComputedCSSStyle;
+
+public class ConcurrentStylingTest {
+
+	private static final String[] PROPERTIES = { "display", "color", "margin-left",
+			"font-size", "font-weight", "border-top-width", "padding-left" };
+
+	private TestDOMImplementation domImpl;
+
+	private DOMDocument document;
+
+	private List<DOMElement> elements;
+
+	@BeforeEach
+	public void setUp() {
+		domImpl = new TestDOMImplementation();
+		domImpl.setComputedStyleCaching(true);
+		document = domImpl.createDocument("", "html", null);
+		DOMElement html = document.getDocumentElement();
+		DOMElement head = document.createElement("head");
+		html.appendChild(head);
+		DOMElement style = document.createElement("style");
+		style.setAttribute("type", "text/css");
+		style.setTextContent("p {margin-left: 1px; color: #333}.foo {margin-left: 2px}"
+				+ "div > p:nth-child(2n+1) {font-weight: bold}"
+				+ "div.bar p {color: #a01; font-size: 90%}"
+				+ "span + span {padding-left: 3px} #p7 {border-top: 4px solid}"
+				+ "p:not(.foo) span:first-child {display: block}");
+		head.appendChild(style);
+		DOMElement body = document.createElement("body");
+		html.appendChild(body);
+		elements = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			DOMElement div = document.createElement("div");
+			if (i % 3 == 0) {
+				div.setAttribute("class", "bar");
+			}
+			body.appendChild(div);
+			elements.add(div);
+			for (int j = 0; j < 5; j++) {
+				DOMElement p = document.createElement("p");
+				if (j % 2 == 0) {
+					p.setAttribute("class", "foo");
+				}
+				p.setAttribute("id", "p" + j);
+				if (j == 4) {
+					p.setAttribute("style", "font-size: 20px");
+				}
+				div.appendChild(p);
+				elements.add(p);
+				for (int k = 0; k < 2; k++) {
+					DOMElement span = document.createElement("span");
+					span.setTextContent("Text");
+					p.appendChild(span);
+					elements.add(span);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testComputeStylesConcurrently() throws Exception {
+		// Expected values, computed by a single thread
+		final List<String> expected = new ArrayList<>(elements.size());
+		for (DOMElement elm : elements) {
+			expected.add(serialize(elm.getComputedStyle(null)));
+		}
+		DOMElement p = elements.get(1);
+		assertEquals("p", p.getLocalName());
+		assertEquals("2px", p.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		domImpl.setConcurrentStyling(true);
+		assertTrue(domImpl.isConcurrentStyling());
+		assertNull(document.getComputedStyleCache());
+		// Selector matchers are not shared
+		DOMElement elm0 = elements.get(0);
+		assertNotSame(elm0.getSelectorMatcher(), elm0.getSelectorMatcher());
+		// Prime the sheet
+		assertNotNull(document.getStyleSheet());
+
+		final int nthreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+		try {
+			List<Future<List<String>>> results = new ArrayList<>(nthreads);
+			for (int i = 0; i < nthreads; i++) {
+				final int offset = i;
+				results.add(executor.submit(new Callable<List<String>>() {
+
+					@Override
+					public List<String> call() {
+						List<String> errors = new ArrayList<>();
+						int sz = elements.size();
+						for (int n = 0; n < 4; n++) {
+							// Each thread starts at a different element
+							for (int j = 0; j < sz; j++) {
+								int idx = (j + offset * 37) % sz;
+								String value = serialize(elements.get(idx).getComputedStyle(null));
+								if (!expected.get(idx).equals(value)) {
+									errors.add("Element #" + idx + ": " + value);
+								}
+							}
+						}
+						return errors;
+					}
+
+				}));
+			}
+			for (Future<List<String>> future : results) {
+				List<String> errors = future.get(60, TimeUnit.SECONDS);
+				assertTrue(errors.isEmpty(), errors.toString());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		domImpl.setConcurrentStyling(false);
+		assertNotNull(document.getComputedStyleCache());
+	}
+
+	@Test
+	public void testClassListConcurrently() throws Exception {
+		domImpl.setConcurrentStyling(true);
+		final int nthreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+		try {
+			List<Future<List<DOMTokenList>>> results = new ArrayList<>(nthreads);
+			for (int i = 0; i < nthreads; i++) {
+				results.add(executor.submit(new Callable<List<DOMTokenList>>() {
+
+					@Override
+					public List<DOMTokenList> call() {
+						List<DOMTokenList> lists = new ArrayList<>(elements.size());
+						for (DOMElement elm : elements) {
+							DOMTokenList list = elm.getClassList();
+							list.contains("foo");
+							lists.add(list);
+						}
+						return lists;
+					}
+
+				}));
+			}
+			for (Future<List<DOMTokenList>> future : results) {
+				List<DOMTokenList> lists = future.get(60, TimeUnit.SECONDS);
+				for (int i = 0; i < lists.size(); i++) {
+					// All the threads obtain the same, live, list
+					assertSame(elements.get(i).getClassList(), lists.get(i));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		DOMElement p = elements.get(1);
+		assertTrue(p.getClassList().contains("foo"));
+		p.getClassList().add("baz");
+		assertEquals("foo baz", p.getAttribute("class"));
+	}
+
+	@Test
+	public void testInlineStyleConcurrently() throws Exception {
+		final List<DOMElement> styled = new ArrayList<>();
+		for (DOMElement elm : elements) {
+			if ("span".equals(elm.getLocalName())) {
+				// Text that is not CSS is parsed again each time that the style is requested
+				elm.setAttribute("style", styled.size() % 2 == 0 ? "padding-left: 5px" : "foo");
+				styled.add(elm);
+			}
+		}
+		final List<String> expected = new ArrayList<>(elements.size());
+		for (DOMElement elm : elements) {
+			expected.add(serialize(elm.getComputedStyle(null)));
+		}
+
+		domImpl.setConcurrentStyling(true);
+		assertNotNull(document.getStyleSheet());
+
+		final int nthreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+		try {
+			List<Future<List<String>>> results = new ArrayList<>(nthreads);
+			for (int i = 0; i < nthreads; i++) {
+				final int offset = i;
+				results.add(executor.submit(new Callable<List<String>>() {
+
+					@Override
+					public List<String> call() {
+						List<String> errors = new ArrayList<>();
+						int sz = styled.size();
+						for (int n = 0; n < 4; n++) {
+							for (int j = 0; j < sz; j++) {
+								int idx = (j + offset * 11) % sz;
+								DOMElement elm = styled.get(idx);
+								CSSStyleDeclaration style = elm.getStyle();
+								if (idx % 2 == 0) {
+									if (style == null
+											|| !"5px".equals(style.getPropertyValue("padding-left"))) {
+										errors.add("Inline style #" + idx + ": " + style);
+									}
+								} else if (style != null) {
+									errors.add("Inline style #" + idx + ": " + style.getCssText());
+								}
+							}
+							for (int j = 0; j < elements.size(); j++) {
+								int idx = (j + offset * 37) % elements.size();
+								String value = serialize(elements.get(idx).getComputedStyle(null));
+								if (!expected.get(idx).equals(value)) {
+									errors.add("Element #" + idx + ": " + value);
+								}
+							}
+						}
+						return errors;
+					}
+
+				}));
+			}
+			for (Future<List<String>> future : results) {
+				List<String> errors = future.get(60, TimeUnit.SECONDS);
+				assertTrue(errors.isEmpty(), errors.toString());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		domImpl.setConcurrentStyling(false);
+		assertEquals("foo", styled.get(1).getAttribute("style"));
+		assertSame(styled.get(0).getStyle(), styled.get(0).getStyle());
+	}
+
+	private static String serialize(ComputedCSSStyle style) {
+		StringBuilder buf = new StringBuilder(64);
+		buf.append(style.getPropertyValue(PROPERTIES[0]));
+		for (int i = 1; i < PROPERTIES.length; i++) {
+			buf.append(';').append(style.getPropertyValue(PROPERTIES[i]));
+		}
+		return buf.toString();
+	}
+
+}
@@ -14,6 +14,7 @@ package io.sf.carte.doc.dom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -1143,6 +1144,105 @@ public class DOMDocumentTest {
 		assertEquals("<style>foo:</style>", style.toString());
 	}
 
+	@Test
+	public void testStyleElementMergedSheetUpdate() {
+		DOMDocument document = domImpl.createDocument("", "foo", null);
+		DOMElement docElm = document.getDocumentElement();
+		DOMElement style1 = document.createElement("style");
+		style1.setTextContent("bar {margin-left: 4px;}");
+		docElm.appendChild(style1);
+		DOMElement style2 = document.createElement("style");
+		style2.setTextContent("bar {color: blue;}");
+		docElm.appendChild(style2);
+		DOMElement bar = document.createElement("bar");
+		docElm.appendChild(bar);
+
+		AbstractCSSStyleSheet sheet = (AbstractCSSStyleSheet) document.getStyleSheet();
+		int ruleCount = sheet.getCssRules().getLength();
+		assertEquals("blue", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("4px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		style2.setTextContent("bar {color: red;} bar {margin-right: 2px;}");
+		assertSame(sheet, document.getStyleSheet());
+		assertEquals(ruleCount + 1, sheet.getCssRules().getLength());
+		assertEquals("red", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("2px", bar.getComputedStyle(null).getPropertyValue("margin-right"));
+		assertEquals("4px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		// Modify the first sheet, the following one is kept
+		((Text) style1.getFirstChild()).setData("bar {margin-left: 6px;}");
+		assertSame(sheet, document.getStyleSheet());
+		assertEquals(ruleCount + 1, sheet.getCssRules().getLength());
+		assertEquals("red", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("6px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+
+		// Removing a style element still rebuilds the merged sheet
+		docElm.removeChild(style1);
+		assertNotSame(sheet, document.getStyleSheet());
+		assertEquals("0px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+		assertEquals("red", bar.getComputedStyle(null).getPropertyValue("color"));
+	}
+
+	@Test
+	public void testStyleElementMergedSheetUpdateNamespace() {
+		DOMDocument document = domImpl.createDocument("", "foo", null);
+		DOMElement docElm = document.getDocumentElement();
+		DOMElement style1 = document.createElement("style");
+		style1.setTextContent("bar {margin-left: 4px;}");
+		docElm.appendChild(style1);
+		DOMElement style2 = document.createElement("style");
+		style2.setTextContent("bar {color: blue;}");
+		docElm.appendChild(style2);
+		DOMElement bar = document.createElement("bar");
+		docElm.appendChild(bar);
+
+		AbstractCSSStyleSheet sheet = (AbstractCSSStyleSheet) document.getStyleSheet();
+		assertEquals("blue", bar.getComputedStyle(null).getPropertyValue("color"));
+
+		// The new text declares a namespace, so the merged sheet is rebuilt
+		style2.setTextContent("@namespace svg url('http://www.w3.org/2000/svg');"
+				+ "bar {color: red;}");
+		assertNotSame(sheet, document.getStyleSheet());
+		assertEquals("red", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("4px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+	}
+
+	@Test
+	public void testStyleElementMergedSheetUpdateInsertRule() {
+		DOMDocument document = domImpl.createDocument("", "foo", null);
+		DOMElement docElm = document.getDocumentElement();
+		DOMElement style1 = document.createElement("style");
+		style1.setTextContent("bar {margin-left: 4px;}");
+		docElm.appendChild(style1);
+		DOMElement style2 = document.createElement("style");
+		style2.setTextContent("bar {color: blue;}");
+		docElm.appendChild(style2);
+		DOMElement bar = document.createElement("bar");
+		docElm.appendChild(bar);
+
+		AbstractCSSStyleSheet sheet = (AbstractCSSStyleSheet) document.getStyleSheet();
+		int ruleCount = sheet.getCssRules().getLength();
+		assertEquals("blue", bar.getComputedStyle(null).getPropertyValue("color"));
+
+		// A rule inserted into the merged sheet shifts the recorded ranges
+		sheet.insertRule("bar {padding-left: 3px;}", 0);
+		assertEquals(ruleCount + 1, sheet.getCssRules().getLength());
+
+		style2.setTextContent("bar {color: red;}");
+		AbstractCSSStyleSheet updated = (AbstractCSSStyleSheet) document.getStyleSheet();
+		assertNotSame(sheet, updated);
+		assertEquals(ruleCount, updated.getCssRules().getLength());
+		assertEquals("red", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("4px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+		assertEquals("0px", bar.getComputedStyle(null).getPropertyValue("padding-left"));
+
+		// Now the incremental update works again
+		style2.setTextContent("bar {color: green;}");
+		assertSame(updated, document.getStyleSheet());
+		assertEquals("green", bar.getComputedStyle(null).getPropertyValue("color"));
+		assertEquals("4px", bar.getComputedStyle(null).getPropertyValue("margin-left"));
+	}
+
 	@Test
 	public void getElementsByTagName() {
 		DOMDocument document = domImpl.createDocument("", "doc", null);
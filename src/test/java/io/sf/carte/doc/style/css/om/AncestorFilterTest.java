@@ -0,0 +1,139 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+import io.sf.carte.doc.style.css.parser.CSSParser;
+
+public class AncestorFilterTest {
+
+	private CSSParser parser;
+
+	private CSSDOMImplementation impl;
+
+	private CSSElement body;
+
+	private CSSElement div;
+
+	private CSSElement p;
+
+	@BeforeEach
+	public void setUp() {
+		parser = new CSSParser();
+		impl = new CSSDOMImplementation();
+		CSSDocument document = impl.createDocument(null, "html", null);
+		CSSElement html = document.getDocumentElement();
+		body = document.createElement("body");
+		html.appendChild(body);
+		div = document.createElement("div");
+		div.setAttribute("id", "main");
+		div.setAttribute("class", "foo  bar");
+		body.appendChild(div);
+		p = document.createElement("p");
+		p.setAttribute("class", "para");
+		div.appendChild(p);
+	}
+
+	@Test
+	public void testSelectorHashes() {
+		assertNull(hashes("p"));
+		assertNull(hashes(".foo#main"));
+		assertNull(hashes("div + p"));
+		assertNull(hashes("* p"));
+		assertNull(hashes(":hover > p"));
+		assertEquals(1, hashes("div p").length);
+		assertEquals(1, hashes("div > p").length);
+		assertEquals(3, hashes("div#main.foo p").length);
+		assertEquals(1, hashes("span + div p").length);
+		assertEquals(1, hashes("div p ~ span").length);
+		assertEquals(4, hashes("html body div.foo.bar span").length);
+	}
+
+	@Test
+	public void testForAncestors() {
+		AncestorFilter filter = AncestorFilter.forAncestors(matcher(p));
+		assertEquals(3, filter.getDepth());
+
+		assertTrue(filter.mightContainAll(hashes("div p")));
+		assertTrue(filter.mightContainAll(hashes("DIV p")));
+		assertTrue(filter.mightContainAll(hashes("html > body > div p")));
+		assertTrue(filter.mightContainAll(hashes("#main .bar .para")));
+		assertTrue(filter.mightContainAll(hashes("span + div p")));
+		assertFalse(filter.mightContainAll(hashes("span p")));
+		assertFalse(filter.mightContainAll(hashes("div.baz p")));
+		assertFalse(filter.mightContainAll(hashes("#other p")));
+		// The element itself is not an ancestor
+		assertFalse(filter.mightContainAll(hashes(".para p")));
+	}
+
+	@Test
+	public void testPushPop() {
+		AncestorFilter filter = new AncestorFilter();
+		filter.pushElement(matcher(body));
+		assertFalse(filter.mightContainAll(hashes("div p")));
+
+		filter.pushElement(matcher(div));
+		assertEquals(2, filter.getDepth());
+		assertTrue(filter.mightContainAll(hashes("body div p")));
+		assertTrue(filter.mightContainAll(hashes(".foo p")));
+
+		filter.popElement();
+		assertEquals(1, filter.getDepth());
+		assertTrue(filter.mightContainAll(hashes("body p")));
+		assertFalse(filter.mightContainAll(hashes("div p")));
+		assertFalse(filter.mightContainAll(hashes(".foo p")));
+
+		filter.popElement();
+		assertFalse(filter.mightContainAll(hashes("body p")));
+		assertThrows(IllegalStateException.class, () -> filter.popElement());
+	}
+
+	@Test
+	public void testMatchSelectors() {
+		BaseCSSStyleSheet sheet = DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		sheet.insertRule("span p, div p, #main > p {color: blue}", 0);
+		StyleRule rule = (StyleRule) sheet.getCssRules().item(0);
+		assertNotNull(rule.getSelectorAncestorHashes());
+
+		AbstractSelectorMatcher matcher = matcher(p);
+		AncestorFilter filter = AncestorFilter.forAncestors(matcher);
+		assertEquals(2, rule.matchSelectors(matcher, filter));
+		assertEquals(rule.matchSelectors(matcher, null), rule.matchSelectors(matcher, filter));
+
+		// A filter without the ancestors rejects the selectors
+		assertEquals(-1, rule.matchSelectors(matcher, new AncestorFilter()));
+	}
+
+	private int[] hashes(String selector) {
+		return AncestorFilter.selectorHashes(parser.parseSelectors(selector).item(0));
+	}
+
+	private static AbstractSelectorMatcher matcher(CSSElement elm) {
+		return (AbstractSelectorMatcher) elm.getSelectorMatcher();
+	}
+
+}
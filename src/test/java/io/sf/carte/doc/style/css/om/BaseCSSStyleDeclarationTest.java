@@ -1037,6 +1037,25 @@ public class BaseCSSStyleDeclarationTest {
 		assertEquals("border: 8px white;\nborder-color: yellow;\n", emptyStyleDecl.getCssText());
 	}
 
+	@Test
+	public void testAddStylePriority() {
+		emptyStyleDecl.setCssText("color: blue; margin-left: 4px ! important; width: 20px");
+		BaseCSSStyleDeclaration style = new BaseCSSStyleDeclaration();
+		style.setCssText("color: red ! important; margin-left: 8px; top: 2px");
+		emptyStyleDecl.addStyle(style);
+		assertEquals(4, emptyStyleDecl.getLength());
+		assertEquals("red", emptyStyleDecl.getPropertyValue("color"));
+		assertEquals("important", emptyStyleDecl.getPropertyPriority("color"));
+		assertEquals("4px", emptyStyleDecl.getPropertyValue("margin-left"));
+		assertEquals("important", emptyStyleDecl.getPropertyPriority("margin-left"));
+		assertEquals("20px", emptyStyleDecl.getPropertyValue("width"));
+		assertEquals("", emptyStyleDecl.getPropertyPriority("width"));
+		assertEquals("2px", emptyStyleDecl.getPropertyValue("top"));
+		assertEquals("", emptyStyleDecl.getPropertyPriority("top"));
+		assertEquals("color:red!important;margin-left:4px!important;width:20px;top:2px",
+				emptyStyleDecl.getMinifiedCssText());
+	}
+
 	@Test
 	public void testEquals() {
 		emptyStyleDecl.setCssText(
@@ -33,10 +33,16 @@ public class CascadeTest {
 
 	private Cascade cascade;
 
+	private CSSDOMImplementation impl;
+
+	private BaseDocumentCSSStyleSheet sheet;
+
+	private SelectorMatcher matcher;
+
 	@BeforeEach
 	public void setUp() throws IOException {
-		CSSDOMImplementation impl = new CSSDOMImplementation();
-		BaseDocumentCSSStyleSheet sheet = DOMBridge.createDocumentStyleSheet(impl,
+		impl = new CSSDOMImplementation();
+		sheet = DOMBridge.createDocumentStyleSheet(impl,
 				CSSStyleSheetFactory.ORIGIN_AUTHOR);
 		CSSDocument ownerNode = impl.createDocument(null, "html", null);
 		sheet.setOwnerDocument(ownerNode);
@@ -49,7 +55,7 @@ public class CascadeTest {
 
 		CSSRuleArrayList rules = sheet.getCssRules();
 
-		SelectorMatcher matcher = new DOMSelectorMatcher(sheet.getOwnerNode().getDocumentElement());
+		matcher = new DOMSelectorMatcher(sheet.getOwnerNode().getDocumentElement());
 		cascade = sheet.new Cascade();
 		Iterator<AbstractCSSRule> it = rules.iterator();
 		while (it.hasNext()) {
@@ -74,4 +80,59 @@ public class CascadeTest {
 		assertFalse(it.hasNext());
 	}
 
+	@Test
+	public void testOrigin() throws IOException {
+		BaseDocumentCSSStyleSheet uaSheet = DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_USER_AGENT);
+		uaSheet.setOwnerDocument(sheet.getOwnerNode());
+		uaSheet.parseStyleSheet(new StringReader("p#ua {font-size: 5em}"));
+		StyleRule rule = (StyleRule) uaSheet.getCssRules().item(0);
+		cascade.add(rule.getSpecificity(0, matcher));
+
+		assertEquals(6, cascade.getLength());
+		assertEquals("p#ua", cascade.item(0).getSelectorText());
+		assertEquals("p", cascade.item(1).getSelectorText());
+		assertEquals("#myid", cascade.item(5).getSelectorText());
+	}
+
+	@Test
+	public void testSourceOrder() throws IOException {
+		StringBuilder buf = new StringBuilder(1200);
+		for (int i = 0; i < 100; i++) {
+			buf.append("p.c").append(i).append(" {margin-left: ").append(i).append("px}");
+		}
+		BaseDocumentCSSStyleSheet other = DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		other.setOwnerDocument(sheet.getOwnerNode());
+		other.parseStyleSheet(new StringReader(buf.toString()));
+		cascade = other.new Cascade();
+		Iterator<AbstractCSSRule> it = other.getCssRules().iterator();
+		while (it.hasNext()) {
+			StyleRule rule = (StyleRule) it.next();
+			cascade.add(rule.getSpecificity(0, matcher));
+		}
+
+		assertEquals(100, cascade.getLength());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("p.c" + i, cascade.item(i).getSelectorText());
+		}
+	}
+
+	@Test
+	public void testAddStylesTo() {
+		ComputedCSSStyle style = sheet.createComputedCSSStyle();
+		style.setOwnerNode(sheet.getOwnerNode().getDocumentElement());
+		cascade.addStylesTo(style);
+		assertEquals("4em", style.getDeclaredCSSValue("font-size").getCssText());
+		assertEquals(0, cascade.getLength());
+		assertFalse(cascade.iterator().hasNext());
+
+		// The buffer is reused by the next cascade
+		StyleRule rule = (StyleRule) sheet.getCssRules().item(2);
+		Cascade other = sheet.new Cascade();
+		other.add(rule.getSpecificity(0, matcher));
+		assertEquals(1, other.getLength());
+		assertEquals("p", other.item(0).getSelectorText());
+	}
+
 }
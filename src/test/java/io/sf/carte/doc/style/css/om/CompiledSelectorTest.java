@@ -0,0 +1,83 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.DOMElement;
+import io.sf.carte.doc.dom.ElementList;
+import io.sf.carte.doc.dom.HTMLDocument;
+import io.sf.carte.doc.dom.TestDOMImplementation;
+import io.sf.carte.doc.style.css.SelectorMatcher;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+import io.sf.carte.doc.style.css.parser.CSSParser;
+
+public class CompiledSelectorTest {
+
+	private static HTMLDocument doc;
+
+	@BeforeAll
+	public static void setUpBeforeClass() throws IOException {
+		doc = TestDOMImplementation.sampleXHTMLDocument();
+	}
+
+	@Test
+	public void testCompiledMatchesInterpreted() throws IOException {
+		String[] selectors = { "*", "p", "P", "div p", "body > div", "p + p", "h1 ~ *",
+				".tableclass", "#listitem1", "ul li:first-child", "li:nth-child(2n+1)",
+				"td:only-child", "p:not(.foo, #bar)", ":is(h1, h2, .tableclass) span",
+				":where(ul) > li", "a[href]", "a[href^=\"http\"]", "div:has(p)",
+				"p::first-line", "html:root", "span:empty", "tr:last-child td",
+				"p.foo.bar", "li:nth-last-child(-n+2)", "td:nth-of-type(even)",
+				"p:first-of-type", "li:last-of-type", "p:only-of-type", "li:nth-child(odd of .x)",
+				"a:any-link", "a:link", "a:visited", ":target", ":disabled", "input:enabled",
+				":read-only", ":read-write", ":placeholder-shown", ":checked", ":default",
+				":indeterminate", "p:blank", ":hover", ":dir(ltr)" };
+		CSSParser parser = new CSSParser();
+		ElementList list = doc.getElementsByTagName("*");
+		for (String text : selectors) {
+			SelectorList selist = parser.parseSelectors(new StringReader(text));
+			CompiledSelector[] compiled = CompiledSelector.compile(selist);
+			assertEquals(selist.getLength(), compiled.length);
+			for (int i = 0; i < list.getLength(); i++) {
+				DOMElement elm = list.item(i);
+				SelectorMatcher matcher = elm.getSelectorMatcher();
+				matcher.setPseudoElement(null);
+				for (int j = 0; j < compiled.length; j++) {
+					assertSame(selist.item(j), compiled[j].getSelector());
+					assertEquals(matcher.matches(selist.item(j)), compiled[j].matches(matcher),
+							text + " on " + elm.getTagName());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testQuerySelectorAll() throws IOException {
+		ElementList list = doc.querySelectorAll("ul > li:first-child, .nonexistent");
+		assertTrue(list.getLength() > 0);
+		for (DOMElement elm : list) {
+			assertTrue(elm.matches("ul > li:first-child", null));
+		}
+		assertFalse(doc.querySelectorAll("p:not(p)").iterator().hasNext());
+	}
+
+}
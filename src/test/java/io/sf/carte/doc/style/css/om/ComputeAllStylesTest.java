@@ -0,0 +1,327 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSComputedProperties;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+public class ComputeAllStylesTest {
+
+	private static final String CSS = "body {margin-left: 4px}"
+			+ "div p {margin-top: 2px}"
+			+ "#main > p.para {padding-left: 3px}"
+			+ "span p {color: red}"
+			+ "p {font-size: 150%}"
+			+ "tr {margin-top: 0px; margin-bottom: 0px}"
+			+ "td {padding-top: 0px}"
+			+ "tr:nth-child(2n) {margin-top: 5px}"
+			+ "tr:nth-last-of-type(1) {margin-bottom: 7px}"
+			+ "td:nth-child(odd of .c) {padding-top: 1px}";
+
+	private CSSDOMImplementation impl;
+
+	private DOMDocumentCSSStyleSheet sheet;
+
+	private CSSDocument document;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		impl = new CSSDOMImplementation();
+		sheet = (DOMDocumentCSSStyleSheet) DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		document = impl.createDocument(null, "html", null);
+		sheet.setOwnerDocument(document);
+		sheet.parseStyleSheet(new StringReader(CSS));
+
+		CSSElement body = document.createElement("body");
+		document.getDocumentElement().appendChild(body);
+		CSSElement div = document.createElement("div");
+		div.setAttribute("id", "main");
+		body.appendChild(div);
+		CSSElement p = document.createElement("p");
+		p.setAttribute("class", "para");
+		div.appendChild(p);
+		div.appendChild(document.createTextNode("text"));
+		p = document.createElement("p");
+		div.appendChild(p);
+		p = document.createElement("p");
+		body.appendChild(p);
+	}
+
+	@Test
+	public void testComputeAllStyles() {
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(6, styles.size());
+
+		String[] names = { "html", "body", "div", "p", "p", "p" };
+		for (int i = 0; i < names.length; i++) {
+			ComputedCSSStyle style = styles.get(i);
+			CSSElement elm = style.getOwnerNode();
+			assertEquals(names[i], elm.getLocalName());
+			// Same result as computing the style of each element
+			assertEquals(sheet.getComputedStyle(elm, null).getCssText(), style.getCssText());
+			// The filter was only set during the traversal
+			assertNull(((AbstractSelectorMatcher) elm.getSelectorMatcher()).getAncestorFilter());
+		}
+
+		// The parent styles are the ones that were computed before
+		assertNull(styles.get(0).getParentComputedStyle());
+		assertSame(styles.get(0), styles.get(1).getParentComputedStyle());
+		assertSame(styles.get(1), styles.get(2).getParentComputedStyle());
+		assertSame(styles.get(2), styles.get(3).getParentComputedStyle());
+		assertSame(styles.get(2), styles.get(4).getParentComputedStyle());
+		assertSame(styles.get(1), styles.get(5).getParentComputedStyle());
+
+		assertEquals("3px", styles.get(3).getPropertyValue("padding-left"));
+		assertEquals("2px", styles.get(4).getPropertyValue("margin-top"));
+	}
+
+	@Test
+	public void testComputeAllStylesNthChild() {
+		CSSElement body = (CSSElement) document.getElementsByTagName("body").item(0);
+		CSSElement table = document.createElement("table");
+		body.appendChild(table);
+		for (int i = 0; i < 5; i++) {
+			CSSElement tr = document.createElement("tr");
+			table.appendChild(tr);
+			for (int j = 0; j < 4; j++) {
+				CSSElement td = document.createElement("td");
+				if (j != 1) {
+					td.setAttribute("class", "c");
+				}
+				tr.appendChild(td);
+			}
+		}
+
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(32, styles.size());
+
+		int rowIndex = 0;
+		int cellIndex = 0;
+		for (ComputedCSSStyle style : styles) {
+			CSSElement elm = style.getOwnerNode();
+			// Same result as computing the style of each element
+			assertEquals(sheet.getComputedStyle(elm, null).getCssText(), style.getCssText());
+			// The cache was only set during the traversal
+			assertNull(((AbstractSelectorMatcher) elm.getSelectorMatcher()).getSiblingIndexCache());
+			String name = elm.getLocalName();
+			if ("tr".equals(name)) {
+				rowIndex++;
+				cellIndex = 0;
+				assertEquals(rowIndex % 2 == 0 ? "5px" : "0px",
+						style.getPropertyValue("margin-top"));
+				assertEquals(rowIndex == 5 ? "7px" : "0px", style.getPropertyValue("margin-bottom"));
+			} else if ("td".equals(name)) {
+				cellIndex++;
+				// Cells 1, 3 and 4 have the class; 1 and 4 are odd among them
+				assertEquals(cellIndex == 1 || cellIndex == 4 ? "1px" : "0px",
+						style.getPropertyValue("padding-top"));
+			}
+		}
+		assertEquals(5, rowIndex);
+	}
+
+	@Test
+	public void testComputeAllStylesHas() throws IOException {
+		sheet.parseStyleSheet(new StringReader(
+				"div:has(.para) {margin-right: 6px} body:has(span) {margin-right: 8px}"
+						+ "*:has(> p) {padding-bottom: 9px}"));
+
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(6, styles.size());
+
+		for (ComputedCSSStyle style : styles) {
+			CSSElement elm = style.getOwnerNode();
+			// Same result as computing the style of each element
+			assertEquals(sheet.getComputedStyle(elm, null).getCssText(), style.getCssText());
+			// The cache was only set during the traversal
+			assertNull(((AbstractSelectorMatcher) elm.getSelectorMatcher())
+					.getRelativeSelectorCache());
+		}
+
+		assertEquals("6px", styles.get(2).getPropertyValue("margin-right"));
+		assertEquals("9px", styles.get(1).getPropertyValue("padding-bottom"));
+		assertEquals("9px", styles.get(2).getPropertyValue("padding-bottom"));
+
+		// Now add a span
+		CSSElement span = document.createElement("span");
+		styles.get(3).getOwnerNode().appendChild(span);
+		styles.clear();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(7, styles.size());
+		assertEquals("8px", styles.get(1).getPropertyValue("margin-right"));
+		assertEquals(sheet.getComputedStyle(span, null).getCssText(),
+				styles.get(4).getCssText());
+	}
+
+	@Test
+	public void testComputeAllStylesLangDir() throws IOException {
+		sheet.parseStyleSheet(new StringReader(
+				"p {margin-right: 0px; padding-bottom: 0px}"
+						+ "p:lang(es) {margin-right: 6px} p:dir(rtl) {padding-bottom: 9px}"));
+		CSSElement body = (CSSElement) document.getElementsByTagName("body").item(0);
+		body.setAttribute("lang", "es");
+		CSSElement div = document.getElementById("main");
+		div.setAttribute("lang", "en");
+		div.setAttribute("dir", "rtl");
+
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(6, styles.size());
+
+		for (ComputedCSSStyle style : styles) {
+			CSSElement elm = style.getOwnerNode();
+			// Same result as computing the style of each element
+			assertEquals(sheet.getComputedStyle(elm, null).getCssText(), style.getCssText());
+			// The cache was only set during the traversal
+			assertNull(((AbstractSelectorMatcher) elm.getSelectorMatcher())
+					.getInheritedStateCache());
+		}
+
+		assertEquals("0px", styles.get(3).getPropertyValue("margin-right"));
+		assertEquals("9px", styles.get(3).getPropertyValue("padding-bottom"));
+		assertEquals("0px", styles.get(4).getPropertyValue("margin-right"));
+		assertEquals("9px", styles.get(4).getPropertyValue("padding-bottom"));
+		assertEquals("6px", styles.get(5).getPropertyValue("margin-right"));
+		assertEquals("0px", styles.get(5).getPropertyValue("padding-bottom"));
+	}
+
+	@Test
+	public void testComputeAllStylesParallel() throws IOException {
+		sheet.parseStyleSheet(new StringReader("*:has(> p) {padding-bottom: 9px}"
+				+ "td {font-size: 0.8em}"));
+		CSSElement body = (CSSElement) document.getElementsByTagName("body").item(0);
+		for (int k = 0; k < 3; k++) {
+			CSSElement table = document.createElement("table");
+			body.appendChild(table);
+			for (int i = 0; i < 5; i++) {
+				CSSElement tr = document.createElement("tr");
+				table.appendChild(tr);
+				for (int j = 0; j < 4; j++) {
+					CSSElement td = document.createElement("td");
+					if (j != 1) {
+						td.setAttribute("class", "c");
+					}
+					tr.appendChild(td);
+				}
+			}
+		}
+
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(84, styles.size());
+		IdentityHashMap<CSSElement, String> expected = new IdentityHashMap<>();
+		for (ComputedCSSStyle style : styles) {
+			expected.put(style.getOwnerNode(), style.getCssText());
+		}
+
+		impl.setConcurrentStyling(true);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int threshold = 1; threshold < 32; threshold *= 4) {
+				List<ComputedCSSStyle> pstyles = Collections.synchronizedList(new ArrayList<>());
+				sheet.computeAllStyles(pool, threshold, pstyles::add);
+				assertEquals(84, pstyles.size());
+				for (ComputedCSSStyle style : pstyles) {
+					assertEquals(expected.get(style.getOwnerNode()), style.getCssText());
+				}
+			}
+		} finally {
+			pool.shutdown();
+			impl.setConcurrentStyling(false);
+		}
+	}
+
+	@Test
+	public void testComputeAllStylesParallelFlat() throws IOException {
+		CSSElement body = (CSSElement) document.getElementsByTagName("body").item(0);
+		for (int i = 0; i < 200; i++) {
+			CSSElement p = document.createElement("p");
+			if (i % 3 == 0) {
+				p.setAttribute("class", "para");
+			}
+			body.appendChild(p);
+		}
+
+		List<ComputedCSSStyle> styles = new ArrayList<>();
+		sheet.computeAllStyles(styles::add);
+		assertEquals(206, styles.size());
+		IdentityHashMap<CSSElement, String> expected = new IdentityHashMap<>();
+		for (ComputedCSSStyle style : styles) {
+			expected.put(style.getOwnerNode(), style.getCssText());
+		}
+
+		impl.setConcurrentStyling(true);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Set<Thread> threads = ConcurrentHashMap.newKeySet();
+			Set<CSSElement> elements = Collections
+					.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+			List<ComputedCSSStyle> pstyles = Collections.synchronizedList(new ArrayList<>());
+			sheet.computeAllStyles(pool, 16, style -> {
+				threads.add(Thread.currentThread());
+				elements.add(style.getOwnerNode());
+				pstyles.add(style);
+				try {
+					// Give the other workers time to steal the forked tasks
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			assertEquals(206, pstyles.size());
+			assertEquals(206, elements.size());
+			for (ComputedCSSStyle style : pstyles) {
+				assertEquals(expected.get(style.getOwnerNode()), style.getCssText());
+			}
+			// The children of the body were split among several tasks
+			assertTrue(threads.size() > 1, "Styled by " + threads.size() + " thread(s)");
+		} finally {
+			pool.shutdown();
+			impl.setConcurrentStyling(false);
+		}
+	}
+
+	@Test
+	public void testComputeAllStylesDocument() {
+		List<String> names = new ArrayList<>();
+		document.computeAllStyles(
+				(CSSComputedProperties style) -> names.add(style.getOwnerNode().getLocalName()));
+		assertEquals("[html, body, div, p, p, p]", names.toString());
+	}
+
+}
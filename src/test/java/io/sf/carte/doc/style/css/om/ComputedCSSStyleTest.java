@@ -15,6 +15,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -140,6 +141,26 @@ public class ComputedCSSStyleTest {
 		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleWarnings());
 	}
 
+	@Test
+	public void getComputedValueMemoized() {
+		CSSElement elm = xhtmlDoc.getElementById("tablepara");
+		elm = (CSSElement) elm.getElementsByTagName("span").item(0);
+		ComputedCSSStyle style = (ComputedCSSStyle) elm.getComputedStyle(null);
+		assertNotNull(style);
+		StyleValue value = style.getCSSValue("font-size");
+		assertNotNull(value);
+		assertSame(value, style.getCSSValue("font-size"));
+		assertEquals(18f, style.getComputedFontSize(), 0.001);
+		// Modify the declaration
+		style.setProperty("font-size", "20pt", null);
+		assertEquals("20pt", style.getPropertyValue("font-size"));
+		assertEquals(20f, style.getComputedFontSize(), 0.001);
+		style.removeProperty("font-size");
+		assertEquals(12f, style.getComputedFontSize(), 0.001);
+		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleErrors());
+		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleWarnings());
+	}
+
 	@Test
 	public void getFontSizeMedia() throws CSSMediaException {
 		CSSElement elm = xhtmlDoc.getElementById("span1");
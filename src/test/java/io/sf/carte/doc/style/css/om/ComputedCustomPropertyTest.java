@@ -1124,6 +1124,33 @@ public class ComputedCustomPropertyTest {
 		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleErrors());
 	}
 
+	@Test
+	public void getComputedStyleCustomPropertiesResolvedOnce() {
+		CSSElement docelm = xhtmlDoc.getDocumentElement();
+		docelm.getOverrideStyle(null).setCssText("--base:6pt;--gap:var(--base)");
+		CSSElement elm = xhtmlDoc.getElementById("div1");
+		elm.getOverrideStyle(null).setCssText("margin-left:var(--gap);margin-right:var(--gap)");
+		CSSComputedProperties style = elm.getComputedStyle(null);
+		CSSTypedValue marginLeft = (CSSTypedValue) style.getPropertyCSSValue("margin-left");
+		assertEquals(6f, marginLeft.getFloatValue(CSSUnit.CSS_PT), 1e-5f);
+		CSSTypedValue marginRight = (CSSTypedValue) style.getPropertyCSSValue("margin-right");
+		assertEquals(6f, marginRight.getFloatValue(CSSUnit.CSS_PT), 1e-5f);
+		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleErrors());
+
+		/*
+		 * A custom property declared in the element must not use the ancestor
+		 * resolutions.
+		 */
+		elm.getOverrideStyle(null)
+				.setCssText("margin-left:var(--gap);margin-right:var(--gap);--base:9pt");
+		style = elm.getComputedStyle(null);
+		marginLeft = (CSSTypedValue) style.getPropertyCSSValue("margin-left");
+		assertEquals(9f, marginLeft.getFloatValue(CSSUnit.CSS_PT), 1e-5f);
+		marginRight = (CSSTypedValue) style.getPropertyCSSValue("margin-right");
+		assertEquals(9f, marginRight.getFloatValue(CSSUnit.CSS_PT), 1e-5f);
+		assertFalse(xhtmlDoc.getErrorHandler().hasComputedStyleErrors());
+	}
+
 	@Test
 	public void getComputedStyleCustomPropertiesCircularity() {
 		CSSElement elm = xhtmlDoc.getElementById("div1");
@@ -0,0 +1,124 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSCanvas;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSMediaException;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+public class MediaConditionCacheTest {
+
+	private static final String CSS = "p {margin-left: 1px}"
+			+ "@media (min-width: 800px) {p {margin-left: 2px}}"
+			+ "@media print {p {margin-left: 4px}}";
+
+	private DummyDeviceFactory deviceFactory;
+
+	private DOMDocumentCSSStyleSheet sheet;
+
+	private CSSDocument document;
+
+	private CSSElement p;
+
+	@BeforeEach
+	public void setUp() throws IOException, CSSMediaException {
+		CSSDOMImplementation impl = new CSSDOMImplementation();
+		deviceFactory = new DummyDeviceFactory();
+		impl.setDeviceFactory(deviceFactory);
+		sheet = (DOMDocumentCSSStyleSheet) DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		document = impl.createDocument(null, "html", null);
+		document.setTargetMedium("screen");
+		sheet.setOwnerDocument(document);
+		sheet.parseStyleSheet(new StringReader(CSS));
+
+		CSSElement body = document.createElement("body");
+		document.getDocumentElement().appendChild(body);
+		p = document.createElement("p");
+		body.appendChild(p);
+	}
+
+	@Test
+	public void testGetMediaConditionCache() {
+		CSSCanvas canvas = document.getCanvas();
+		assertNotNull(canvas);
+		RuleIndex index = sheet.getRuleIndex();
+		MediaConditionCache cache = index.getMediaConditionCache(canvas, null);
+		assertNotNull(cache);
+		assertSame(cache, index.getMediaConditionCache(canvas, null));
+		assertEquals(MediaConditionCache.UNKNOWN, cache.getState(0));
+
+		assertEquals("2px", computeMarginLeft());
+		assertEquals(MediaConditionCache.MATCHES, cache.getState(0));
+		assertEquals(MediaConditionCache.NO_MATCH, cache.getState(1));
+		assertSame(cache, index.getMediaConditionCache(canvas, null));
+
+		// Another target medium
+		assertNotSame(cache, index.getMediaConditionCache(canvas, "print"));
+		// No canvas
+		assertTrue(index.getMediaConditionCache(null, null).isValidFor(null, null));
+	}
+
+	@Test
+	public void testViewportChange() {
+		RuleIndex index = sheet.getRuleIndex();
+		assertEquals("2px", computeMarginLeft());
+		CSSCanvas canvas = document.getCanvas();
+		MediaConditionCache cache = index.getMediaConditionCache(canvas, null);
+		assertTrue(cache.isValidFor(canvas, null));
+		StyleSharingCache sharingCache = index.getStyleSharingCache();
+
+		deviceFactory.setViewportWidth(600f);
+		assertEquals(false, cache.isValidFor(canvas, null));
+		assertEquals("1px", computeMarginLeft());
+
+		MediaConditionCache cache2 = index.getMediaConditionCache(canvas, null);
+		assertNotSame(cache, cache2);
+		assertEquals(MediaConditionCache.NO_MATCH, cache2.getState(0));
+		// The shared rules were computed under the previous state
+		assertNotSame(sharingCache, index.getStyleSharingCache());
+
+		deviceFactory.setViewportWidth(1024f);
+		assertEquals("2px", computeMarginLeft());
+	}
+
+	@Test
+	public void testNoConditions() throws IOException {
+		CSSDOMImplementation impl = new CSSDOMImplementation();
+		DOMDocumentCSSStyleSheet other = (DOMDocumentCSSStyleSheet) DOMBridge
+				.createDocumentStyleSheet(impl, CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		other.parseStyleSheet(new StringReader("p {color: red}"));
+		assertNull(other.getRuleIndex().getMediaConditionCache(document.getCanvas(), null));
+	}
+
+	private String computeMarginLeft() {
+		return sheet.getComputedStyle(p, null).getPropertyValue("margin-left");
+	}
+
+}
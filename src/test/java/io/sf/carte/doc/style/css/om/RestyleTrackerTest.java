@@ -0,0 +1,253 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Text;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+public class RestyleTrackerTest {
+
+	private DOMDocumentCSSStyleSheet sheet;
+
+	private CSSDocument document;
+
+	private CSSElement body, div, p1, p2, p3;
+
+	@BeforeEach
+	public void setUp() {
+		CSSDOMImplementation impl = new CSSDOMImplementation();
+		sheet = (DOMDocumentCSSStyleSheet) DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		document = impl.createDocument(null, "html", null);
+		sheet.setOwnerDocument(document);
+
+		body = document.createElement("body");
+		document.getDocumentElement().appendChild(body);
+		div = document.createElement("div");
+		div.setAttribute("id", "main");
+		body.appendChild(div);
+		p1 = document.createElement("p");
+		div.appendChild(p1);
+		p2 = document.createElement("p");
+		div.appendChild(p2);
+		p3 = document.createElement("p");
+		body.appendChild(p3);
+	}
+
+	@Test
+	public void testClassChanged() throws IOException {
+		sheet.parseStyleSheet(new StringReader(
+				".a p {color: red} .b + p {color: blue} .c {color: green}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.classChanged(div, null, "zz");
+		assertTrue(tracker.getElements().isEmpty());
+
+		tracker.classChanged(div, null, "a");
+		assertElements(tracker, p1, p2);
+		tracker.clear();
+
+		tracker.classChanged(div, "c", null);
+		assertElements(tracker, div);
+		tracker.clear();
+
+		tracker.classChanged(div, "a b", "b a");
+		assertTrue(tracker.getElements().isEmpty());
+
+		tracker.classChanged(div, null, "b");
+		assertElements(tracker, p3);
+	}
+
+	@Test
+	public void testAttributeChanged() throws IOException {
+		sheet.parseStyleSheet(new StringReader(
+				"[title] {color: red} #main p {color: blue} p:lang(en) {color: green}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.attributeChanged(p1, "title", null, "x");
+		assertElements(tracker, p1);
+		tracker.clear();
+
+		tracker.attributeChanged(div, "id", "main", "other");
+		assertElements(tracker, p1, p2);
+		tracker.clear();
+
+		tracker.attributeChanged(body, "lang", null, "en");
+		assertElements(tracker, body, div, p1, p2, p3);
+		tracker.clear();
+
+		tracker.attributeChanged(p2, "href", null, "#");
+		assertTrue(tracker.getElements().isEmpty());
+	}
+
+	@Test
+	public void testStateAttributeChanged() throws IOException {
+		sheet.parseStyleSheet(new StringReader("input:disabled {color: red}"
+				+ " a:any-link {color: blue} input:placeholder-shown {color: green}"
+				+ " option:checked {color: yellow} input:read-only {color: gray}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+		CSSElement input = document.createElement("input");
+		p1.appendChild(input);
+		CSSElement a = document.createElement("a");
+		p2.appendChild(a);
+
+		tracker.attributeChanged(input, "disabled", null, "");
+		assertElements(tracker, input);
+		tracker.clear();
+
+		tracker.attributeChanged(a, "href", null, "#");
+		assertElements(tracker, a);
+		tracker.clear();
+
+		tracker.attributeChanged(input, "placeholder", "Name", null);
+		assertElements(tracker, input);
+		tracker.clear();
+
+		tracker.attributeChanged(input, "value", null, "x");
+		assertElements(tracker, input);
+		tracker.clear();
+
+		tracker.attributeChanged(input, "readonly", null, "");
+		assertElements(tracker, input);
+		tracker.clear();
+
+		tracker.attributeChanged(a, "selected", null, "");
+		assertElements(tracker, a);
+		tracker.clear();
+
+		tracker.attributeChanged(a, "rel", null, "next");
+		assertTrue(tracker.getElements().isEmpty());
+	}
+
+	@Test
+	public void testFieldsetDisabled() throws IOException {
+		sheet.parseStyleSheet(new StringReader("input:enabled {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+		CSSElement fieldset = document.createElement("fieldset");
+		body.appendChild(fieldset);
+		CSSElement input = document.createElement("input");
+		fieldset.appendChild(input);
+
+		tracker.attributeChanged(fieldset, "disabled", null, "");
+		assertElements(tracker, fieldset, input);
+	}
+
+	@Test
+	public void testChildListSiblings() throws IOException {
+		sheet.parseStyleSheet(new StringReader("div:empty + p {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.childListChanged(div);
+		assertElements(tracker, div, p1, p2, p3);
+		tracker.clear();
+
+		tracker.childListChanged(p1);
+		assertElements(tracker, p1, p2);
+	}
+
+	@Test
+	public void testChildListSiblingsBlank() throws IOException {
+		sheet.parseStyleSheet(new StringReader(":blank ~ p span {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+		CSSElement span = document.createElement("span");
+		p3.appendChild(span);
+
+		tracker.childListChanged(div);
+		assertElements(tracker, div, p1, p2, p3, span);
+	}
+
+	@Test
+	public void testChildListSiblingsHas() throws IOException {
+		sheet.parseStyleSheet(new StringReader("div:has(> p) ~ p {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.childListChanged(div);
+		assertTrue(tracker.getElements().contains(p3));
+	}
+
+	@Test
+	public void testChildListNoSiblingCombinator() throws IOException {
+		sheet.parseStyleSheet(new StringReader("div:empty {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.childListChanged(div);
+		assertElements(tracker, div, p1, p2);
+	}
+
+	@Test
+	public void testCharacterDataChanged() throws IOException {
+		sheet.parseStyleSheet(new StringReader("p:empty ~ p {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+		Text text = document.createTextNode("foo");
+		p1.appendChild(text);
+
+		tracker.characterDataChanged(text);
+		assertElements(tracker, p2);
+		tracker.clear();
+
+		Text bodyText = document.createTextNode("bar");
+		body.appendChild(bodyText);
+		tracker.characterDataChanged(bodyText);
+		assertTrue(tracker.getElements().isEmpty());
+	}
+
+	@Test
+	public void testCharacterDataChangedDirAuto() throws IOException {
+		sheet.parseStyleSheet(new StringReader("p:dir(rtl) {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+		div.setAttribute("dir", "auto");
+		Text text = document.createTextNode("foo");
+		p1.appendChild(text);
+
+		tracker.characterDataChanged(text);
+		assertElements(tracker, div, p1, p2);
+		tracker.clear();
+
+		div.setAttribute("dir", "ltr");
+		tracker.characterDataChanged(text);
+		assertTrue(tracker.getElements().isEmpty());
+	}
+
+	@Test
+	public void testRelational() throws IOException {
+		sheet.parseStyleSheet(new StringReader(":has(.d) {color: red}"));
+		RestyleTracker tracker = sheet.createRestyleTracker();
+
+		tracker.classChanged(p2, null, "d");
+		assertElements(tracker, p1, div, body, document.getDocumentElement());
+		tracker.clear();
+
+		tracker.childListChanged(div);
+		assertElements(tracker, div, p1, p2, body, document.getDocumentElement());
+	}
+
+	private static void assertElements(RestyleTracker tracker, Element... expected) {
+		assertEquals(new LinkedHashSet<>(Arrays.asList(expected)), tracker.getElements());
+	}
+
+}
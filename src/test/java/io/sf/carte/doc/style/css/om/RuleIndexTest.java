@@ -0,0 +1,135 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+import io.sf.carte.doc.style.css.om.BaseDocumentCSSStyleSheet.Cascade;
+
+public class RuleIndexTest {
+
+	private static final String CSS = "p {color: red}"
+			+ "p.a {color: blue}"
+			+ ".B {margin-left: 1px}"
+			+ "#Main {margin-top: 2px}"
+			+ "div>p.a, #main span {padding-top: 1px}"
+			+ "[title] {border-top-width: 1px}"
+			+ "[lang|=en] span {border-left-width: 2px}"
+			+ "* {font-size: 10px}"
+			+ "@media screen {p {font-weight: bold} .a {font-style: italic}}"
+			+ "@media print {p {font-weight: normal}}"
+			+ "@supports (display: flex) {span {display: flex}}"
+			+ "div:not(.x) span:first-child {line-height: 2}"
+			+ "p::first-line {color: green}"
+			+ ":is(p, span) {text-indent: 2px}"
+			+ "div {& p {word-spacing: 2px}}"
+			+ "P.A {color: yellow}";
+
+	private BaseDocumentCSSStyleSheet sheet;
+
+	private CSSDocument document;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		CSSDOMImplementation impl = new CSSDOMImplementation();
+		sheet = DOMBridge.createDocumentStyleSheet(impl, CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		document = impl.createDocument(null, "html", null);
+		sheet.setOwnerDocument(document);
+		sheet.parseStyleSheet(new StringReader(CSS));
+	}
+
+	@Test
+	public void testCascade() {
+		CSSElement html = document.getDocumentElement();
+		CSSElement body = document.createElement("body");
+		html.appendChild(body);
+		CSSElement div = document.createElement("div");
+		div.setAttribute("id", "main");
+		div.setAttribute("class", "foo B");
+		body.appendChild(div);
+		CSSElement p = document.createElement("p");
+		p.setAttribute("class", " a ");
+		p.setAttribute("title", "Title");
+		p.setAttribute("lang", "en-US");
+		div.appendChild(p);
+		CSSElement span = document.createElement("span");
+		p.appendChild(span);
+		CSSElement span2 = document.createElement("span");
+		span2.setAttribute("class", "b");
+		div.appendChild(span2);
+
+		assertSameCascade(html);
+		assertSameCascade(body);
+		assertSameCascade(div);
+		assertSameCascade(p);
+		assertSameCascade(span);
+		assertSameCascade(span2);
+	}
+
+	@Test
+	public void testIndexInvalidation() {
+		RuleIndex index = sheet.getRuleIndex();
+		assertSame(index, sheet.getRuleIndex());
+		int len = index.getLength();
+
+		sheet.insertRule("div.foo {margin-bottom: 4px}", sheet.getCssRules().getLength());
+		RuleIndex index2 = sheet.getRuleIndex();
+		assertNotSame(index, index2);
+		assertEquals(len + 1, index2.getLength());
+
+		MediaRule mrule = (MediaRule) sheet.getCssRules().item(8);
+		mrule.insertRule("span {margin-right: 3px}", 0);
+		RuleIndex index3 = sheet.getRuleIndex();
+		assertNotSame(index2, index3);
+		assertEquals(len + 2, index3.getLength());
+
+		StyleRule rule = (StyleRule) sheet.getCssRules().item(0);
+		rule.setSelectorText("div");
+		assertNotSame(index3, sheet.getRuleIndex());
+	}
+
+	@Test
+	public void testFoldCase() {
+		assertEquals("foo", RuleIndex.foldCase("foo"));
+		assertEquals("foo", RuleIndex.foldCase("FoO"));
+		assertEquals(RuleIndex.foldCase("İ"), RuleIndex.foldCase("i"));
+		assertFalse(RuleIndex.foldCase("a").equals(RuleIndex.foldCase("b")));
+	}
+
+	private void assertSameCascade(CSSElement elm) {
+		ComputedCSSStyle style = sheet.createComputedCSSStyle();
+		style.setOwnerNode(elm);
+
+		Cascade full = sheet.new Cascade();
+		full.cascade(elm.getSelectorMatcher(), style, null, sheet.getCssRules());
+
+		Cascade indexed = sheet.new Cascade();
+		indexed.cascadeSheet(elm.getSelectorMatcher(), style, null);
+
+		assertEquals(full.toString(), indexed.toString());
+	}
+
+}
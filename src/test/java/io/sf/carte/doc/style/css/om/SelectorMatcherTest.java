@@ -28,6 +28,7 @@ import org.w3c.dom.DocumentType;
 
 import io.sf.carte.doc.TestConfig;
 import io.sf.carte.doc.dom.DOMDocument;
+import io.sf.carte.doc.dom.DOMElement;
 import io.sf.carte.doc.dom.HTMLDocument;
 import io.sf.carte.doc.dom.TestDOMImplementation;
 import io.sf.carte.doc.style.css.CSSComputedProperties;
@@ -842,6 +843,48 @@ public class SelectorMatcherTest {
 		CSSOMBridge.assertSpecificity(0, 1, 0, selist.item(selidx), matcher);
 	}
 
+	@Test
+	public void testMatchSelectorClassChange() throws Exception {
+		// QUIRKS
+		BaseCSSStyleSheet css = parseStyle(".exampleclass {color: blue;}");
+		StyleRule rule = (StyleRule) css.getCssRules().item(0);
+		SelectorList selist = rule.getSelectorList();
+		DOMElement elm = (DOMElement) createTopLevelElement("p");
+		elm.setAttribute("class", "fooclass barclass");
+		SelectorMatcher matcher = selectorMatcher(elm);
+		SelectorMatcher elmMatcher = elm.getSelectorMatcher();
+		assertEquals(-1, matcher.matches(selist));
+		assertEquals(-1, elmMatcher.matches(selist));
+		// The class names are obtained again when the attribute changes
+		elm.setAttribute("class", "fooclass ExampleClass barclass");
+		assertTrue(matcher.matches(selist) >= 0);
+		assertTrue(elmMatcher.matches(selist) >= 0);
+		elm.getClassList().remove("exampleclass");
+		assertEquals(-1, matcher.matches(selist));
+		assertEquals(-1, elmMatcher.matches(selist));
+		elm.getClassList().add("exampleClass");
+		assertTrue(matcher.matches(selist) >= 0);
+		assertTrue(elmMatcher.matches(selist) >= 0);
+		elm.setAttribute("class", "exampleclass");
+		assertTrue(matcher.matches(selist) >= 0);
+		assertTrue(elmMatcher.matches(selist) >= 0);
+		elm.removeAttribute("class");
+		assertEquals(-1, matcher.matches(selist));
+		assertEquals(-1, elmMatcher.matches(selist));
+
+		// STRICT
+		setUpWithMode(CSSDocument.ComplianceMode.STRICT);
+		elm = (DOMElement) createTopLevelElement("p");
+		elm.setAttribute("class", "fooclass exampleClass barclass");
+		matcher = selectorMatcher(elm);
+		elmMatcher = elm.getSelectorMatcher();
+		assertEquals(-1, matcher.matches(selist));
+		assertEquals(-1, elmMatcher.matches(selist));
+		elm.getClassList().add("exampleclass");
+		assertTrue(matcher.matches(selist) >= 0);
+		assertTrue(elmMatcher.matches(selist) >= 0);
+	}
+
 	@Test
 	public void testMatchSelector2Class() throws Exception {
 		BaseCSSStyleSheet css = parseStyle("z.exampleclass {color: blue;}");
@@ -0,0 +1,135 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.style.css.CSSStyleSheet;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+import io.sf.carte.doc.style.css.nsac.Parser;
+
+public class SheetSnapshotTest {
+
+	private TestCSSStyleSheetFactory factory;
+
+	@BeforeEach
+	public void setUp() {
+		factory = new TestCSSStyleSheetFactory();
+	}
+
+	@Test
+	public void testDefaultSheet() throws IOException {
+		InputStream is = getClass().getResourceAsStream("/io/sf/carte/doc/style/css/html.css");
+		assertNotNull(is);
+		assertRoundTrip(SheetSnapshot.readAll(is));
+	}
+
+	@Test
+	public void testQuirksDefaultSheet() throws IOException {
+		InputStream is = getClass()
+				.getResourceAsStream("/io/sf/carte/doc/style/css/html-quirks.css");
+		assertNotNull(is);
+		assertRoundTrip(SheetSnapshot.readAll(is));
+	}
+
+	@Test
+	public void testRuleTypes() throws IOException {
+		String css = "@namespace svg url('http://www.w3.org/2000/svg');"
+				+ "@media screen and (min-width: 600px) {p {margin-left: calc(1em + 2px)}}"
+				+ "@supports (display: grid) {div {display: grid; grid-template-columns: 1fr 2fr}}"
+				+ "@font-face {font-family: Foo; src: url('foo.woff2') format('woff2')}"
+				+ "@keyframes spin {from {transform: rotate(0deg)} to {transform: rotate(360deg)}}"
+				+ "@page :first {margin: 2cm; @top-left {content: 'Top'}}"
+				+ "@counter-style thumbs {system: cyclic; symbols: '+'; suffix: ' '}"
+				+ "@font-feature-values Foo {@swash {fancy: 1}}"
+				+ "@property --my-color {syntax: '<color>'; inherits: false; initial-value: #c0ffee}"
+				+ "svg|rect, .foo:not(.bar) > span[title^='x' i]:nth-child(2n+1 of .baz)"
+				+ " {color: var(--my-color, rgb(10 20 30 / 0.5)) !important}"
+				+ "ul li::before {content: counter(item) '. '; counter-increment: item}";
+		assertRoundTrip(css.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testStaleSnapshot() throws IOException {
+		byte[] source = "p {color: blue}".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		SheetSnapshot.write(source,
+				factory.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT), os);
+		byte[] snapshot = os.toByteArray();
+
+		BaseDocumentCSSStyleSheet sheet = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT);
+		byte[] modified = "p {color: red}".getBytes(StandardCharsets.UTF_8);
+		assertFalse(SheetSnapshot.replay(new ByteArrayInputStream(snapshot), modified,
+				EnumSet.noneOf(Parser.Flag.class), sheet));
+		assertEquals(0, sheet.getCssRules().getLength());
+
+		// Different flags
+		assertFalse(SheetSnapshot.replay(new ByteArrayInputStream(snapshot), source,
+				EnumSet.of(Parser.Flag.IEVALUES), sheet));
+		assertEquals(0, sheet.getCssRules().getLength());
+
+		assertTrue(SheetSnapshot.replay(new ByteArrayInputStream(snapshot), source,
+				EnumSet.noneOf(Parser.Flag.class), sheet));
+		assertEquals(1, sheet.getCssRules().getLength());
+		assertEquals("p {color: blue; }", sheet.getCssRules().item(0).getCssText());
+	}
+
+	@Test
+	public void testFactoryDefaultSheet() throws IOException {
+		BaseDocumentCSSStyleSheet sheet = factory.htmlDefaultSheet();
+		// The snapshot is written by the build, and must have been used
+		assertEquals(1, factory.getSnapshotLoadCount());
+
+		BaseDocumentCSSStyleSheet parsed = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT);
+		InputStream is = getClass().getResourceAsStream("/io/sf/carte/doc/style/css/html.css");
+		parsed.parseStyleSheet(new InputStreamReader(is, StandardCharsets.UTF_8),
+				CSSStyleSheet.COMMENTS_IGNORE);
+		assertEquals(parsed.toString(), sheet.toString());
+	}
+
+	private void assertRoundTrip(byte[] source) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		SheetSnapshot.write(source,
+				factory.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT), os);
+
+		BaseDocumentCSSStyleSheet sheet = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT);
+		assertTrue(SheetSnapshot.replay(new ByteArrayInputStream(os.toByteArray()), source,
+				EnumSet.noneOf(Parser.Flag.class), sheet));
+
+		BaseDocumentCSSStyleSheet parsed = factory
+				.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_USER_AGENT);
+		parsed.parseStyleSheet(
+				new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8),
+				CSSStyleSheet.COMMENTS_IGNORE);
+
+		assertEquals(parsed.getCssRules().getLength(), sheet.getCssRules().getLength());
+		assertEquals(parsed.toString(), sheet.toString());
+	}
+
+}
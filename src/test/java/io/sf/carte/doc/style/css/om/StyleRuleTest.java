@@ -13,6 +13,7 @@ package io.sf.carte.doc.style.css.om;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -63,6 +64,28 @@ public class StyleRuleTest {
 		assertEquals("p{display:table-cell;filter:alpha(opacity=0)}", rule.getMinifiedCssText());
 	}
 
+	@Test
+	public void testGetSelectorSpecificities() {
+		StyleRule rule = new StyleRule(sheet, CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		rule.setSelectorText("p, div.foo, #a:is(.b, span), :where(#c) li::first-line");
+		long[] sp = rule.getSelectorSpecificities();
+		assertEquals(4, sp.length);
+		assertSame(sp, rule.getSelectorSpecificities());
+		assertEquals(1L, sp[0]);
+		assertEquals((1L << 16) + 1L, sp[1]);
+		assertEquals((1L << 32) + (1L << 16), sp[2]);
+		assertEquals(2L, sp[3]);
+		for (int i = 0; i < sp.length; i++) {
+			Specificity spec = new Specificity(rule.getAbsoluteSelectorList().item(i), null);
+			assertEquals(spec.toPacked(), sp[i]);
+		}
+
+		rule.setSelectorText("#a #b");
+		sp = rule.getSelectorSpecificities();
+		assertEquals(1, sp.length);
+		assertEquals(2L << 32, sp[0]);
+	}
+
 	@Test
 	public void testEquals() {
 		StyleRule rule = new StyleRule(sheet, CSSStyleSheetFactory.ORIGIN_AUTHOR);
@@ -0,0 +1,177 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.dom.CSSDOMImplementation;
+import io.sf.carte.doc.dom.DOMBridge;
+import io.sf.carte.doc.style.css.CSSDocument;
+import io.sf.carte.doc.style.css.CSSElement;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+public class StyleSharingCacheTest {
+
+	private static final String CSS = "li {color: red}"
+			+ "li.x {margin-left: 2px}"
+			+ "ul > li[title] {padding-top: 1px}"
+			+ "body li:hover {color: blue}"
+			+ ":not(.y) {font-size: 10px}";
+
+	private CSSDOMImplementation impl;
+
+	private DOMDocumentCSSStyleSheet sheet;
+
+	private CSSElement ul;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		impl = new CSSDOMImplementation();
+		impl.setStyleSharing(true);
+		sheet = (DOMDocumentCSSStyleSheet) DOMBridge.createDocumentStyleSheet(impl,
+				CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		CSSDocument document = impl.createDocument(null, "html", null);
+		sheet.setOwnerDocument(document);
+		sheet.parseStyleSheet(new StringReader(CSS));
+
+		CSSElement body = document.createElement("body");
+		document.getDocumentElement().appendChild(body);
+		ul = document.createElement("ul");
+		body.appendChild(ul);
+		ul.appendChild(document.createElement("li"));
+		CSSElement li = document.createElement("li");
+		li.setAttribute("class", "x");
+		ul.appendChild(li);
+		ul.appendChild(document.createElement("li"));
+		li = document.createElement("li");
+		li.setAttribute("class", "x");
+		ul.appendChild(li);
+		li = document.createElement("li");
+		li.setAttribute("title", "Title");
+		ul.appendChild(li);
+		li = document.createElement("li");
+		li.setAttribute("id", "li6");
+		ul.appendChild(li);
+	}
+
+	@Test
+	public void testSharing() {
+		String[] shared = computeChildStyles();
+		StyleSharingCache cache = sheet.getRuleIndex().getStyleSharingCache();
+		// li, li.x, li[title]
+		assertEquals(3, cache.size());
+
+		impl.setStyleSharing(false);
+		String[] unshared = computeChildStyles();
+		for (int i = 0; i < shared.length; i++) {
+			assertEquals(unshared[i], shared[i]);
+		}
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testCreateKey() {
+		StyleSharingCache cache = sheet.getRuleIndex().getStyleSharingCache();
+		CSSElement li1 = (CSSElement) ul.getFirstChild();
+		CSSElement li2 = (CSSElement) li1.getNextSibling();
+		CSSElement li3 = (CSSElement) li2.getNextSibling();
+
+		StyleSharingCache.SharingKey key1 = createKey(cache, li1);
+		assertNotNull(key1);
+		assertEquals(key1, createKey(cache, li3));
+		assertEquals(key1.hashCode(), createKey(cache, li3).hashCode());
+		assertEquals(false, key1.equals(createKey(cache, li2)));
+
+		// Elements with an id do not share
+		assertNull(createKey(cache, (CSSElement) ul.getLastChild()));
+
+		// The attributes used by selectors are part of the key
+		li3.setAttribute("title", "Title");
+		assertEquals(false, key1.equals(createKey(cache, li3)));
+	}
+
+	@Test
+	public void testPositionalRule() {
+		computeChildStyles();
+		StyleSharingCache cache = sheet.getRuleIndex().getStyleSharingCache();
+		assertEquals(3, cache.size());
+
+		sheet.insertRule("li:first-child {margin-top: 1px}", sheet.getCssRules().getLength());
+		StyleSharingCache cache2 = sheet.getRuleIndex().getStyleSharingCache();
+		assertNotSame(cache, cache2);
+
+		String[] styles = computeChildStyles();
+		assertEquals(0, cache2.size());
+		assertEquals(false, styles[0].equals(styles[2]));
+	}
+
+	@Test
+	public void testSiblingRule() throws IOException {
+		sheet.parseStyleSheet(new StringReader(".x + li {margin-top: 1px}"));
+		String[] styles = computeChildStyles();
+		// The new rule may apply to any li
+		assertEquals(0, sheet.getRuleIndex().getStyleSharingCache().size());
+		assertEquals(false, styles[0].equals(styles[2]));
+	}
+
+	@Test
+	public void testSiblingAttributeRule() throws IOException {
+		DOMDocumentCSSStyleSheet sheet2 = (DOMDocumentCSSStyleSheet) DOMBridge
+				.createDocumentStyleSheet(impl, CSSStyleSheetFactory.ORIGIN_AUTHOR);
+		CSSDocument document = impl.createDocument(null, "html", null);
+		sheet2.setOwnerDocument(document);
+		sheet2.parseStyleSheet(new StringReader("p + [foo] {margin-top: 3px}"));
+
+		CSSElement div = document.createElement("div");
+		document.getDocumentElement().appendChild(div);
+		CSSElement span1 = document.createElement("span");
+		div.appendChild(span1);
+		div.appendChild(document.createElement("p"));
+		CSSElement span2 = document.createElement("span");
+		span2.setAttribute("foo", "");
+		div.appendChild(span2);
+
+		StyleSharingCache cache = sheet2.getRuleIndex().getStyleSharingCache();
+		assertEquals(false, createKey(cache, span1).equals(createKey(cache, span2)));
+
+		// Compute the first span first, so the second could reuse its rules
+		assertEquals(false, "3px"
+				.equals(sheet2.getComputedStyle(span1, null).getPropertyValue("margin-top")));
+		assertEquals("3px", sheet2.getComputedStyle(span2, null).getPropertyValue("margin-top"));
+	}
+
+	private String[] computeChildStyles() {
+		int len = ul.getChildNodes().getLength();
+		String[] styles = new String[len];
+		CSSElement li = (CSSElement) ul.getFirstChild();
+		for (int i = 0; i < len; i++) {
+			styles[i] = sheet.getComputedStyle(li, null).getCssText();
+			li = (CSSElement) li.getNextSibling();
+		}
+		return styles;
+	}
+
+	private static StyleSharingCache.SharingKey createKey(StyleSharingCache cache,
+			CSSElement elt) {
+		return cache.createKey(elt, (AbstractSelectorMatcher) elt.getSelectorMatcher());
+	}
+
+}
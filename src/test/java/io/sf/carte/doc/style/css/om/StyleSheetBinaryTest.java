@@ -0,0 +1,190 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.om;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.DOMException;
+
+import io.sf.carte.doc.style.css.CSSStyleSheet;
+import io.sf.carte.doc.style.css.CSSStyleSheetFactory;
+
+public class StyleSheetBinaryTest {
+
+	private TestCSSStyleSheetFactory factory;
+
+	@BeforeEach
+	public void setUp() {
+		factory = new TestCSSStyleSheetFactory();
+	}
+
+	@Test
+	public void testSampleSheets() throws IOException {
+		assertRoundTrip(SampleCSS.loadSampleCSSReader());
+		assertRoundTrip(SampleCSS.loadSampleUserCSSReader());
+	}
+
+	@Test
+	public void testThirdPartySheets() throws IOException {
+		assertRoundTrip(SampleCSS.loadNormalizeReader());
+		assertRoundTrip(SampleCSS.loadFontAwesomeReader());
+		assertRoundTrip(SampleCSS.loadAnimateReader());
+		assertRoundTrip(SampleCSS.loadMetroReader());
+	}
+
+	@Test
+	public void testRuleTypes() throws IOException {
+		String css = "@namespace svg url('http://www.w3.org/2000/svg');"
+				+ "@media screen and (min-width: 600px) {p {margin-left: calc(1em + 2px)}}"
+				+ "@supports (display: grid) {div {display: grid; grid-template-columns: 1fr 2fr}}"
+				+ "@font-face {font-family: Foo; src: url('foo.woff2') format('woff2');"
+				+ "unicode-range: U+0025-00FF, U+4??}"
+				+ "@keyframes spin {from {transform: rotate(0deg)} to {transform: rotate(360deg)}}"
+				+ "@page :first {margin: 2cm; @top-left {content: 'Top'}}"
+				+ "@counter-style thumbs {system: cyclic; symbols: '+'; suffix: ' '}"
+				+ "@font-feature-values Foo {@swash {fancy: 1}}"
+				+ "@property --my-color {syntax: '<color>'; inherits: false; initial-value: #c0ffee}"
+				+ "svg|rect, .foo:not(.bar) > span[title^='x' i]:nth-child(2n+1 of .baz)"
+				+ " {color: var(--my-color, rgb(10 20 30 / 0.5)) !important}"
+				+ "ul li::before {content: counter(item) '. '; counter-increment: item}"
+				+ "h1 {width: max(10%, 2em + 3px); margin: -4px auto 0 auto;"
+				+ "background: url(bkg.png) no-repeat, linear-gradient(#fff, rgb(0% 50% 20%))}";
+		assertRoundTrip(new StringReader(css));
+	}
+
+	@Test
+	public void testSeveralSheets() throws IOException {
+		BaseDocumentCSSStyleSheet sheet1 = parseSheet(new StringReader("p {color: blue}"));
+		BaseDocumentCSSStyleSheet sheet2 = parseSheet(
+				new StringReader("div {color: blue; margin-left: 2px}"));
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		StyleSheetBinaryWriter writer = new StyleSheetBinaryWriter(Channels.newChannel(os));
+		writer.write(sheet1);
+		writer.write(sheet2);
+
+		StyleSheetBinaryReader reader = new StyleSheetBinaryReader(
+				Channels.newChannel(new ByteArrayInputStream(os.toByteArray())));
+		BaseDocumentCSSStyleSheet read1 = createSheet();
+		reader.read(read1);
+		BaseDocumentCSSStyleSheet read2 = createSheet();
+		reader.read(read2);
+
+		assertEquals(sheet1.toString(), read1.toString());
+		assertEquals(sheet2.toString(), read2.toString());
+	}
+
+	@Test
+	public void testComments() throws IOException {
+		BaseDocumentCSSStyleSheet sheet = createSheet();
+		sheet.parseStyleSheet(new StringReader("/* Paragraphs */\np {color: blue}"),
+				CSSStyleSheet.COMMENTS_PRECEDING);
+		assertEquals(" Paragraphs ", sheet.getCssRules().item(0).getPrecedingComments().get(0));
+
+		BaseDocumentCSSStyleSheet read = roundTrip(sheet, CSSStyleSheet.COMMENTS_PRECEDING);
+		assertEquals(sheet.toString(), read.toString());
+		AbstractCSSRule rule = read.getCssRules().item(0);
+		assertNotNull(rule.getPrecedingComments());
+		assertEquals(" Paragraphs ", rule.getPrecedingComments().get(0));
+	}
+
+	@Test
+	public void testNotBinarySheet() {
+		byte[] data = "p {color: blue}".getBytes();
+		StyleSheetBinaryReader reader = new StyleSheetBinaryReader(
+				Channels.newChannel(new ByteArrayInputStream(data)));
+		assertThrows(StreamCorruptedException.class, () -> reader.read(createSheet()));
+	}
+
+	@Test
+	public void testCorruptData() throws IOException {
+		BaseDocumentCSSStyleSheet sheet = parseSheet(new StringReader(
+				"@namespace svg url('http://www.w3.org/2000/svg');"
+						+ "@media screen {p:not(.x) > svg|rect {margin: calc(1em + 2px) auto}}"
+						+ "@font-feature-values Foo, Bar {@swash {fancy: 1}}"
+						+ "@supports (display: grid) {li:nth-child(2n+1 of .a)::before {content: 'x'}}"
+						+ "@page :first {margin: 2cm}"));
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new StyleSheetBinaryWriter(Channels.newChannel(os)).write(sheet);
+		byte[] data = os.toByteArray();
+
+		for (int i = 0; i < data.length; i++) {
+			byte[] truncated = Arrays.copyOf(data, i);
+			assertThrows(IOException.class, () -> read(truncated), "Truncated at " + i);
+		}
+
+		// Flipped bits must either give a sheet or fail with the declared exceptions
+		Random random = new Random(11L);
+		for (int i = 0; i < data.length; i++) {
+			byte[] flipped = data.clone();
+			flipped[i] ^= 1 << random.nextInt(8);
+			try {
+				read(flipped);
+			} catch (IOException | DOMException e) {
+			}
+		}
+	}
+
+	private void read(byte[] data) throws IOException {
+		new StyleSheetBinaryReader(Channels.newChannel(new ByteArrayInputStream(data)))
+				.read(createSheet());
+	}
+
+	private void assertRoundTrip(Reader re) throws IOException {
+		assertNotNull(re);
+		BaseDocumentCSSStyleSheet sheet = parseSheet(re);
+		BaseDocumentCSSStyleSheet read = roundTrip(sheet, CSSStyleSheet.COMMENTS_IGNORE);
+
+		assertEquals(sheet.getCssRules().getLength(), read.getCssRules().getLength());
+		assertEquals(sheet.toString(), read.toString());
+	}
+
+	private BaseDocumentCSSStyleSheet roundTrip(BaseDocumentCSSStyleSheet sheet,
+			short commentMode) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new StyleSheetBinaryWriter(Channels.newChannel(os)).write(sheet);
+
+		BaseDocumentCSSStyleSheet read = createSheet();
+		new StyleSheetBinaryReader(Channels.newChannel(new ByteArrayInputStream(os.toByteArray())))
+				.read(read, commentMode);
+		return read;
+	}
+
+	private BaseDocumentCSSStyleSheet parseSheet(Reader re) throws IOException {
+		BaseDocumentCSSStyleSheet sheet = createSheet();
+		try {
+			sheet.parseStyleSheet(re, CSSStyleSheet.COMMENTS_IGNORE);
+		} finally {
+			re.close();
+		}
+		return sheet;
+	}
+
+	private BaseDocumentCSSStyleSheet createSheet() {
+		return factory.createDocumentStyleSheet(CSSStyleSheetFactory.ORIGIN_AUTHOR);
+	}
+
+}
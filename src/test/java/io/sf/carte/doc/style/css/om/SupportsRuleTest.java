@@ -34,6 +34,7 @@ import io.sf.carte.doc.style.css.CSSDeclarationRule;
 import io.sf.carte.doc.style.css.CSSRule;
 import io.sf.carte.doc.style.css.StyleDatabase;
 import io.sf.carte.doc.style.css.nsac.CSSParseException;
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
 import io.sf.carte.doc.style.css.nsac.Parser;
 import io.sf.carte.doc.style.css.parser.CSSParser;
 
@@ -588,6 +589,46 @@ public class SupportsRuleTest {
 		assertEquals(rule.hashCode(), clon.hashCode());
 	}
 
+	@Test
+	public void testMemoizedSupports() {
+		SupportsRule rule = parseStyleSheet("@supports (display: flex) {div {display: flex}}");
+		int[] count = new int[1];
+		StyleDatabase db = new TestStyleDatabase() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean supports(String property, LexicalUnit value) {
+				count[0]++;
+				return true;
+			}
+
+		};
+		assertTrue(rule.memoizedSupports(db));
+		assertTrue(rule.memoizedSupports(db));
+		assertEquals(1, count[0]);
+
+		// Another database
+		StyleDatabase db2 = new TestStyleDatabase() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean supports(String property, LexicalUnit value) {
+				return false;
+			}
+
+		};
+		assertFalse(rule.memoizedSupports(db2));
+		assertTrue(rule.memoizedSupports(db));
+		assertEquals(2, count[0]);
+
+		// Changing the condition discards the result
+		rule.setConditionText("(display: grid)");
+		assertTrue(rule.memoizedSupports(db));
+		assertEquals(3, count[0]);
+	}
+
 	private SupportsRule createSupportsRule() {
 		return new SupportsRule(sheet, sheet.getOrigin());
 	}
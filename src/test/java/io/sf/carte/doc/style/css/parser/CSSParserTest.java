@@ -18,6 +18,8 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.CharBuffer;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.DOMException;
@@ -30,6 +32,7 @@ import io.sf.carte.doc.style.css.nsac.LexicalUnit;
 import io.sf.carte.doc.style.css.nsac.LexicalUnit.LexicalType;
 import io.sf.carte.doc.style.css.nsac.PageSelector;
 import io.sf.carte.doc.style.css.nsac.PageSelectorList;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
 
 public class CSSParserTest {
 
@@ -40,6 +43,64 @@ public class CSSParserTest {
 		parser = new CSSParser();
 	}
 
+	@Test
+	public void testParseCharSequence() {
+		SelectorList selist = parser.parseSelectors(new StringBuilder("p.foo, div>span"));
+		assertEquals(2, selist.getLength());
+		assertEquals("p.foo", selist.item(0).toString());
+		assertEquals("div>span", selist.item(1).toString());
+
+		LexicalUnit lu = parser.parsePropertyValue(new StringBuilder("1px solid #abc"));
+		assertNotNull(lu);
+		assertEquals("1px solid #abc", lu.toString());
+
+		lu = parser.parsePropertyValue("margin-left", CharBuffer.wrap("calc(1em + 2px)"));
+		assertNotNull(lu);
+		assertEquals(LexicalType.CALC, lu.getLexicalUnitType());
+		assertNull(lu.getNextLexicalUnit());
+
+		CSSParser declParser = new CSSParser();
+		TestDeclarationHandler handler = new TestDeclarationHandler();
+		declParser.setDocumentHandler(handler);
+		declParser.parseStyleDeclaration(new StringBuilder("color: blue; margin: 0 !important"));
+		assertEquals(2, handler.propertyNames.size());
+		assertEquals("color", handler.propertyNames.get(0));
+		assertEquals("margin", handler.propertyNames.get(1));
+		assertEquals("important", handler.priorities.get(1));
+	}
+
+	@Test
+	public void testParseCharBuffer() {
+		char[] chars = "/* skip */ p {color: blue} @media print {div {margin: 0}} trail".toCharArray();
+		CharBuffer buffer = CharBuffer.wrap(chars, 11, chars.length - 17);
+
+		CSSParser sheetParser = new CSSParser();
+		TestCSSHandler handler = new TestCSSHandler();
+		sheetParser.setDocumentHandler(handler);
+		sheetParser.setErrorHandler(new TestErrorHandler());
+		sheetParser.parseStyleSheet(buffer);
+
+		// The buffer position is not modified
+		assertEquals(11, buffer.position());
+		assertEquals(2, handler.selectors.size());
+		assertEquals("p", handler.selectors.get(0).toString());
+		assertEquals("div", handler.selectors.get(1).toString());
+		assertEquals(1, handler.mediaRuleLists.size());
+		assertEquals("print", handler.mediaRuleLists.get(0).getMedia());
+		assertEquals(2, handler.propertyNames.size());
+	}
+
+	@Test
+	public void testParseCharSequenceError() {
+		assertThrows(CSSParseException.class,
+				() -> parser.parsePropertyValue(new StringBuilder("yellow;")));
+		assertThrows(CSSParseException.class,
+				() -> parser.parseSelectors(CharBuffer.wrap(",p")));
+		CSSParser sheetParser = new CSSParser();
+		assertThrows(IllegalStateException.class,
+				() -> sheetParser.parseStyleSheet(CharBuffer.wrap("p {color: blue}")));
+	}
+
 	@Test
 	public void testParsePageSelectorList() {
 		PageSelectorList pagesel = parser.parsePageSelectorList("foo");
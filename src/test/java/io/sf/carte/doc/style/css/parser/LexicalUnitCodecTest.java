@@ -0,0 +1,148 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.style.css.nsac.LexicalUnit;
+import io.sf.carte.doc.style.css.nsac.Parser;
+
+public class LexicalUnitCodecTest {
+
+	private static Parser parser;
+
+	@BeforeAll
+	public static void setUpBeforeClass() {
+		parser = new CSSParser();
+	}
+
+	@Test
+	public void testValues() throws IOException {
+		assertRoundTrip("1px solid #abc");
+		assertRoundTrip("-4px auto 0 2.5em");
+		assertRoundTrip("url('foo.png') no-repeat, linear-gradient(to right, #fff 10%, transparent)");
+		assertRoundTrip("calc(100% - 2*var(--gap, 3px))");
+		assertRoundTrip("max(10%, 2em + 3px) clamp(1rem, 2.5vw, 2rem)");
+		assertRoundTrip("round(up, 10.5px, 2px) pow(2, 3) sqrt(16) sin(45deg) hypot(3px, 4px)");
+		assertRoundTrip("rgb(10 20 30 / 0.5) hsl(120deg 50% 50%) color(display-p3 0.1 0.2 0.3)");
+		assertRoundTrip("rotate(45deg) translateX(-10px) scale(1.5)");
+		assertRoundTrip("attr(data-width type(<length>), 10px)");
+		assertRoundTrip("counter(item, upper-roman) '. ' counters(sec, '.')");
+		assertRoundTrip("U+0025-00FF, U+4??");
+		assertRoundTrip("cubic-bezier(0.1, 0.7, 1, 0.1) steps(4, jump-end)");
+		assertRoundTrip("env(safe-area-inset-top, 20px) 'caf\\e9  \\1F600'");
+		assertRoundTrip("circle(50% at 0 0) inset(5px round 2px)");
+	}
+
+	@Test
+	public void testStringTable() throws IOException {
+		LexicalUnitCodec codec = new LexicalUnitCodec();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		String longString = new String(new char[70000]).replace('\0', 'x') + "\ud800\u0000é";
+		codec.writeString(out, "margin-left");
+		codec.writeString(out, null);
+		codec.writeString(out, longString);
+		int size = os.size();
+		codec.writeString(out, "margin-left");
+		// A reference to the table only takes one byte
+		assertEquals(size + 1, os.size());
+		codec.writeString(out, longString);
+		out.flush();
+
+		LexicalUnitCodec decoder = new LexicalUnitCodec();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+		String s = decoder.readString(in);
+		assertEquals("margin-left", s);
+		assertNull(decoder.readString(in));
+		assertEquals(longString, decoder.readString(in));
+		assertSame(s, decoder.readString(in));
+		assertEquals(longString, decoder.readString(in));
+	}
+
+	@Test
+	public void testVarInt() throws IOException {
+		int[] values = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1 };
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		for (int value : values) {
+			LexicalUnitCodec.writeVarInt(out, value);
+		}
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+		for (int value : values) {
+			assertEquals(value, LexicalUnitCodec.readVarInt(in));
+		}
+	}
+
+	@Test
+	public void testNull() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		new LexicalUnitCodec().writeLexicalUnit(out, null);
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+		assertNull(new LexicalUnitCodec().readLexicalUnit(in));
+	}
+
+	@Test
+	public void testCorrupt() {
+		byte[] data = { 99, 1, 1, 'x' };
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		assertThrows(StreamCorruptedException.class,
+				() -> new LexicalUnitCodec().readLexicalUnit(in));
+	}
+
+	private void assertRoundTrip(String value) throws IOException {
+		LexicalUnit lu = parser.parsePropertyValue(new StringReader(value));
+		assertNotNull(lu);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		new LexicalUnitCodec().writeLexicalUnit(out, lu);
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+		LexicalUnit read = new LexicalUnitCodec().readLexicalUnit(in);
+		assertEquals(-1, in.read());
+
+		assertEquals(lu.toString(), read.toString());
+		LexicalUnit expected = lu;
+		while (expected != null) {
+			assertNotNull(read);
+			assertEquals(expected, read);
+			assertEquals(expected.getClass(), read.getClass());
+			assertEquals(expected.getCssText(), read.getCssText());
+			expected = expected.getNextLexicalUnit();
+			read = read.getNextLexicalUnit();
+		}
+		assertNull(read);
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+
+ Copyright (c) 2005-2026, Carlos Amengual.
+
+ Licensed under a BSD-style License. You can find the license here:
+ https://css4j.github.io/LICENSE.txt
+
+ */
+
+// SPDX-License-Identifier: BSD-2-Clause OR BSD-3-Clause
+
+package io.sf.carte.doc.style.css.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.sf.carte.doc.TestConfig;
+import io.sf.carte.doc.style.css.nsac.ElementSelector;
+import io.sf.carte.doc.style.css.nsac.Selector;
+import io.sf.carte.doc.style.css.nsac.SelectorList;
+
+public class SelectorCodecTest {
+
+	private CSSParser parser;
+
+	@BeforeEach
+	public void setUp() {
+		parser = new CSSParser();
+	}
+
+	@Test
+	public void testSelectors() throws IOException {
+		assertRoundTrip("*, p, div.foo#bar, .a.b.c");
+		assertRoundTrip("ul > li + li ~ span a, col || td");
+		assertRoundTrip("[title], a[href^='http' i], [lang|=en], [class~=x s], [a$=b], [a*=c]");
+		assertRoundTrip("p:first-child, li:nth-child(2n+1 of .baz), tr:nth-last-of-type(-n+3)");
+		assertRoundTrip("li:nth-child(odd), p:only-child, p:only-of-type, p:last-child");
+		assertRoundTrip(":is(h1, h2) > :not(.x, #y), div:where(.a) :has(> img, + p)");
+		assertRoundTrip("p::first-line, ::part(label), ::slotted(span), p:lang(zh, \"*-hant\")");
+		assertRoundTrip("a:hover:focus-visible, input:dir(rtl), :host(.foo) ::before");
+	}
+
+	@Test
+	public void testNamespaces() throws IOException {
+		SelectorList list = SelectorParserNSTest.parseSelectorsNS(
+				"svg|rect, svg|*, *|p, |q, [svg|href]", null, null, parser);
+		SelectorCodec decoder = new SelectorCodec(new LexicalUnitCodec());
+		decoder.registerNamespacePrefix("svg", TestConfig.SVG_NAMESPACE_URI);
+		SelectorList read = assertRoundTrip(list, decoder);
+		assertEquals(TestConfig.SVG_NAMESPACE_URI,
+				((ElementSelector) read.item(0)).getNamespaceURI());
+	}
+
+	@Test
+	public void testUniversal() throws IOException {
+		SelectorList read = assertRoundTrip("*");
+		assertSame(NSACSelectorFactory.getUniversalSelector(), read.item(0));
+	}
+
+	@Test
+	public void testCorrupt() {
+		// Unknown selector kind
+		assertThrows(StreamCorruptedException.class, () -> read(new byte[] { 1, 99 }));
+		// Null selector in a list
+		assertThrows(StreamCorruptedException.class, () -> read(new byte[] { 1, 0 }));
+		// Negative count
+		assertThrows(StreamCorruptedException.class,
+				() -> read(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }));
+		// Truncated
+		assertThrows(IOException.class, () -> read(new byte[] { 2, 1 }));
+		// Conditional selectors nested too deeply
+		byte[] deep = new byte[1000];
+		deep[0] = 1;
+		for (int i = 1; i < deep.length; i++) {
+			deep[i] = 4;
+		}
+		assertThrows(StreamCorruptedException.class, () -> read(deep));
+	}
+
+	private static SelectorList read(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		return new SelectorCodec(new LexicalUnitCodec()).readSelectorList(in);
+	}
+
+	private SelectorList assertRoundTrip(String selectors) throws IOException {
+		return assertRoundTrip(parser.parseSelectors(selectors, null),
+				new SelectorCodec(new LexicalUnitCodec()));
+	}
+
+	private SelectorList assertRoundTrip(SelectorList list, SelectorCodec decoder)
+			throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(os);
+		new SelectorCodec(new LexicalUnitCodec()).writeSelectorList(out, list);
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+		SelectorList read = decoder.readSelectorList(in);
+		assertEquals(-1, in.read());
+
+		assertEquals(list.getLength(), read.getLength());
+		for (int i = 0; i < list.getLength(); i++) {
+			Selector expected = list.item(i);
+			Selector sel = read.item(i);
+			assertEquals(expected, sel);
+			assertEquals(expected.getSelectorType(), sel.getSelectorType());
+			assertEquals(expected.hashCode(), sel.hashCode());
+		}
+		assertEquals(list.toString(), read.toString());
+		return read;
+	}
+
+}